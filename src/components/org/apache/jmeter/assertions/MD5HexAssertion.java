@@ -60,7 +60,8 @@ public class MD5HexAssertion extends AbstractTestElement implements Serializable
         if (resultData.length == 0) {
             result.setError(false);
             result.setFailure(true);
-            result.setFailureMessage("Response was null");
+            result.setFailureMessage(response.isResponseDataTruncated()
+                    ? JMeterUtils.getResString("md5hex_assertion_not_kept") : "Response was null"); // $NON-NLS-1$
             return result;
         }
 
@@ -79,6 +80,10 @@ public class MD5HexAssertion extends AbstractTestElement implements Serializable
 
             Object[] arguments = { md5Result, getAllowedMD5Hex() };
             String message = MessageFormat.format(JMeterUtils.getResString("md5hex_assertion_failure"), arguments); // $NON-NLS-1$
+            if (response.isResponseDataTruncated()) {
+                Object[] sizes = { Integer.valueOf(resultData.length), Integer.valueOf(response.getBodySize()) };
+                message += " " + MessageFormat.format(JMeterUtils.getResString("assertion_response_truncated"), sizes); // $NON-NLS-1$ $NON-NLS-2$
+            }
             result.setFailureMessage(message);
 
         }
@@ -20,6 +20,7 @@ package org.apache.jmeter.assertions;
 
 import java.io.Serializable;
 import java.net.URL;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 
 import org.apache.commons.lang3.StringUtils;
@@ -337,7 +338,15 @@ public class ResponseAssertion extends AbstractScopedAssertion implements Serial
                 if (!pass) {
                     if (debugEnabled){log.debug("Failed: "+stringPattern);}
                     result.setFailure(true);
-                    result.setFailureMessage(getFailText(stringPattern,toCheck));
+                    String failText = getFailText(stringPattern,toCheck);
+                    if (response.isResponseDataTruncated()
+                            && (isTestFieldResponseData() || isTestFieldResponseDataAsDocument())) {
+                        Object[] sizes = { Integer.valueOf(response.getResponseData().length),
+                                Integer.valueOf(response.getBodySize()) };
+                        failText += " " + MessageFormat.format( // $NON-NLS-1$
+                                JMeterUtils.getResString("assertion_response_truncated"), sizes); // $NON-NLS-1$
+                    }
+                    result.setFailureMessage(failText);
                     break;
                 }
                 if (debugEnabled){log.debug("Passed: "+stringPattern);}
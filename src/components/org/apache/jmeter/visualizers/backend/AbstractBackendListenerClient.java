@@ -58,6 +58,9 @@ public abstract class AbstractBackendListenerClient implements BackendListenerCl
     
     private ConcurrentHashMap<String, SamplerMetric> metricsPerSampler = new ConcurrentHashMap<>();
 
+    // Set by BackendListener before setupTest
+    private volatile boolean preAggregation;
+
     /* Implements BackendListenerClient.setupTest(BackendListenerContext) */
     @Override
     public void setupTest(BackendListenerContext context) throws Exception {
@@ -95,14 +98,61 @@ public abstract class AbstractBackendListenerClient implements BackendListenerCl
         return result;
     }
 
+    /**
+     * Indicates whether this client only sends metrics aggregated from the
+     * sample results, so that sample results can be pre-aggregated: recorded
+     * by {@link #aggregateSampleResult(SampleResult, BackendListenerContext)}
+     * on the sampler threads, instead of being queued to
+     * {@link BackendListenerClient#handleSampleResults(java.util.List, BackendListenerContext)}.
+     * See property backend_metrics_pre_aggregation.
+     *
+     * @return false by default
+     */
+    public boolean supportsPreAggregation() {
+        return false;
+    }
+
+    /**
+     * Record a sample result in the metrics of this client, when sample
+     * results are pre-aggregated. Called concurrently by the sampler threads.
+     * <p>
+     * By default, records the result in the metric of its label.
+     * </p>
+     *
+     * @param result the sample result returned by
+     *            {@link #createSampleResult(BackendListenerContext, SampleResult)}
+     * @param context the context of the listener
+     */
+    public void aggregateSampleResult(SampleResult result, BackendListenerContext context) {
+        getSamplerMetric(result.getSampleLabel()).add(result);
+    }
+
+    /**
+     * @param preAggregation true if sample results are pre-aggregated by the
+     *            sampler threads
+     */
+    final void setPreAggregation(boolean preAggregation) {
+        this.preAggregation = preAggregation;
+    }
+
+    /**
+     * @return true if sample results are pre-aggregated by the sampler
+     *         threads instead of being passed to
+     *         {@link BackendListenerClient#handleSampleResults(java.util.List, BackendListenerContext)}
+     */
+    protected final boolean isPreAggregation() {
+        return preAggregation;
+    }
+
     /**
      * @param sampleLabel Name of sample used as key
-     * @return {@link SamplerMetric}
+     * @return {@link SamplerMetric}, counting response times in histograms
+     *         when sample results are pre-aggregated
      */
     protected final SamplerMetric getSamplerMetric(String sampleLabel) {
         SamplerMetric samplerMetric = metricsPerSampler.get(sampleLabel);
         if(samplerMetric == null) {
-            samplerMetric = new SamplerMetric();
+            samplerMetric = preAggregation ? new SamplerMetric(true) : new SamplerMetric();
             SamplerMetric oldValue = metricsPerSampler.putIfAbsent(sampleLabel, samplerMetric);
             if(oldValue != null ){
                 samplerMetric = oldValue;
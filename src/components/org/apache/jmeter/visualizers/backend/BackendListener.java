@@ -39,6 +39,8 @@ import org.apache.jmeter.testelement.AbstractTestElement;
 import org.apache.jmeter.testelement.TestElement;
 import org.apache.jmeter.testelement.TestStateListener;
 import org.apache.jmeter.testelement.property.TestElementProperty;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.visualizers.backend.RingBufferQueue.OverflowPolicy;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
@@ -55,6 +57,8 @@ public class BackendListener extends AbstractTestElement
     private static final class ListenerClientData {
         private BackendListenerClient client;
         private BlockingQueue<SampleResult> queue;
+        private RingBufferQueue<SampleResult> ringBuffer; // replaces queue if not null
+        private AbstractBackendListenerClient aggregatingClient; // replaces queue and worker if not null
         private AtomicLong queueWaits; // how many times we had to wait to queue a SampleResult        
         private AtomicLong queueWaitTime; // how long we had to wait (nanoSeconds)
         // @GuardedBy("LOCK")
@@ -69,6 +73,28 @@ public class BackendListener extends AbstractTestElement
 
     private static final Logger LOGGER = LoggingManager.getLoggerForClass();
 
+    /**
+     * Use a lock-free ring buffer instead of a blocking queue
+     */
+    private static final boolean USE_RING_BUFFER =
+            JMeterUtils.getPropDefault("backend_queue.ring_buffer", false); // $NON-NLS-1$
+
+    /**
+     * What sampler threads do when the ring buffer is full: block, drop or sample
+     */
+    private static final String OVERFLOW_POLICY =
+            JMeterUtils.getPropDefault("backend_queue.overflow_policy", "block"); // $NON-NLS-1$ $NON-NLS-2$
+
+    /**
+     * Let sampler threads record sample results in the metrics of the
+     * clients supporting it, instead of queuing them to a worker thread
+     */
+    private static final boolean PRE_AGGREGATION =
+            JMeterUtils.getPropDefault("backend_metrics_pre_aggregation", false); // $NON-NLS-1$
+
+    // Pause of the worker when the ring buffer is empty
+    private static final long RING_BUFFER_WAIT_NANOS = 1000000L;
+
     /**
      * Property key representing the classname of the BackendListenerClient to user.
      */
@@ -176,6 +202,14 @@ public class BackendListener extends AbstractTestElement
             }
             return;
         }
+        if (listenerClientData.aggregatingClient != null) {
+            listenerClientData.aggregatingClient.aggregateSampleResult(sr, context);
+            return;
+        }
+        if (listenerClientData.ringBuffer != null) {
+            listenerClientData.ringBuffer.add(sr);
+            return;
+        }
         try {
             if (!listenerClientData.queue.offer(sr)){ // we failed to add the element first time
                 listenerClientData.queueWaits.incrementAndGet();
@@ -207,6 +241,10 @@ public class BackendListener extends AbstractTestElement
 
         @Override
         public void run() {
+            if (listenerClientData.ringBuffer != null) {
+                runRingBuffer();
+                return;
+            }
             boolean isDebugEnabled = LOGGER.isDebugEnabled();
             List<SampleResult> sampleResults = new ArrayList<>(listenerClientData.queue.size());
             try {
@@ -251,6 +289,38 @@ public class BackendListener extends AbstractTestElement
                 listenerClientData.latch.countDown();
             }
         }
+
+        /**
+         * Drain the ring buffer in batches until the final sample result
+         */
+        private void runRingBuffer() {
+            RingBufferQueue<SampleResult> ringBuffer = listenerClientData.ringBuffer;
+            List<SampleResult> sampleResults = new ArrayList<>(ringBuffer.capacity());
+            try {
+                boolean endOfLoop = false;
+                while (!endOfLoop) {
+                    if (ringBuffer.drainTo(sampleResults, ringBuffer.capacity()) == 0) {
+                        LockSupport.parkNanos(RING_BUFFER_WAIT_NANOS);
+                        if (Thread.interrupted()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    for (int i = 0; i < sampleResults.size(); i++) {
+                        if (sampleResults.get(i) == FINAL_SAMPLE_RESULT) {
+                            // Ignore what may have been added after the end of the test
+                            sampleResults.subList(i, sampleResults.size()).clear();
+                            endOfLoop = true;
+                            break;
+                        }
+                    }
+                    sendToListener(backendListenerClient, context, sampleResults);
+                }
+                LOGGER.info("Worker ended");
+            } finally {
+                listenerClientData.latch.countDown();
+            }
+        }
     }
 
     /**
@@ -322,16 +392,19 @@ public class BackendListener extends AbstractTestElement
                 BackendListenerContext context = new BackendListenerContext((Arguments)getArguments().clone());
 
                 listenerClientData = new ListenerClientData();
-                listenerClientData.queue = new ArrayBlockingQueue<>(queueSize);
                 listenerClientData.queueWaits = new AtomicLong(0L);
                 listenerClientData.queueWaitTime = new AtomicLong(0L);
-                listenerClientData.latch = new CountDownLatch(1);
                 listenerClientData.client = backendListenerClient;
-                LOGGER.info(getName()+":Starting worker with class:"+clientClass +" and queue capacity:"+getQueueSize());
-                Worker worker = new Worker(backendListenerClient, (Arguments) getArguments().clone(), listenerClientData);
-                worker.setDaemon(true);
-                worker.start();
-                LOGGER.info(getName()+": Started  worker with class:"+clientClass);
+                if (PRE_AGGREGATION && backendListenerClient instanceof AbstractBackendListenerClient
+                        && ((AbstractBackendListenerClient) backendListenerClient).supportsPreAggregation()) {
+                    // No queue nor worker, sampler threads update the metrics of the client
+                    listenerClientData.aggregatingClient = (AbstractBackendListenerClient) backendListenerClient;
+                    listenerClientData.aggregatingClient.setPreAggregation(true);
+                    listenerClientData.latch = new CountDownLatch(0);
+                    LOGGER.info(getName()+": Pre-aggregating sample results with class:"+clientClass);
+                } else {
+                    startWorker(backendListenerClient, queueSize, listenerClientData);
+                }
                 try {
                     backendListenerClient.setupTest(context);
                 } catch (Exception e) {
@@ -343,6 +416,25 @@ public class BackendListener extends AbstractTestElement
         }
     }
 
+    /**
+     * Create the queue of the sample results and start the worker sending them
+     * to the {@link BackendListenerClient}
+     */
+    private void startWorker(BackendListenerClient backendListenerClient, int queueSize,
+            ListenerClientData listenerClientData) {
+        if (USE_RING_BUFFER) {
+            listenerClientData.ringBuffer = new RingBufferQueue<>(queueSize, getOverflowPolicy());
+        } else {
+            listenerClientData.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+        listenerClientData.latch = new CountDownLatch(1);
+        LOGGER.info(getName()+":Starting worker with class:"+clientClass +" and queue capacity:"+getQueueSize());
+        Worker worker = new Worker(backendListenerClient, (Arguments) getArguments().clone(), listenerClientData);
+        worker.setDaemon(true);
+        worker.start();
+        LOGGER.info(getName()+": Started  worker with class:"+clientClass);
+    }
+
     /**
      * Method called at the end of the test. This is called only on one instance
      * of BackendListener. This method will loop through all of the other
@@ -364,10 +456,19 @@ public class BackendListener extends AbstractTestElement
                 return;
             }
         }
-        try {
-            listenerClientData.queue.put(FINAL_SAMPLE_RESULT);
-        } catch (Exception ex) {
-            LOGGER.warn("testEnded() with exception:"+ex.getMessage(), ex);
+        if (listenerClientData.ringBuffer != null) {
+            RingBufferQueue<SampleResult> ringBuffer = listenerClientData.ringBuffer;
+            ringBuffer.put(FINAL_SAMPLE_RESULT);
+            LOGGER.info(getName()+": max queue depth: "+ringBuffer.getMaxSize()+"/"+ringBuffer.capacity()
+                    +", dropped: "+ringBuffer.getDroppedCount());
+            listenerClientData.queueWaits.set(ringBuffer.getWaitCount());
+            listenerClientData.queueWaitTime.set(ringBuffer.getWaitTime());
+        } else if (listenerClientData.queue != null) { // no queue if pre-aggregated
+            try {
+                listenerClientData.queue.put(FINAL_SAMPLE_RESULT);
+            } catch (Exception ex) {
+                LOGGER.warn("testEnded() with exception:"+ex.getMessage(), ex);
+            }
         }
         if (listenerClientData.queueWaits.get() > 0) {
             LOGGER.warn("QueueWaits: "+listenerClientData.queueWaits+"; QueueWaitTime: "+listenerClientData.queueWaitTime+
@@ -382,6 +483,39 @@ public class BackendListener extends AbstractTestElement
         }
     }
 
+    private static OverflowPolicy getOverflowPolicy() {
+        try {
+            return OverflowPolicy.fromName(OVERFLOW_POLICY);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid backend_queue.overflow_policy '" + OVERFLOW_POLICY + "' defaulting to block");
+            return OverflowPolicy.BLOCK;
+        }
+    }
+
+    /**
+     * @return the number of sample results currently waiting for the
+     *         {@link BackendListenerClient}
+     */
+    public int getQueueDepth() {
+        ListenerClientData data = listenerClientData;
+        if (data == null || data.aggregatingClient != null) {
+            return 0;
+        }
+        return data.ringBuffer != null ? data.ringBuffer.size() : data.queue.size();
+    }
+
+    /**
+     * @return the number of sample results dropped because the queue was
+     *         full, see property backend_queue.overflow_policy
+     */
+    public long getDroppedSampleCount() {
+        ListenerClientData data = listenerClientData;
+        if (data == null || data.ringBuffer == null) {
+            return 0;
+        }
+        return data.ringBuffer.getDroppedCount();
+    }
+
     /** Implements TestStateListener.testEnded(String)
      **/
     @Override
@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue for many producers and a single consumer, backed by a ring
+ * of slots. Producers claim a slot with a compare and set and the consumer
+ * drains the slots in batches, neither of them ever takes a lock.
+ * <p>
+ * What happens when a producer finds the queue full depends on the
+ * {@link OverflowPolicy}. Only one thread may call
+ * {@link #drainTo(Collection, int)}.
+ * </p>
+ *
+ * @param <E> type of the elements
+ * @since 3.0
+ */
+final class RingBufferQueue<E> {
+
+    /**
+     * What producers do when the queue is full
+     */
+    enum OverflowPolicy {
+        /** Wait for the consumer to free a slot, as a blocking queue */
+        BLOCK,
+        /** Drop the new element */
+        DROP,
+        /**
+         * Beyond half the capacity, keep each new element with a probability
+         * decreasing to 0 as the queue fills, so that the consumer gets an
+         * evenly spread sample of the elements rather than bursts
+         */
+        SAMPLE;
+
+        /**
+         * @param name the name of the policy, case insensitive
+         * @return the policy
+         * @throws IllegalArgumentException if there is no policy of this name
+         */
+        static OverflowPolicy fromName(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    // Pause of producers waiting for a free slot
+    private static final long WAIT_NANOS = 50000L;
+
+    private final AtomicReferenceArray<E> slots;
+
+    private final int mask;
+
+    private final OverflowPolicy policy;
+
+    /** Sequence of the next slot to read, only updated by the consumer */
+    private final AtomicLong head = new AtomicLong();
+
+    /** Sequence of the next slot to claim */
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong waits = new AtomicLong();
+
+    private final AtomicLong waitTime = new AtomicLong();
+
+    // Only updated by the consumer
+    private volatile int maxSize;
+
+    /**
+     * @param capacity the minimum number of elements the queue can hold,
+     *            rounded up to a power of 2
+     * @param policy what to do when the queue is full
+     */
+    RingBufferQueue(int capacity, OverflowPolicy policy) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.policy = policy;
+    }
+
+    /**
+     * Add an element according to the overflow policy of the queue
+     *
+     * @param element the element to add (must not be {@code null})
+     * @return false if the element was dropped
+     */
+    boolean add(E element) {
+        switch (policy) {
+        case DROP:
+            return offerOrDrop(element);
+        case SAMPLE:
+            int size = size();
+            int half = capacity() / 2;
+            if (size > half && ThreadLocalRandom.current().nextInt(half) < size - half) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            return offerOrDrop(element);
+        default:
+            put(element);
+            return true;
+        }
+    }
+
+    private boolean offerOrDrop(E element) {
+        if (offer(element)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Add an element if a slot is free
+     *
+     * @param element the element to add (must not be {@code null})
+     * @return false if the queue is full
+     */
+    boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+        slots.lazySet((int) sequence & mask, element);
+        return true;
+    }
+
+    /**
+     * Add an element, waiting for a free slot whatever the overflow policy
+     *
+     * @param element the element to add (must not be {@code null})
+     */
+    void put(E element) {
+        if (offer(element)) {
+            return;
+        }
+        waits.incrementAndGet();
+        long start = System.nanoTime();
+        do {
+            LockSupport.parkNanos(WAIT_NANOS);
+        } while (!offer(element));
+        waitTime.addAndGet(System.nanoTime() - start);
+    }
+
+    /**
+     * Move the available elements to a collection, in the order they were
+     * added. Must only be called by the consumer thread.
+     *
+     * @param collection the collection to add the elements to
+     * @param maxElements the maximum number of elements to move
+     * @return the number of elements moved
+     */
+    int drainTo(Collection<? super E> collection, int maxElements) {
+        long sequence = head.get();
+        int size = (int) (tail.get() - sequence);
+        if (size > maxSize) {
+            maxSize = size;
+        }
+        int count = 0;
+        while (count < maxElements) {
+            int index = (int) sequence & mask;
+            E element = slots.get(index);
+            if (element == null) {
+                // Empty, or claimed by a producer which has not stored its element yet
+                break;
+            }
+            slots.lazySet(index, null);
+            collection.add(element);
+            sequence++;
+            count++;
+        }
+        head.lazySet(sequence);
+        return count;
+    }
+
+    /**
+     * @return the number of slots, which may be greater than the requested capacity
+     */
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return the number of elements waiting for the consumer
+     */
+    int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+
+    /**
+     * @return the greatest number of elements found waiting by the consumer
+     */
+    int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of elements dropped because of the overflow policy
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return how many times a producer had to wait for a free slot
+     */
+    long getWaitCount() {
+        return waits.get();
+    }
+
+    /**
+     * @return how long producers waited for free slots, in nanoseconds
+     */
+    long getWaitTime() {
+        return waitTime.get();
+    }
+}
@@ -20,16 +20,97 @@ package org.apache.jmeter.visualizers.backend;
 
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.apache.jmeter.control.TransactionController;
+import org.apache.jmeter.report.processor.HistogramPercentileAggregator;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.util.JMeterUtils;
 
 /**
  * Sampler metric
+ * <p>
+ * By default, response times are kept in sliding windows of the last
+ * backend_metrics_window values. With backend_metrics_mode=histogram, they
+ * are counted in histograms holding all the values of the current time
+ * interval, one set of histograms per thread stripe so that threads adding
+ * results do not wait for each other.
+ * </p>
  * @since 2.13
  */
 public class SamplerMetric {
     private static final int SLIDING_WINDOW_SIZE = JMeterUtils.getPropDefault("backend_metrics_window", 100); //$NON-NLS-1$
-    
+
+    private static final boolean USE_HISTOGRAM = "histogram".equalsIgnoreCase( //$NON-NLS-1$
+            JMeterUtils.getPropDefault("backend_metrics_mode", "window")); //$NON-NLS-1$ //$NON-NLS-2$
+
+    // Number of significant decimal digits of the response times in histograms
+    private static final int HISTOGRAM_PRECISION = JMeterUtils.getPropDefault("backend_metrics_histogram_precision", 2); //$NON-NLS-1$
+
+    // Power of 2
+    private static final int STRIPE_COUNT =
+            Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    /**
+     * Response times and counts of a time interval, for histogram mode
+     */
+    private static final class IntervalStats {
+        private final HistogramPercentileAggregator okResponses = new HistogramPercentileAggregator(50, HISTOGRAM_PRECISION);
+        private final HistogramPercentileAggregator koResponses = new HistogramPercentileAggregator(50, HISTOGRAM_PRECISION);
+        private final HistogramPercentileAggregator allResponses = new HistogramPercentileAggregator(50, HISTOGRAM_PRECISION);
+        private double okSum;
+        private double koSum;
+        private int successes;
+        private int failures;
+        private int hits;
+
+        private void add(SampleResult result) {
+            long time = result.getTime();
+            allResponses.addValue(time);
+            if(result.isSuccessful()) {
+                successes+=result.getSampleCount()-result.getErrorCount();
+                okResponses.addValue(time);
+                okSum += time;
+            } else {
+                failures+=result.getErrorCount();
+                koResponses.addValue(time);
+                koSum += time;
+            }
+            hits += countHits(result);
+        }
+
+        private void merge(IntervalStats other) {
+            okResponses.merge(other.okResponses);
+            koResponses.merge(other.koResponses);
+            allResponses.merge(other.allResponses);
+            okSum += other.okSum;
+            koSum += other.koSum;
+            successes += other.successes;
+            failures += other.failures;
+            hits += other.hits;
+        }
+
+        private void reset() {
+            okResponses.reset();
+            koResponses.reset();
+            allResponses.reset();
+            okSum = 0;
+            koSum = 0;
+            successes = 0;
+            failures = 0;
+            hits = 0;
+        }
+
+        private static double mean(double sum, HistogramPercentileAggregator responses) {
+            return responses.getCount() == 0 ? Double.NaN : sum / responses.getCount();
+        }
+    }
+
+    // Histogram mode: stats of the current interval, by thread stripe
+    private final IntervalStats[] stripes;
+
+    // Histogram mode: stats of the interval being read, null until the first read
+    //@GuardedBy("this")
+    private IntervalStats merged;
+
+
     // Response times for OK samples
     // Limit to sliding window of SLIDING_WINDOW_SIZE values 
     private DescriptiveStatistics okResponsesStats = new DescriptiveStatistics(SLIDING_WINDOW_SIZE);
@@ -46,13 +127,42 @@ public class SamplerMetric {
      * 
      */
     public SamplerMetric() {
+        this(USE_HISTOGRAM);
+    }
+
+    /**
+     * @param useHistogram true to count the response times of each interval
+     *            in histograms, false to keep sliding windows of values
+     */
+    SamplerMetric(boolean useHistogram) {
+        if (useHistogram) {
+            stripes = new IntervalStats[STRIPE_COUNT];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new IntervalStats();
+            }
+        } else {
+            stripes = null;
+        }
     }
 
     /**
      * Add a {@link SampleResult} to be used in the statistics
      * @param result {@link SampleResult} to be used
      */
-    public synchronized void add(SampleResult result) {
+    public void add(SampleResult result) {
+        if (stripes != null) {
+            IntervalStats stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+            synchronized (stripe) {
+                stripe.add(result);
+            }
+            return;
+        }
+        synchronized (this) {
+            addToWindows(result);
+        }
+    }
+
+    private void addToWindows(SampleResult result) {
         if(result.isSuccessful()) {
             successes+=result.getSampleCount()-result.getErrorCount();
         } else {
@@ -67,27 +177,65 @@ public class SamplerMetric {
         }else {
             koResponsesStats.addValue(time);
         }
-        addHits(result);
+        hits += countHits(result);
     }
 
     /**
      * Compute hits from res
      * @param res {@link SampleResult}
+     * @return the hits
      */
-    private void addHits(SampleResult res) {     
+    private static int countHits(SampleResult res) {
+        int count = 0;
         SampleResult[] subResults = res.getSubResults();
         if (!TransactionController.isFromTransactionController(res)) {
-            hits += 1;                 
+            count += 1;
         }
         for (int i = 0; i < subResults.length; i++) {            
-            addHits(subResults[i]);
+            count += countHits(subResults[i]);
         }
+        return count;
     }
-    
+
+    /**
+     * Get the stats of the current interval. The first call after
+     * {@link #resetForTimeInterval()} moves the stripes to the returned stats,
+     * so that all the values read for an interval are consistent: results
+     * added afterwards are counted in the next interval.
+     *
+     * @return the merged stats
+     */
+    private synchronized IntervalStats getIntervalStats() {
+        if (merged == null) {
+            IntervalStats stats = new IntervalStats();
+            for (IntervalStats stripe : stripes) {
+                synchronized (stripe) {
+                    stats.merge(stripe);
+                    stripe.reset();
+                }
+            }
+            merged = stats;
+        }
+        return merged;
+    }
+
     /**
-     * Reset metric except for percentile related data
+     * Reset metric except for percentile related data.
+     * In histogram mode, end the interval: reset the data read since the
+     * previous reset, or all the data if it has not been read
      */
     public synchronized void resetForTimeInterval() {
+        if (stripes != null) {
+            if (merged == null) {
+                for (IntervalStats stripe : stripes) {
+                    synchronized (stripe) {
+                        stripe.reset();
+                    }
+                }
+            }
+            merged = null;
+            return;
+        }
         // We don't clear responsesStats nor usersStats as it will slide as per my understanding of 
         // http://commons.apache.org/proper/commons-math/userguide/stat.html
         successes = 0;
@@ -101,6 +249,10 @@ public class SamplerMetric {
      * @return number of total requests
      */
     public int getTotal() {
+        if (stripes != null) {
+            IntervalStats stats = getIntervalStats();
+            return stats.successes+stats.failures;
+        }
         return successes+failures;
     }
     
@@ -110,6 +262,9 @@ public class SamplerMetric {
      * @return number of successful requests
      */
     public int getSuccesses() {
+        if (stripes != null) {
+            return getIntervalStats().successes;
+        }
         return successes;
     }
 
@@ -119,6 +274,9 @@ public class SamplerMetric {
      * @return number of failed requests
      */
     public int getFailures() {
+        if (stripes != null) {
+            return getIntervalStats().failures;
+        }
         return failures;
     }
 
@@ -129,6 +287,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getOkMaxTime() {
+        if (stripes != null) {
+            return getIntervalStats().okResponses.getMax();
+        }
         return okResponsesStats.getMax();
     }
 
@@ -139,6 +300,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getOkMinTime() {
+        if (stripes != null) {
+            return getIntervalStats().okResponses.getMin();
+        }
         return okResponsesStats.getMin();
     }
     
@@ -148,6 +312,10 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getOkMean() {
+        if (stripes != null) {
+            IntervalStats stats = getIntervalStats();
+            return IntervalStats.mean(stats.okSum, stats.okResponses);
+        }
         return okResponsesStats.getMean();
     }
     
@@ -160,6 +328,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getOkPercentile(double percentile) {
+        if (stripes != null) {
+            return getIntervalStats().okResponses.getPercentile(percentile);
+        }
         return okResponsesStats.getPercentile(percentile);
     }
 
@@ -170,6 +341,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getKoMaxTime() {
+        if (stripes != null) {
+            return getIntervalStats().koResponses.getMax();
+        }
         return koResponsesStats.getMax();
     }
 
@@ -180,6 +354,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getKoMinTime() {
+        if (stripes != null) {
+            return getIntervalStats().koResponses.getMin();
+        }
         return koResponsesStats.getMin();
     }
     
@@ -189,6 +366,10 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getKoMean() {
+        if (stripes != null) {
+            IntervalStats stats = getIntervalStats();
+            return IntervalStats.mean(stats.koSum, stats.koResponses);
+        }
         return koResponsesStats.getMean();
     }
     
@@ -201,6 +382,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getKoPercentile(double percentile) {
+        if (stripes != null) {
+            return getIntervalStats().koResponses.getPercentile(percentile);
+        }
         return koResponsesStats.getPercentile(percentile);
     }
     
@@ -211,6 +395,9 @@ public class SamplerMetric {
      *         been added yet
      */
     public double getAllMaxTime() {
+        if (stripes != null) {
+            return getIntervalStats().allResponses.getMax();
+        }
         return allResponsesStats.getMax();
     }
 
@@ -221,6 +408,9 @@ public class SamplerMetric {
      *         added yet
      */
     public double getAllMinTime() {
+        if (stripes != null) {
+            return getIntervalStats().allResponses.getMin();
+        }
         return allResponsesStats.getMin();
     }
     
@@ -230,6 +420,10 @@ public class SamplerMetric {
      * @return The arithmetic mean of the stored values
      */
     public double getAllMean() {
+        if (stripes != null) {
+            IntervalStats stats = getIntervalStats();
+            return IntervalStats.mean(stats.okSum + stats.koSum, stats.allResponses);
+        }
         return allResponsesStats.getMean();
     }
     
@@ -242,6 +436,9 @@ public class SamplerMetric {
      *         values.
      */
     public double getAllPercentile(double percentile) {
+        if (stripes != null) {
+            return getIntervalStats().allResponses.getPercentile(percentile);
+        }
         return allResponsesStats.getPercentile(percentile);
     }
 
@@ -250,6 +447,9 @@ public class SamplerMetric {
      * @return the hits
      */
     public int getHits() {
+        if (stripes != null) {
+            return getIntervalStats().hits;
+        }
         return hits;
     }
 }
@@ -43,6 +43,15 @@ public class UserMetric {
      * @param result {@link SampleResult} to be used
      */
     public synchronized void add(SampleResult result) {
+        addActiveThreads();
+    }
+
+    /**
+     * Add the current number of active threads to the statistics, without a
+     * {@link SampleResult}, for instance once per interval when sample results
+     * are pre-aggregated
+     */
+    public synchronized void addActiveThreads() {
         usersStats.addValue(JMeterContextService.getThreadCounts().activeThreads);
     }
     
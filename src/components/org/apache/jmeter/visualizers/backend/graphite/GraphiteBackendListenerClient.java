@@ -125,6 +125,10 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
         // Need to convert millis to seconds for Graphite
         long timestampInSeconds = TimeUnit.SECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
         synchronized (LOCK) {
+            if (isPreAggregation()) {
+                // Sample results do not go through handleSampleResults
+                getUserMetrics().addActiveThreads();
+            }
             for (Map.Entry<String, SamplerMetric> entry : getMetricsPerSampler().entrySet()) {
                 SamplerMetric metric = entry.getValue();
                 if(entry.getKey().equals(CUMULATED_METRICS)) {
@@ -209,16 +213,34 @@ public class GraphiteBackendListenerClient extends AbstractBackendListenerClient
         synchronized (LOCK) {
             for (SampleResult sampleResult : sampleResults) {
                 getUserMetrics().add(sampleResult);
-                if(!summaryOnly && samplersToFilter.contains(sampleResult.getSampleLabel())) {
-                    SamplerMetric samplerMetric = getSamplerMetric(sampleResult.getSampleLabel());
-                    samplerMetric.add(sampleResult);
-                }
-                SamplerMetric cumulatedMetrics = getSamplerMetric(CUMULATED_METRICS);
-                cumulatedMetrics.add(sampleResult);                    
+                addToMetrics(sampleResult);
             }
         }
     }
 
+    @Override
+    public boolean supportsPreAggregation() {
+        return true;
+    }
+
+    /**
+     * Called by the sampler threads when sample results are pre-aggregated,
+     * the metrics in histogram mode are safe to update without LOCK
+     */
+    @Override
+    public void aggregateSampleResult(SampleResult sampleResult, BackendListenerContext context) {
+        addToMetrics(sampleResult);
+    }
+
+    private void addToMetrics(SampleResult sampleResult) {
+        if(!summaryOnly && samplersToFilter.contains(sampleResult.getSampleLabel())) {
+            SamplerMetric samplerMetric = getSamplerMetric(sampleResult.getSampleLabel());
+            samplerMetric.add(sampleResult);
+        }
+        SamplerMetric cumulatedMetrics = getSamplerMetric(CUMULATED_METRICS);
+        cumulatedMetrics.add(sampleResult);
+    }
+
     @Override
     public void setupTest(BackendListenerContext context) throws Exception {
         String graphiteMetricsSenderClass = context.getParameter("graphiteMetricsSender");
@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.graphite;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * PlainText Graphite sender writing to a non-blocking NIO channel.
+ * <p>
+ * Metrics are encoded in reusable packet buffers as they are added.
+ * {@link #writeAndSendMetrics()} writes what the channel accepts without
+ * waiting, and keeps the rest for the next call, up to
+ * backend_graphite.max_buffered_bytes: beyond it the oldest packets are
+ * dropped. So a slow or unavailable Graphite server never stalls the caller.
+ * </p>
+ * @since 3.0
+ */
+class NioGraphiteMetricsSender extends AbstractGraphiteMetricsSender {
+    private static final Logger LOG = LoggingManager.getLoggerForClass();
+
+    /**
+     * Maximum size of the metrics waiting to be written
+     */
+    static final int MAX_BUFFERED_BYTES =
+            JMeterUtils.getPropDefault("backend_graphite.max_buffered_bytes", 1024 * 1024); //$NON-NLS-1$
+
+    // Size of the packets written to TCP connections
+    static final int TCP_PACKET_SIZE = 16 * 1024;
+
+    // Size of the UDP datagrams, small enough not to be fragmented on usual networks
+    static final int UDP_PACKET_SIZE = 1400;
+
+    // Pause between the last attempts to write metrics on destroy
+    private static final long DESTROY_RETRY_MS = 10L;
+
+    /**
+     * Buffer of whole metric lines, written in one go
+     */
+    private static final class Packet {
+        private final ByteBuffer buffer;
+        private int metrics;
+
+        private Packet(int size) {
+            buffer = ByteBuffer.allocate(size);
+        }
+    }
+
+    private final boolean udp;
+
+    private final int packetSize;
+
+    private final int maxBufferedPackets;
+
+    private final CharsetEncoder encoder = Charset.forName(CHARSET_NAME).newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final byte[] digits = new byte[20];
+
+    // Packets ready to be written, the first one may be partly written
+    private final Deque<Packet> pending = new ArrayDeque<>();
+
+    // Written or dropped packets, reused to encode metrics
+    private final Deque<Packet> free = new ArrayDeque<>();
+
+    // Packet metrics are being added to
+    private Packet current;
+
+    private final AtomicLong sentCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private String prefix;
+
+    private String host;
+
+    private int port;
+
+    // SocketChannel or DatagramChannel, null when not connected
+    private ByteChannel channel;
+
+    private long connectStart;
+
+    private boolean failureLogged;
+
+    NioGraphiteMetricsSender() {
+        this(false, MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * @param udp true to send datagrams, false to write to a TCP connection
+     * @param maxBufferedBytes maximum size of the metrics waiting to be written
+     */
+    NioGraphiteMetricsSender(boolean udp, int maxBufferedBytes) {
+        super();
+        this.udp = udp;
+        this.packetSize = udp ? UDP_PACKET_SIZE : TCP_PACKET_SIZE;
+        this.maxBufferedPackets = Math.max(1, maxBufferedBytes / packetSize);
+    }
+
+    @Override
+    public void setup(String graphiteHost, int graphitePort, String prefix) {
+        this.host = graphiteHost;
+        this.port = graphitePort;
+        this.prefix = prefix;
+
+        if(LOG.isInfoEnabled()) {
+            LOG.info("Created "+getClass().getSimpleName()+" with host:"+graphiteHost+", port:"+graphitePort+", prefix:"+prefix);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.jmeter.visualizers.backend.graphite.GraphiteMetricsSender#addMetric(long, java.lang.String, java.lang.String, java.lang.String)
+     */
+    @Override
+    public void addMetric(long timestamp, String contextName, String metricName, String metricValue) {
+        if (current == null) {
+            current = newPacket();
+        }
+        if (!encode(current.buffer, timestamp, contextName, metricName, metricValue)) {
+            if (current.metrics > 0) {
+                addPending(current);
+                current = newPacket();
+            }
+            if (!encode(current.buffer, timestamp, contextName, metricName, metricValue)) {
+                LOG.warn("Dropping metric "+contextName+"."+metricName+" longer than "+packetSize+" bytes");
+                droppedCount.incrementAndGet();
+                return;
+            }
+        }
+        current.metrics++;
+    }
+
+    /**
+     * Encode a metric line
+     *
+     * @return false if the line does not fit in the buffer, which is left
+     *         unchanged
+     */
+    private boolean encode(ByteBuffer buffer, long timestamp, String contextName, String metricName, String metricValue) {
+        int start = buffer.position();
+        try {
+            putString(buffer, prefix);
+            putString(buffer, contextName);
+            buffer.put((byte) '.');
+            putString(buffer, metricName);
+            buffer.put((byte) ' ');
+            putString(buffer, metricValue);
+            buffer.put((byte) ' ');
+            putLong(buffer, timestamp);
+            buffer.put((byte) '\n');
+            return true;
+        } catch (BufferOverflowException e) {
+            buffer.position(start);
+            return false;
+        }
+    }
+
+    private void putString(ByteBuffer buffer, String s) {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                putEncoded(buffer, s, i);
+                return;
+            }
+            buffer.put((byte) c);
+        }
+    }
+
+    private void putEncoded(ByteBuffer buffer, String s, int from) {
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(s, from, s.length()), buffer, true);
+        if (result.isOverflow() || encoder.flush(buffer).isOverflow()) {
+            throw new BufferOverflowException();
+        }
+    }
+
+    private void putLong(ByteBuffer buffer, long value) {
+        if (value < 0) {
+            putString(buffer, Long.toString(value));
+            return;
+        }
+        long remaining = value;
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        buffer.put(digits, i, digits.length - i);
+    }
+
+    private Packet newPacket() {
+        Packet packet = free.pollFirst();
+        if (packet == null) {
+            return new Packet(packetSize);
+        }
+        packet.buffer.clear();
+        packet.metrics = 0;
+        return packet;
+    }
+
+    /**
+     * Make a packet ready to be written, dropping the oldest packets
+     * beyond the maximum buffered size
+     */
+    private void addPending(Packet packet) {
+        packet.buffer.flip();
+        pending.addLast(packet);
+        while (pending.size() > maxBufferedPackets) {
+            Packet first = pending.pollFirst();
+            Packet dropped = first;
+            if (first.buffer.position() > 0) {
+                // Partly written, the end of its last line must follow
+                dropped = pending.pollFirst();
+                pending.addFirst(first);
+            }
+            droppedCount.addAndGet(dropped.metrics);
+            free.addLast(dropped);
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.jmeter.visualizers.backend.graphite.GraphiteMetricsSender#writeAndSendMetrics()
+     */
+    @Override
+    public void writeAndSendMetrics() {
+        if (current != null && current.metrics > 0) {
+            addPending(current);
+            current = null;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            if (connect()) {
+                writePending();
+            }
+        } catch (IOException e) {
+            if (!failureLogged) {
+                LOG.error("Error writing to Graphite "+host+":"+port+", keeping metrics up to "
+                        +maxBufferedPackets * packetSize+" bytes:"+e.getMessage());
+                failureLogged = true;
+            }
+            closeChannel();
+            // The first packet may have been partly written, write it again in full
+            pending.peekFirst().buffer.rewind();
+        }
+        if(LOG.isDebugEnabled()) {
+            LOG.debug("Sent "+sentCount+" metrics, dropped "+droppedCount+", "+pending.size()+" packets waiting");
+        }
+    }
+
+    /**
+     * Open the channel if needed, without waiting for a TCP connection
+     *
+     * @return true if the channel is connected
+     * @throws IOException if the channel cannot be opened or connected
+     */
+    private boolean connect() throws IOException {
+        if (channel == null) {
+            InetSocketAddress address = new InetSocketAddress(host, port);
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(host);
+            }
+            if (udp) {
+                DatagramChannel datagramChannel = DatagramChannel.open();
+                channel = datagramChannel;
+                datagramChannel.configureBlocking(false);
+                datagramChannel.connect(address);
+                return true;
+            }
+            SocketChannel socketChannel = SocketChannel.open();
+            channel = socketChannel;
+            socketChannel.configureBlocking(false);
+            connectStart = System.currentTimeMillis();
+            return socketChannel.connect(address);
+        }
+        if (channel instanceof SocketChannel && ((SocketChannel) channel).isConnectionPending()) {
+            if (((SocketChannel) channel).finishConnect()) {
+                return true;
+            }
+            if (System.currentTimeMillis() - connectStart > SOCKET_CONNECT_TIMEOUT_MS) {
+                throw new SocketTimeoutException("Connection timed out");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write the pending packets until the channel does not accept more bytes
+     */
+    private void writePending() throws IOException {
+        Packet packet;
+        while ((packet = pending.peekFirst()) != null) {
+            while (packet.buffer.hasRemaining()) {
+                if (channel.write(packet.buffer) == 0) {
+                    // Socket buffer full, try again next time
+                    return;
+                }
+            }
+            pending.pollFirst();
+            sentCount.addAndGet(packet.metrics);
+            free.addLast(packet);
+            failureLogged = false;
+        }
+    }
+
+    private void closeChannel() {
+        JOrphanUtils.closeQuietly(channel);
+        channel = null;
+    }
+
+    /* (non-Javadoc)
+     * @see org.apache.jmeter.visualizers.backend.graphite.GraphiteMetricsSender#destroy()
+     */
+    @Override
+    public void destroy() {
+        writeAndSendMetrics();
+        long end = System.currentTimeMillis() + SOCKET_TIMEOUT;
+        while (!pending.isEmpty() && System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(DESTROY_RETRY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            writeAndSendMetrics();
+        }
+        for (Packet packet : pending) {
+            droppedCount.addAndGet(packet.metrics);
+        }
+        pending.clear();
+        closeChannel();
+        LOG.info(getClass().getSimpleName()+" to "+host+":"+port+" sent "+sentCount+" metrics, dropped "+droppedCount);
+    }
+
+    /**
+     * @return the number of metrics written to the channel
+     */
+    long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * @return the number of metrics dropped because too many were waiting
+     *         to be written
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
@@ -0,0 +1,457 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterContextService.ThreadCounts;
+import org.apache.jmeter.visualizers.backend.AbstractBackendListenerClient;
+import org.apache.jmeter.visualizers.backend.BackendListenerContext;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Backend Listener client serving live statistics per sample label over
+ * HTTP, in the Prometheus text format at {@value #TEXT_PATH} and as JSON at
+ * {@value #JSON_PATH}, so that monitoring systems can scrape running tests.
+ * <p>
+ * Statistics since the start of the test are updated without locks; rolling
+ * statistics over the last seconds are computed from snapshots taken every
+ * second. Serving them takes a time proportional to the number of labels.
+ * </p>
+ * @since 3.0
+ */
+public class HttpMetricsBackendListenerClient extends AbstractBackendListenerClient implements Runnable {
+    private static final Logger LOGGER = LoggingManager.getLoggerForClass();
+
+    static final String TEXT_PATH = "/metrics"; //$NON-NLS-1$
+    static final String JSON_PATH = "/metrics.json"; //$NON-NLS-1$
+
+    private static final String TEXT_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8"; //$NON-NLS-1$
+    private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8"; //$NON-NLS-1$
+
+    private static final String DEFAULT_PORT = "9270"; //$NON-NLS-1$
+    private static final String DEFAULT_WINDOW_SECONDS = "60"; //$NON-NLS-1$
+    private static final String DEFAULT_PERCENTILES = "90;95;99"; //$NON-NLS-1$
+    private static final String DEFAULT_BUCKETS =
+            "5;10;25;50;75;100;150;200;300;500;750;1000;1500;2000;3000;5000;10000;30000;60000"; //$NON-NLS-1$
+    private static final String SEPARATOR = ";"; //$NON-NLS-1$
+
+    private static final long ONE_SECOND = 1L;
+    // Response bodies smaller than this are not worth compressing
+    private static final int MIN_GZIP_SIZE = 1024;
+
+    /**
+     * Statistics of a label as served
+     */
+    private static final class LabelStats {
+        private final String label;
+        private final long[] values;
+        // values over the rolling window
+        private final long[] window;
+        private final double windowSeconds;
+
+        private LabelStats(String label, LiveMetric metric, long now) {
+            this.label = label;
+            this.values = metric.getValues();
+            this.window = new long[values.length];
+            long start = metric.getWindowStart(window);
+            for (int i = 0; i < values.length; i++) {
+                window[i] = values[i] - window[i];
+            }
+            this.windowSeconds = (now - start) / 1000d;
+        }
+
+        private double getThroughput() {
+            return windowSeconds > 0 ? window[LiveMetric.COUNT] / windowSeconds : Double.NaN;
+        }
+
+        private double getErrorRatio() {
+            return ratio(window[LiveMetric.ERRORS], window[LiveMetric.COUNT]);
+        }
+
+        private double getMeanElapsed() {
+            return ratio(window[LiveMetric.ELAPSED], window[LiveMetric.COUNT]);
+        }
+
+        private static double ratio(long value, long count) {
+            return count > 0 ? (double) value / count : Double.NaN;
+        }
+    }
+
+    private final ConcurrentHashMap<String, LiveMetric> liveMetrics = new ConcurrentHashMap<>();
+
+    private long[] bounds;
+    private double[] percentiles;
+    private int windowSeconds;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ScheduledExecutorService scheduler;
+
+    public HttpMetricsBackendListenerClient() {
+        super();
+    }
+
+    /**
+     * Snapshot the statistics, called every second
+     */
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        for (LiveMetric metric : liveMetrics.values()) {
+            metric.snapshot(now);
+        }
+    }
+
+    @Override
+    public void handleSampleResults(List<SampleResult> sampleResults, BackendListenerContext context) {
+        for (SampleResult sampleResult : sampleResults) {
+            addToMetrics(sampleResult);
+        }
+    }
+
+    @Override
+    public boolean supportsPreAggregation() {
+        return true;
+    }
+
+    @Override
+    public void aggregateSampleResult(SampleResult sampleResult, BackendListenerContext context) {
+        addToMetrics(sampleResult);
+    }
+
+    private void addToMetrics(SampleResult sampleResult) {
+        String label = sampleResult.getSampleLabel();
+        LiveMetric metric = liveMetrics.get(label);
+        if (metric == null) {
+            metric = new LiveMetric(bounds, windowSeconds, System.currentTimeMillis());
+            LiveMetric previous = liveMetrics.putIfAbsent(label, metric);
+            if (previous != null) {
+                metric = previous;
+            }
+        }
+        metric.add(sampleResult);
+    }
+
+    @Override
+    public void setupTest(BackendListenerContext context) throws Exception {
+        int port = context.getIntParameter("port", Integer.parseInt(DEFAULT_PORT));
+        String bindAddress = context.getParameter("bindAddress", "").trim();
+        windowSeconds = Math.max(1, context.getIntParameter("windowSeconds", Integer.parseInt(DEFAULT_WINDOW_SECONDS)));
+        String[] percentilesStringArray = splitList(context.getParameter("percentiles", DEFAULT_PERCENTILES));
+        percentiles = new double[percentilesStringArray.length];
+        for (int i = 0; i < percentilesStringArray.length; i++) {
+            percentiles[i] = Double.parseDouble(percentilesStringArray[i]);
+        }
+        String[] boundsStringArray = splitList(context.getParameter("buckets", DEFAULT_BUCKETS));
+        bounds = new long[boundsStringArray.length];
+        for (int i = 0; i < boundsStringArray.length; i++) {
+            bounds[i] = Long.parseLong(boundsStringArray[i]);
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("buckets must be in ascending order:" + context.getParameter("buckets"));
+            }
+        }
+
+        InetSocketAddress address = bindAddress.isEmpty()
+                ? new InetSocketAddress(port) : new InetSocketAddress(bindAddress, port);
+        server = HttpServer.create(address, 0);
+        serverExecutor = Executors.newSingleThreadExecutor();
+        server.setExecutor(serverExecutor);
+        MetricsHandler handler = new MetricsHandler();
+        server.createContext(TEXT_PATH, handler);
+        server.createContext(JSON_PATH, handler);
+        server.start();
+        LOGGER.info("Serving live metrics on http://" + bindAddress + ":" + getPort() + TEXT_PATH
+                + " and " + JSON_PATH);
+
+        scheduler = Executors.newScheduledThreadPool(1);
+        scheduler.scheduleAtFixedRate(this, ONE_SECOND, ONE_SECOND, TimeUnit.SECONDS);
+    }
+
+    private static String[] splitList(String list) {
+        List<String> items = new ArrayList<>();
+        for (String item : list.split(SEPARATOR)) {
+            if (!StringUtils.isBlank(item)) {
+                items.add(item.trim());
+            }
+        }
+        return items.toArray(new String[items.size()]);
+    }
+
+    /**
+     * @return the port the metrics are served on
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void teardownTest(BackendListenerContext context) throws Exception {
+        scheduler.shutdown();
+        server.stop(0);
+        serverExecutor.shutdown();
+        liveMetrics.clear();
+        super.teardownTest(context);
+    }
+
+    @Override
+    public Arguments getDefaultParameters() {
+        Arguments arguments = new Arguments();
+        arguments.addArgument("port", DEFAULT_PORT);
+        arguments.addArgument("bindAddress", "");
+        arguments.addArgument("windowSeconds", DEFAULT_WINDOW_SECONDS);
+        arguments.addArgument("percentiles", DEFAULT_PERCENTILES);
+        arguments.addArgument("buckets", DEFAULT_BUCKETS);
+        return arguments;
+    }
+
+    /**
+     * @param json true for JSON, false for the Prometheus text format
+     * @return the statistics of all the labels
+     */
+    String formatMetrics(boolean json) {
+        long now = System.currentTimeMillis();
+        List<LabelStats> stats = new ArrayList<>(liveMetrics.size());
+        for (Map.Entry<String, LiveMetric> entry : liveMetrics.entrySet()) {
+            stats.add(new LabelStats(entry.getKey(), entry.getValue(), now));
+        }
+        ThreadCounts threadCounts = JMeterContextService.getThreadCounts();
+        return json ? formatJson(now, stats, threadCounts) : formatText(stats, threadCounts);
+    }
+
+    private String formatText(List<LabelStats> stats, ThreadCounts threadCounts) {
+        StringBuilder sb = new StringBuilder(256 + stats.size() * (512 + bounds.length * 64));
+        family(sb, "jmeter_threads", "gauge", "Number of threads"); //$NON-NLS-1$
+        sb.append("jmeter_threads{state=\"active\"} ").append(threadCounts.activeThreads).append('\n'); //$NON-NLS-1$
+        sb.append("jmeter_threads{state=\"started\"} ").append(threadCounts.startedThreads).append('\n'); //$NON-NLS-1$
+        sb.append("jmeter_threads{state=\"finished\"} ").append(threadCounts.finishedThreads).append('\n'); //$NON-NLS-1$
+
+        family(sb, "jmeter_samples_total", "counter", "Samples since the start of the test"); //$NON-NLS-1$
+        for (LabelStats stat : stats) {
+            sample(sb, "jmeter_samples_total", stat.label, null, stat.values[LiveMetric.COUNT]); //$NON-NLS-1$
+        }
+        family(sb, "jmeter_errors_total", "counter", "Failed samples since the start of the test"); //$NON-NLS-1$
+        for (LabelStats stat : stats) {
+            sample(sb, "jmeter_errors_total", stat.label, null, stat.values[LiveMetric.ERRORS]); //$NON-NLS-1$
+        }
+        family(sb, "jmeter_received_bytes_total", "counter", "Bytes received since the start of the test"); //$NON-NLS-1$
+        for (LabelStats stat : stats) {
+            sample(sb, "jmeter_received_bytes_total", stat.label, null, stat.values[LiveMetric.BYTES]); //$NON-NLS-1$
+        }
+        family(sb, "jmeter_elapsed_ms", "histogram", "Elapsed time of the samples since the start of the test"); //$NON-NLS-1$
+        for (LabelStats stat : stats) {
+            long cumulated = 0;
+            for (int i = 0; i <= bounds.length; i++) {
+                cumulated += stat.values[LiveMetric.BUCKETS + i];
+                String le = i < bounds.length ? Long.toString(bounds[i]) : "+Inf"; //$NON-NLS-1$
+                sample(sb, "jmeter_elapsed_ms_bucket", stat.label, "le=\"" + le + "\"", cumulated); //$NON-NLS-1$
+            }
+            sample(sb, "jmeter_elapsed_ms_sum", stat.label, null, stat.values[LiveMetric.ELAPSED]); //$NON-NLS-1$
+            // Same as the +Inf bucket, even if a sample is being added
+            sample(sb, "jmeter_elapsed_ms_count", stat.label, null, cumulated); //$NON-NLS-1$
+        }
+
+        family(sb, "jmeter_rolling_throughput", "gauge", //$NON-NLS-1$
+                "Samples per second over the last " + windowSeconds + " seconds");
+        for (LabelStats stat : stats) {
+            sample(sb, "jmeter_rolling_throughput", stat.label, null, stat.getThroughput()); //$NON-NLS-1$
+        }
+        family(sb, "jmeter_rolling_error_ratio", "gauge", //$NON-NLS-1$
+                "Ratio of failed samples over the last " + windowSeconds + " seconds");
+        for (LabelStats stat : stats) {
+            sample(sb, "jmeter_rolling_error_ratio", stat.label, null, stat.getErrorRatio()); //$NON-NLS-1$
+        }
+        family(sb, "jmeter_rolling_elapsed_ms", "summary", //$NON-NLS-1$
+                "Elapsed time of the samples over the last " + windowSeconds + " seconds, percentiles estimated from buckets");
+        for (LabelStats stat : stats) {
+            for (double percentile : percentiles) {
+                sample(sb, "jmeter_rolling_elapsed_ms", stat.label, //$NON-NLS-1$
+                        "quantile=\"" + percentile / 100 + "\"", //$NON-NLS-1$
+                        LiveMetric.getPercentile(stat.window, bounds, percentile));
+            }
+            sample(sb, "jmeter_rolling_elapsed_ms_sum", stat.label, null, stat.window[LiveMetric.ELAPSED]); //$NON-NLS-1$
+            sample(sb, "jmeter_rolling_elapsed_ms_count", stat.label, null, stat.window[LiveMetric.COUNT]); //$NON-NLS-1$
+        }
+        return sb.toString();
+    }
+
+    private static void family(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n'); //$NON-NLS-1$
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n'); //$NON-NLS-1$
+    }
+
+    private static void sample(StringBuilder sb, String name, String label, String otherLabels, double value) {
+        sb.append(name).append("{label=\""); //$NON-NLS-1$
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            switch (c) {
+            case '\\':
+                sb.append("\\\\"); //$NON-NLS-1$
+                break;
+            case '"':
+                sb.append("\\\""); //$NON-NLS-1$
+                break;
+            case '\n':
+                sb.append("\\n"); //$NON-NLS-1$
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+        if (otherLabels != null) {
+            sb.append(',').append(otherLabels);
+        }
+        sb.append("} "); //$NON-NLS-1$
+        if (value == (long) value) {
+            sb.append((long) value);
+        } else {
+            sb.append(value);
+        }
+        sb.append('\n');
+    }
+
+    private String formatJson(long now, List<LabelStats> stats, ThreadCounts threadCounts) {
+        StringBuilder sb = new StringBuilder(256 + stats.size() * 384);
+        sb.append("{\"timestamp\":").append(now) //$NON-NLS-1$
+            .append(",\"windowSeconds\":").append(windowSeconds) //$NON-NLS-1$
+            .append(",\"threads\":{\"active\":").append(threadCounts.activeThreads) //$NON-NLS-1$
+            .append(",\"started\":").append(threadCounts.startedThreads) //$NON-NLS-1$
+            .append(",\"finished\":").append(threadCounts.finishedThreads) //$NON-NLS-1$
+            .append("},\"labels\":["); //$NON-NLS-1$
+        for (int s = 0; s < stats.size(); s++) {
+            LabelStats stat = stats.get(s);
+            if (s > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"label\":"); //$NON-NLS-1$
+            jsonString(sb, stat.label);
+            sb.append(",\"count\":").append(stat.values[LiveMetric.COUNT]) //$NON-NLS-1$
+                .append(",\"errors\":").append(stat.values[LiveMetric.ERRORS]) //$NON-NLS-1$
+                .append(",\"receivedBytes\":").append(stat.values[LiveMetric.BYTES]) //$NON-NLS-1$
+                .append(",\"elapsedSum\":").append(stat.values[LiveMetric.ELAPSED]) //$NON-NLS-1$
+                .append(",\"rolling\":{\"count\":").append(stat.window[LiveMetric.COUNT]) //$NON-NLS-1$
+                .append(",\"errors\":").append(stat.window[LiveMetric.ERRORS]); //$NON-NLS-1$
+            jsonNumber(sb.append(",\"throughput\":"), stat.getThroughput()); //$NON-NLS-1$
+            jsonNumber(sb.append(",\"errorRatio\":"), stat.getErrorRatio()); //$NON-NLS-1$
+            jsonNumber(sb.append(",\"meanElapsed\":"), stat.getMeanElapsed()); //$NON-NLS-1$
+            sb.append(",\"percentiles\":{"); //$NON-NLS-1$
+            for (int i = 0; i < percentiles.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                jsonString(sb, Double.toString(percentiles[i]));
+                jsonNumber(sb.append(':'), LiveMetric.getPercentile(stat.window, bounds, percentiles[i]));
+            }
+            sb.append("}}}"); //$NON-NLS-1$
+        }
+        sb.append("]}"); //$NON-NLS-1$
+        return sb.toString();
+    }
+
+    private static void jsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", Integer.valueOf(c))); //$NON-NLS-1$
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void jsonNumber(StringBuilder sb, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            sb.append("null"); //$NON-NLS-1$
+        } else {
+            sb.append(value);
+        }
+    }
+
+    /**
+     * Serves the statistics in the format matching the path
+     */
+    private final class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String path = exchange.getRequestURI().getPath();
+                String method = exchange.getRequestMethod();
+                boolean json = JSON_PATH.equals(path);
+                if (!json && !TEXT_PATH.equals(path)) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (!"GET".equals(method) && !"HEAD".equals(method)) { //$NON-NLS-1$ //$NON-NLS-2$
+                    exchange.getResponseHeaders().set("Allow", "GET, HEAD"); //$NON-NLS-1$ //$NON-NLS-2$
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = formatMetrics(json).getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", json ? JSON_CONTENT_TYPE : TEXT_CONTENT_TYPE); //$NON-NLS-1$
+                if ("HEAD".equals(method)) { //$NON-NLS-1$
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding"); //$NON-NLS-1$
+                if (body.length >= MIN_GZIP_SIZE && acceptEncoding != null && acceptEncoding.contains("gzip")) { //$NON-NLS-1$
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+                    exchange.sendResponseHeaders(200, 0);
+                    try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                        out.write(body);
+                    }
+                } else {
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Error serving live metrics:" + e.getMessage());
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
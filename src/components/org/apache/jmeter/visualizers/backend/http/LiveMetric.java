@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.http;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * Statistics of the samples of a label since the start of the test, updated
+ * by the sampler threads without locks, and snapshots of them taken every
+ * second to compute rolling statistics over the last seconds.
+ * <p>
+ * Values are arrays of longs indexed by {@link #COUNT}, {@link #ERRORS},
+ * {@link #ELAPSED}, {@link #BYTES}, followed by the number of samples in
+ * each elapsed time bucket.
+ * </p>
+ * @since 3.0
+ */
+final class LiveMetric {
+
+    /** Index of the number of samples */
+    static final int COUNT = 0;
+
+    /** Index of the number of failed samples */
+    static final int ERRORS = 1;
+
+    /** Index of the sum of the elapsed times */
+    static final int ELAPSED = 2;
+
+    /** Index of the sum of the received bytes */
+    static final int BYTES = 3;
+
+    /** Index of the number of samples of the first elapsed time bucket */
+    static final int BUCKETS = 4;
+
+    // Number of sets of counters, to spread the updates of the sampler threads
+    private static final int STRIPE_COUNT =
+            Math.min(8, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    // Upper bounds of the buckets, the last bucket has none
+    private final long[] bounds;
+
+    private final int length;
+
+    // Distance between the counters of two stripes, a whole number of cache lines
+    private final int stride;
+
+    private final AtomicLongArray counters;
+
+    //@GuardedBy("this")
+    private final long[][] snapshots;
+
+    //@GuardedBy("this")
+    private final long[] snapshotTimes;
+
+    //@GuardedBy("this")
+    private int snapshotCount;
+
+    //@GuardedBy("this")
+    private int nextSnapshot;
+
+    /**
+     * @param bounds upper bounds of the elapsed time buckets, in ascending
+     *            order, a last bucket counts the greater elapsed times
+     * @param windowSeconds number of seconds of the rolling statistics
+     * @param now time the statistics start, in milliseconds
+     */
+    LiveMetric(long[] bounds, int windowSeconds, long now) {
+        this.bounds = bounds;
+        this.length = BUCKETS + bounds.length + 1;
+        this.stride = (length + 7) & ~7;
+        this.counters = new AtomicLongArray(STRIPE_COUNT * stride);
+        this.snapshots = new long[windowSeconds + 1][length];
+        this.snapshotTimes = new long[windowSeconds + 1];
+        snapshotTimes[0] = now;
+        snapshotCount = 1;
+        nextSnapshot = 1 % snapshots.length;
+    }
+
+    /**
+     * Add a sample result, called concurrently by the sampler threads
+     *
+     * @param result the sample result
+     */
+    void add(SampleResult result) {
+        int base = (int) (Thread.currentThread().getId() & (STRIPE_COUNT - 1)) * stride;
+        long elapsed = result.getTime();
+        counters.incrementAndGet(base + COUNT);
+        if (!result.isSuccessful()) {
+            counters.incrementAndGet(base + ERRORS);
+        }
+        counters.addAndGet(base + ELAPSED, elapsed);
+        counters.addAndGet(base + BYTES, result.getBytes());
+        counters.incrementAndGet(base + BUCKETS + bucketIndex(elapsed));
+    }
+
+    private int bucketIndex(long elapsed) {
+        int index = Arrays.binarySearch(bounds, elapsed);
+        // Bounds are inclusive
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @return a new array of the values since the start
+     */
+    long[] getValues() {
+        long[] values = new long[length];
+        for (int base = 0; base < counters.length(); base += stride) {
+            for (int i = 0; i < length; i++) {
+                values[i] += counters.get(base + i);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Keep the current values, dropping the snapshot older than the window
+     *
+     * @param now time of the snapshot, in milliseconds
+     */
+    synchronized void snapshot(long now) {
+        System.arraycopy(getValues(), 0, snapshots[nextSnapshot], 0, length);
+        snapshotTimes[nextSnapshot] = now;
+        nextSnapshot = (nextSnapshot + 1) % snapshots.length;
+        if (snapshotCount < snapshots.length) {
+            snapshotCount++;
+        }
+    }
+
+    /**
+     * Copy the values at the start of the rolling window, which are those of
+     * the oldest snapshot
+     *
+     * @param values array receiving the values
+     * @return the time of the snapshot, in milliseconds
+     */
+    synchronized long getWindowStart(long[] values) {
+        int oldest = snapshotCount < snapshots.length ? 0 : nextSnapshot;
+        System.arraycopy(snapshots[oldest], 0, values, 0, length);
+        return snapshotTimes[oldest];
+    }
+
+    /**
+     * Estimate a percentile of the elapsed times counted in buckets, by
+     * linear interpolation inside the bucket holding it
+     *
+     * @param values values holding the bucket counts
+     * @param bounds upper bounds of the buckets
+     * @param percent the percentile, between 0 and 100
+     * @return the percentile, the greatest bound if it is in the last
+     *         bucket, or NaN if there is no sample
+     */
+    static double getPercentile(long[] values, long[] bounds, double percent) {
+        // Not values[COUNT], which may be read before a sample is counted in its bucket
+        long total = 0;
+        for (int i = BUCKETS; i < values.length; i++) {
+            total += values[i];
+        }
+        if (total <= 0) {
+            return Double.NaN;
+        }
+        double rank = Math.max(1, Math.ceil(percent / 100 * total));
+        long below = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            long count = values[BUCKETS + i];
+            if (below + count >= rank) {
+                long lower = i == 0 ? 0 : bounds[i - 1];
+                return lower + (bounds[i] - lower) * (rank - below) / count;
+            }
+            below += count;
+        }
+        return bounds.length == 0 ? Double.NaN : bounds[bounds.length - 1];
+    }
+}
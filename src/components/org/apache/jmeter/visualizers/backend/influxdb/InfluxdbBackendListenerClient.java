@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+import java.net.URL;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.visualizers.backend.AbstractBackendListenerClient;
+import org.apache.jmeter.visualizers.backend.BackendListenerContext;
+import org.apache.jmeter.visualizers.backend.SamplerMetric;
+import org.apache.jmeter.visualizers.backend.UserMetric;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Backend Listener client writing points of the InfluxDB line protocol,
+ * tagged with the test, the sample label and the status, in batched gzip
+ * compressed HTTP POSTs.
+ * <p>
+ * Every second, a point per label and status (ok, ko, all) holds the count,
+ * min, max, mean and percentiles of the elapsed times. Optionally, a sample
+ * of the raw sample results can be written too.
+ * </p>
+ * @see <a href="https://docs.influxdata.com/influxdb/v0.13/write_protocols/line/">Line Protocol</a>
+ * @since 3.0
+ */
+public class InfluxdbBackendListenerClient extends AbstractBackendListenerClient implements Runnable {
+    private static final Logger LOGGER = LoggingManager.getLoggerForClass();
+
+    private static final String DEFAULT_URL = "http://localhost:8086/write?db=jmeter"; //$NON-NLS-1$
+    private static final String DEFAULT_MEASUREMENT = "jmeter"; //$NON-NLS-1$
+    private static final String DEFAULT_PERCENTILES = "90;95;99"; //$NON-NLS-1$
+    private static final int DEFAULT_BATCH_SIZE = 5000;
+    private static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 5;
+    private static final int DEFAULT_MAX_BUFFERED_POINTS = 100000;
+    private static final String SEPARATOR = ";"; //$NON-NLS-1$
+    private static final int NANOS_PER_MILLI = 1000000;
+
+    private static final String CUMULATED_METRICS = "__cumulated__"; //$NON-NLS-1$
+    private static final String ALL_LABEL = "all"; //$NON-NLS-1$
+    private static final String THREADS_MEASUREMENT_SUFFIX = "_threads"; //$NON-NLS-1$
+    private static final String SAMPLES_MEASUREMENT_SUFFIX = "_samples"; //$NON-NLS-1$
+
+    private static final String TAG_TEST = "test"; //$NON-NLS-1$
+    private static final String TAG_LABEL = "label"; //$NON-NLS-1$
+    private static final String TAG_STATUS = "status"; //$NON-NLS-1$
+    private static final String STATUS_OK = "ok"; //$NON-NLS-1$
+    private static final String STATUS_KO = "ko"; //$NON-NLS-1$
+    private static final String STATUS_ALL = "all"; //$NON-NLS-1$
+
+    private static final String FIELD_COUNT = "count"; //$NON-NLS-1$
+    private static final String FIELD_HITS = "hits"; //$NON-NLS-1$
+    private static final String FIELD_MIN = "min"; //$NON-NLS-1$
+    private static final String FIELD_MAX = "max"; //$NON-NLS-1$
+    private static final String FIELD_MEAN = "avg"; //$NON-NLS-1$
+    private static final String FIELD_PERCENTILE_PREFIX = "pct"; //$NON-NLS-1$
+
+    private static final long ONE_SECOND = 1L;
+    private static final int MAX_POOL_SIZE = 1;
+    private static final Object LOCK = new Object();
+
+    private String measurement;
+    private String testTitle;
+    private Map<String, Float> percentiles;
+    private boolean rawSamples;
+    private double rawSampleRate;
+    /**
+     * Sequence of the raw sample points, written as the nanoseconds of their time:
+     * InfluxDB keeps only the last point with the same tags and time
+     */
+    private final AtomicInteger rawSampleSequence = new AtomicInteger();
+
+    private LineProtocolSender sender;
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> timerHandle;
+
+    public InfluxdbBackendListenerClient() {
+        super();
+    }
+
+    @Override
+    public void run() {
+        sendMetrics();
+    }
+
+    /**
+     * Add the points of the last interval and send the points if needed
+     */
+    protected void sendMetrics() {
+        long now = System.currentTimeMillis();
+        LineProtocolBuilder builder = new LineProtocolBuilder();
+        synchronized (LOCK) {
+            if (isPreAggregation()) {
+                // Sample results do not go through handleSampleResults
+                getUserMetrics().addActiveThreads();
+            }
+            for (Map.Entry<String, SamplerMetric> entry : getMetricsPerSampler().entrySet()) {
+                String label = entry.getKey().equals(CUMULATED_METRICS) ? ALL_LABEL : entry.getKey();
+                addMetrics(builder, now, label, entry.getValue());
+                // We are computing on interval basis so cleanup
+                entry.getValue().resetForTimeInterval();
+            }
+        }
+        UserMetric userMetrics = getUserMetrics();
+        sender.addPoint(builder.measurement(measurement + THREADS_MEASUREMENT_SUFFIX)
+                .tag(TAG_TEST, testTitle)
+                .field("minAT", userMetrics.getMinActiveThreads()) //$NON-NLS-1$
+                .field("maxAT", userMetrics.getMaxActiveThreads()) //$NON-NLS-1$
+                .field("meanAT", userMetrics.getMeanActiveThreads()) //$NON-NLS-1$
+                .field("startedT", userMetrics.getStartedThreads()) //$NON-NLS-1$
+                .field("endedT", userMetrics.getFinishedThreads()) //$NON-NLS-1$
+                .build(now));
+        sender.flushIfNeeded(now);
+    }
+
+    /**
+     * Add the points of a label, only if it had samples in the interval
+     */
+    private void addMetrics(LineProtocolBuilder builder, long now, String label, SamplerMetric metric) {
+        if (metric.getTotal() == 0) {
+            return;
+        }
+        if (metric.getSuccesses() > 0) {
+            startPoint(builder, label, STATUS_OK)
+                .field(FIELD_COUNT, metric.getSuccesses())
+                .field(FIELD_MIN, metric.getOkMinTime())
+                .field(FIELD_MAX, metric.getOkMaxTime())
+                .field(FIELD_MEAN, metric.getOkMean());
+            for (Map.Entry<String, Float> entry : percentiles.entrySet()) {
+                builder.field(entry.getKey(), metric.getOkPercentile(entry.getValue().floatValue()));
+            }
+            sender.addPoint(builder.build(now));
+        }
+        if (metric.getFailures() > 0) {
+            startPoint(builder, label, STATUS_KO)
+                .field(FIELD_COUNT, metric.getFailures())
+                .field(FIELD_MIN, metric.getKoMinTime())
+                .field(FIELD_MAX, metric.getKoMaxTime())
+                .field(FIELD_MEAN, metric.getKoMean());
+            for (Map.Entry<String, Float> entry : percentiles.entrySet()) {
+                builder.field(entry.getKey(), metric.getKoPercentile(entry.getValue().floatValue()));
+            }
+            sender.addPoint(builder.build(now));
+        }
+        startPoint(builder, label, STATUS_ALL)
+            .field(FIELD_COUNT, metric.getTotal())
+            .field(FIELD_HITS, metric.getHits())
+            .field(FIELD_MIN, metric.getAllMinTime())
+            .field(FIELD_MAX, metric.getAllMaxTime())
+            .field(FIELD_MEAN, metric.getAllMean());
+        for (Map.Entry<String, Float> entry : percentiles.entrySet()) {
+            builder.field(entry.getKey(), metric.getAllPercentile(entry.getValue().floatValue()));
+        }
+        sender.addPoint(builder.build(now));
+    }
+
+    private LineProtocolBuilder startPoint(LineProtocolBuilder builder, String label, String status) {
+        return builder.measurement(measurement)
+                .tag(TAG_TEST, testTitle)
+                .tag(TAG_LABEL, label)
+                .tag(TAG_STATUS, status);
+    }
+
+    @Override
+    public void handleSampleResults(List<SampleResult> sampleResults, BackendListenerContext context) {
+        synchronized (LOCK) {
+            for (SampleResult sampleResult : sampleResults) {
+                getUserMetrics().add(sampleResult);
+                addToMetrics(sampleResult);
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsPreAggregation() {
+        return true;
+    }
+
+    /**
+     * Called by the sampler threads when sample results are pre-aggregated,
+     * the metrics in histogram mode and the sender are safe to update without LOCK
+     */
+    @Override
+    public void aggregateSampleResult(SampleResult sampleResult, BackendListenerContext context) {
+        addToMetrics(sampleResult);
+    }
+
+    private void addToMetrics(SampleResult sampleResult) {
+        getSamplerMetric(sampleResult.getSampleLabel()).add(sampleResult);
+        getSamplerMetric(CUMULATED_METRICS).add(sampleResult);
+        if (rawSamples && (rawSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < rawSampleRate)) {
+            sender.addPoint(new LineProtocolBuilder()
+                    .measurement(measurement + SAMPLES_MEASUREMENT_SUFFIX)
+                    .tag(TAG_TEST, testTitle)
+                    .tag(TAG_LABEL, sampleResult.getSampleLabel())
+                    .tag(TAG_STATUS, sampleResult.isSuccessful() ? STATUS_OK : STATUS_KO)
+                    .field("elapsed", sampleResult.getTime()) //$NON-NLS-1$
+                    .field("latency", sampleResult.getLatency()) //$NON-NLS-1$
+                    .field("bytes", sampleResult.getBytes()) //$NON-NLS-1$
+                    .build(sampleResult.getTimeStamp(), nextRawSampleNanos()));
+        }
+    }
+
+    /**
+     * @return nanoseconds of the next raw sample point, unless a million points are written in the same millisecond
+     */
+    private int nextRawSampleNanos() {
+        return (rawSampleSequence.getAndIncrement() & Integer.MAX_VALUE) % NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void setupTest(BackendListenerContext context) throws Exception {
+        URL url = new URL(context.getParameter("influxdbUrl", DEFAULT_URL));
+        measurement = context.getParameter("measurement", DEFAULT_MEASUREMENT);
+        testTitle = context.getParameter("testTitle", "");
+        rawSamples = context.getBooleanParameter("rawSamples", false);
+        rawSampleRate = Double.parseDouble(context.getParameter("rawSampleRate", "1.0"));
+        int batchSize = Math.max(1, context.getIntParameter("batchSize", DEFAULT_BATCH_SIZE));
+        int flushIntervalSeconds = Math.max(1, context.getIntParameter("flushIntervalSeconds", DEFAULT_FLUSH_INTERVAL_SECONDS));
+        int maxBufferedPoints = context.getIntParameter("maxBufferedPoints", DEFAULT_MAX_BUFFERED_POINTS);
+
+        String[] percentilesStringArray = context.getParameter("percentiles", DEFAULT_PERCENTILES).split(SEPARATOR);
+        percentiles = new LinkedHashMap<>(percentilesStringArray.length);
+        DecimalFormat format = new DecimalFormat("0.##", new DecimalFormatSymbols(Locale.ROOT)); //$NON-NLS-1$
+        for (String percentile : percentilesStringArray) {
+            if (!StringUtils.isEmpty(percentile.trim())) {
+                try {
+                    Float percentileValue = Float.valueOf(percentile.trim());
+                    percentiles.put(FIELD_PERCENTILE_PREFIX + format.format(percentileValue), percentileValue);
+                } catch (Exception e) {
+                    LOGGER.error("Error parsing percentile:'" + percentile + "'", e);
+                }
+            }
+        }
+        scheduler = Executors.newScheduledThreadPool(MAX_POOL_SIZE);
+        // Full batches are sent on the scheduler thread, without waiting for sendMetrics
+        sender = new LineProtocolSender(url, batchSize, TimeUnit.SECONDS.toMillis(flushIntervalSeconds),
+                maxBufferedPoints, scheduler);
+        LOGGER.info("Sending line protocol points to " + url + " in batches of " + batchSize
+                + " points every " + flushIntervalSeconds + " seconds");
+
+        // Don't change this as metrics are per second
+        this.timerHandle = scheduler.scheduleAtFixedRate(this, ONE_SECOND, ONE_SECOND, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void teardownTest(BackendListenerContext context) throws Exception {
+        boolean cancelState = timerHandle.cancel(false);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Canceled state:" + cancelState);
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            LOGGER.error("Error waiting for end of scheduler");
+        }
+        // Send last set of data before ending
+        sendMetrics();
+        if (!sender.flush(System.currentTimeMillis())) {
+            sender.clear();
+        }
+        LOGGER.info("Sent " + sender.getSentCount() + " points, dropped " + sender.getDroppedCount());
+        super.teardownTest(context);
+    }
+
+    /**
+     * @return the sender of the points, null before the test starts
+     */
+    LineProtocolSender getSender() {
+        return sender;
+    }
+
+    @Override
+    public Arguments getDefaultParameters() {
+        Arguments arguments = new Arguments();
+        arguments.addArgument("influxdbUrl", DEFAULT_URL);
+        arguments.addArgument("measurement", DEFAULT_MEASUREMENT);
+        arguments.addArgument("testTitle", "Test");
+        arguments.addArgument("percentiles", DEFAULT_PERCENTILES);
+        arguments.addArgument("batchSize", Integer.toString(DEFAULT_BATCH_SIZE));
+        arguments.addArgument("flushIntervalSeconds", Integer.toString(DEFAULT_FLUSH_INTERVAL_SECONDS));
+        arguments.addArgument("maxBufferedPoints", Integer.toString(DEFAULT_MAX_BUFFERED_POINTS));
+        arguments.addArgument("rawSamples", "false");
+        arguments.addArgument("rawSampleRate", "1.0");
+        return arguments;
+    }
+}
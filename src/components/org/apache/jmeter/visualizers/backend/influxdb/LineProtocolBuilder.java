@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+/**
+ * Builds points of the InfluxDB line protocol:
+ * <pre>
+ * measurement,tag=value,tag=value field=value,field=value timestamp
+ * </pre>
+ * Not thread safe, a builder can be reused for successive points.
+ * @see <a href="https://docs.influxdata.com/influxdb/v0.13/write_protocols/line/">Line Protocol</a>
+ * @since 3.0
+ */
+final class LineProtocolBuilder {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final StringBuilder sb = new StringBuilder(256);
+
+    private boolean hasFields;
+
+    /**
+     * Start a new point
+     *
+     * @param measurement name of the measurement
+     * @return this builder
+     */
+    LineProtocolBuilder measurement(String measurement) {
+        sb.setLength(0);
+        hasFields = false;
+        // '=' does not need to be escaped in measurement names
+        escape(measurement, false);
+        return this;
+    }
+
+    /**
+     * Add a tag to the point, before any field
+     *
+     * @param key name of the tag
+     * @param value value of the tag, the tag is omitted if it is empty
+     * @return this builder
+     */
+    LineProtocolBuilder tag(String key, String value) {
+        if (value != null && !value.isEmpty()) {
+            sb.append(',');
+            escape(key, true);
+            sb.append('=');
+            escape(value, true);
+        }
+        return this;
+    }
+
+    /**
+     * Add an integer field to the point
+     *
+     * @param key name of the field
+     * @param value value of the field
+     * @return this builder
+     */
+    LineProtocolBuilder field(String key, long value) {
+        startField(key);
+        sb.append(value).append('i');
+        return this;
+    }
+
+    /**
+     * Add a float field to the point
+     *
+     * @param key name of the field
+     * @param value value of the field, the field is omitted if it is NaN or infinite
+     * @return this builder
+     */
+    LineProtocolBuilder field(String key, double value) {
+        if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+            startField(key);
+            sb.append(value);
+        }
+        return this;
+    }
+
+    private void startField(String key) {
+        sb.append(hasFields ? ',' : ' ');
+        hasFields = true;
+        escape(key, true);
+        sb.append('=');
+    }
+
+    /**
+     * @param timestampMillis time of the point, in milliseconds
+     * @return the point, or null if it has no field
+     */
+    String build(long timestampMillis) {
+        return build(timestampMillis, 0);
+    }
+
+    /**
+     * @param timestampMillis time of the point, in milliseconds
+     * @param nanos nanoseconds added to the time, between 0 and 999999,
+     *            so that points with the same tags in the same millisecond are all kept
+     * @return the point, or null if it has no field
+     */
+    String build(long timestampMillis, int nanos) {
+        if (!hasFields) {
+            return null;
+        }
+        return sb.append(' ').append(timestampMillis * NANOS_PER_MILLI + nanos).toString();
+    }
+
+    private void escape(String s, boolean escapeEquals) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case ',':
+            case ' ':
+                sb.append('\\').append(c);
+                break;
+            case '=':
+                if (escapeEquals) {
+                    sb.append('\\');
+                }
+                sb.append(c);
+                break;
+            case '\n':
+            case '\r':
+            case '\t':
+                // Would end the point
+                sb.append("\\ "); //$NON-NLS-1$
+                break;
+            default:
+                sb.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Buffers line protocol points and POSTs them in gzip compressed batches.
+ * <p>
+ * Points are sent when at least a batch of them is waiting or when the
+ * flush interval has elapsed. Points of a batch that could not be sent are
+ * kept to be sent again at the next flush, up to a maximum number of
+ * buffered points beyond which the oldest points are dropped.
+ * </p>
+ * <p>
+ * Points can be added by several threads without locking. When given an
+ * executor, the sender flushes on it as soon as a batch of points is
+ * waiting, instead of waiting for the next call to
+ * {@link #flushIfNeeded(long)}.
+ * </p>
+ * @since 3.0
+ */
+class LineProtocolSender {
+    private static final Logger LOGGER = LoggingManager.getLoggerForClass();
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int READ_TIMEOUT_MS = 3000;
+    // Maximum length of the error responses logged
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final URL url;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxBufferedPoints;
+
+    private final ConcurrentLinkedDeque<String> points = new ConcurrentLinkedDeque<>();
+
+    // Size of points, whose size() is not constant time
+    private final AtomicInteger pointCount = new AtomicInteger();
+
+    // Runs the flushes triggered by addPoint, may be null
+    private final Executor flushExecutor;
+
+    // true while a flush triggered by addPoint is pending
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // Only one flush at a time
+    private final Object flushLock = new Object();
+
+    //@GuardedBy("flushLock")
+    private long lastFlush;
+
+    // Written under flushLock, read by addPoint
+    private volatile boolean lastFlushFailed;
+
+    //@GuardedBy("flushLock")
+    private boolean failureLogged;
+
+    private final AtomicLong sentCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * @param url URL to POST the points to
+     * @param batchSize maximum number of points of a POST
+     * @param flushIntervalMs maximum time between two flushes, in milliseconds
+     * @param maxBufferedPoints maximum number of points waiting to be sent
+     */
+    LineProtocolSender(URL url, int batchSize, long flushIntervalMs, int maxBufferedPoints) {
+        this(url, batchSize, flushIntervalMs, maxBufferedPoints, null);
+    }
+
+    /**
+     * @param url URL to POST the points to
+     * @param batchSize maximum number of points of a POST
+     * @param flushIntervalMs maximum time between two flushes, in milliseconds
+     * @param maxBufferedPoints maximum number of points waiting to be sent
+     * @param flushExecutor executor flushing the points as soon as a batch
+     *            is waiting, null to flush them only from {@link #flushIfNeeded(long)}
+     */
+    LineProtocolSender(URL url, int batchSize, long flushIntervalMs, int maxBufferedPoints,
+            Executor flushExecutor) {
+        this.url = url;
+        this.flushExecutor = flushExecutor;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxBufferedPoints = Math.max(batchSize, maxBufferedPoints);
+        this.lastFlush = System.currentTimeMillis();
+    }
+
+    /**
+     * Add a point, dropping the oldest point if too many are waiting
+     *
+     * @param point the point in line protocol, ignored if null
+     */
+    void addPoint(String point) {
+        if (point == null) {
+            return;
+        }
+        points.addLast(point);
+        int count = pointCount.incrementAndGet();
+        if (count > maxBufferedPoints) {
+            dropOldest();
+        } else if (count >= batchSize && flushExecutor != null && !lastFlushFailed) {
+            scheduleFlush();
+        }
+    }
+
+    private void dropOldest() {
+        while (pointCount.get() > maxBufferedPoints && points.pollFirst() != null) {
+            pointCount.decrementAndGet();
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flushExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flushScheduled.set(false);
+                    flushIfNeeded(System.currentTimeMillis());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down, the last points are flushed by the caller
+            flushScheduled.set(false);
+        }
+    }
+
+    /**
+     * @return the number of points waiting to be sent
+     */
+    int getBufferedCount() {
+        return pointCount.get();
+    }
+
+    private List<String> takeBatch() {
+        List<String> batch = new ArrayList<>(Math.min(batchSize, pointCount.get()));
+        String point;
+        while (batch.size() < batchSize && (point = points.pollFirst()) != null) {
+            pointCount.decrementAndGet();
+            batch.add(point);
+        }
+        return batch;
+    }
+
+    private void putBack(List<String> batch) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            points.addFirst(batch.get(i));
+        }
+        pointCount.addAndGet(batch.size());
+        dropOldest();
+    }
+
+    /**
+     * Send the waiting points if the flush interval has elapsed, or if there
+     * is at least a batch of them and the last flush did not fail
+     *
+     * @param now current time in milliseconds
+     */
+    void flushIfNeeded(long now) {
+        synchronized (flushLock) {
+            if (now - lastFlush >= flushIntervalMs
+                    || (!lastFlushFailed && getBufferedCount() >= batchSize)) {
+                flush(now);
+            }
+        }
+    }
+
+    /**
+     * Send the waiting points in batches, stopping at the first batch which
+     * cannot be sent: it is kept for the next flush
+     *
+     * @param now current time in milliseconds
+     * @return true if all the points were sent
+     */
+    boolean flush(long now) {
+        synchronized (flushLock) {
+            lastFlush = now;
+            lastFlushFailed = false;
+            while (true) {
+                List<String> batch = takeBatch();
+                if (batch.isEmpty()) {
+                    return true;
+                }
+                if (!send(batch)) {
+                    putBack(batch);
+                    lastFlushFailed = true;
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop the points waiting to be sent
+     */
+    void clear() {
+        while (points.pollFirst() != null) {
+            pointCount.decrementAndGet();
+            droppedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * POST a batch of points
+     *
+     * @return false if the batch should be sent again later
+     */
+    private boolean send(List<String> batch) {
+        HttpURLConnection connection = null;
+        try {
+            byte[] body = compress(batch);
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setRequestMethod("POST"); //$NON-NLS-1$
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8"); //$NON-NLS-1$ //$NON-NLS-2$
+            connection.setRequestProperty("Content-Encoding", "gzip"); //$NON-NLS-1$ //$NON-NLS-2$
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 == 2) {
+                sentCount.addAndGet(batch.size());
+                failureLogged = false;
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("Sent " + batch.size() + " points in " + body.length + " bytes");
+                }
+                return true;
+            }
+            String error = readError(connection);
+            if (status / 100 == 4) {
+                // Sending the same points again would fail again
+                LOGGER.error("Dropping " + batch.size() + " points rejected by " + url + " with status " + status + ":" + error);
+                droppedCount.addAndGet(batch.size());
+                return true;
+            }
+            logFailure("status " + status + ":" + error);
+        } catch (IOException e) {
+            logFailure(e.toString());
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+        return false;
+    }
+
+    private void logFailure(String message) {
+        if (!failureLogged) {
+            LOGGER.error("Error sending points to " + url + ", keeping up to " + maxBufferedPoints
+                    + " points to send them again: " + message);
+            failureLogged = true;
+        }
+    }
+
+    private static byte[] compress(List<String> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 32);
+        try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(bytes), StandardCharsets.UTF_8)) {
+            for (String point : batch) {
+                writer.write(point);
+                writer.write('\n');
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static String readError(HttpURLConnection connection) {
+        InputStream in = connection.getErrorStream();
+        if (in == null) {
+            return "";
+        }
+        try {
+            String error = IOUtils.toString(in, StandardCharsets.UTF_8.name());
+            return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        } catch (IOException e) {
+            return e.toString();
+        } finally {
+            JOrphanUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return the number of points accepted by the server
+     */
+    long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * @return the number of points dropped, because too many were waiting or
+     *         because the server rejected them
+     */
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+}
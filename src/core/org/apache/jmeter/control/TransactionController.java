@@ -31,6 +31,7 @@ import org.apache.jmeter.threads.JMeterThread;
 import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.threads.ListenerNotifier;
 import org.apache.jmeter.threads.SamplePackage;
+import org.apache.jmeter.threads.SamplePackageHolder;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
@@ -42,7 +43,8 @@ import org.apache.log.Logger;
  * - generate parent sampler containing the nested samples
  *
  */
-public class TransactionController extends GenericController implements SampleListener, Controller, Serializable {
+public class TransactionController extends GenericController implements SampleListener, Controller, Serializable,
+        SamplePackageHolder {
     /**
      * Used to identify Transaction Controller Parent Sampler
      */
@@ -97,6 +99,9 @@ public class TransactionController extends GenericController implements SampleLi
      */
     private transient long prevEndTime;
 
+    // Read by other threads if the controller is shared
+    private transient volatile SamplePackage samplePackage;
+
     /**
      * Creates a Transaction Controller
      */
@@ -362,4 +367,20 @@ public class TransactionController extends GenericController implements SampleLi
     public boolean isIncludeTimers() {
         return getPropertyAsBoolean(INCLUDE_TIMERS, DEFAULT_VALUE_FOR_INCLUDE_TIMERS);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveSamplePackage(SamplePackage pack) {
+        samplePackage = pack;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SamplePackage getSavedSamplePackage() {
+        return samplePackage;
+    }
 }
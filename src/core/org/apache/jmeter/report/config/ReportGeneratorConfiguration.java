@@ -63,6 +63,16 @@ public class ReportGeneratorConfiguration {
             + KEY_DELIMITER + "apdex_tolerated_threshold";
     private static final Long REPORT_GENERATOR_KEY_APDEX_TOLERATED_THRESHOLD_DEFAULT = Long.valueOf(1500L);
 
+    // Ingestion threads
+    private static final String REPORT_GENERATOR_KEY_INGESTION_THREADS = REPORT_GENERATOR_KEY_PREFIX
+            + KEY_DELIMITER + "ingestion_threads";
+    private static final Integer REPORT_GENERATOR_KEY_INGESTION_THREADS_DEFAULT = Integer.valueOf(1);
+
+    // Consumer threads
+    private static final String REPORT_GENERATOR_KEY_CONSUMER_THREADS = REPORT_GENERATOR_KEY_PREFIX
+            + KEY_DELIMITER + "consumer_threads";
+    private static final Integer REPORT_GENERATOR_KEY_CONSUMER_THREADS_DEFAULT = Integer.valueOf(1);
+
     // Sample Filter
     private static final String REPORT_GENERATOR_KEY_SAMPLE_FILTER = REPORT_GENERATOR_KEY_PREFIX
             + KEY_DELIMITER + "sample_filter";
@@ -255,6 +265,8 @@ public class ReportGeneratorConfiguration {
     private File tempDirectory;
     private long apdexSatisfiedThreshold;
     private long apdexToleratedThreshold;
+    private int ingestionThreads;
+    private int consumerThreads;
     private List<String> filteredSamples = new ArrayList<>();
     private Map<String, ExporterConfiguration> exportConfigurations = new HashMap<>();
     private Map<String, GraphConfiguration> graphConfigurations = new HashMap<>();
@@ -343,6 +355,48 @@ public class ReportGeneratorConfiguration {
         this.apdexToleratedThreshold = apdexToleratedThreshold;
     }
 
+    /**
+     * Gets the number of threads reading the samples, 0 for one thread by
+     * available processor.
+     *
+     * @return the number of ingestion threads
+     */
+    public final int getIngestionThreads() {
+        return ingestionThreads;
+    }
+
+    /**
+     * Sets the number of threads reading the samples.
+     *
+     * @param ingestionThreads
+     *            the number of ingestion threads to set, 0 for one thread by
+     *            available processor
+     */
+    public final void setIngestionThreads(int ingestionThreads) {
+        this.ingestionThreads = ingestionThreads;
+    }
+
+    /**
+     * Gets the number of threads feeding the graphs and statistics with the
+     * samples read by one thread, 0 for one thread by available processor.
+     *
+     * @return the number of consumer threads
+     */
+    public final int getConsumerThreads() {
+        return consumerThreads;
+    }
+
+    /**
+     * Sets the number of threads feeding the graphs and statistics.
+     *
+     * @param consumerThreads
+     *            the number of consumer threads to set, 0 for one thread by
+     *            available processor
+     */
+    public final void setConsumerThreads(int consumerThreads) {
+        this.consumerThreads = consumerThreads;
+    }
+
     /**
      * Gets the filtered samples.
      *
@@ -609,6 +663,20 @@ public class ReportGeneratorConfiguration {
                 long.class).longValue();
         configuration.setApdexToleratedThreshold(apdexToleratedThreshold);
 
+        // Load ingestion threads
+        final int ingestionThreads = getRequiredProperty(props,
+                REPORT_GENERATOR_KEY_INGESTION_THREADS,
+                REPORT_GENERATOR_KEY_INGESTION_THREADS_DEFAULT,
+                int.class).intValue();
+        configuration.setIngestionThreads(ingestionThreads);
+
+        // Load consumer threads
+        final int consumerThreads = getRequiredProperty(props,
+                REPORT_GENERATOR_KEY_CONSUMER_THREADS,
+                REPORT_GENERATOR_KEY_CONSUMER_THREADS_DEFAULT,
+                int.class).intValue();
+        configuration.setConsumerThreads(consumerThreads);
+
         // Load sample filter
         final String sampleFilter = getOptionalProperty(props,
                 REPORT_GENERATOR_KEY_SAMPLE_FILTER, String.class);
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jmeter.save.SaveService;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Converts sample files between the CSV format and the binary format of
+ * {@link BinarySampleWriter}.
+ * <p>
+ * CSV files are read and written with the encoding of JMeter result files
+ * (see {@link SaveService#getFileEncoding(String)}), so that converting a CSV
+ * file written by JMeter to binary and back gives the same file.
+ * </p>
+ *
+ * @since 3.0
+ */
+public final class BinarySampleConverter {
+
+    private static final int BUF_SIZE = 65536;
+
+    private BinarySampleConverter() {
+    }
+
+    /**
+     * Convert a CSV sample file to a binary sample file. If the CSV file has no
+     * header, its columns are the ones of the jmeter.save.saveservice.* properties.
+     *
+     * @param csvFile
+     *            the CSV file to read
+     * @param binaryFile
+     *            the binary file to write
+     * @return the number of samples converted
+     * @throws IOException
+     *             when reading or writing fails
+     */
+    public static long csvToBinary(File csvFile, File binaryFile) throws IOException {
+        BufferedReader reader = null;
+        BinarySampleWriter writer = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile),
+                    SaveService.getFileEncoding("UTF-8")), BUF_SIZE); // $NON-NLS-1$
+            reader.mark(BUF_SIZE);
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException(csvFile + " is empty");
+            }
+            SampleMetadata metadata;
+            SampleSaveConfiguration headerConfig = CSVSaveService.getSampleSaveConfiguration(header,
+                    csvFile.getAbsolutePath());
+            if (headerConfig == null) {
+                metadata = new SampleMetadata(SampleSaveConfiguration.staticConfig());
+                reader.reset(); // no header, the first line is a sample
+            } else {
+                metadata = new SampleMetaDataParser(headerConfig.getDelimiter().charAt(0)).parse(header);
+            }
+            int columnCount = metadata.getColumnCount();
+            writer = new BinarySampleWriter(binaryFile, metadata);
+            long row = 0;
+            String[] data;
+            while ((data = CSVSaveService.csvReadFile(reader, metadata.getSeparator())).length > 0) {
+                if (data.length < columnCount) {
+                    String[] filler = new String[columnCount];
+                    System.arraycopy(data, 0, filler, 0, data.length);
+                    for (int i = data.length; i < columnCount; i++) {
+                        filler[i] = "";
+                    }
+                    data = filler;
+                }
+                writer.write(new Sample(row++, metadata, data));
+            }
+            return row;
+        } finally {
+            JOrphanUtils.closeQuietly(reader);
+            JOrphanUtils.closeQuietly(writer);
+        }
+    }
+
+    /**
+     * Convert a binary sample file to a CSV sample file with a header.
+     *
+     * @param binaryFile
+     *            the binary file to read
+     * @param csvFile
+     *            the CSV file to write
+     * @return the number of samples converted
+     * @throws IOException
+     *             when writing fails
+     */
+    public static long binaryToCsv(File binaryFile, File csvFile) throws IOException {
+        BinarySampleReader reader = null;
+        CsvSampleWriter writer = null;
+        try {
+            reader = new BinarySampleReader(binaryFile);
+            writer = new CsvSampleWriter(reader.getMetadata());
+            writer.setWriter(new OutputStreamWriter(new FileOutputStream(csvFile),
+                    SaveService.getFileEncoding("UTF-8"))); // $NON-NLS-1$
+            writer.writeHeader();
+            long count = 0;
+            Sample sample;
+            while ((sample = reader.readSample()) != null) {
+                count = writer.write(sample);
+            }
+            return count;
+        } finally {
+            JOrphanUtils.closeQuietly(reader);
+            JOrphanUtils.closeQuietly(writer);
+        }
+    }
+
+    /**
+     * Convert a file, from the JMeter home directory (or with the jmeter.home system property set).
+     *
+     * @param args input file and output file
+     * @throws IOException when the conversion fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("Usage: command <input file> <output file>\n"
+                    + "A binary input file is converted to CSV, any other file to binary");
+        }
+        // Result file encoding and CSV settings are read from the JMeter properties
+        String home = System.getProperty("jmeter.home", "."); // $NON-NLS-1$ // $NON-NLS-2$
+        JMeterUtils.setJMeterHome(home);
+        JMeterUtils.loadJMeterProperties(new File(home, "bin/jmeter.properties").getPath()); // $NON-NLS-1$
+        File input = new File(args[0]);
+        File output = new File(args[1]);
+        long count;
+        if (BinarySampleReader.isBinaryFile(input)) {
+            count = binaryToCsv(input, output);
+        } else {
+            count = csvToBinary(input, output);
+        }
+        System.out.println("Converted " + count + " samples from " + input + " to " + output);
+    }
+}
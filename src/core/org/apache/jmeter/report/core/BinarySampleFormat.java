@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.jmeter.save.CSVSaveService;
+
+/**
+ * Constants and encoding helpers of the binary sample format written by
+ * {@link BinarySampleWriter} and read by {@link BinarySampleReader}.
+ * <p>
+ * A file is a sequence of segments, one per writer (a new segment is added when a
+ * test appends to an existing file). A segment is made of:
+ * <ul>
+ * <li>a zero byte, the {@link #MAGIC} bytes and the format {@link #VERSION}</li>
+ * <li>the separator and the column names, as in the header of a CSV file</li>
+ * <li>the samples, each one prefixed by its length in bytes (a varint)</li>
+ * <li>a zero length, written when the writer is closed</li>
+ * </ul>
+ * As a new segment starts with a zero byte, samples appended after a writer which
+ * was not closed (killed JVM) can still be read, unless the last sample of the
+ * previous segment was only partially written.
+ * Each column of a sample is encoded according to the column:
+ * <ul>
+ * <li>numbers (elapsed, latency...) are written as zigzag varints, shifted left
+ * by one bit; the time stamp is written as a difference with the previous one.
+ * A value of 1 is followed by a string, for values which are not numbers.</li>
+ * <li>strings (label, thread name, response code...) are written as an index in
+ * a dictionary of the column plus 2. A value of 0 is followed by a string which is
+ * added to the dictionary, a value of 1 is followed by a string which is not.</li>
+ * </ul>
+ * Strings are written as their UTF-8 length (a varint) followed by their UTF-8 bytes.
+ *
+ * @since 3.0
+ */
+final class BinarySampleFormat {
+
+    static final byte[] MAGIC = { 'J', 'T', 'L', 'B' };
+
+    static final int VERSION = 1;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8"); // $NON-NLS-1$
+
+    /** Dictionary code: a string added to the dictionary follows */
+    static final int NEW_ENTRY = 0;
+
+    /** Dictionary or number code: a string which is not in the dictionary follows */
+    static final int LITERAL = 1;
+
+    /** Maximum number of strings in the dictionary of a column */
+    static final int MAX_DICTIONARY_SIZE = 65536;
+
+    /** Longer strings (failure messages...) are not added to dictionaries */
+    static final int MAX_DICTIONARY_STRING_LENGTH = 512;
+
+    // Column kinds
+    static final int KIND_STRING = 0;
+    static final int KIND_NUMBER = 1;
+    static final int KIND_TIMESTAMP = 2;
+
+    private static final Map<String, Integer> KINDS = new HashMap<>();
+
+    static {
+        KINDS.put(CSVSaveService.TIME_STAMP, Integer.valueOf(KIND_TIMESTAMP));
+        String[] numbers = { CSVSaveService.CSV_ELAPSED, CSVSaveService.CSV_BYTES,
+                CSVSaveService.CSV_THREAD_COUNT1, CSVSaveService.CSV_THREAD_COUNT2,
+                CSVSaveService.CSV_LATENCY, CSVSaveService.CSV_SAMPLE_COUNT,
+                CSVSaveService.CSV_ERROR_COUNT, CSVSaveService.CSV_IDLETIME,
+                CSVSaveService.CSV_CONNECT_TIME };
+        for (String number : numbers) {
+            KINDS.put(number, Integer.valueOf(KIND_NUMBER));
+        }
+    }
+
+    private BinarySampleFormat() {
+    }
+
+    /**
+     * @param metadata the columns
+     * @return the kind of each column
+     */
+    static int[] getKinds(SampleMetadata metadata) {
+        int[] kinds = new int[metadata.getColumnCount()];
+        for (int i = 0; i < kinds.length; i++) {
+            Integer kind = KINDS.get(metadata.getColumnName(i).trim());
+            kinds[i] = kind == null ? KIND_STRING : kind.intValue();
+        }
+        return kinds;
+    }
+
+    /**
+     * @param value a number
+     * @return true if the number can be written as a shifted zigzag varint
+     */
+    static boolean isEncodable(long value) {
+        return value < (1L << 61) && value > -(1L << 61);
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Check whether a string is a number as written by JMeter (no plus sign, no leading zero),
+     * small enough to be parsed without overflow
+     *
+     * @param s string to check
+     * @return true if the string is the canonical form of a number of at most 18 digits
+     */
+    static boolean isCanonicalLong(String s) {
+        int len = s.length();
+        if (len == 0 || len > 18) {
+            return false;
+        }
+        int start = s.charAt(0) == '-' ? 1 : 0;
+        if (start == len || (s.charAt(start) == '0' && (len > start + 1 || start == 1))) {
+            return false; // "-", leading zeros or "-0"
+        }
+        for (int i = start; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param s a string for which {@link #isCanonicalLong(String)} is true
+     * @return its value
+     */
+    static long parseCanonicalLong(String s) {
+        int len = s.length();
+        boolean negative = s.charAt(0) == '-';
+        long value = 0;
+        for (int i = negative ? 1 : 0; i < len; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,362 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jmeter.save.ResultFiles;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JOrphanUtils;
+import org.apache.log.Logger;
+
+/**
+ * Reader class for reading files written by {@link BinarySampleWriter}.
+ * <p>
+ * The samples of all the segments of the file are read as if they were in a
+ * single CSV file; they must all have the same columns. The values are the
+ * ones which would have been written in a CSV file.
+ * </p>
+ * <p>
+ * A sample which was only partially written (for instance when the JVM writing
+ * the file was killed) ends the reading.
+ * </p>
+ *
+ * @since 3.0
+ */
+public class BinarySampleReader implements SampleReader {
+
+    private static final Logger LOG = LoggingManager.getLoggerForClass();
+
+    /** Most numbers (elapsed, latency, thread counts...) are small */
+    private static final String[] NUMBERS = new String[4096];
+
+    static {
+        for (int i = 0; i < NUMBERS.length; i++) {
+            NUMBERS[i] = Integer.toString(i);
+        }
+    }
+
+    private final File file;
+
+    private final DataInputStream input;
+
+    private final SampleMetadata metadata;
+
+    private final int columnCount;
+
+    private final int[] kinds;
+
+    /** Strings read for each column, in the order of their index */
+    private final List<List<String>> dictionaries;
+
+    /** Encoded sample, reused */
+    private byte[] record = new byte[256];
+
+    private int position;
+
+    private int limit;
+
+    private long lastTimeStamp;
+
+    private long row;
+
+    private Sample lastSampleRead;
+
+    /**
+     * Instantiates a new binary sample reader.
+     *
+     * @param inputFile
+     *            the input file (must not be {@code null})
+     */
+    public BinarySampleReader(File inputFile) {
+        if (!(inputFile.isFile() && inputFile.canRead())) {
+            throw new IllegalArgumentException(inputFile.getAbsolutePath()
+                    + " does not exist or is not readable");
+        }
+        this.file = inputFile;
+        try {
+            // Compressed files are decompressed transparently
+            this.input = new DataInputStream(ResultFiles.openInputStream(file));
+        } catch (IOException ex) {
+            throw new SampleException("Could not create file reader !", ex);
+        }
+        try {
+            if (input.read() != 0) {
+                throw new SampleException(file.getAbsolutePath() + " is not a binary sample file");
+            }
+            this.metadata = readSegmentHeader(input.read());
+        } catch (IOException e) {
+            JOrphanUtils.closeQuietly(input);
+            throw new SampleException("Could not read metadata !", e);
+        } catch (SampleException e) {
+            JOrphanUtils.closeQuietly(input);
+            throw e;
+        }
+        this.columnCount = metadata.getColumnCount();
+        this.kinds = BinarySampleFormat.getKinds(metadata);
+        this.dictionaries = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            dictionaries.add(new ArrayList<String>());
+        }
+        this.lastSampleRead = nextSample();
+    }
+
+    /**
+     * Indicates whether a file was written by a {@link BinarySampleWriter}.
+     *
+     * @param file
+     *            the file to check
+     * @return true if the file starts like a binary sample file
+     */
+    public static boolean isBinaryFile(File file) {
+        InputStream in = null;
+        try {
+            in = ResultFiles.openInputStream(file);
+            byte[] start = new byte[BinarySampleFormat.MAGIC.length + 1];
+            if (in.read(start) != start.length || start[0] != 0) {
+                return false;
+            }
+            return Arrays.equals(Arrays.copyOfRange(start, 1, start.length), BinarySampleFormat.MAGIC);
+        } catch (IOException e) {
+            return false;
+        } finally {
+            JOrphanUtils.closeQuietly(in);
+        }
+    }
+
+    // firstByte: first byte of the magic, already read
+    private SampleMetadata readSegmentHeader(int firstByte) throws IOException {
+        byte[] magic = new byte[BinarySampleFormat.MAGIC.length];
+        if (firstByte < 0) {
+            throw new EOFException();
+        }
+        magic[0] = (byte) firstByte;
+        input.readFully(magic, 1, magic.length - 1);
+        if (!Arrays.equals(magic, BinarySampleFormat.MAGIC)) {
+            throw new SampleException(file.getAbsolutePath() + " is not a binary sample file");
+        }
+        long version = readVarLong(false);
+        if (version != BinarySampleFormat.VERSION) {
+            throw new SampleException("Unsupported version " + version + " of binary sample file "
+                    + file.getAbsolutePath());
+        }
+        char separator = (char) readVarLong(false);
+        int count = (int) readVarLong(false);
+        String[] columns = new String[count];
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[(int) readVarLong(false)];
+            input.readFully(bytes);
+            columns[i] = new String(bytes, BinarySampleFormat.UTF_8);
+        }
+        return new SampleMetadata(separator, columns);
+    }
+
+    /**
+     * @param eofAllowed true if the end of the file is expected before the number
+     * @return the number read, or -1 at the end of the file
+     */
+    private long readVarLong(boolean eofAllowed) throws IOException {
+        long value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = input.read();
+            if (b < 0) {
+                if (eofAllowed && shift == 0) {
+                    return -1;
+                }
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 64);
+        return value;
+    }
+
+    /**
+     * Gets the metadata.
+     *
+     * @return the metadata
+     */
+    @Override
+    public SampleMetadata getMetadata() {
+        return metadata;
+    }
+
+    private Sample nextSample() {
+        try {
+            while (true) {
+                long recordLength = readVarLong(true);
+                if (recordLength < 0) {
+                    return null;
+                }
+                if (recordLength == 0) {
+                    // End of a segment: end of the file or a new segment
+                    int b;
+                    do {
+                        b = input.read();
+                    } while (b == 0);
+                    if (b < 0) {
+                        return null;
+                    }
+                    startSegment(readSegmentHeader(b));
+                    continue;
+                }
+                if (recordLength > Integer.MAX_VALUE) {
+                    throw new SampleException("Corrupted sample <" + row + "> in " + file.getAbsolutePath());
+                }
+                limit = (int) recordLength;
+                if (limit > record.length) {
+                    record = new byte[Math.max(limit, record.length * 2)];
+                }
+                input.readFully(record, 0, limit);
+                position = 0;
+                return decode();
+            }
+        } catch (EOFException e) {
+            LOG.warn("Truncated sample <" + row + "> at the end of " + file.getAbsolutePath() + ", ignoring it");
+            return null;
+        } catch (IOException e) {
+            throw new SampleException("Could not read sample <" + row + ">", e);
+        }
+    }
+
+    private void startSegment(SampleMetadata segmentMetadata) {
+        if (segmentMetadata.getSeparator() != metadata.getSeparator()
+                || !segmentMetadata.toString().equals(metadata.toString())) {
+            throw new SampleException("Samples appended to " + file.getAbsolutePath()
+                    + " have different columns: <" + segmentMetadata + "> instead of <" + metadata + ">");
+        }
+        for (List<String> dictionary : dictionaries) {
+            dictionary.clear();
+        }
+        lastTimeStamp = 0;
+    }
+
+    private Sample decode() {
+        String[] data = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            long code = getVarLong();
+            if (code == BinarySampleFormat.LITERAL) {
+                data[i] = getString();
+            } else if (kinds[i] == BinarySampleFormat.KIND_STRING) {
+                List<String> dictionary = dictionaries.get(i);
+                if (code == BinarySampleFormat.NEW_ENTRY) {
+                    String s = getString();
+                    dictionary.add(s);
+                    data[i] = s;
+                } else if (code - 2 < dictionary.size()) {
+                    data[i] = dictionary.get((int) (code - 2));
+                } else {
+                    throw corrupted();
+                }
+            } else if ((code & 1) != 0) {
+                throw corrupted();
+            } else {
+                long value = BinarySampleFormat.unzigzag(code >>> 1);
+                if (kinds[i] == BinarySampleFormat.KIND_TIMESTAMP) {
+                    value += lastTimeStamp;
+                    lastTimeStamp = value;
+                }
+                data[i] = value >= 0 && value < NUMBERS.length ? NUMBERS[(int) value] : Long.toString(value);
+            }
+        }
+        if (position != limit) {
+            throw corrupted();
+        }
+        Sample sample = new Sample(row, metadata, data);
+        row++;
+        return sample;
+    }
+
+    private SampleException corrupted() {
+        return new SampleException("Corrupted sample <" + row + "> in " + file.getAbsolutePath());
+    }
+
+    private long getVarLong() {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (position >= limit) {
+                throw corrupted();
+            }
+            b = record[position++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 64);
+        return value;
+    }
+
+    private String getString() {
+        long len = getVarLong();
+        if (len > limit - position) {
+            throw corrupted();
+        }
+        String s = new String(record, position, (int) len, BinarySampleFormat.UTF_8);
+        position += (int) len;
+        return s;
+    }
+
+    /**
+     * Gets next sample from the file.
+     *
+     * @return the sample
+     */
+    @Override
+    public Sample readSample() {
+        Sample out = lastSampleRead;
+        lastSampleRead = nextSample();
+        return out;
+    }
+
+    /**
+     * Gets next sample from file but keep the reading file position.
+     *
+     * @return the sample
+     */
+    @Override
+    public Sample peek() {
+        return lastSampleRead;
+    }
+
+    /**
+     * Indicates whether the file contains more samples
+     *
+     * @return true, if the file contains more samples
+     */
+    @Override
+    public boolean hasNext() {
+        return lastSampleRead != null;
+    }
+
+    /**
+     * Close the reader.
+     */
+    @Override
+    public void close() {
+        JOrphanUtils.closeQuietly(input);
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jorphan.util.JOrphanUtils;
+
+/**
+ * Class to be used to write samples in the binary format described in
+ * {@link BinarySampleFormat} to an OutputStream or a File.
+ * <p>
+ * Samples can be written from {@link Sample}s, for instance when converting a
+ * CSV file, or directly from {@link SampleEvent}s when the writer is created
+ * from a {@link SampleSaveConfiguration}: the written values are then the same
+ * as the ones of a CSV file written with this configuration.
+ * </p>
+ * <p>
+ * The end of the samples is written by {@link #close()}. This class is not
+ * thread-safe.
+ * </p>
+ *
+ * @since 3.0
+ */
+public class BinarySampleWriter extends SampleWriter {
+
+    private static final int BUF_SIZE = 65536;
+
+    // Fields of a SampleEvent, see write(SampleEvent)
+    private static final int TIMESTAMP = 0;
+    private static final int TIME = 1;
+    private static final int LABEL = 2;
+    private static final int CODE = 3;
+    private static final int MESSAGE = 4;
+    private static final int THREAD_NAME = 5;
+    private static final int DATA_TYPE = 6;
+    private static final int SUCCESS = 7;
+    private static final int FAILURE_MESSAGE = 8;
+    private static final int BYTES = 9;
+    private static final int GROUP_THREADS = 10;
+    private static final int ALL_THREADS = 11;
+    private static final int URL = 12;
+    private static final int FILE_NAME = 13;
+    private static final int LATENCY = 14;
+    private static final int ENCODING = 15;
+    private static final int SAMPLE_COUNT = 16;
+    private static final int ERROR_COUNT = 17;
+    private static final int HOSTNAME = 18;
+    private static final int IDLE_TIME = 19;
+    private static final int CONNECT_TIME = 20;
+    private static final int VARIABLE = 21;
+
+    private static final Map<String, Integer> FIELDS = new HashMap<>();
+
+    static {
+        String[] names = { CSVSaveService.TIME_STAMP, CSVSaveService.CSV_ELAPSED,
+                CSVSaveService.LABEL, CSVSaveService.RESPONSE_CODE,
+                CSVSaveService.RESPONSE_MESSAGE, CSVSaveService.THREAD_NAME,
+                CSVSaveService.DATA_TYPE, CSVSaveService.SUCCESSFUL,
+                CSVSaveService.FAILURE_MESSAGE, CSVSaveService.CSV_BYTES,
+                CSVSaveService.CSV_THREAD_COUNT1, CSVSaveService.CSV_THREAD_COUNT2,
+                CSVSaveService.CSV_URL, CSVSaveService.CSV_FILENAME,
+                CSVSaveService.CSV_LATENCY, CSVSaveService.CSV_ENCODING,
+                CSVSaveService.CSV_SAMPLE_COUNT, CSVSaveService.CSV_ERROR_COUNT,
+                CSVSaveService.CSV_HOSTNAME, CSVSaveService.CSV_IDLETIME,
+                CSVSaveService.CSV_CONNECT_TIME };
+        for (int i = 0; i < names.length; i++) {
+            FIELDS.put(names[i], Integer.valueOf(i));
+        }
+    }
+
+    private final OutputStream output;
+
+    private final SampleMetadata metadata;
+
+    private final int columnCount;
+
+    private final int[] kinds;
+
+    /** Strings already written for each column, with their index */
+    private final List<Map<String, Integer>> dictionaries;
+
+    /** Fields of the columns, only set when writing sample events */
+    private final int[] fields;
+
+    /** Formatter of the time stamp, null when written in milliseconds */
+    private final DateFormat formatter;
+
+    private final Date date = new Date(0L);
+
+    /** Encoded sample, reused */
+    private byte[] record = new byte[256];
+
+    private int length;
+
+    private final byte[] lengthBuffer = new byte[5];
+
+    private long lastTimeStamp;
+
+    /** Number of samples written */
+    private long sampleCount;
+
+    private boolean closed;
+
+    /**
+     * Constructor for a BinarySampleWriter.
+     *
+     * @param output
+     *            the output stream to write data to. (Must not be {@code null})
+     * @param metadata
+     *            the description for data that this writer will write. (
+     *            {@code metadata} must not be {@code null}.)
+     */
+    public BinarySampleWriter(OutputStream output, SampleMetadata metadata) {
+        this(output, metadata, null);
+    }
+
+    /**
+     * Constructor for a BinarySampleWriter.
+     *
+     * @param output
+     *            the output file to write data to. (Must not be {@code null})
+     * @param metadata
+     *            the description for data that this writer will write. (
+     *            {@code metadata} must not be {@code null}.)
+     */
+    public BinarySampleWriter(File output, SampleMetadata metadata) {
+        this(openFile(output), metadata, null);
+    }
+
+    /**
+     * Constructor for a BinarySampleWriter of sample events, whose columns are
+     * the ones of a CSV file written with the same configuration, sample
+     * variables included.
+     *
+     * @param output
+     *            the output stream to write data to. (Must not be {@code null})
+     * @param saveConfig
+     *            the configuration of the fields to write. (Must not be
+     *            {@code null})
+     */
+    public BinarySampleWriter(OutputStream output, SampleSaveConfiguration saveConfig) {
+        this(output, new SampleMetaDataParser(saveConfig.getDelimiter().charAt(0))
+                .parse(CSVSaveService.printableFieldNamesToString(saveConfig)), saveConfig);
+    }
+
+    private BinarySampleWriter(OutputStream output, SampleMetadata metadata,
+            SampleSaveConfiguration saveConfig) {
+        Validate.notNull(output, "output must not be null.");
+        Validate.notNull(metadata, "metadata must not be null.");
+        this.output = new BufferedOutputStream(output, BUF_SIZE);
+        this.metadata = metadata;
+        this.columnCount = metadata.getColumnCount();
+        this.kinds = BinarySampleFormat.getKinds(metadata);
+        this.dictionaries = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            dictionaries.add(new HashMap<String, Integer>());
+        }
+        if (saveConfig != null) {
+            this.fields = getFields(metadata);
+            if (!saveConfig.printMilliseconds() && saveConfig.formatter() != null) {
+                // The configuration formatter may be shared, and DateFormat is not thread-safe
+                this.formatter = (DateFormat) saveConfig.formatter().clone();
+            } else {
+                this.formatter = null;
+            }
+        } else {
+            this.fields = null;
+            this.formatter = null;
+        }
+        writeHeader();
+    }
+
+    private static OutputStream openFile(File output) {
+        try {
+            return new FileOutputStream(output);
+        } catch (IOException e) {
+            throw new SampleException(e.getMessage(), e);
+        }
+    }
+
+    private static int[] getFields(SampleMetadata metadata) {
+        int[] fields = new int[metadata.getColumnCount()];
+        for (int i = 0; i < fields.length; i++) {
+            Integer field = FIELDS.get(metadata.getColumnName(i).trim());
+            // Other columns are sample variables, in the same order as in SampleEvent
+            fields[i] = field == null ? VARIABLE : field.intValue();
+        }
+        return fields;
+    }
+
+    /**
+     * @return the description of the written columns
+     */
+    public SampleMetadata getMetadata() {
+        return metadata;
+    }
+
+    private void writeHeader() {
+        length = 0;
+        putVarLong(0); // separates the segment from a previous one, see BinarySampleReader
+        ensureCapacity(BinarySampleFormat.MAGIC.length);
+        System.arraycopy(BinarySampleFormat.MAGIC, 0, record, length, BinarySampleFormat.MAGIC.length);
+        length += BinarySampleFormat.MAGIC.length;
+        putVarLong(BinarySampleFormat.VERSION);
+        putVarLong(metadata.getSeparator());
+        putVarLong(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            putString(metadata.getColumnName(i));
+        }
+        try {
+            output.write(record, 0, length);
+        } catch (IOException e) {
+            throw new SampleException("Could not write header", e);
+        }
+    }
+
+    @Override
+    public long write(Sample sample) {
+        Validate.validState(!closed, "Writer is closed");
+        length = 0;
+        for (int i = 0; i < columnCount; i++) {
+            String data = sample.getData(i);
+            if (data == null) {
+                data = "null"; // $NON-NLS-1$
+            }
+            switch (kinds[i]) {
+                case BinarySampleFormat.KIND_STRING:
+                    putDictionaryString(i, data);
+                    break;
+                case BinarySampleFormat.KIND_TIMESTAMP:
+                    if (BinarySampleFormat.isCanonicalLong(data)) {
+                        putTimeStamp(BinarySampleFormat.parseCanonicalLong(data));
+                    } else {
+                        putLiteralNumber(data);
+                    }
+                    break;
+                default:
+                    if (BinarySampleFormat.isCanonicalLong(data)) {
+                        putNumber(BinarySampleFormat.parseCanonicalLong(data));
+                    } else {
+                        putLiteralNumber(data);
+                    }
+                    break;
+            }
+        }
+        return writeRecord();
+    }
+
+    /**
+     * Write a sample event with the values a CSV file would contain.
+     *
+     * @param event
+     *            the event to write (Must not be {@code null})
+     * @return The number of samples written at this time
+     * @throws IllegalStateException
+     *             if the writer was not created from a
+     *             {@link SampleSaveConfiguration}
+     */
+    public long write(SampleEvent event) {
+        Validate.validState(!closed, "Writer is closed");
+        Validate.validState(fields != null, "Writer was not created from a SampleSaveConfiguration");
+        SampleResult sample = event.getResult();
+        length = 0;
+        int variable = 0;
+        for (int i = 0; i < columnCount; i++) {
+            switch (fields[i]) {
+                case TIMESTAMP:
+                    if (formatter == null) {
+                        putTimeStamp(sample.getTimeStamp());
+                    } else {
+                        date.setTime(sample.getTimeStamp());
+                        putLiteralNumber(formatter.format(date));
+                    }
+                    break;
+                case TIME:
+                    putNumber(sample.getTime());
+                    break;
+                case LABEL:
+                    putDictionaryString(i, sample.getSampleLabel());
+                    break;
+                case CODE:
+                    putDictionaryString(i, sample.getResponseCode());
+                    break;
+                case MESSAGE:
+                    putDictionaryString(i, sample.getResponseMessage());
+                    break;
+                case THREAD_NAME:
+                    putDictionaryString(i, sample.getThreadName());
+                    break;
+                case DATA_TYPE:
+                    putDictionaryString(i, sample.getDataType());
+                    break;
+                case SUCCESS:
+                    putDictionaryString(i, sample.isSuccessful() ? "true" : "false"); // $NON-NLS-1$ $NON-NLS-2$
+                    break;
+                case FAILURE_MESSAGE:
+                    putDictionaryString(i, getFailureMessage(sample));
+                    break;
+                case BYTES:
+                    putNumber(sample.getBytes());
+                    break;
+                case GROUP_THREADS:
+                    putNumber(sample.getGroupThreads());
+                    break;
+                case ALL_THREADS:
+                    putNumber(sample.getAllThreads());
+                    break;
+                case URL:
+                    putDictionaryString(i, String.valueOf(sample.getURL()));
+                    break;
+                case FILE_NAME:
+                    putDictionaryString(i, sample.getResultFileName());
+                    break;
+                case LATENCY:
+                    putNumber(sample.getLatency());
+                    break;
+                case ENCODING:
+                    putDictionaryString(i, sample.getDataEncodingWithDefault());
+                    break;
+                case SAMPLE_COUNT:
+                    putNumber(sample.getSampleCount());
+                    break;
+                case ERROR_COUNT:
+                    putNumber(sample.getErrorCount());
+                    break;
+                case HOSTNAME:
+                    putDictionaryString(i, event.getHostname());
+                    break;
+                case IDLE_TIME:
+                    putNumber(sample.getIdleTime());
+                    break;
+                case CONNECT_TIME:
+                    putNumber(sample.getConnectTime());
+                    break;
+                default:
+                    putDictionaryString(i, variable < SampleEvent.getVarCount()
+                            ? event.getVarValue(variable) : ""); // $NON-NLS-1$
+                    variable++;
+                    break;
+            }
+        }
+        return writeRecord();
+    }
+
+    // Same as CSVSaveService#resultToDelimitedString: first non-null message, or empty
+    private static String getFailureMessage(SampleResult sample) {
+        AssertionResult[] results = sample.getAssertionResults();
+        if (results != null) {
+            for (AssertionResult result : results) {
+                String message = result.getFailureMessage();
+                if (message != null) {
+                    return message;
+                }
+            }
+        }
+        return ""; // $NON-NLS-1$
+    }
+
+    private long writeRecord() {
+        int pos = 0;
+        long v = length;
+        while ((v & ~0x7FL) != 0) {
+            lengthBuffer[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        lengthBuffer[pos++] = (byte) v;
+        try {
+            output.write(lengthBuffer, 0, pos);
+            output.write(record, 0, length);
+        } catch (IOException e) {
+            throw new SampleException("Could not write sample <" + sampleCount + ">", e);
+        }
+        sampleCount++;
+        return sampleCount;
+    }
+
+    private void putTimeStamp(long timeStamp) {
+        long delta = timeStamp - lastTimeStamp;
+        if (BinarySampleFormat.isEncodable(timeStamp) && BinarySampleFormat.isEncodable(delta)) {
+            putNumber(delta);
+            lastTimeStamp = timeStamp;
+        } else {
+            putLiteralNumber(Long.toString(timeStamp));
+        }
+    }
+
+    private void putNumber(long value) {
+        if (BinarySampleFormat.isEncodable(value)) {
+            putVarLong(BinarySampleFormat.zigzag(value) << 1);
+        } else {
+            putLiteralNumber(Long.toString(value));
+        }
+    }
+
+    private void putLiteralNumber(String value) {
+        putVarLong(BinarySampleFormat.LITERAL);
+        putString(value);
+    }
+
+    private void putDictionaryString(int column, String value) {
+        String s = value == null ? "null" : value; // $NON-NLS-1$
+        Map<String, Integer> dictionary = dictionaries.get(column);
+        Integer index = dictionary.get(s);
+        if (index != null) {
+            putVarLong(index.intValue() + 2L);
+        } else if (dictionary.size() < BinarySampleFormat.MAX_DICTIONARY_SIZE
+                && s.length() <= BinarySampleFormat.MAX_DICTIONARY_STRING_LENGTH) {
+            dictionary.put(s, Integer.valueOf(dictionary.size()));
+            putVarLong(BinarySampleFormat.NEW_ENTRY);
+            putString(s);
+        } else {
+            putVarLong(BinarySampleFormat.LITERAL);
+            putString(s);
+        }
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(BinarySampleFormat.UTF_8);
+        putVarLong(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, record, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private void putVarLong(long value) {
+        ensureCapacity(10);
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            record[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        record[length++] = (byte) v;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > record.length) {
+            record = Arrays.copyOf(record, Math.max(record.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * Flush the samples written so far to the underlying stream.
+     */
+    public void flush() {
+        try {
+            output.flush();
+        } catch (IOException e) {
+            throw new SampleException("Could not flush samples", e);
+        }
+    }
+
+    /**
+     * Write the end of the samples and close the underlying stream. If the
+     * writer is already closed then does nothing.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            output.write(0);
+            output.flush();
+        } catch (IOException e) {
+            throw new SampleException("Could not write end of samples", e);
+        } finally {
+            JOrphanUtils.closeQuietly(output);
+        }
+    }
+}
@@ -18,16 +18,15 @@
 package org.apache.jmeter.report.core;
 
 import java.io.BufferedReader;
-import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
 
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.jmeter.samplers.SampleSaveConfiguration;
 import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jmeter.save.ResultFiles;
 import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.jorphan.util.JOrphanUtils;
@@ -41,7 +40,7 @@ import org.apache.log.Logger;
  * 
  * @since 2.14
  */
-public class CsvSampleReader implements Closeable{
+public class CsvSampleReader implements SampleReader {
 
     private static final Logger LOG = LoggingManager.getLoggerForClass();
     private static final int BUF_SIZE = 10000;
@@ -92,19 +91,34 @@ public class CsvSampleReader implements Closeable{
         this(inputFile, metadata, DEFAULT_SEPARATOR, false);
     }
 
+    /**
+     * Instantiates a reader of the samples written in a part of a CSV file,
+     * which must not be compressed.
+     *
+     * @param inputFile
+     *            the input file (must not be {@code null})
+     * @param start
+     *            offset of the first byte of the first sample to read
+     * @param end
+     *            offset of the byte following the last sample to read
+     * @param metadata
+     *            the metadata of the file
+     */
+    public CsvSampleReader(File inputFile, long start, long end,
+            SampleMetadata metadata) {
+        this(inputFile, openRange(inputFile, start, end), metadata, metadata
+                .getSeparator(), false);
+    }
+
     private CsvSampleReader(File inputFile, SampleMetadata metadata,
             char separator, boolean useSaveSampleCfg) {
-        if (!(inputFile.isFile() && inputFile.canRead())) {
-            throw new IllegalArgumentException(inputFile.getAbsolutePath()
-                    + "does not exist or is not readable");
-        }
+        this(inputFile, open(inputFile), metadata, separator, useSaveSampleCfg);
+    }
+
+    private CsvSampleReader(File inputFile, BufferedReader reader,
+            SampleMetadata metadata, char separator, boolean useSaveSampleCfg) {
         this.file = inputFile;
-        try {
-            this.reader = new BufferedReader(new InputStreamReader(
-                    new FileInputStream(file), CHARSET), BUF_SIZE);
-        } catch (FileNotFoundException | UnsupportedEncodingException ex) {
-            throw new SampleException("Could not create file reader !", ex);
-        }
+        this.reader = reader;
         if (metadata == null) {
             this.metadata = readMetadata(separator, useSaveSampleCfg);
         } else {
@@ -116,6 +130,37 @@ public class CsvSampleReader implements Closeable{
         this.lastSampleRead = nextSample();
     }
 
+    private static void checkFile(File inputFile) {
+        if (!(inputFile.isFile() && inputFile.canRead())) {
+            throw new IllegalArgumentException(inputFile.getAbsolutePath()
+                    + "does not exist or is not readable");
+        }
+    }
+
+    private static BufferedReader open(File inputFile) {
+        checkFile(inputFile);
+        try {
+            return new BufferedReader(new InputStreamReader(
+                    ResultFiles.openInputStream(inputFile), CHARSET), BUF_SIZE);
+        } catch (IOException ex) {
+            throw new SampleException("Could not create file reader !", ex);
+        }
+    }
+
+    private static BufferedReader openRange(File inputFile, long start, long end) {
+        checkFile(inputFile);
+        FileInputStream input = null;
+        try {
+            input = new FileInputStream(inputFile);
+            input.getChannel().position(start);
+            return new BufferedReader(new InputStreamReader(
+                    new BoundedInputStream(input, end - start), CHARSET), BUF_SIZE);
+        } catch (IOException ex) {
+            JOrphanUtils.closeQuietly(input);
+            throw new SampleException("Could not create file reader !", ex);
+        }
+    }
+
     private SampleMetadata readMetadata(char separator, boolean useSaveSampleCfg) {
         try {
             SampleMetadata result;
@@ -152,6 +197,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return the metadata
      */
+    @Override
     public SampleMetadata getMetadata() {
         return metadata;
     }
@@ -184,6 +230,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return the sample
      */
+    @Override
     public Sample readSample() {
         Sample out = lastSampleRead;
         lastSampleRead = nextSample();
@@ -195,6 +242,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return the sample
      */
+    @Override
     public Sample peek() {
         return lastSampleRead;
     }
@@ -204,6 +252,7 @@ public class CsvSampleReader implements Closeable{
      *
      * @return true, if the file contains more samples
      */
+    @Override
     public boolean hasNext() {
         return lastSampleRead != null;
     }
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.Closeable;
+
+/**
+ * Describes sample reader basic operations: samples are read sequentially
+ * from a source whose columns are described by a {@link SampleMetadata}.
+ *
+ * @since 3.0
+ */
+public interface SampleReader extends Closeable {
+
+    /**
+     * Gets the metadata.
+     *
+     * @return the metadata
+     */
+    SampleMetadata getMetadata();
+
+    /**
+     * Gets next sample from the source.
+     *
+     * @return the sample, or {@code null} if there are no more samples
+     */
+    Sample readSample();
+
+    /**
+     * Gets next sample from the source but keep the reading position.
+     *
+     * @return the sample, or {@code null} if there are no more samples
+     */
+    Sample peek();
+
+    /**
+     * Indicates whether the source contains more samples
+     *
+     * @return true, if the source contains more samples
+     */
+    boolean hasNext();
+
+    /**
+     * Close the reader.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.save.ResultFiles;
+
+/**
+ * Reader of the samples of a result file and of its rolled segments (see
+ * {@link ResultFiles}), read one after the other as a single file.
+ * <p>
+ * Each segment may be a CSV or a binary file, compressed or not. All the
+ * segments must have the same columns.
+ * </p>
+ *
+ * @since 3.0
+ */
+public class SegmentedSampleReader implements SampleReader {
+
+    private final List<File> segments;
+
+    private final char separator;
+
+    private final SampleMetadata metadata;
+
+    private int index;
+
+    private SampleReader reader;
+
+    /**
+     * Instantiates a reader of the result file and its segments.
+     *
+     * @param inputFile
+     *            the result file (must not be {@code null})
+     * @param separator
+     *            the separator of CSV files without header
+     */
+    public SegmentedSampleReader(File inputFile, char separator) {
+        this.segments = ResultFiles.getSegments(inputFile);
+        Validate.isTrue(!segments.isEmpty(), inputFile.getAbsolutePath()
+                + " does not exist or is not readable");
+        this.separator = separator;
+        this.reader = createReader(segments.get(0), separator);
+        this.metadata = reader.getMetadata();
+        skipEmptySegments();
+    }
+
+    /**
+     * Create the reader of a result file, according to its format.
+     *
+     * @param file
+     *            the file to read
+     * @param separator
+     *            the separator of a CSV file without header
+     * @return a reader of a binary or CSV file
+     */
+    public static SampleReader createReader(File file, char separator) {
+        if (BinarySampleReader.isBinaryFile(file)) {
+            return new BinarySampleReader(file);
+        }
+        return new CsvSampleReader(file, separator, true);
+    }
+
+    private void skipEmptySegments() {
+        while (!reader.hasNext() && index < segments.size() - 1) {
+            reader.close();
+            index++;
+            File segment = segments.get(index);
+            reader = createReader(segment, separator);
+            if (!reader.getMetadata().toString().equals(metadata.toString())) {
+                reader.close();
+                throw new SampleException("Segment " + segment.getAbsolutePath()
+                        + " has different columns: <" + reader.getMetadata() + "> instead of <" + metadata + ">");
+            }
+        }
+    }
+
+    /**
+     * Gets the metadata of the first segment.
+     *
+     * @return the metadata
+     */
+    @Override
+    public SampleMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public Sample readSample() {
+        Sample sample = reader.readSample();
+        skipEmptySegments();
+        return sample;
+    }
+
+    @Override
+    public Sample peek() {
+        return reader.peek();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return reader.hasNext();
+    }
+
+    @Override
+    public void close() {
+        reader.close();
+    }
+}
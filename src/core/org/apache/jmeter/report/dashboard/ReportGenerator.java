@@ -49,6 +49,7 @@ import org.apache.jmeter.report.processor.FilterConsumer;
 import org.apache.jmeter.report.processor.MaxAggregator;
 import org.apache.jmeter.report.processor.MinAggregator;
 import org.apache.jmeter.report.processor.NormalizerSampleConsumer;
+import org.apache.jmeter.report.processor.ParallelCsvFileSampleSource;
 import org.apache.jmeter.report.processor.RequestsSummaryConsumer;
 import org.apache.jmeter.report.processor.SampleContext;
 import org.apache.jmeter.report.processor.SampleSource;
@@ -69,9 +70,11 @@ import org.apache.log.Logger;
 public class ReportGenerator {
     private static final Logger LOG = LoggingManager.getLoggerForClass();
 
-    private static final boolean CSV_OUTPUT_FORMAT = "csv"
-            .equalsIgnoreCase(JMeterUtils.getPropDefault(
-                    "jmeter.save.saveservice.output_format", "csv"));
+    private static final String OUTPUT_FORMAT = JMeterUtils.getPropDefault(
+            "jmeter.save.saveservice.output_format", "csv");
+
+    private static final boolean CSV_OUTPUT_FORMAT = "csv".equalsIgnoreCase(OUTPUT_FORMAT)
+            || "binary".equalsIgnoreCase(OUTPUT_FORMAT);
 
     private static final String INVALID_CLASS_FMT = "Class name \"%s\" is not valid.";
     private static final String INVALID_EXPORT_FMT = "Data exporter \"%s\" is unable to export data.";
@@ -110,7 +113,7 @@ public class ReportGenerator {
             throws ConfigurationException {
         if (!CSV_OUTPUT_FORMAT) {
             throw new IllegalArgumentException(
-                    "Report generation requires csv output format, check 'jmeter.save.saveservice.output_format' property");
+                    "Report generation requires csv or binary output format, check 'jmeter.save.saveservice.output_format' property");
         }
 
         File file = new File(resultsFile);
@@ -177,38 +180,9 @@ public class ReportGenerator {
         // Build consumers chain
         SampleContext sampleContext = new SampleContext();
         sampleContext.setWorkingDirectory(tmpDir);
-        SampleSource source = new CsvFileSampleSource(testFile, JMeterUtils
-                .getPropDefault("jmeter.save.saveservice.default_delimiter",
-                        ",").charAt(0));
+        SampleSource source = createSampleSource();
         source.setSampleContext(sampleContext);
 
-        NormalizerSampleConsumer normalizer = new NormalizerSampleConsumer();
-        normalizer.setName(NORMALIZER_CONSUMER_NAME);
-
-        normalizer.addSampleConsumer(createBeginDateConsumer());
-        normalizer.addSampleConsumer(createEndDateConsumer());
-
-        FilterConsumer nameFilter = createNameFilter();
-
-        FilterConsumer excludeControllerFilter = createExcludeControllerFilter();
-
-        nameFilter.addSampleConsumer(excludeControllerFilter);
-
-        normalizer.addSampleConsumer(nameFilter);
-
-        source.addSampleConsumer(normalizer);
-
-        // Get graph configurations
-        Map<String, GraphConfiguration> graphConfigurations = configuration
-                .getGraphConfigurations();
-
-        // Process configuration to build graph consumers
-        for (Map.Entry<String, GraphConfiguration> entryGraphCfg : graphConfigurations
-                .entrySet()) {
-            addGraphConsumer(nameFilter, excludeControllerFilter,
-                    entryGraphCfg);
-        }
-
         // Generate data
         LOG.debug("Start samples processing");
         try {
@@ -236,6 +210,82 @@ public class ReportGenerator {
 
     }
 
+    /**
+     * Create the sample source and its consumers: several consumer chains
+     * reading parts of the samples on several threads if configured and if
+     * all the consumers can be merged, else a single chain whose graphs and
+     * statistics may be fed on several threads.
+     */
+    private SampleSource createSampleSource() throws GenerationException {
+        char separator = JMeterUtils.getPropDefault(
+                "jmeter.save.saveservice.default_delimiter", ",").charAt(0);
+        int threads = configuration.getIngestionThreads();
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if (threads > 1) {
+            NormalizerSampleConsumer normalizer = createConsumers(1);
+            if (normalizer.isMergeable()) {
+                LOG.info("Reading samples with " + threads + " threads");
+                SampleSource source = new ParallelCsvFileSampleSource(
+                        testFile, separator);
+                source.addSampleConsumer(normalizer);
+                for (int i = 1; i < threads; i++) {
+                    source.addSampleConsumer(createConsumers(1));
+                }
+                return source;
+            }
+            LOG.warn("Some graphs cannot be computed on several threads, reading samples with one thread");
+        }
+        int consumerThreads = configuration.getConsumerThreads();
+        if (consumerThreads <= 0) {
+            consumerThreads = Runtime.getRuntime().availableProcessors();
+        }
+        if (consumerThreads > 1) {
+            LOG.info("Feeding graphs and statistics with " + consumerThreads + " threads");
+        }
+        SampleSource source = new CsvFileSampleSource(testFile, separator);
+        source.addSampleConsumer(createConsumers(consumerThreads));
+        return source;
+    }
+
+    /**
+     * Create a consumer chain whose filters feed their consumers on the
+     * specified number of threads.
+     */
+    private NormalizerSampleConsumer createConsumers(int consumerThreads) throws GenerationException {
+        NormalizerSampleConsumer normalizer = new NormalizerSampleConsumer();
+        normalizer.setName(NORMALIZER_CONSUMER_NAME);
+
+        normalizer.addSampleConsumer(createBeginDateConsumer());
+        normalizer.addSampleConsumer(createEndDateConsumer());
+
+        FilterConsumer nameFilter = createNameFilter();
+
+        FilterConsumer excludeControllerFilter = createExcludeControllerFilter();
+
+        nameFilter.addSampleConsumer(excludeControllerFilter);
+
+        // Each filter has its own threads: a thread of the name filter
+        // waiting for the consumers of the excluding filter cannot starve them
+        nameFilter.setParallelism(consumerThreads);
+        excludeControllerFilter.setParallelism(consumerThreads);
+
+        normalizer.addSampleConsumer(nameFilter);
+
+        // Get graph configurations
+        Map<String, GraphConfiguration> graphConfigurations = configuration
+                .getGraphConfigurations();
+
+        // Process configuration to build graph consumers
+        for (Map.Entry<String, GraphConfiguration> entryGraphCfg : graphConfigurations
+                .entrySet()) {
+            addGraphConsumer(nameFilter, excludeControllerFilter,
+                    entryGraphCfg);
+        }
+        return normalizer;
+    }
+
     private void removeTempDir(File tmpDir, boolean tmpDirCreated) {
         if (tmpDirCreated) {
             try {
@@ -22,6 +22,15 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.jmeter.report.core.Sample;
@@ -42,6 +51,15 @@ public abstract class AbstractSampleConsumer extends AbstractSampleProcessor
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractSampleConsumer.class);
 
+    /** number of samples handed at once to a consumer fed in parallel */
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * number of batches waiting for a consumer fed in parallel beyond which
+     * the producer waits
+     */
+    private static final int MAX_PENDING_BATCHES = 16;
+
     /** sample consumer name, used for logging */
     private String name;
 
@@ -62,6 +80,18 @@ public abstract class AbstractSampleConsumer extends AbstractSampleProcessor
      */
     private Map<Integer, SampleMetadata> consumedMetadata = new TreeMap<>();
 
+    /** number of threads feeding the consumers, 1 to feed them on the caller thread */
+    private int parallelism = 1;
+
+    /** threads feeding the consumers, null when fed on the caller thread */
+    private ExecutorService executor;
+
+    /** workers feeding the consumers, indexed like the consumers */
+    private ConsumerWorker[] workers;
+
+    /** true when a worker failed while producing, until started again */
+    private boolean workersFailed;
+
     /**
      * Gets the data identified by the specified key from the current sample
      * context
@@ -110,6 +140,36 @@ public abstract class AbstractSampleConsumer extends AbstractSampleProcessor
         this.name = name;
     }
 
+    /**
+     * Gets the number of threads feeding the consumers of this consumer.
+     *
+     * @return the number of threads, 1 if the consumers are fed on the thread
+     *         producing the samples
+     */
+    public final int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads feeding the consumers of this consumer.<br>
+     * When greater than 1, the produced samples are handed in batches to a
+     * worker by consumer, run on a pool of at most this number of threads.
+     * Each consumer still consumes the samples in the order they are
+     * produced, but concurrently with the other consumers, so the consumers
+     * must not share any state. They are started and stopped on the thread
+     * calling {@link #startProducing()} and {@link #stopProducing()}, which
+     * waits for all the produced samples to be consumed.<br>
+     * Such a consumer cannot be merged, see {@link #isMergeable()}.
+     *
+     * @param parallelism
+     *            the number of threads, 1 to feed the consumers on the
+     *            thread producing the samples
+     */
+    public void setParallelism(int parallelism) {
+        Validate.isTrue(parallelism > 0, "parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
     public final File getWorkingDirectory() {
         return workingDir;
     }
@@ -212,9 +272,77 @@ public abstract class AbstractSampleConsumer extends AbstractSampleProcessor
         }
     }
 
+    /**
+     * Indicates whether this consumer and all the consumers it produces samples
+     * to can be merged, see {@link #merge(AbstractSampleConsumer)}.
+     *
+     * @return true if the whole consumer tree can be merged
+     */
+    public final boolean isMergeable() {
+        // Consumers fed in parallel are only up to date once stopped
+        if (!supportsMerge() || parallelism > 1) {
+            return false;
+        }
+        for (SampleConsumer consumer : sampleConsumers) {
+            if (!(consumer instanceof AbstractSampleConsumer)
+                    || !((AbstractSampleConsumer) consumer).isMergeable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether the data consumed by this consumer can be merged, see
+     * {@link #mergeConsumedData(AbstractSampleConsumer)}.
+     *
+     * @return false by default
+     */
+    protected boolean supportsMerge() {
+        return false;
+    }
+
+    /**
+     * Merge into this consumer the data consumed by another consumer, then do
+     * the same with the consumers of both.
+     * <p>
+     * Both consumer trees must have been built the same way and both must have
+     * been started. The samples consumed by the other consumer are considered
+     * as consumed after the samples of this consumer.<br>
+     * Only this consumer must be stopped afterwards: the other one is left
+     * empty, it can be started again.
+     * </p>
+     *
+     * @param other
+     *            the consumer to merge (must not be {@code null})
+     */
+    public final void merge(AbstractSampleConsumer other) {
+        Validate.isTrue(other.getClass() == getClass()
+                && other.sampleConsumers.size() == sampleConsumers.size(),
+                "Cannot merge consumer %s into consumer %s", other.getName(), getName());
+        mergeConsumedData(other);
+        for (int i = 0; i < sampleConsumers.size(); i++) {
+            ((AbstractSampleConsumer) sampleConsumers.get(i))
+                    .merge((AbstractSampleConsumer) other.sampleConsumers.get(i));
+        }
+    }
+
+    /**
+     * Merge into this consumer the data consumed by another consumer of the
+     * same class and clear the data of the other consumer.<br>
+     * Does nothing by default, for consumers which store no data.
+     *
+     * @param other
+     *            the consumer to merge
+     */
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        // Nothing to merge
+    }
+
     @Override
     public void startProducing() {
         producedSampleCount = 0;
+        workersFailed = false;
         for (SampleConsumer consumer : this.sampleConsumers) {
             try {
                 consumer.startConsuming();
@@ -224,10 +352,48 @@ public abstract class AbstractSampleConsumer extends AbstractSampleProcessor
                 throw new SampleException(e);
             }
         }
+        if (parallelism > 1 && sampleConsumers.size() > 1) {
+            startWorkers();
+        }
+    }
+
+    private void startWorkers() {
+        final String threadPrefix = getName() + "-";
+        executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, sampleConsumers.size()),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, threadPrefix
+                                + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        workers = new ConsumerWorker[sampleConsumers.size()];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new ConsumerWorker(sampleConsumers.get(i), executor);
+        }
     }
 
     @Override
     public void produce(Sample s, int channel) {
+        if (workers != null) {
+            try {
+                for (ConsumerWorker worker : workers) {
+                    worker.add(s, channel);
+                    producedSampleCount++;
+                }
+            } catch (RuntimeException | Error e) {
+                // The failed worker ignores the next samples, stop all the workers
+                shutdownWorkers();
+                workersFailed = true;
+                throw e;
+            }
+            return;
+        }
         for (SampleConsumer consumer : this.sampleConsumers) {
             try {
                 consumer.consume(s, channel);
@@ -243,6 +409,19 @@ public abstract class AbstractSampleConsumer extends AbstractSampleProcessor
 
     @Override
     public void stopProducing() {
+        if (workersFailed) {
+            // As when stopWorkers() fails, the consumers are not stopped
+            LOG.warn("stopProducing(): " + getName()
+                    + " not stopping consumers after a failure");
+            return;
+        }
+        if (workers != null) {
+            try {
+                stopWorkers();
+            } finally {
+                shutdownWorkers();
+            }
+        }
         for (SampleConsumer consumer : this.sampleConsumers) {
             try {
                 consumer.stopConsuming();
@@ -259,4 +438,137 @@ public abstract class AbstractSampleConsumer extends AbstractSampleProcessor
         }
     }
 
+    /**
+     * Let the threads of the workers end once the queued batches are handled.
+     */
+    private void shutdownWorkers() {
+        executor.shutdown();
+        executor = null;
+        workers = null;
+    }
+
+    /**
+     * Wait for the workers to consume all the produced samples.
+     */
+    private void stopWorkers() {
+        for (ConsumerWorker worker : workers) {
+            worker.finish();
+        }
+        for (ConsumerWorker worker : workers) {
+            worker.await();
+        }
+    }
+
+    /** Samples handed at once to a worker */
+    private static final class Batch {
+        private final Sample[] samples = new Sample[BATCH_SIZE];
+        private final int[] channels = new int[BATCH_SIZE];
+        private int size;
+        /** true for the last batch of a worker */
+        private boolean last;
+    }
+
+    /**
+     * Feeds a consumer with the batches of samples queued by the producer.<br>
+     * The worker is run on the executor only while batches are waiting, and
+     * never by two threads at once, so the consumer gets the samples in the
+     * order they were produced.
+     */
+    private static final class ConsumerWorker implements Runnable {
+        private final SampleConsumer consumer;
+        private final Executor executor;
+        private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(MAX_PENDING_BATCHES);
+        /** true while the worker is submitted to the executor or running */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        /** failure of the consumer, an Error is rethrown as is to the producer */
+        private volatile Throwable failure;
+
+        /** batch being filled, only used by the producer */
+        private Batch batch = new Batch();
+
+        ConsumerWorker(SampleConsumer consumer, Executor executor) {
+            this.consumer = consumer;
+            this.executor = executor;
+        }
+
+        void add(Sample s, int channel) {
+            checkFailure();
+            batch.samples[batch.size] = s;
+            batch.channels[batch.size] = channel;
+            batch.size++;
+            if (batch.size == BATCH_SIZE) {
+                handOff(batch);
+                batch = new Batch();
+            }
+        }
+
+        void finish() {
+            batch.last = true;
+            handOff(batch);
+            batch = null;
+        }
+
+        void await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SampleException("Interrupted while waiting for consumer", e);
+            }
+            checkFailure();
+        }
+
+        private void checkFailure() {
+            Throwable t = failure;
+            if (t instanceof Error) {
+                throw (Error) t;
+            }
+            if (t != null) {
+                throw new SampleException(t);
+            }
+        }
+
+        private void handOff(Batch b) {
+            try {
+                queue.put(b);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SampleException("Interrupted while feeding consumer", e);
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Batch b = queue.poll();
+                if (b == null) {
+                    scheduled.set(false);
+                    // A batch may have been queued before the flag was reset
+                    if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                // After a failure, batches are discarded to release the producer
+                if (failure == null) {
+                    try {
+                        for (int i = 0; i < b.size; i++) {
+                            consumer.consume(b.samples[i], b.channels[i]);
+                        }
+                    } catch (Throwable t) { // Error is rethrown to the producer
+                        LOG.error("produce(): Consumer failed with message :"
+                                + t.getMessage(), t);
+                        failure = t;
+                    }
+                }
+                if (b.last) {
+                    done.countDown();
+                }
+            }
+        }
+    }
 }
@@ -188,6 +188,28 @@ public abstract class AbstractSummaryConsumer<TData> extends
      */
     protected abstract void updateData(SummaryInfo info, Sample sample);
 
+    /**
+     * Merge the data of two summary infos with the same key, for consumers
+     * which support merge.
+     *
+     * @param data
+     *            the data of this consumer
+     * @param otherData
+     *            the data of the consumer to merge, added after this data
+     * @return the merged data
+     */
+    protected TData mergeData(TData data, TData otherData) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support merge");
+    }
+
+    private void mergeInfo(SummaryInfo info, SummaryInfo otherInfo) {
+        TData otherData = otherInfo.getData();
+        if (otherData != null) {
+            TData data = info.getData();
+            info.setData(data == null ? otherData : mergeData(data, otherData));
+        }
+    }
+
     private MapResultData createResultFromKey(String key) {
         SummaryInfo info = (key == null) ? overallInfo : infos.get(key);
         MapResultData result = null;
@@ -283,4 +305,28 @@ public abstract class AbstractSummaryConsumer<TData> extends
         infos.clear();
         overallInfo.setData(null);
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.AbstractSampleConsumer#
+     * mergeConsumedData(org.apache.jmeter.report.processor.AbstractSampleConsumer)
+     */
+    @Override
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        @SuppressWarnings("unchecked")
+        AbstractSummaryConsumer<TData> summary = (AbstractSummaryConsumer<TData>) other;
+        for (Map.Entry<String, SummaryInfo> entry : summary.infos.entrySet()) {
+            SummaryInfo otherInfo = entry.getValue();
+            SummaryInfo info = infos.get(entry.getKey());
+            if (info == null) {
+                info = new SummaryInfo(otherInfo.isController());
+                infos.put(entry.getKey(), info);
+            }
+            mergeInfo(info, otherInfo);
+        }
+        mergeInfo(overallInfo, summary.overallInfo);
+        summary.infos.clear();
+        summary.overallInfo.setData(null);
+    }
 }
@@ -112,4 +112,27 @@ public class AggregateConsumer extends AbstractSampleConsumer {
         super.stopProducing();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.AbstractSampleConsumer#
+     * mergeConsumedData(org.apache.jmeter.report.processor.AbstractSampleConsumer)
+     */
+    @Override
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        Aggregator otherAggregator = ((AggregateConsumer) other).aggregator;
+        aggregator.merge(otherAggregator);
+        otherAggregator.reset();
+    }
 }
@@ -50,4 +50,14 @@ public interface Aggregator {
      * Reset the state of the aggregator.
      */
     void reset();
+
+    /**
+     * Adds the values aggregated by the specified aggregator, as if they had
+     * been added to the current aggregator after its own values.
+     *
+     * @param other
+     *            an aggregator of the same class, built with the same
+     *            settings
+     */
+    void merge(Aggregator other);
 }
@@ -173,4 +173,32 @@ public class ApdexSummaryConsumer extends
         return titles;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSummaryConsumer#mergeData(java
+     * .lang.Object, java.lang.Object)
+     */
+    @Override
+    protected ApdexSummaryData mergeData(ApdexSummaryData data,
+            ApdexSummaryData otherData) {
+        data.setSatisfiedCount(data.getSatisfiedCount()
+                + otherData.getSatisfiedCount());
+        data.setToleratedCount(data.getToleratedCount()
+                + otherData.getToleratedCount());
+        data.setTotalCount(data.getTotalCount() + otherData.getTotalCount());
+        return data;
+    }
 }
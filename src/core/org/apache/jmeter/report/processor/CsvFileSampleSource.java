@@ -25,10 +25,11 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.apache.commons.lang3.Validate;
-import org.apache.jmeter.report.core.CsvSampleReader;
 import org.apache.jmeter.report.core.Sample;
 import org.apache.jmeter.report.core.SampleException;
 import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.report.core.SampleReader;
+import org.apache.jmeter.report.core.SegmentedSampleReader;
 import org.apache.jmeter.report.core.TimeHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +37,11 @@ import org.slf4j.LoggerFactory;
 /**
  * Read a csv source file and write its rows (samples) all the registered
  * <code>SampleConsumer</code>s.<br>
+ * Files written in the binary format of
+ * {@link org.apache.jmeter.report.core.BinarySampleWriter} are also read.<br>
+ * Compressed files and the rolled segments of a file (results.1.csv,
+ * results.2.csv...) are read transparently, see
+ * {@link org.apache.jmeter.save.ResultFiles}.<br>
  * If there is several other source files with the same root name then those
  * files are produced on their corresponding channels.<br>
  * 
@@ -71,8 +77,8 @@ public class CsvFileSampleSource extends AbstractSampleSource {
     /** input csv files to be produced */
     private File[] inputFiles;
 
-    /** csv readers corresponding to the input files */
-    private CsvSampleReader[] csvReaders;
+    /** readers corresponding to the input files (csv or binary) */
+    private SampleReader[] csvReaders;
 
     /** mock producer to produce samples to its consumers */
     private PrivateProducer producer;
@@ -88,6 +94,23 @@ public class CsvFileSampleSource extends AbstractSampleSource {
      *            columns
      */
     public CsvFileSampleSource(final File inputFile, final char separator) {
+        inputFiles = getInputFiles(inputFile);
+        csvReaders = new SampleReader[inputFiles.length];
+        for (int k = 0; k < inputFiles.length; k++) {
+            csvReaders[k] = new SegmentedSampleReader(inputFiles[k], separator);
+        }
+        producer = new PrivateProducer();
+    }
+
+    /**
+     * Gets the input files of the channels: the specified file on channel 0,
+     * then the files with the same root name and a numeric suffix.
+     *
+     * @param inputFile
+     *            the primary input file (must not be {@code null})
+     * @return the input files indexed by channel
+     */
+    static File[] getInputFiles(final File inputFile) {
         final String inputRootName = getFileRootName(inputFile.getName());
         final String inputExtension = getFileExtension(inputFile.getName());
 
@@ -113,19 +136,12 @@ public class CsvFileSampleSource extends AbstractSampleSource {
         if (secondaryInputs == null) {
             secondaryInputs = new File[0];
         }
-        inputFiles = new File[secondaryInputs.length + 1];
-        csvReaders = new CsvSampleReader[secondaryInputs.length + 1];
-        int k = 0;
+        File[] files = new File[secondaryInputs.length + 1];
         // primary input file (ex. input.csv)
-        csvReaders[k] = new CsvSampleReader(inputFile, separator, true);
-        inputFiles[k] = inputFile;
+        files[0] = inputFile;
         // secondary input files (ex. input-1.csv, input-2.csv, input-3.csv)
-        for (File input : secondaryInputs) {
-            k++;
-            csvReaders[k] = new CsvSampleReader(input, separator, true);
-            inputFiles[k] = secondaryInputs[k - 1];
-        }
-        producer = new PrivateProducer();
+        System.arraycopy(secondaryInputs, 0, files, 1, secondaryInputs.length);
+        return files;
     }
 
     private static String getFileRootName(String fName) {
@@ -176,7 +192,7 @@ public class CsvFileSampleSource extends AbstractSampleSource {
         for (int i = 0; i < csvReaders.length; i++) {
             long sampleCount = 0;
             long start = now();
-            CsvSampleReader csvReader = csvReaders[i];
+            SampleReader csvReader = csvReaders[i];
             producer.setSampleContext(context);
             producer.setProducedMetadata(csvReader.getMetadata(), i);
             producer.setChannelAttribute(i, SOURCE_FILE_ATTRIBUTE,
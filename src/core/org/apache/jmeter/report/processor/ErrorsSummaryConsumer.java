@@ -112,7 +112,7 @@ public class ErrorsSummaryConsumer extends AbstractSummaryConsumer<Long> {
 
             Long data = info.getData();
             if (data == null) {
-                data = Long.valueOf(1);
+                data = ZERO;
             }
             info.setData(Long.valueOf(data.longValue() + 1));
         }
@@ -174,4 +174,41 @@ public class ErrorsSummaryConsumer extends AbstractSummaryConsumer<Long> {
                 .getResString("reportgenerator_summary_errors_rate_all")));
         return titles;
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSummaryConsumer#mergeData(java
+     * .lang.Object, java.lang.Object)
+     */
+    @Override
+    protected Long mergeData(Long data, Long otherData) {
+        return Long.valueOf(data.longValue() + otherData.longValue());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.AbstractSummaryConsumer#
+     * mergeConsumedData(org.apache.jmeter.report.processor.AbstractSampleConsumer)
+     */
+    @Override
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        super.mergeConsumedData(other);
+        ErrorsSummaryConsumer errorsSummary = (ErrorsSummaryConsumer) other;
+        errorCount += errorsSummary.errorCount;
+        errorsSummary.errorCount = 0L;
+    }
 }
@@ -111,4 +111,15 @@ public class FilterConsumer extends AbstractSampleConsumer {
     public void stopConsuming() {
         super.stopProducing();
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The class HistogramPercentileAggregator is used to get percentile from
+ * samples, counting them in a log-linear histogram instead of keeping their
+ * values.
+ * <p>
+ * Values are rounded to integers; negative values are counted as 0. Values
+ * lower than 2 * 10^precision are counted exactly; greater values are counted
+ * in buckets whose width is less than 10^-precision of their values. So the
+ * percentiles have this relative precision whatever the number of values, and
+ * the memory used only depends on the precision and on the magnitude of the
+ * greatest value: a few kilobytes for response times.
+ * </p>
+ *
+ * @since 3.0
+ */
+public class HistogramPercentileAggregator implements Aggregator {
+
+    private final double percentileIndex;
+
+    /** log2 of the number of buckets in a range of values [2^n, 2^(n+1)[ */
+    private final int halfMagnitude;
+
+    /** Values lower than this are counted exactly */
+    private final long subBucketCount;
+
+    /** counts indexed by bucket, allocated up to the greatest value */
+    private long[] counts = new long[0];
+
+    private long count;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max = Long.MIN_VALUE;
+
+    /**
+     * Instantiates a new histogram percentile aggregator.
+     *
+     * @param index
+     *            the index of the percentile
+     * @param precision
+     *            the number of significant decimal digits of the values, from
+     *            1 to 5
+     */
+    public HistogramPercentileAggregator(double index, int precision) {
+        Validate.inclusiveBetween(1, 5, precision, "precision must be between 1 and 5");
+        percentileIndex = index;
+        long exactLimit = 2L * (long) Math.pow(10, precision);
+        int magnitude = 64 - Long.numberOfLeadingZeros(exactLimit - 1);
+        halfMagnitude = magnitude - 1;
+        subBucketCount = 1L << magnitude;
+    }
+
+    private int indexOf(long value) {
+        // Range [2^(shift + magnitude - 1), 2^(shift + magnitude)[ of the value
+        int shift = 64 - Long.numberOfLeadingZeros(value | (subBucketCount - 1))
+                - (halfMagnitude + 1);
+        int subBucket = (int) (value >>> shift);
+        return (shift << halfMagnitude) + subBucket;
+    }
+
+    // Lowest value counted in a bucket
+    private long lowestValueAt(int index) {
+        int shift = (index >> halfMagnitude) - 1;
+        long subBucket = (index & ((1 << halfMagnitude) - 1)) + (1L << halfMagnitude);
+        if (shift < 0) {
+            shift = 0;
+            subBucket -= 1L << halfMagnitude;
+        }
+        return subBucket << shift;
+    }
+
+    // Value representing a bucket: the middle of its values
+    private double valueAt(int index) {
+        int shift = Math.max(0, (index >> halfMagnitude) - 1);
+        return lowestValueAt(index) + ((1L << shift) - 1) / 2.0;
+    }
+
+    private void ensureCapacity(int index) {
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(index + 1, counts.length + (1 << halfMagnitude)));
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.jmeter.report.processor.Aggregator#getCount()
+     */
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.jmeter.report.processor.Aggregator#getResult()
+     */
+    @Override
+    public double getResult() {
+        return getPercentile(percentileIndex);
+    }
+
+    /**
+     * Gets an estimate of a percentile of the values, which may differ from
+     * the index of this aggregator.
+     *
+     * @param index
+     *            the index of the percentile, from 0 to 100
+     * @return the percentile, or NaN if there are no values
+     */
+    public double getPercentile(double index) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        // Same estimation as DescriptiveStatistics#getPercentile
+        double position = index * (count + 1) / 100;
+        if (position < 1) {
+            return min;
+        }
+        if (position >= count) {
+            return max;
+        }
+        long rank = (long) Math.floor(position);
+        double lower = valueAtRank(rank);
+        double upper = valueAtRank(rank + 1);
+        return lower + (position - rank) * (upper - lower);
+    }
+
+    /**
+     * Gets the minimum of the values.
+     *
+     * @return the minimum, or NaN if there are no values
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Gets the maximum of the values.
+     *
+     * @return the maximum, or NaN if there are no values
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    // rank: from 1 to count
+    private double valueAtRank(long rank) {
+        if (rank == count) {
+            return max;
+        }
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, valueAt(i)));
+            }
+        }
+        return max;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.jmeter.report.processor.Aggregator#addValue(double)
+     */
+    @Override
+    public void addValue(double value) {
+        long v = Math.max(0L, Math.round(value));
+        int index = indexOf(v);
+        ensureCapacity(index);
+        counts[index]++;
+        count++;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see org.apache.jmeter.report.processor.Aggregator#reset()
+     */
+    @Override
+    public void reset() {
+        counts = new long[0];
+        count = 0;
+        min = Long.MAX_VALUE;
+        max = Long.MIN_VALUE;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see
+     * org.apache.jmeter.report.processor.Aggregator#merge(org.apache.jmeter.
+     * report.processor.Aggregator)
+     */
+    @Override
+    public void merge(Aggregator other) {
+        HistogramPercentileAggregator histogram = (HistogramPercentileAggregator) other;
+        Validate.isTrue(histogram.halfMagnitude == halfMagnitude,
+                "Cannot merge histograms of different precisions");
+        ensureCapacity(histogram.counts.length - 1);
+        for (int i = 0; i < histogram.counts.length; i++) {
+            counts[i] += histogram.counts[i];
+        }
+        count += histogram.count;
+        min = Math.min(min, histogram.min);
+        max = Math.max(max, histogram.max);
+    }
+}
@@ -69,4 +69,17 @@ public class MaxAggregator implements Aggregator {
         value = Double.MIN_VALUE;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.Aggregator#merge(org.apache.jmeter.
+     * report.processor.Aggregator)
+     */
+    @Override
+    public void merge(Aggregator other) {
+        MaxAggregator max = (MaxAggregator) other;
+        value = Math.max(value, max.value);
+        count += max.count;
+    }
 }
@@ -17,8 +17,6 @@
  */
 package org.apache.jmeter.report.processor;
 
-import org.apache.commons.math3.stat.descriptive.moment.Mean;
-
 /**
  * The class MeanAggregator is used to get mean from samples.
  * 
@@ -26,7 +24,9 @@ import org.apache.commons.math3.stat.descriptive.moment.Mean;
  */
 public class MeanAggregator implements Aggregator {
 
-    private Mean mean = new Mean();
+    // Sum and count rather than a running mean, so that aggregators can be merged
+    private long count = 0L;
+    private double sum = 0;
 
     /*
      * (non-Javadoc)
@@ -35,7 +35,7 @@ public class MeanAggregator implements Aggregator {
      */
     @Override
     public long getCount() {
-        return mean.getN();
+        return count;
     }
 
     /*
@@ -45,7 +45,7 @@ public class MeanAggregator implements Aggregator {
      */
     @Override
     public double getResult() {
-        return mean.getResult();
+        return count > 0 ? sum / count : Double.NaN;
     }
 
     /*
@@ -55,7 +55,8 @@ public class MeanAggregator implements Aggregator {
      */
     @Override
     public void addValue(double value) {
-        mean.increment(value);
+        sum += value;
+        count++;
     }
 
     /*
@@ -65,7 +66,21 @@ public class MeanAggregator implements Aggregator {
      */
     @Override
     public void reset() {
-        mean.clear();
+        count = 0L;
+        sum = 0;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.Aggregator#merge(org.apache.jmeter.
+     * report.processor.Aggregator)
+     */
+    @Override
+    public void merge(Aggregator other) {
+        MeanAggregator mean = (MeanAggregator) other;
+        sum += mean.sum;
+        count += mean.count;
+    }
 }
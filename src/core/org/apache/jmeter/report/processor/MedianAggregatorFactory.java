@@ -18,7 +18,7 @@
 package org.apache.jmeter.report.processor;
 
 /**
- * A factory for creating PercentileAggregator with index of percentile fixed to
+ * A factory for creating percentile aggregators with index of percentile fixed to
  * value 50.
  *
  * @since 2.14
@@ -34,8 +34,7 @@ public class MedianAggregatorFactory extends AbstractAggregatorFactory {
      */
     @Override
     protected Aggregator createAggregator() {
-        // TODO Auto-generated method stub
-        return new PercentileAggregator(50);
+        return PercentileAggregatorFactory.createPercentileAggregator(50);
     }
 
 }
@@ -69,4 +69,17 @@ public class MinAggregator implements Aggregator {
         value = Double.MAX_VALUE;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.Aggregator#merge(org.apache.jmeter.
+     * report.processor.Aggregator)
+     */
+    @Override
+    public void merge(Aggregator other) {
+        MinAggregator min = (MinAggregator) other;
+        value = Math.min(value, min.value);
+        count += min.count;
+    }
 }
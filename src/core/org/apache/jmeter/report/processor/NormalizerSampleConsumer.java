@@ -92,4 +92,15 @@ public class NormalizerSampleConsumer extends AbstractSampleConsumer {
     public void stopConsuming() {
         super.stopProducing();
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
 }
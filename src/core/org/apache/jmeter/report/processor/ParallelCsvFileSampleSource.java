@@ -0,0 +1,439 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.apache.commons.lang3.Validate;
+import org.apache.jmeter.report.core.BinarySampleReader;
+import org.apache.jmeter.report.core.CsvSampleReader;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.report.core.SampleReader;
+import org.apache.jmeter.report.core.SegmentedSampleReader;
+import org.apache.jmeter.report.core.TimeHelper;
+import org.apache.jmeter.save.CSVSaveService;
+import org.apache.jmeter.save.ResultFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read the same files as {@link CsvFileSampleSource}, on several threads.<br>
+ * Each consumer added to this source is the root of a consumer tree; all the
+ * trees must be built the same way and must be mergeable (see
+ * {@link AbstractSampleConsumer#isMergeable()}).<br>
+ * The samples of each channel are split into contiguous ranges, one by tree,
+ * consumed in parallel. Then the trees are merged into the first one in the
+ * order of the ranges, and only the first tree is stopped: it gives the same
+ * results as if it had consumed all the samples.<br>
+ * Uncompressed CSV files are split into byte ranges which start at the
+ * beginning of a sample, even when samples contain quoted line breaks.
+ * Compressed and binary files can only be read from their start: each of their
+ * segments is read as a whole by one thread.
+ *
+ * @since 3.0
+ */
+public class ParallelCsvFileSampleSource extends AbstractSampleSource {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelCsvFileSampleSource.class);
+
+    private static final int BUF_SIZE = 65536;
+
+    /** Smallest number of bytes worth being read by a thread */
+    private static final long MIN_RANGE_SIZE = 1024L * 1024L;
+
+    /** input files, indexed by channel */
+    private final File[] inputFiles;
+
+    /** separator of CSV files without header */
+    private final char separator;
+
+    /** roots of the consumer trees */
+    private List<SampleConsumer> sampleConsumers = new ArrayList<>();
+
+    /**
+     * Build a sample source from the specified input file and character
+     * separator.
+     *
+     * @param inputFile
+     *            The input sample file (CSV file) (must not be {@code null})
+     * @param separator
+     *            The character separator to be used for delimiting samples
+     *            columns
+     */
+    public ParallelCsvFileSampleSource(final File inputFile, final char separator) {
+        this.inputFiles = CsvFileSampleSource.getInputFiles(inputFile);
+        this.separator = separator;
+    }
+
+    @Override
+    public void setSampleConsumers(List<SampleConsumer> consumers) {
+        Validate.notNull(consumers, "consumers must not be null");
+
+        this.sampleConsumers = consumers;
+    }
+
+    @Override
+    public void addSampleConsumer(SampleConsumer consumer) {
+        if (consumer == null) {
+            return;
+        }
+        this.sampleConsumers.add(consumer);
+    }
+
+    @Override
+    public void removeSampleConsumer(SampleConsumer consumer) {
+        if (consumer == null) {
+            return;
+        }
+        this.sampleConsumers.remove(consumer);
+    }
+
+    /**
+     * Run this sample source.<br>
+     * This sample source will read all the input files and produce their
+     * samples to the consumer trees, then merge the trees.
+     */
+    @Override
+    public void run() {
+        SampleContext context = getSampleContext();
+        Validate.validState(context != null, "Set a sample context before producing samples.");
+        Validate.validState(!sampleConsumers.isEmpty(), "Add sample consumers before producing samples.");
+        List<AbstractSampleConsumer> trees = new ArrayList<>(sampleConsumers.size());
+        for (SampleConsumer consumer : sampleConsumers) {
+            Validate.validState(consumer instanceof AbstractSampleConsumer
+                    && ((AbstractSampleConsumer) consumer).isMergeable(),
+                    "Consumer %s cannot be merged", consumer);
+            trees.add((AbstractSampleConsumer) consumer);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(trees.size());
+        try {
+            for (int i = 0; i < inputFiles.length; i++) {
+                produce(pool, trees, context, i);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void produce(ForkJoinPool pool, List<AbstractSampleConsumer> trees,
+            SampleContext context, final int channel) {
+        long start = System.currentTimeMillis();
+        File inputFile = inputFiles[channel];
+        List<File> segments = ResultFiles.getSegments(inputFile);
+        Validate.isTrue(!segments.isEmpty(), inputFile.getAbsolutePath()
+                + " does not exist or is not readable");
+        final SampleMetadata metadata = readMetadata(segments);
+        List<List<Piece>> ranges = split(pool, segments, trees.size());
+
+        // Trees are started one after the other, as they may share a
+        // working directory
+        for (AbstractSampleConsumer tree : trees) {
+            tree.setSampleContext(context);
+            tree.setConsumedMetadata(metadata, channel);
+            tree.setChannelAttribute(channel,
+                    CsvFileSampleSource.SOURCE_FILE_ATTRIBUTE, inputFile);
+            tree.startConsuming();
+        }
+        long sampleCount = 0;
+        AbstractSampleConsumer first = trees.get(0);
+        try {
+            List<Callable<Long>> tasks = new ArrayList<>(ranges.size());
+            for (int i = 0; i < ranges.size(); i++) {
+                final AbstractSampleConsumer tree = trees.get(i);
+                final List<Piece> range = ranges.get(i);
+                tasks.add(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return Long.valueOf(consume(range, metadata, tree, channel));
+                    }
+                });
+            }
+            for (Long count : invokeAll(pool, tasks)) {
+                sampleCount += count.longValue();
+            }
+            for (int i = 1; i < trees.size(); i++) {
+                first.merge(trees.get(i));
+            }
+        } finally {
+            first.stopConsuming();
+        }
+        if (LOG.isInfoEnabled()) {
+            LOG.info("produce(): " + sampleCount + " samples produced in "
+                    + TimeHelper.time(System.currentTimeMillis() - start)
+                    + " on channel " + channel + " by " + ranges.size()
+                    + " threads");
+        }
+    }
+
+    private SampleMetadata readMetadata(List<File> segments) {
+        SampleMetadata metadata = null;
+        for (File segment : segments) {
+            SampleReader reader = SegmentedSampleReader.createReader(segment, separator);
+            try {
+                if (metadata == null) {
+                    metadata = reader.getMetadata();
+                } else if (!reader.getMetadata().toString().equals(metadata.toString())) {
+                    throw new SampleException("Segment " + segment.getAbsolutePath()
+                            + " has different columns: <" + reader.getMetadata()
+                            + "> instead of <" + metadata + ">");
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return metadata;
+    }
+
+    private long consume(List<Piece> range, SampleMetadata metadata,
+            AbstractSampleConsumer tree, int channel) {
+        long count = 0;
+        for (Piece piece : range) {
+            if (piece.start >= piece.end) {
+                continue;
+            }
+            SampleReader reader = piece.splittable ? new CsvSampleReader(
+                    piece.file, piece.start, piece.end, metadata)
+                    : SegmentedSampleReader.createReader(piece.file, separator);
+            try {
+                Sample sample;
+                while ((sample = reader.readSample()) != null) {
+                    tree.consume(sample, channel);
+                    count++;
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Split the segments of a file into at most the specified number of
+     * contiguous ranges of about the same size, made of pieces which start at
+     * the beginning of a sample.
+     */
+    private static List<List<Piece>> split(ForkJoinPool pool, List<File> segments, int maxRangeCount) {
+        List<Piece> segmentPieces = new ArrayList<>(segments.size());
+        long total = 0;
+        for (File segment : segments) {
+            boolean splittable = !ResultFiles.isCompressed(segment)
+                    && !BinarySampleReader.isBinaryFile(segment);
+            long dataStart = splittable ? getDataStart(segment) : 0;
+            segmentPieces.add(new Piece(segment, dataStart, segment.length(), splittable));
+            total += segment.length() - dataStart;
+        }
+        int rangeCount = (int) Math.max(1, Math.min(maxRangeCount, total / MIN_RANGE_SIZE));
+        long rangeSize = (total + rangeCount - 1) / rangeCount;
+
+        // Cut the segments at nominal offsets
+        List<List<Piece>> ranges = new ArrayList<>(rangeCount);
+        List<Piece> range = new ArrayList<>();
+        ranges.add(range);
+        long filled = 0;
+        for (Piece segmentPiece : segmentPieces) {
+            long position = segmentPiece.start;
+            do {
+                long end = segmentPiece.end;
+                if (segmentPiece.splittable && ranges.size() < rangeCount) {
+                    end = Math.min(end, position + rangeSize - filled);
+                }
+                range.add(new Piece(segmentPiece.file, position, end, segmentPiece.splittable));
+                filled += end - position;
+                position = end;
+                if (filled >= rangeSize && ranges.size() < rangeCount) {
+                    range = new ArrayList<>();
+                    ranges.add(range);
+                    filled = 0;
+                }
+            } while (position < segmentPiece.end);
+        }
+
+        alignPieces(pool, ranges);
+        return ranges;
+    }
+
+    /**
+     * Move the nominal start of the pieces of CSV files to the beginning of the
+     * next sample: the first line break which is not in a quoted value. The
+     * quotes before each nominal start are counted in parallel.
+     */
+    private static void alignPieces(ForkJoinPool pool, List<List<Piece>> ranges) {
+        final List<Piece> pieces = new ArrayList<>();
+        for (List<Piece> range : ranges) {
+            for (Piece piece : range) {
+                if (piece.splittable) {
+                    pieces.add(piece);
+                }
+            }
+        }
+        List<Callable<Long>> tasks = new ArrayList<>(pieces.size());
+        for (final Piece piece : pieces) {
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() throws IOException {
+                    return Long.valueOf(countQuotes(piece));
+                }
+            });
+        }
+        List<Long> quoteCounts = invokeAll(pool, tasks);
+
+        long quotes = 0;
+        for (int i = 1; i < pieces.size(); i++) {
+            Piece previous = pieces.get(i - 1);
+            Piece piece = pieces.get(i);
+            if (!previous.file.equals(piece.file)) {
+                quotes = 0;
+                continue;
+            }
+            quotes += quoteCounts.get(i - 1).longValue();
+            long start = findSampleStart(piece.file, piece.start, (quotes & 1) != 0);
+            previous.end = start;
+            piece.start = start;
+        }
+    }
+
+    private static long countQuotes(Piece piece) throws IOException {
+        long count = 0;
+        try (InputStream in = openRange(piece.file, piece.start, piece.end)) {
+            byte[] buffer = new byte[BUF_SIZE];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                for (int i = 0; i < length; i++) {
+                    if (buffer[i] == '"') {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the offset of the first sample starting at or after the specified
+     *         offset, or the length of the file
+     */
+    private static long findSampleStart(File file, long offset, boolean quoted) {
+        try (InputStream in = openRange(file, offset - 1, file.length())) {
+            int b = in.read();
+            if (b == '\n' && !quoted) {
+                return offset;
+            }
+            long position = offset;
+            boolean inQuotes = quoted;
+            while ((b = in.read()) >= 0) {
+                position++;
+                if (b == '"') {
+                    inQuotes = !inQuotes;
+                } else if (b == '\n' && !inQuotes) {
+                    return position;
+                }
+            }
+            return position;
+        } catch (IOException e) {
+            throw new SampleException("Could not read " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @return the offset of the first sample of a CSV file, after its header if
+     *         any
+     */
+    private static long getDataStart(File file) {
+        try (InputStream in = openRange(file, 0, file.length())) {
+            StringBuilder line = new StringBuilder();
+            int b;
+            while ((b = in.read()) >= 0 && b != '\n') {
+                line.append((char) b);
+            }
+            int length = line.length();
+            if (length > 0 && line.charAt(length - 1) == '\r') {
+                line.setLength(length - 1);
+            }
+            if (CSVSaveService.getSampleSaveConfiguration(line.toString(),
+                    file.getAbsolutePath()) == null) {
+                return 0;
+            }
+            return Math.min(length + 1L, file.length());
+        } catch (IOException e) {
+            throw new SampleException("Could not read " + file.getAbsolutePath(), e);
+        }
+    }
+
+    private static InputStream openRange(File file, long start, long end) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            input.getChannel().position(start);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        return new BufferedInputStream(new BoundedInputStream(input, end - start), BUF_SIZE);
+    }
+
+    private static List<Long> invokeAll(ForkJoinPool pool, List<Callable<Long>> tasks) {
+        List<Long> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<Long> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SampleException("Interrupted while reading samples", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SampleException) {
+                throw (SampleException) cause;
+            }
+            throw new SampleException(cause.getMessage(), cause);
+        }
+        return results;
+    }
+
+    /** Byte range of a file read by a thread */
+    private static final class Piece {
+
+        private final File file;
+
+        private final boolean splittable;
+
+        private long start;
+
+        private long end;
+
+        Piece(File file, long start, long end, boolean splittable) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.splittable = splittable;
+        }
+    }
+}
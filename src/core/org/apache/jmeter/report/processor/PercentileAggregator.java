@@ -86,4 +86,19 @@ public class PercentileAggregator implements Aggregator {
         statistics.clear();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.Aggregator#merge(org.apache.jmeter.
+     * report.processor.Aggregator)
+     */
+    @Override
+    public void merge(Aggregator other) {
+        // Values of the other aggregator are the most recent ones of the
+        // sliding window
+        for (double value : ((PercentileAggregator) other).statistics.getValues()) {
+            statistics.addValue(value);
+        }
+    }
 }
@@ -17,15 +17,50 @@
  */
 package org.apache.jmeter.report.processor;
 
+import org.apache.jmeter.report.config.ReportGeneratorConfiguration;
+import org.apache.jmeter.util.JMeterUtils;
+
 /**
- * A factory for creating PercentileAggregator objects.
+ * A factory for creating percentile aggregators.
  *
  * @since 2.14
  */
 public class PercentileAggregatorFactory extends AbstractAggregatorFactory {
 
+    /** Value of the percentile_aggregator property to use histograms */
+    public static final String HISTOGRAM_AGGREGATOR = "histogram"; // $NON-NLS-1$
+
+    private static final boolean USE_HISTOGRAM = HISTOGRAM_AGGREGATOR
+            .equalsIgnoreCase(JMeterUtils.getPropDefault(
+                    ReportGeneratorConfiguration.REPORT_GENERATOR_KEY_PREFIX
+                            + ReportGeneratorConfiguration.KEY_DELIMITER
+                            + "percentile_aggregator", "window")); // $NON-NLS-1$ $NON-NLS-2$
+
+    private static final int HISTOGRAM_PRECISION = JMeterUtils.getPropDefault(
+            ReportGeneratorConfiguration.REPORT_GENERATOR_KEY_PREFIX
+                    + ReportGeneratorConfiguration.KEY_DELIMITER
+                    + "histogram_precision", 2); // $NON-NLS-1$
+
     private double percentileIndex;
 
+    /**
+     * Creates the aggregator of a percentile selected by the
+     * percentile_aggregator property of the report generator: a
+     * {@link PercentileAggregator} keeping the values of its sliding window
+     * ("window", the default) or a {@link HistogramPercentileAggregator}
+     * counting all the values with a fixed precision ("histogram").
+     *
+     * @param index
+     *            the index of the percentile
+     * @return the aggregator
+     */
+    public static Aggregator createPercentileAggregator(double index) {
+        if (USE_HISTOGRAM) {
+            return new HistogramPercentileAggregator(index, HISTOGRAM_PRECISION);
+        }
+        return new PercentileAggregator(index);
+    }
+
     /**
      * Gets the percentile index.
      *
@@ -54,7 +89,7 @@ public class PercentileAggregatorFactory extends AbstractAggregatorFactory {
      */
     @Override
     protected Aggregator createAggregator() {
-        return new PercentileAggregator(percentileIndex);
+        return createPercentileAggregator(percentileIndex);
     }
 
 }
@@ -76,4 +76,30 @@ public class RequestsSummaryConsumer extends AbstractSampleConsumer {
         setDataToContext(getName(), result);
         super.stopProducing();
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.AbstractSampleConsumer#
+     * mergeConsumedData(org.apache.jmeter.report.processor.AbstractSampleConsumer)
+     */
+    @Override
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        RequestsSummaryConsumer requestsSummary = (RequestsSummaryConsumer) other;
+        count += requestsSummary.count;
+        errorCount += requestsSummary.errorCount;
+        requestsSummary.count = 0L;
+        requestsSummary.errorCount = 0L;
+    }
 }
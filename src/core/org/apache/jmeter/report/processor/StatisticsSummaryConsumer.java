@@ -173,4 +173,37 @@ public class StatisticsSummaryConsumer extends
         return titles;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSummaryConsumer#mergeData(java
+     * .lang.Object, java.lang.Object)
+     */
+    @Override
+    protected StatisticsSummaryData mergeData(StatisticsSummaryData data,
+            StatisticsSummaryData otherData) {
+        data.setTotal(data.getTotal() + otherData.getTotal());
+        data.incBytes(otherData.getBytes());
+        data.setErrors(data.getErrors() + otherData.getErrors());
+        data.getPercentile1().merge(otherData.getPercentile1());
+        data.getPercentile2().merge(otherData.getPercentile2());
+        data.getPercentile3().merge(otherData.getPercentile3());
+        data.setMin(otherData.getMin());
+        data.setMax(otherData.getMax());
+        data.setFirstTime(otherData.getFirstTime());
+        data.setEndTime(otherData.getEndTime());
+        return data;
+    }
 }
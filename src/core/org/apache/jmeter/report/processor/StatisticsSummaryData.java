@@ -188,9 +188,9 @@ public class StatisticsSummaryData {
      */
     public StatisticsSummaryData(long percentileIndex1, long percentileIndex2,
             long percentileIndex3) {
-        percentile1 = new PercentileAggregator(percentileIndex1);
-        percentile2 = new PercentileAggregator(percentileIndex2);
-        percentile3 = new PercentileAggregator(percentileIndex3);
+        percentile1 = adapt(PercentileAggregatorFactory.createPercentileAggregator(percentileIndex1));
+        percentile2 = adapt(PercentileAggregatorFactory.createPercentileAggregator(percentileIndex2));
+        percentile3 = adapt(PercentileAggregatorFactory.createPercentileAggregator(percentileIndex3));
     }
 
     /**
@@ -231,4 +231,55 @@ public class StatisticsSummaryData {
     public void incErrors() {
         errors++;
     }
+
+    /**
+     * Keeps the percentile aggregators of the getters as
+     * {@link PercentileAggregator}, whatever the aggregator selected by the
+     * percentile_aggregator property of the report generator.
+     */
+    private static PercentileAggregator adapt(Aggregator aggregator) {
+        if (aggregator instanceof PercentileAggregator) {
+            return (PercentileAggregator) aggregator;
+        }
+        return new AggregatorAdapter(aggregator);
+    }
+
+    /**
+     * A {@link PercentileAggregator} delegating to another aggregator, its own
+     * sliding window stays empty.
+     */
+    private static final class AggregatorAdapter extends PercentileAggregator {
+        private final Aggregator aggregator;
+
+        AggregatorAdapter(Aggregator aggregator) {
+            super(0);
+            this.aggregator = aggregator;
+        }
+
+        @Override
+        public long getCount() {
+            return aggregator.getCount();
+        }
+
+        @Override
+        public double getResult() {
+            return aggregator.getResult();
+        }
+
+        @Override
+        public void addValue(double value) {
+            aggregator.addValue(value);
+        }
+
+        @Override
+        public void reset() {
+            aggregator.reset();
+        }
+
+        @Override
+        public void merge(Aggregator other) {
+            aggregator.merge(other instanceof AggregatorAdapter
+                    ? ((AggregatorAdapter) other).aggregator : other);
+        }
+    }
 }
@@ -69,4 +69,17 @@ public class SumAggregator implements Aggregator {
         sum = 0;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.Aggregator#merge(org.apache.jmeter.
+     * report.processor.Aggregator)
+     */
+    @Override
+    public void merge(Aggregator other) {
+        SumAggregator sumAggregator = (SumAggregator) other;
+        sum += sumAggregator.sum;
+        count += sumAggregator.count;
+    }
 }
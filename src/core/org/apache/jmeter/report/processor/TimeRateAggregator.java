@@ -85,4 +85,17 @@ public class TimeRateAggregator implements Aggregator {
         value = 0;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.Aggregator#merge(org.apache.jmeter.
+     * report.processor.Aggregator)
+     */
+    @Override
+    public void merge(Aggregator other) {
+        TimeRateAggregator rate = (TimeRateAggregator) other;
+        value += rate.value;
+        count += rate.count;
+    }
 }
@@ -425,6 +425,42 @@ public abstract class AbstractGraphConsumer extends AbstractSampleConsumer {
         }
     }
 
+    /**
+     * Gets the key of this graph corresponding to the key of another graph of
+     * the same class, when merging them.
+     *
+     * @param other
+     *            the graph being merged
+     * @param otherKey
+     *            the key in the other graph
+     * @return the same key by default
+     */
+    protected Double getMergedKey(AbstractGraphConsumer other, Double otherKey) {
+        return otherKey;
+    }
+
+    // key: the key of all the merged values, or null to use getMergedKey
+    private void mergeSeriesData(SeriesData data, SeriesData otherData,
+            AbstractGraphConsumer other, Double key) {
+        Map<Double, Aggregator> aggInfo = data.getAggregatorInfo();
+        for (Map.Entry<Double, Aggregator> entry : otherData
+                .getAggregatorInfo().entrySet()) {
+            Double mergedKey = key != null ? key : getMergedKey(other,
+                    entry.getKey());
+            Aggregator aggregator = aggInfo.get(mergedKey);
+            if (aggregator == null) {
+                aggInfo.put(mergedKey, entry.getValue());
+            } else {
+                aggregator.merge(entry.getValue());
+            }
+        }
+        data.incrementCount(otherData.getCount());
+        if (data.getKeysAggregator() != null) {
+            data.getKeysAggregator().merge(otherData.getKeysAggregator());
+            data.getValuesAggregator().merge(otherData.getValuesAggregator());
+        }
+    }
+
     private MapResultData createResult() {
         MapResultData result = new MapResultData();
         result.setResult(RESULT_MIN_X,
@@ -492,41 +528,103 @@ public abstract class AbstractGraphConsumer extends AbstractSampleConsumer {
         Double key = keysSelector.select(sample);
 
         // Build groupData maps
-        for (Map.Entry<String, GroupInfo> entryGroup : groupInfos.entrySet()) {
-            GroupInfo groupInfo = entryGroup.getValue();
-            GroupData groupData = groupInfo.getGroupData();
-            AggregatorFactory factory = groupInfo.getAggregatorFactory();
-            boolean overallSeries = groupInfo.enablesOverallSeries();
-            boolean aggregatedKeysSeries = groupInfo
-                    .enablesAggregatedKeysSeries();
+        for (GroupInfo groupInfo : groupInfos.values()) {
+            aggregateSample(groupInfo, groupInfo.getGroupData(), sample, key);
+        }
 
-            for (String seriesName : groupInfo.getSeriesSelector()
-                    .select(sample)) {
-                Map<String, SeriesData> seriesInfo = groupData.getSeriesInfo();
-                SeriesData seriesData = seriesInfo.get(seriesName);
-                if (seriesData == null) {
-                    seriesData = new SeriesData(factory, aggregatedKeysSeries,
-                            groupInfo.getSeriesSelector()
-                                    .allowsControllersDiscrimination()
-                                            ? sample.isController() : false,
-                            false);
-                    seriesInfo.put(seriesName, seriesData);
-                }
+        super.produce(sample, channel);
+    }
 
-                // Get the value to aggregate and dispatch it to the groupData
-                double value = groupInfo.getValueSelector().select(seriesName,
-                        sample);
+    private void aggregateSample(GroupInfo groupInfo, GroupData groupData,
+            Sample sample, Double key) {
+        AggregatorFactory factory = groupInfo.getAggregatorFactory();
+        boolean overallSeries = groupInfo.enablesOverallSeries();
+        boolean aggregatedKeysSeries = groupInfo.enablesAggregatedKeysSeries();
+
+        for (String seriesName : groupInfo.getSeriesSelector().select(sample)) {
+            Map<String, SeriesData> seriesInfo = groupData.getSeriesInfo();
+            SeriesData seriesData = seriesInfo.get(seriesName);
+            if (seriesData == null) {
+                seriesData = new SeriesData(factory, aggregatedKeysSeries,
+                        groupInfo.getSeriesSelector()
+                                .allowsControllersDiscrimination()
+                                        ? sample.isController() : false,
+                        false);
+                seriesInfo.put(seriesName, seriesData);
+            }
 
-                aggregateValue(factory, seriesData, key, value);
-                if (overallSeries) {
-                    SeriesData overallData = groupData.getOverallSeries();
-                    aggregateValue(factory, overallData, key, value);
-                }
+            // Get the value to aggregate and dispatch it to the groupData
+            double value = groupInfo.getValueSelector().select(seriesName,
+                    sample);
 
+            aggregateValue(factory, seriesData, key, value);
+            if (overallSeries) {
+                SeriesData overallData = groupData.getOverallSeries();
+                aggregateValue(factory, overallData, key, value);
             }
         }
+    }
 
-        super.produce(sample, channel);
+    /**
+     * Creates empty data for each group of this graph, to aggregate samples
+     * apart from the data of the graph.
+     *
+     * @return the new data indexed by group name
+     */
+    protected final Map<String, GroupData> createGroupData() {
+        Map<String, GroupData> groupData = new HashMap<>();
+        for (Map.Entry<String, GroupInfo> entryGroup : groupInfos.entrySet()) {
+            GroupInfo groupInfo = entryGroup.getValue();
+            groupData.put(entryGroup.getKey(), new GroupData(
+                    groupInfo.getAggregatorFactory(),
+                    groupInfo.enablesOverallSeries(),
+                    groupInfo.enablesAggregatedKeysSeries()));
+        }
+        return groupData;
+    }
+
+    /**
+     * Aggregates the values of a sample in data created by
+     * {@link #createGroupData()}, like {@link #consume(Sample, int)} does in
+     * the data of this graph.
+     *
+     * @param sample
+     *            the sample
+     * @param key
+     *            the key of the values
+     * @param groupData
+     *            the data indexed by group name
+     */
+    protected final void aggregateSample(Sample sample, Double key,
+            Map<String, GroupData> groupData) {
+        for (Map.Entry<String, GroupInfo> entryGroup : groupInfos.entrySet()) {
+            aggregateSample(entryGroup.getValue(),
+                    groupData.get(entryGroup.getKey()), sample, key);
+        }
+    }
+
+    /**
+     * Moves the values aggregated in data created by {@link #createGroupData()}
+     * into other data of this graph, under a single key.<br>
+     * Must not be used by graphs with aggregated keys series.
+     *
+     * @param groupData
+     *            the data to move, left empty
+     * @param targetGroupData
+     *            the data receiving the values, or null for the data of this
+     *            graph
+     * @param key
+     *            the key of all the moved values
+     */
+    protected final void moveGroupData(Map<String, GroupData> groupData,
+            Map<String, GroupData> targetGroupData, Double key) {
+        for (Map.Entry<String, GroupInfo> entryGroup : groupInfos.entrySet()) {
+            GroupInfo groupInfo = entryGroup.getValue();
+            GroupData target = targetGroupData != null ? targetGroupData
+                    .get(entryGroup.getKey()) : groupInfo.getGroupData();
+            mergeGroupData(groupInfo, target,
+                    groupData.get(entryGroup.getKey()), null, key);
+        }
     }
 
     /*
@@ -588,4 +686,53 @@ public abstract class AbstractGraphConsumer extends AbstractSampleConsumer {
         }
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see
+     * org.apache.jmeter.report.processor.AbstractSampleConsumer#supportsMerge()
+     */
+    @Override
+    protected boolean supportsMerge() {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.AbstractSampleConsumer#
+     * mergeConsumedData(org.apache.jmeter.report.processor.AbstractSampleConsumer)
+     */
+    @Override
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        AbstractGraphConsumer graph = (AbstractGraphConsumer) other;
+        for (Map.Entry<String, GroupInfo> groupEntry : groupInfos.entrySet()) {
+            GroupInfo groupInfo = groupEntry.getValue();
+            mergeGroupData(groupInfo, groupInfo.getGroupData(), graph.groupInfos
+                    .get(groupEntry.getKey()).getGroupData(), graph, null);
+        }
+    }
+
+    // Merges otherGroupData into groupData, then clears otherGroupData
+    private void mergeGroupData(GroupInfo groupInfo, GroupData groupData,
+            GroupData otherGroupData, AbstractGraphConsumer other, Double key) {
+        Map<String, SeriesData> seriesInfo = groupData.getSeriesInfo();
+        for (Map.Entry<String, SeriesData> seriesEntry : otherGroupData
+                .getSeriesInfo().entrySet()) {
+            SeriesData otherSeriesData = seriesEntry.getValue();
+            SeriesData seriesData = seriesInfo.get(seriesEntry.getKey());
+            if (seriesData == null) {
+                seriesData = new SeriesData(groupInfo.getAggregatorFactory(),
+                        groupInfo.enablesAggregatedKeysSeries(),
+                        otherSeriesData.isControllersSeries(), false);
+                seriesInfo.put(seriesEntry.getKey(), seriesData);
+            }
+            mergeSeriesData(seriesData, otherSeriesData, other, key);
+        }
+        if (groupInfo.enablesOverallSeries()) {
+            mergeSeriesData(groupData.getOverallSeries(),
+                    otherGroupData.getOverallSeries(), other, key);
+        }
+        otherGroupData.clear();
+    }
 }
@@ -21,8 +21,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.jmeter.report.config.ReportGeneratorConfiguration;
 import org.apache.jmeter.report.core.CsvSampleReader;
 import org.apache.jmeter.report.core.CsvSampleWriter;
 import org.apache.jmeter.report.core.Sample;
@@ -32,21 +36,43 @@ import org.apache.jmeter.report.core.SampleMetadata;
 import org.apache.jmeter.report.processor.AbstractSampleConsumer;
 import org.apache.jmeter.report.processor.MapResultData;
 import org.apache.jmeter.report.processor.ValueResultData;
+import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
 /**
  * The class AbstractOverTimeGraphConsumer provides a base class for over time
  * graphs.
+ * <p>
+ * The key of a sample is the number of samples which end in the same time
+ * interval, so it is only known once all these samples have been consumed.
+ * By default the values of the samples are aggregated by time interval, and
+ * the aggregates of an interval are added to the graph once the samples end
+ * later than the interval by more than the
+ * <code>jmeter.reportgenerator.out_of_order_window</code> property (in
+ * milliseconds). Samples ending earlier than the last ones by more than this
+ * window only make the key of their own interval inaccurate.<br>
+ * If this property is negative, the samples are buffered on disk until the
+ * end of the consumption, then tagged with their exact key.
+ * </p>
  *
  * @since 2.14
  */
 public abstract class AbstractVersusRequestsGraphConsumer extends
         AbstractGraphConsumer {
+    private static final Logger log = LoggingManager.getLoggerForClass();
     private static final Long ONE = Long.valueOf(1L);
     public static final String RESULT_CTX_GRANULARITY = "granularity";
     public static final String TIME_INTERVAL_LABEL = "Interval";
 
+    private static final long OUT_OF_ORDER_WINDOW = JMeterUtils.getPropDefault(
+            ReportGeneratorConfiguration.REPORT_GENERATOR_KEY_PREFIX
+                    + ReportGeneratorConfiguration.KEY_DELIMITER
+                    + "out_of_order_window", 60000L);
+
+    /** Key of the values aggregated by time interval */
+    private static final Double PENDING_KEY = Double.valueOf(0);
+
     private long granularity;
 
     /**
@@ -55,6 +81,22 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
      */
     private final TimeCountConsumer embeddedConsumer;
 
+    /** Whether samples are aggregated by time interval instead of buffered */
+    private final boolean aggregatesByInterval;
+
+    /** Samples aggregated by time interval, not added to the graph yet */
+    private final TreeMap<Long, TimeInterval> pendingIntervals = new TreeMap<>();
+
+    /** Number of samples of the intervals added to the graph */
+    private final HashMap<Long, Long> addedCounts = new HashMap<>();
+
+    private long minEndTime;
+
+    private long maxEndTime;
+
+    /** Number of samples added to an interval already added to the graph */
+    private long lateSampleCount;
+
     /**
      * Gets the granularity.
      *
@@ -81,6 +123,62 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
     protected AbstractVersusRequestsGraphConsumer() {
         embeddedConsumer = new TimeCountConsumer(this);
         setGranularity(1L);
+        boolean aggregatedKeys = false;
+        for (GroupInfo groupInfo : getGroupInfos().values()) {
+            aggregatedKeys |= groupInfo.enablesAggregatedKeysSeries();
+        }
+        // The keys aggregated in a series could not be changed afterwards
+        aggregatesByInterval = OUT_OF_ORDER_WINDOW >= 0 && !aggregatedKeys;
+    }
+
+    private static final class TimeInterval {
+        private long count;
+        private final Map<String, GroupData> groupData;
+
+        private TimeInterval(Map<String, GroupData> groupData) {
+            this.groupData = groupData;
+        }
+    }
+
+    private void aggregateByInterval(Sample sample, int channel) {
+        long time = sample.getEndTime();
+        Long interval = Long.valueOf(time - (time % granularity));
+        TimeInterval pending = pendingIntervals.get(interval);
+        if (pending == null) {
+            pending = new TimeInterval(createGroupData());
+            pendingIntervals.put(interval, pending);
+        }
+        if (addedCounts.containsKey(interval)) {
+            lateSampleCount++;
+        }
+        pending.count++;
+        aggregateSample(sample, PENDING_KEY, pending.groupData);
+        minEndTime = Math.min(minEndTime, time);
+        maxEndTime = Math.max(maxEndTime, time);
+
+        // Add the intervals which no sample should end in anymore, except the
+        // first ones which may be shared with a graph to be merged
+        Iterator<Map.Entry<Long, TimeInterval>> it = pendingIntervals
+                .tailMap(Long.valueOf(minEndTime + OUT_OF_ORDER_WINDOW), true)
+                .entrySet().iterator();
+        long completedLimit = maxEndTime - OUT_OF_ORDER_WINDOW - granularity;
+        while (it.hasNext()) {
+            Map.Entry<Long, TimeInterval> entry = it.next();
+            if (entry.getKey().longValue() > completedLimit) {
+                break;
+            }
+            addInterval(entry.getKey(), entry.getValue());
+            it.remove();
+        }
+        produce(sample, channel);
+    }
+
+    private void addInterval(Long interval, TimeInterval pending) {
+        Long added = addedCounts.get(interval);
+        long count = pending.count + (added != null ? added.longValue() : 0L);
+        addedCounts.put(interval, Long.valueOf(count));
+        moveGroupData(pending.groupData, null,
+                Double.valueOf(count % granularity));
     }
 
     /*
@@ -92,7 +190,16 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
      */
     @Override
     public void startConsuming() {
-        embeddedConsumer.startConsuming();
+        if (aggregatesByInterval) {
+            pendingIntervals.clear();
+            addedCounts.clear();
+            minEndTime = Long.MAX_VALUE;
+            maxEndTime = Long.MIN_VALUE;
+            lateSampleCount = 0;
+            super.startConsuming();
+        } else {
+            embeddedConsumer.startConsuming();
+        }
     }
 
     private void startConsumingBase() {
@@ -108,7 +215,11 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
      */
     @Override
     public void setConsumedMetadata(SampleMetadata sampleMetadata, int channel) {
-        embeddedConsumer.setConsumedMetadata(sampleMetadata, channel);
+        if (aggregatesByInterval) {
+            super.setConsumedMetadata(sampleMetadata, channel);
+        } else {
+            embeddedConsumer.setConsumedMetadata(sampleMetadata, channel);
+        }
     }
 
     private void setConsumedMetadataBase(SampleMetadata sampleMetadata,
@@ -125,7 +236,11 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
      */
     @Override
     public void consume(Sample sample, int channel) {
-        embeddedConsumer.consume(sample, channel);
+        if (aggregatesByInterval) {
+            aggregateByInterval(sample, channel);
+        } else {
+            embeddedConsumer.consume(sample, channel);
+        }
     }
 
     private void consumeBase(Sample sample, int channel) {
@@ -141,7 +256,25 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
      */
     @Override
     public void stopConsuming() {
-        embeddedConsumer.stopConsuming();
+        if (aggregatesByInterval) {
+            for (Map.Entry<Long, TimeInterval> entry : pendingIntervals
+                    .entrySet()) {
+                addInterval(entry.getKey(), entry.getValue());
+            }
+            pendingIntervals.clear();
+            addedCounts.clear();
+            if (lateSampleCount > 0) {
+                log.warn(String.format(
+                        "Graph %s: %d samples ended more than %d ms before samples written earlier,"
+                                + " the number of requests of their interval is inaccurate."
+                                + " Increase property jmeter.reportgenerator.out_of_order_window to avoid it.",
+                        getName(), Long.valueOf(lateSampleCount),
+                        Long.valueOf(OUT_OF_ORDER_WINDOW)));
+            }
+            super.stopConsuming();
+        } else {
+            embeddedConsumer.stopConsuming();
+        }
     }
 
     public void stopConsumingBase() {
@@ -160,13 +293,56 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
                 Long.valueOf(granularity)));
     }
 
-    private static class TimeCountConsumer extends AbstractSampleConsumer {
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.graph.AbstractGraphConsumer#
+     * mergeConsumedData(org.apache.jmeter.report.processor.AbstractSampleConsumer)
+     */
+    @Override
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        super.mergeConsumedData(other);
+        AbstractVersusRequestsGraphConsumer graph = (AbstractVersusRequestsGraphConsumer) other;
+        if (!aggregatesByInterval) {
+            embeddedConsumer.mergeTimeCounts(graph.embeddedConsumer);
+            return;
+        }
+        // The first intervals of the other graph may be the last ones of this
+        // graph
+        for (Map.Entry<Long, TimeInterval> entry : graph.pendingIntervals
+                .entrySet()) {
+            TimeInterval otherPending = entry.getValue();
+            TimeInterval pending = pendingIntervals.get(entry.getKey());
+            if (addedCounts.containsKey(entry.getKey())) {
+                lateSampleCount += otherPending.count;
+            }
+            if (pending == null) {
+                pendingIntervals.put(entry.getKey(), otherPending);
+            } else {
+                pending.count += otherPending.count;
+                moveGroupData(otherPending.groupData, pending.groupData,
+                        PENDING_KEY);
+            }
+        }
+        for (Map.Entry<Long, Long> entry : graph.addedCounts.entrySet()) {
+            Long count = addedCounts.get(entry.getKey());
+            addedCounts.put(entry.getKey(), count == null ? entry.getValue()
+                    : Long.valueOf(count.longValue() + entry.getValue().longValue()));
+        }
+        minEndTime = Math.min(minEndTime, graph.minEndTime);
+        maxEndTime = Math.max(maxEndTime, graph.maxEndTime);
+        lateSampleCount += graph.lateSampleCount;
+        graph.pendingIntervals.clear();
+        graph.addedCounts.clear();
+        graph.lateSampleCount = 0;
+    }
 
-        private static final Logger log = LoggingManager.getLoggerForClass();
+    private static class TimeCountConsumer extends AbstractSampleConsumer {
 
         private class FileInfo {
             private final File file;
             private final CsvSampleWriter writer;
+            private final int channel;
 
             /**
              * Instantiates a new file info.
@@ -175,10 +351,13 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
              *            the file
              * @param metadata
              *            the metadata
+             * @param channel
+             *            the channel of the samples
              */
-            public FileInfo(File file, SampleMetadata metadata) {
+            public FileInfo(File file, SampleMetadata metadata, int channel) {
                 this.file = file;
                 this.writer = new CsvSampleWriter(file, metadata);
+                this.channel = channel;
             }
 
             /**
@@ -198,6 +377,15 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
             public CsvSampleWriter getWriter() {
                 return writer;
             }
+
+            /**
+             * Gets the channel of the samples.
+             *
+             * @return the channel
+             */
+            public int getChannel() {
+                return channel;
+            }
         }
 
         // Collection of sample builders for channels
@@ -281,7 +469,7 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
                             + String.valueOf(i), workDir);
                     tmpFile.deleteOnExit();
                     fileInfos
-                            .add(new FileInfo(tmpFile, getConsumedMetadata(i)));
+                            .add(new FileInfo(tmpFile, getConsumedMetadata(i), i));
                 } catch (IOException ex) {
                     String message = String.format(
                             "Cannot create temporary file for channel #%s", Integer.toString(i));
@@ -314,16 +502,29 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
             fileInfos.get(channel).getWriter().write(sample);
         }
 
+        // Adds the samples consumed by another consumer after the samples of
+        // this one
+        private void mergeTimeCounts(TimeCountConsumer other) {
+            for (Map.Entry<Long, Long> entry : other.counts.entrySet()) {
+                Long count = counts.get(entry.getKey());
+                counts.put(entry.getKey(), count == null ? entry.getValue()
+                        : Long.valueOf(count.longValue() + entry.getValue().longValue()));
+            }
+            fileInfos.addAll(other.fileInfos);
+            other.counts.clear();
+            other.fileInfos.clear();
+        }
+
         @Override
         public void stopConsuming() {
 
             // Ask parent to start consumption
             parent.startConsumingBase();
 
-            // Propagate tagged samples to parent
-            int channelsCount = getConsumedChannelCount();
-            for (int i = 0; i < channelsCount; i++) {
-                FileInfo fileInfo = fileInfos.get(i);
+            // Propagate tagged samples to parent, including the samples of
+            // merged consumers
+            for (FileInfo fileInfo : fileInfos) {
+                int i = fileInfo.getChannel();
 
                 // Clean the writer
                 CsvSampleWriter writer = fileInfo.getWriter();
@@ -345,6 +546,8 @@ public abstract class AbstractVersusRequestsGraphConsumer extends
                     file.delete();
                 }
             }
+            fileInfos.clear();
+            counts.clear();
 
             if (createdWorkDir) {
                 File workingDir = parent.getWorkingDirectory();
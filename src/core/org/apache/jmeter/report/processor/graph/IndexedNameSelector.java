@@ -52,7 +52,17 @@ public class IndexedNameSelector implements GraphKeysSelector {
      */
     @Override
     public Double select(Sample sample) {
-        String name = sample.getName();
+        return select(sample.getName());
+    }
+
+    /**
+     * Gets the index of the specified name, adding it to the index if needed.
+     *
+     * @param name
+     *            the name of a sample
+     * @return the index of the name
+     */
+    public Double select(String name) {
         int index = names.indexOf(name);
         if (index < 0) {
             names.addLast(name);
@@ -141,6 +141,16 @@ public class SeriesData {
         count++;
     }
 
+    /**
+     * Increment the count of samples by the count of another series.
+     *
+     * @param increment
+     *            the count of samples to add
+     */
+    public void incrementCount(long increment) {
+        count += increment;
+    }
+
     public void clear() {
         aggregators.clear();
         count = 0L;
@@ -20,6 +20,7 @@ package org.apache.jmeter.report.processor.graph.impl;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.apache.jmeter.report.processor.AbstractSampleConsumer;
 import org.apache.jmeter.report.processor.ListResultData;
 import org.apache.jmeter.report.processor.MapResultData;
 import org.apache.jmeter.report.processor.PercentileAggregatorFactory;
@@ -121,4 +122,36 @@ public class ResponseTimePerSampleGraphConsumer extends AbstractGraphConsumer {
         }
         parentResult.setResult("sampleNames", samples);
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.graph.AbstractGraphConsumer#
+     * mergeConsumedData(org.apache.jmeter.report.processor.AbstractSampleConsumer)
+     */
+    @Override
+    protected void mergeConsumedData(AbstractSampleConsumer other) {
+        // Index the names of the other graph in the order they were found
+        IndexedNameSelector indexedNameSelector = (IndexedNameSelector) getKeysSelector();
+        for (String name : ((IndexedNameSelector) ((ResponseTimePerSampleGraphConsumer) other)
+                .getKeysSelector()).getNames()) {
+            indexedNameSelector.select(name);
+        }
+        super.mergeConsumedData(other);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.jmeter.report.processor.graph.AbstractGraphConsumer#
+     * getMergedKey(org.apache.jmeter.report.processor.graph.AbstractGraphConsumer,
+     * java.lang.Double)
+     */
+    @Override
+    protected Double getMergedKey(AbstractGraphConsumer other, Double otherKey) {
+        // Keys are indexes of names, which differ between graphs
+        String name = ((IndexedNameSelector) ((ResponseTimePerSampleGraphConsumer) other)
+                .getKeysSelector()).getNames().get(otherKey.intValue());
+        return ((IndexedNameSelector) getKeysSelector()).select(name);
+    }
 }
@@ -0,0 +1,431 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.reporters;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.report.core.BinarySampleWriter;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVResultEncoder;
+import org.apache.jmeter.save.SaveService;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Writes the samples of one result file from a dedicated thread, so that sampler threads
+ * only add them to a bounded queue instead of formatting and writing them while holding
+ * the file lock.
+ * <p>
+ * When the queue is full, sampler threads wait for the writer (backpressure),
+ * or the samples are dropped if so configured. Both cases are counted and logged
+ * when the writer is closed.
+ * <p>
+ * Samples added once the writer is closed, for instance by threads still running
+ * after a non graceful stop, are dropped and counted: threads waiting for room in
+ * the queue give up when the writer is closed.
+ * <p>
+ * The file may change between two batches of samples, see {@link Output}.
+ */
+final class AsyncResultWriter {
+
+    /**
+     * Destination of the samples, called only by the writer thread
+     */
+    interface Output {
+        /**
+         * @return writer of the current file, null when writing a binary file
+         */
+        PrintWriter getWriter();
+
+        /**
+         * @return writer of the current file, null unless writing a binary file
+         */
+        BinarySampleWriter getBinaryWriter();
+
+        /**
+         * Called after each batch of samples, for instance to start a new file
+         */
+        void batchWritten();
+    }
+
+    /**
+     * Output to a single file
+     */
+    private static final class FileOutput implements Output {
+        private final PrintWriter out;
+        private final BinarySampleWriter binaryOut;
+
+        FileOutput(PrintWriter out, BinarySampleWriter binaryOut) {
+            this.out = out;
+            this.binaryOut = binaryOut;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return out;
+        }
+
+        @Override
+        public BinarySampleWriter getBinaryWriter() {
+            return binaryOut;
+        }
+
+        @Override
+        public void batchWritten() {
+            // Nothing to do
+        }
+    }
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Maximum number of samples written between two checks of the queue */
+    private static final int BATCH_SIZE = 1000;
+
+    /** Time to wait for room in the queue between two checks of the writer state */
+    private static final long OFFER_WAIT_MS = 100;
+
+    /**
+     * Queue entry: a sample to write, or a flush request when event is null
+     */
+    private static final class Entry {
+        private final SampleEvent event;
+        private final SampleSaveConfiguration config;
+        private final CountDownLatch flushed;
+        private final boolean last;
+
+        Entry(SampleEvent event, SampleSaveConfiguration config) {
+            this.event = event;
+            this.config = config;
+            this.flushed = null;
+            this.last = false;
+        }
+
+        Entry(boolean last) {
+            this.event = null;
+            this.config = null;
+            this.flushed = new CountDownLatch(1);
+            this.last = last;
+        }
+    }
+
+    private final String filename;
+
+    private final Output output;
+
+    private final boolean autoFlush;
+
+    private final boolean dropWhenFull;
+
+    private final BlockingQueue<Entry> queue;
+
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    // Only used by the writer thread
+    private final CSVResultEncoder csvEncoder = new CSVResultEncoder();
+
+    private final AtomicLong written = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong blocked = new AtomicLong();
+
+    /**
+     * Create the writer and start its thread
+     *
+     * @param filename name of the file, used for the thread name and logging
+     * @param out writer of the file
+     * @param queueSize maximum number of samples waiting to be written
+     * @param dropWhenFull true to drop samples when the queue is full, false to wait
+     * @param autoFlush true to flush the file after each batch of samples
+     */
+    AsyncResultWriter(String filename, PrintWriter out, int queueSize, boolean dropWhenFull, boolean autoFlush) {
+        this(filename, new FileOutput(out, null), queueSize, dropWhenFull, autoFlush);
+    }
+
+    /**
+     * Create the writer of a binary file and start its thread
+     *
+     * @param filename name of the file, used for the thread name and logging
+     * @param binaryOut writer of the file
+     * @param queueSize maximum number of samples waiting to be written
+     * @param dropWhenFull true to drop samples when the queue is full, false to wait
+     * @param autoFlush true to flush the file after each batch of samples
+     */
+    AsyncResultWriter(String filename, BinarySampleWriter binaryOut, int queueSize, boolean dropWhenFull,
+            boolean autoFlush) {
+        this(filename, new FileOutput(null, binaryOut), queueSize, dropWhenFull, autoFlush);
+    }
+
+    /**
+     * Create the writer of an output whose file may change, and start its thread
+     *
+     * @param filename name of the file, used for the thread name and logging
+     * @param output destination of the samples
+     * @param queueSize maximum number of samples waiting to be written
+     * @param dropWhenFull true to drop samples when the queue is full, false to wait
+     * @param autoFlush true to flush the file after each batch of samples
+     */
+    AsyncResultWriter(String filename, Output output, int queueSize, boolean dropWhenFull, boolean autoFlush) {
+        this.filename = filename;
+        this.output = output;
+        this.dropWhenFull = dropWhenFull;
+        this.autoFlush = autoFlush;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "ResultWriter " + filename); // $NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue a sample to be written with the given configuration.
+     *
+     * @param event the sample event
+     * @param config the configuration of the collector writing it
+     * @return false if the sample was dropped; a sample added while the writer
+     * is being closed may also be dropped, and counted, after true is returned
+     */
+    boolean add(SampleEvent event, SampleSaveConfiguration config) {
+        Entry entry = new Entry(event, config);
+        if (closed) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (queue.offer(entry)) {
+            return checkNotClosed(entry);
+        }
+        if (dropWhenFull) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        blocked.incrementAndGet();
+        try {
+            while (!queue.offer(entry, OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (closed) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+            return false;
+        }
+        return checkNotClosed(entry);
+    }
+
+    /**
+     * Drop an entry queued while the writer was being closed, unless the writer
+     * thread or {@link #close()} already took it
+     *
+     * @return false if the entry was dropped
+     */
+    private boolean checkNotClosed(Entry entry) {
+        if (closed && queue.remove(entry)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Wait until the samples queued before this call are written and the file is flushed
+     *
+     * @param timeout maximum time to wait in milliseconds
+     */
+    void flush(long timeout) {
+        waitFor(new Entry(false), timeout);
+    }
+
+    /**
+     * Write the remaining samples and stop the thread.
+     * The file itself is not closed.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        waitFor(new Entry(true), Long.MAX_VALUE);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        discard(new ArrayList<Entry>());
+        String message = "Result writer for " + filename + ": written=" + written.get()
+                + ", dropped=" + dropped.get() + ", blocked=" + blocked.get();
+        if (dropped.get() > 0 || blocked.get() > 0) {
+            log.warn(message);
+        } else {
+            log.info(message);
+        }
+    }
+
+    private void waitFor(Entry request, long timeout) {
+        try {
+            // The writer thread may end while waiting for room, after a close
+            while (!queue.offer(request, OFFER_WAIT_MS, TimeUnit.MILLISECONDS)) {
+                if (!thread.isAlive()) {
+                    return;
+                }
+            }
+            if (!thread.isAlive() && queue.remove(request)) {
+                return;
+            }
+            if (!request.flushed.await(timeout, TimeUnit.MILLISECONDS)) {
+                log.warn("Timeout waiting for samples to be written to " + filename);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (int i = 0; i < batch.size(); i++) {
+                    Entry entry = batch.get(i);
+                    if (entry.event != null) {
+                        write(entry);
+                    } else if (entry.last) {
+                        // Samples queued after the last entry are dropped
+                        List<Entry> rest = new ArrayList<>(batch.subList(i + 1, batch.size()));
+                        discard(rest);
+                        flushOutput();
+                        entry.flushed.countDown();
+                        return;
+                    } else {
+                        flushOutput();
+                        entry.flushed.countDown();
+                    }
+                }
+                batch.clear();
+                if (autoFlush) {
+                    flushOutput();
+                }
+                try {
+                    output.batchWritten();
+                } catch (RuntimeException e) {
+                    log.error("Error after writing samples to " + filename, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            log.warn("Result writer for " + filename + " interrupted");
+        }
+    }
+
+    /**
+     * Count as dropped the given samples and those left in the queue,
+     * and release the threads waiting for a flush
+     *
+     * @param entries entries taken from the queue, reused to drain it
+     */
+    private void discard(List<Entry> entries) {
+        queue.drainTo(entries);
+        long count = 0;
+        for (Entry entry : entries) {
+            if (entry.event != null) {
+                count++;
+            } else {
+                entry.flushed.countDown();
+            }
+        }
+        dropped.addAndGet(count);
+    }
+
+    private void flushOutput() {
+        BinarySampleWriter binaryOut = output.getBinaryWriter();
+        if (binaryOut != null) {
+            try {
+                binaryOut.flush();
+            } catch (SampleException e) {
+                log.error("Error flushing samples to " + filename, e);
+            }
+        } else {
+            output.getWriter().flush();
+        }
+    }
+
+    private void write(Entry entry) {
+        BinarySampleWriter binaryOut = output.getBinaryWriter();
+        PrintWriter out = output.getWriter();
+        try {
+            if (binaryOut != null) {
+                binaryOut.write(entry.event); // only written by this thread
+            } else if (entry.config.saveAsXml()) {
+                SampleResult result = entry.event.getResult();
+                // The result can be shared with collectors of other files using another configuration
+                synchronized (result) {
+                    result.setSaveConfig(entry.config);
+                    synchronized (out) { // may also be used by ResultCollector#recordStats
+                        SaveService.saveSampleResult(entry.event, out);
+                    }
+                }
+            } else {
+                synchronized (out) {
+                    csvEncoder.write(entry.event, entry.config, out);
+                }
+            }
+            written.incrementAndGet();
+        } catch (Exception err) {
+            log.error("Error trying to record a sample", err);
+        }
+    }
+
+    /**
+     * @return number of samples written
+     */
+    long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return number of samples dropped because the queue was full or the writer closed
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of samples whose thread had to wait because the queue was full
+     */
+    long getBlocked() {
+        return blocked.get();
+    }
+}
@@ -18,33 +18,41 @@
 
 package org.apache.jmeter.reporters;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import org.apache.avalon.framework.configuration.ConfigurationException;
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.jmeter.engine.util.NoThreadClone;
 import org.apache.jmeter.gui.GuiPackage;
+import org.apache.jmeter.report.core.BinarySampleReader;
+import org.apache.jmeter.report.core.BinarySampleWriter;
+import org.apache.jmeter.report.core.SampleException;
 import org.apache.jmeter.samplers.Clearable;
 import org.apache.jmeter.samplers.Remoteable;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVResultEncoder;
 import org.apache.jmeter.save.CSVSaveService;
 import org.apache.jmeter.save.OldSaveService;
+import org.apache.jmeter.save.ResultFiles;
 import org.apache.jmeter.save.SaveService;
 import org.apache.jmeter.services.FileServer;
 import org.apache.jmeter.testelement.TestElement;
@@ -99,8 +107,49 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
     /** AutoFlush on each line */
     private static final boolean SAVING_AUTOFLUSH = JMeterUtils.getPropDefault("jmeter.save.saveservice.autoflush", false); //$NON-NLS-1$
 
+    /** Write samples from a dedicated thread per file */
+    private static final boolean ASYNC_WRITER = JMeterUtils.getPropDefault("jmeter.save.saveservice.async_writer", false); //$NON-NLS-1$
+
+    /** Maximum number of samples waiting to be written by the dedicated thread */
+    private static final int ASYNC_WRITER_QUEUE_SIZE =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.async_writer.queue_size", 10000); //$NON-NLS-1$
+
+    /** Drop samples rather than waiting when the queue is full */
+    private static final boolean ASYNC_WRITER_DROP_WHEN_FULL =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.async_writer.drop_when_full", false); //$NON-NLS-1$
+
+    /** Write CSV samples in the binary format of BinarySampleWriter */
+    private static final boolean BINARY_OUTPUT = "binary".equals( // $NON-NLS-1$
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.output_format", "csv")); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /** Compress result files with gzip */
+    private static final boolean COMPRESSION = "gzip".equals( // $NON-NLS-1$
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.compression", "none")); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /** Start a new segment of the result file when it reaches this size (bytes written to disk), 0 to disable */
+    private static final long ROLLING_MAX_SIZE =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.rolling.max_size", 0L); //$NON-NLS-1$
+
+    /** Start a new segment of the result file after this duration (seconds), 0 to disable */
+    private static final long ROLLING_MAX_DURATION =
+            JMeterUtils.getPropDefault("jmeter.save.saveservice.rolling.max_duration", 0L); //$NON-NLS-1$
+
+    /** Compressed or rolled files are written by a SegmentedFile from an AsyncResultWriter */
+    private static final boolean SEGMENTED_OUTPUT = COMPRESSION || ROLLING_MAX_SIZE > 0 || ROLLING_MAX_DURATION > 0;
+
+    /** Maximum time (ms) the shutdown hook waits for queued samples to be written */
+    private static final long ASYNC_WRITER_SHUTDOWN_TIMEOUT = 10000L;
+
     // Static variables
 
+    /** CSV encoders of the sampler threads writing synchronously */
+    private static final ThreadLocal<CSVResultEncoder> CSV_ENCODER = new ThreadLocal<CSVResultEncoder>() {
+        @Override
+        protected CSVResultEncoder initialValue() {
+            return new CSVResultEncoder();
+        }
+    };
+
     // Lock used to guard static mutable variables
     private static final Object LOCK = new Object();
 
@@ -119,11 +168,112 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      * them. This means one cannot use the saved PrintWriter or use getSaveConfig()
      */
     private static class FileEntry{
-        final PrintWriter pw;
+        final PrintWriter pw; // null for a binary or segmented file
+        final BinarySampleWriter binaryWriter; // null unless binary file
         final SampleSaveConfiguration config;
-        FileEntry(PrintWriter _pw, SampleSaveConfiguration _config){
+        final AsyncResultWriter asyncWriter; // null unless ASYNC_WRITER or SEGMENTED_OUTPUT
+        final SegmentedFile segmentedFile; // null unless SEGMENTED_OUTPUT
+        FileEntry(PrintWriter _pw, BinarySampleWriter _binaryWriter, SampleSaveConfiguration _config,
+                AsyncResultWriter _asyncWriter, SegmentedFile _segmentedFile){
             pw =_pw;
+            binaryWriter = _binaryWriter;
             config = _config;
+            asyncWriter = _asyncWriter;
+            segmentedFile = _segmentedFile;
+        }
+    }
+
+    /*
+     * Result file written in segments, compressed or not, by the thread of an AsyncResultWriter,
+     * so that neither compression nor the change of segment slows down the sampler threads.
+     * Each segment is a complete file, with its own header, see ResultFiles.
+     */
+    private static final class SegmentedFile implements AsyncResultWriter.Output {
+        private final File file;
+        private final SampleSaveConfiguration config;
+        private final boolean binary;
+        private int index;
+        private long segmentStart;
+        private CountingOutputStream counter;
+        private volatile PrintWriter pw;
+        private volatile BinarySampleWriter binaryWriter;
+
+        SegmentedFile(String filename, SampleSaveConfiguration config, boolean binary) throws IOException {
+            this.file = new File(filename);
+            this.config = config;
+            this.binary = binary;
+            // Results of previous tests are kept, the new ones go to the next segments
+            while (ResultFiles.getSegment(file, index).exists()) {
+                index++;
+            }
+            open();
+        }
+
+        private void open() throws IOException {
+            File segment = ResultFiles.getSegment(file, index);
+            // Counts the bytes as they leave the writer or the compressor, not once they
+            // leave the file buffer, so that the size is known before the file is flushed
+            counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(segment), 65536));
+            OutputStream os;
+            if (COMPRESSION) {
+                // syncFlush so that flushed samples can be read, e.g. after a kill
+                os = new GZIPOutputStream(counter, 65536, true);
+            } else {
+                os = counter;
+            }
+            if (binary) {
+                binaryWriter = new BinarySampleWriter(os, config);
+            } else {
+                PrintWriter writer = new PrintWriter(new OutputStreamWriter(os,
+                        SaveService.getFileEncoding("UTF-8")), false); // $NON-NLS-1$
+                writeFileStart(writer, config);
+                pw = writer;
+            }
+            segmentStart = System.currentTimeMillis();
+            log.info("Writing results to " + segment);
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            return pw;
+        }
+
+        @Override
+        public BinarySampleWriter getBinaryWriter() {
+            return binaryWriter;
+        }
+
+        @Override
+        public void batchWritten() {
+            if ((ROLLING_MAX_SIZE > 0 && counter.getByteCount() >= ROLLING_MAX_SIZE)
+                    || (ROLLING_MAX_DURATION > 0
+                        && System.currentTimeMillis() - segmentStart >= ROLLING_MAX_DURATION * 1000)) {
+                close();
+                index++;
+                try {
+                    open();
+                } catch (IOException e) {
+                    log.error("Error opening segment " + index + " of " + file, e);
+                }
+            }
+        }
+
+        void close() {
+            if (binaryWriter != null) {
+                try {
+                    binaryWriter.close();
+                } catch (SampleException e) {
+                    log.warn("Problem detected during use of " + ResultFiles.getSegment(file, index), e);
+                }
+            } else if (pw != null) {
+                synchronized (pw) { // may also be used by ResultCollector#recordStats
+                    writeFileEnd(pw, config);
+                    pw.close();
+                }
+                if (pw.checkError()) {
+                    log.warn("Problem detected during use of " + ResultFiles.getSegment(file, index));
+                }
+            }
         }
     }
 
@@ -140,6 +290,12 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
     private transient volatile PrintWriter out;
 
+    private transient volatile BinarySampleWriter binaryOut;
+
+    private transient volatile SegmentedFile segmentedFile;
+
+    private transient volatile AsyncResultWriter asyncWriter;
+
     private volatile boolean inTest = false;
 
     private volatile boolean isStats = false;
@@ -358,6 +514,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      *   <li>XStream format</li>
      *   <li>Avalon format</li>
      *   <li>CSV format</li>
+     *   <li>binary format</li>
      * </ul>
      *
      */
@@ -366,63 +523,84 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         if (visualizer == null) {
             return; // No point reading the file if there's no visualiser
         }
-        boolean parsedOK = false;
-        String filename = getFilename();
-        File file = new File(filename);
-        if (file.exists()) {
-            BufferedReader dataReader = null;
-            BufferedInputStream bufferedInputStream = null;
+        List<File> segments = ResultFiles.getSegments(new File(getFilename()));
+        if (segments.isEmpty()) {
+            GuiPackage.showErrorMessage(
+                    "Error loading results file - could not open file",
+                    "Result file loader");
+            return;
+        }
+        // Rolled results are loaded one segment after the other
+        for (File segment : segments) {
+            if (!loadExistingSegment(segment, visualizer)) {
+                GuiPackage.showErrorMessage(
+                        "Error loading results file - see log file",
+                        "Result file loader");
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the file could not be parsed
+     */
+    private boolean loadExistingSegment(File file, Visualizer visualizer) {
+        String filename = file.getPath();
+        if (BinarySampleReader.isBinaryFile(file)) {
             try {
-                dataReader = new BufferedReader(new FileReader(file)); // TODO Charset ?
-                // Get the first line, and see if it is XML
-                String line = dataReader.readLine();
-                dataReader.close();
-                dataReader = null;
-                if (line == null) {
-                    log.warn(filename+" is empty");
-                } else {
-                    if (!line.startsWith("<?xml ")){// No, must be CSV //$NON-NLS-1$
-                        CSVSaveService.processSamples(filename, visualizer, this);
+                CSVSaveService.processBinarySamples(filename, visualizer, this);
+                return true;
+            } catch (RuntimeException | OutOfMemoryError e) {
+                log.warn("Problem reading binary JTL file: "+file, e);
+                return false;
+            }
+        }
+        boolean parsedOK = false;
+        BufferedReader dataReader = null;
+        InputStream inputStream = null;
+        try {
+            // Compressed files are decompressed transparently
+            dataReader = new BufferedReader(new InputStreamReader(ResultFiles.openInputStream(file))); // TODO Charset ?
+            // Get the first line, and see if it is XML
+            String line = dataReader.readLine();
+            dataReader.close();
+            dataReader = null;
+            if (line == null) {
+                log.warn(filename+" is empty");
+            } else {
+                if (!line.startsWith("<?xml ")){// No, must be CSV //$NON-NLS-1$
+                    CSVSaveService.processSamples(filename, visualizer, this);
+                    parsedOK = true;
+                } else { // We are processing XML
+                    try { // Assume XStream
+                        inputStream = ResultFiles.openInputStream(file);
+                        SaveService.loadTestResults(inputStream,
+                                new ResultCollectorHelper(this, visualizer));
                         parsedOK = true;
-                    } else { // We are processing XML
-                        try { // Assume XStream
-                            bufferedInputStream = new BufferedInputStream(new FileInputStream(file));
-                            SaveService.loadTestResults(bufferedInputStream,
-                                    new ResultCollectorHelper(this, visualizer));
+                    } catch (ConversionException e) {
+                        final String message = e.getShortMessage();
+                        if (message.startsWith("sampleResult")) { // probably Avalon format
+                            log.info("Failed to load "+filename+" using XStream. Assuming Avalon format, as message was: "+message);
+                            OldSaveService.processSamples(filename, visualizer, this);
                             parsedOK = true;
-                        } catch (ConversionException e) {
-                            final String message = e.getShortMessage();
-                            if (message.startsWith("sampleResult")) { // probably Avalon format
-                                log.info("Failed to load "+filename+" using XStream. Assuming Avalon format, as message was: "+message);
-                                OldSaveService.processSamples(filename, visualizer, this);
-                                parsedOK = true;
-                            } else {
-                                log.warn("Failed to load "+filename+" using XStream. Error was: "+e);
-                            }
-                        } catch (Exception e) {
+                        } else {
                             log.warn("Failed to load "+filename+" using XStream. Error was: "+e);
                         }
+                    } catch (Exception e) {
+                        log.warn("Failed to load "+filename+" using XStream. Error was: "+e);
                     }
                 }
-            } catch (IOException | JMeterError | RuntimeException | OutOfMemoryError e) {
-                // FIXME Why do we catch OOM ?
-                log.warn("Problem reading JTL file: "+file);
-            } catch (ConfigurationException | SAXException e) { // Avalon only
-                log.warn("Problem reading Avalon JTL file: "+file,e);
-            } finally {
-                JOrphanUtils.closeQuietly(dataReader);
-                JOrphanUtils.closeQuietly(bufferedInputStream);
-                if (!parsedOK) {
-                    GuiPackage.showErrorMessage(
-                                "Error loading results file - see log file",
-                                "Result file loader");
-                }
             }
-        } else {
-            GuiPackage.showErrorMessage(
-                    "Error loading results file - could not open file",
-                    "Result file loader");
+        } catch (IOException | JMeterError | RuntimeException | OutOfMemoryError e) {
+            // FIXME Why do we catch OOM ?
+            log.warn("Problem reading JTL file: "+file);
+        } catch (ConfigurationException | SAXException e) { // Avalon only
+            log.warn("Problem reading Avalon JTL file: "+file,e);
+        } finally {
+            JOrphanUtils.closeQuietly(dataReader);
+            JOrphanUtils.closeQuietly(inputStream);
         }
+        return parsedOK;
     }
 
     private static void writeFileStart(PrintWriter writer, SampleSaveConfiguration saveConfig) {
@@ -454,7 +632,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         }
     }
 
-    private static PrintWriter getFileWriter(String filename, SampleSaveConfiguration saveConfig)
+    private static FileEntry getFileEntry(String filename, SampleSaveConfiguration saveConfig)
             throws IOException {
         if (filename == null || filename.length() == 0) {
             return null;
@@ -465,11 +643,7 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         boolean trimmed = true;
 
         if (fe == null) {
-            if (saveConfig.saveAsXml()) {
-                trimmed = trimLastLine(filename);
-            } else {
-                trimmed = new File(filename).exists();
-            }
+            boolean binary = BINARY_OUTPUT && !saveConfig.saveAsXml();
             // Find the name of the directory containing the file
             // and create it - if there is one
             File pdir = new File(filename).getParentFile();
@@ -482,17 +656,45 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
                     log.warn("Error creating directories for "+pdir.toString());
                 }
             }
-            writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(filename,
-                    trimmed)), SaveService.getFileEncoding("UTF-8")), SAVING_AUTOFLUSH); // $NON-NLS-1$
+            if (SEGMENTED_OUTPUT) {
+                SegmentedFile segmentedFile = new SegmentedFile(filename, saveConfig, binary);
+                AsyncResultWriter asyncWriter = new AsyncResultWriter(filename, segmentedFile,
+                        ASYNC_WRITER_QUEUE_SIZE, ASYNC_WRITER_DROP_WHEN_FULL, SAVING_AUTOFLUSH);
+                fe = new FileEntry(null, null, saveConfig, asyncWriter, segmentedFile);
+                files.put(filename, fe);
+                return fe;
+            }
+            if (saveConfig.saveAsXml()) {
+                trimmed = trimLastLine(filename);
+            } else {
+                trimmed = new File(filename).exists();
+            }
+            BinarySampleWriter binaryWriter = null;
+            if (binary) {
+                // Samples appended to an existing file are written in a new segment
+                binaryWriter = new BinarySampleWriter(new FileOutputStream(filename, trimmed), saveConfig);
+            } else {
+                writer = new PrintWriter(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(filename,
+                        trimmed)), SaveService.getFileEncoding("UTF-8")), SAVING_AUTOFLUSH); // $NON-NLS-1$
+            }
             log.debug("Opened file: "+filename);
-            files.put(filename, new FileEntry(writer, saveConfig));
-        } else {
-            writer = fe.pw;
-        }
-        if (!trimmed) {
-            writeFileStart(writer, saveConfig);
+            if (!trimmed && writer != null) {
+                writeFileStart(writer, saveConfig);
+            }
+            AsyncResultWriter asyncWriter = null;
+            if (ASYNC_WRITER) {
+                if (binary) {
+                    asyncWriter = new AsyncResultWriter(filename, binaryWriter, ASYNC_WRITER_QUEUE_SIZE,
+                            ASYNC_WRITER_DROP_WHEN_FULL, SAVING_AUTOFLUSH);
+                } else {
+                    asyncWriter = new AsyncResultWriter(filename, writer, ASYNC_WRITER_QUEUE_SIZE,
+                            ASYNC_WRITER_DROP_WHEN_FULL, SAVING_AUTOFLUSH);
+                }
+            }
+            fe = new FileEntry(writer, binaryWriter, saveConfig, asyncWriter, null);
+            files.put(filename, fe);
         }
-        return writer;
+        return fe;
     }
 
     // returns false if the file did not contain the terminator
@@ -562,18 +764,35 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
 
         if (isSampleWanted(result.isSuccessful())) {
             sendToVisualizer(result);
-            if (out != null && !isResultMarked(result) && !this.isStats) {
+            if ((out != null || binaryOut != null || asyncWriter != null) && !isResultMarked(result) && !this.isStats) {
                 SampleSaveConfiguration config = getSaveConfig();
                 result.setSaveConfig(config);
-                try {
-                    if (config.saveAsXml()) {
-                        SaveService.saveSampleResult(event, out);
-                    } else { // !saveAsXml
-                        String savee = CSVSaveService.resultToDelimitedString(event);
-                        out.println(savee);
+                if (asyncWriter != null) {
+                    asyncWriter.add(event, config); // formatted and written by the writer thread
+                } else if (binaryOut != null) {
+                    try {
+                        synchronized (binaryOut) {
+                            binaryOut.write(event);
+                            if (SAVING_AUTOFLUSH) {
+                                binaryOut.flush();
+                            }
+                        }
+                    } catch (Exception err) {
+                        log.error("Error trying to record a sample", err); // should throw exception back to caller
+                    }
+                } else {
+                    try {
+                        if (config.saveAsXml()) {
+                            SaveService.saveSampleResult(event, out);
+                        } else { // !saveAsXml
+                            CSV_ENCODER.get().write(event, config, out); // whole line in one call
+                            if (SAVING_AUTOFLUSH) {
+                                out.flush();
+                            }
+                        }
+                    } catch (Exception err) {
+                        log.error("Error trying to record a sample", err); // should throw exception back to caller
                     }
-                } catch (Exception err) {
-                    log.error("Error trying to record a sample", err); // should throw exception back to caller
                 }
             }
         }
@@ -597,8 +816,11 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      */
     // Used by: MonitorHealthVisualizer.add(SampleResult res)
     public void recordStats(TestElement e) throws IOException {
-        if (out != null) {
-            SaveService.saveTestElement(e, out);
+        PrintWriter writer = segmentedFile != null ? segmentedFile.getWriter() : out;
+        if (writer != null) {
+            synchronized (writer) { // also used by the AsyncResultWriter
+                SaveService.saveTestElement(e, writer);
+            }
         }
     }
 
@@ -618,9 +840,16 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         if (filename != null) {
             if (out == null) {
                 try {
-                    out = getFileWriter(filename, getSaveConfig());
+                    FileEntry fe = getFileEntry(filename, getSaveConfig());
+                    if (fe != null) {
+                        asyncWriter = fe.asyncWriter;
+                        segmentedFile = fe.segmentedFile;
+                        binaryOut = fe.binaryWriter;
+                        out = fe.pw;
+                    }
                 } catch (FileNotFoundException e) {
                     out = null;
+                    binaryOut = null;
                 }
             }
         }
@@ -630,9 +859,17 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
      * Flush PrintWriter to synchronize file contents
      */
     public void flushFile() {
-        if (out != null) {
+        if (out != null || binaryOut != null || asyncWriter != null) {
             log.info("forced flush through ResultCollecto#flushFile");
-            out.flush();
+            if (asyncWriter != null) {
+                asyncWriter.flush(Long.MAX_VALUE); // also flushes the file
+            } else if (binaryOut != null) {
+                synchronized (binaryOut) {
+                    binaryOut.flush();
+                }
+            } else {
+                out.flush();
+            }
         }
     }
 
@@ -643,9 +880,25 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         for(Map.Entry<String,ResultCollector.FileEntry> me : files.entrySet()){
             log.debug("Flushing: "+me.getKey());
             FileEntry fe = me.getValue();
-            fe.pw.flush();
-            if (fe.pw.checkError()){
-                log.warn("Problem detected during use of "+me.getKey());
+            if (fe.asyncWriter != null) {
+                fe.asyncWriter.flush(ASYNC_WRITER_SHUTDOWN_TIMEOUT);
+            }
+            if (fe.segmentedFile != null) {
+                continue; // flushed by its writer
+            }
+            if (fe.binaryWriter != null) {
+                try {
+                    synchronized (fe.binaryWriter) {
+                        fe.binaryWriter.flush();
+                    }
+                } catch (SampleException e) {
+                    log.warn("Problem detected during use of "+me.getKey(), e);
+                }
+            } else {
+                fe.pw.flush();
+                if (fe.pw.checkError()){
+                    log.warn("Problem detected during use of "+me.getKey());
+                }
             }
         }
     }
@@ -654,10 +907,25 @@ public class ResultCollector extends AbstractListenerElement implements SampleLi
         for(Map.Entry<String,ResultCollector.FileEntry> me : files.entrySet()){
             log.debug("Closing: "+me.getKey());
             FileEntry fe = me.getValue();
-            writeFileEnd(fe.pw, fe.config);
-            fe.pw.close();
-            if (fe.pw.checkError()){
-                log.warn("Problem detected during use of "+me.getKey());
+            if (fe.asyncWriter != null) {
+                fe.asyncWriter.close();
+            }
+            if (fe.segmentedFile != null) {
+                fe.segmentedFile.close();
+            } else if (fe.binaryWriter != null) {
+                try {
+                    synchronized (fe.binaryWriter) {
+                        fe.binaryWriter.close();
+                    }
+                } catch (SampleException e) {
+                    log.warn("Problem detected during use of "+me.getKey(), e);
+                }
+            } else {
+                writeFileEnd(fe.pw, fe.config);
+                fe.pw.close();
+                if (fe.pw.checkError()){
+                    log.warn("Problem detected during use of "+me.getKey());
+                }
             }
         }
         files.clear();
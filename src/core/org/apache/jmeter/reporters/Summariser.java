@@ -86,6 +86,13 @@ public class Summariser extends AbstractTestElement
      */
     private static final int INTERVAL_WINDOW = 5; // in seconds
 
+    /*
+     * Number of accumulators samples are spread over by thread, so that
+     * sampler threads seldom wait for each other. Power of 2.
+     */
+    private static final int STRIPE_COUNT =
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+
     /**
      * Lock used to protect ACCUMULATORS update + INSTANCE_COUNT update
      */
@@ -104,9 +111,8 @@ public class Summariser extends AbstractTestElement
      * Cached copy of Totals for this instance.
      * The variables do not need to be synchronised,
      * as they are not shared between threads
-     * However the contents do need to be synchronized.
+     * However the contents do need to be synchronized, see Totals.
      */
-    //@GuardedBy("myTotals")
     private transient Totals myTotals = null;
 
     // Name of the accumulator. Set up by testStarted().
@@ -140,19 +146,60 @@ public class Summariser extends AbstractTestElement
     /*
      * Contains the items needed to collect stats for a summariser
      *
+     * Samples are added to the stripe of their thread, synchronized on the
+     * stripe. The stripes are only collected into the delta when reporting,
+     * the delta and total being synchronized on the Totals.
      */
     private static class Totals {
 
         /** Time of last summary (to prevent double reporting) */
-        private long last = 0;
+        //@GuardedBy("this") for updates
+        private volatile long last = 0;
 
+        private final SummariserRunningSample[] stripes = new SummariserRunningSample[STRIPE_COUNT];
+
+        //@GuardedBy("this")
         private final SummariserRunningSample delta = new SummariserRunningSample("DELTA");
 
+        //@GuardedBy("this")
         private final SummariserRunningSample total = new SummariserRunningSample("TOTAL");
 
+        private Totals() {
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new SummariserRunningSample("STRIPE");
+            }
+        }
+
+        /**
+         * Add a sample to the stripe of the current thread
+         */
+        private void addSample(SampleResult res) {
+            SummariserRunningSample stripe =
+                    stripes[(int) Thread.currentThread().getId() & (STRIPE_COUNT - 1)];
+            synchronized (stripe) {
+                stripe.addSample(res);
+            }
+        }
+
+        /**
+         * Add the stripe values to the delta values and clear the stripes
+         */
+        //@GuardedBy("this")
+        private void collectStripes() {
+            for (SummariserRunningSample stripe : stripes) {
+                synchronized (stripe) {
+                    if (stripe.getNumSamples() > 0) {
+                        delta.addSample(stripe);
+                        stripe.clear();
+                    }
+                }
+            }
+        }
+
         /**
          * Add the delta values to the total values and clear the delta
          */
+        //@GuardedBy("this")
         private void moveDelta() {
             total.addSample(delta);
             delta.clear();
@@ -167,33 +214,45 @@ public class Summariser extends AbstractTestElement
      */
     @Override
     public void sampleOccurred(SampleEvent e) {
-        SampleResult s = e.getResult();
+        sampleOccurred(e, System.currentTimeMillis() / 1000);
+    }
 
-        long now = System.currentTimeMillis() / 1000;// in seconds
+    /**
+     * Accumulates the sample and reports if the reporting boundary is reached
+     *
+     * @param e the sample event
+     * @param now the current time in seconds
+     */
+    void sampleOccurred(SampleEvent e, long now) {
+        SampleResult s = e.getResult();
 
         SummariserRunningSample myDelta = null;
         SummariserRunningSample myTotal = null;
         boolean reportNow = false;
 
+        if (s != null) {
+            myTotals.addSample(s);
+        }
+
         /*
          * Have we reached the reporting boundary?
          * Need to allow for a margin of error, otherwise can miss the slot.
          * Also need to check we've not hit the window already
          */
-        synchronized (myTotals) {
-            if (s != null) {
-                myTotals.delta.addSample(s);
-            }
-
-            if ((now > myTotals.last + INTERVAL_WINDOW) && (now % INTERVAL <= INTERVAL_WINDOW)) {
-                reportNow = true;
-
-                // copy the data to minimise the synch time
-                myDelta = new SummariserRunningSample(myTotals.delta);
-                myTotals.moveDelta();
-                myTotal = new SummariserRunningSample(myTotals.total);
-
-                myTotals.last = now; // stop double-reporting
+        if ((now > myTotals.last + INTERVAL_WINDOW) && (now % INTERVAL <= INTERVAL_WINDOW)) {
+            synchronized (myTotals) {
+                // Check again, another thread may have just reported
+                if (now > myTotals.last + INTERVAL_WINDOW) {
+                    reportNow = true;
+
+                    // copy the data to minimise the synch time
+                    myTotals.collectStripes();
+                    myDelta = new SummariserRunningSample(myTotals.delta);
+                    myTotals.moveDelta();
+                    myTotal = new SummariserRunningSample(myTotals.total);
+
+                    myTotals.last = now; // stop double-reporting
+                }
             }
         }
         if (reportNow) {
@@ -219,6 +278,15 @@ public class Summariser extends AbstractTestElement
         }
     }
 
+    /**
+     * @return a copy of the samples reported in the totals so far
+     */
+    SummariserRunningSample getReportedTotal() {
+        synchronized (myTotals) {
+            return new SummariserRunningSample(myTotals.total);
+        }
+    }
+
     private static StringBuilder longToSb(StringBuilder sb, long l, int len) {
         sb.setLength(0);
         sb.append(l);
@@ -363,6 +431,9 @@ public class Summariser extends AbstractTestElement
             String str;
             String name = entry.getKey();
             Totals total = entry.getValue();
+            synchronized (total) {
+                total.collectStripes();
+            }
             total.delta.setEndTime(); // ensure delta has correct end time
             // Only print final delta if there were some samples in the delta
             // and there has been at least one sample reported previously
@@ -21,10 +21,16 @@ package org.apache.jmeter.samplers;
 import org.apache.jmeter.config.ConfigTestElement;
 import org.apache.jmeter.engine.util.ConfigMergabilityIndicator;
 import org.apache.jmeter.testelement.AbstractTestElement;
+import org.apache.jmeter.threads.SamplePackage;
+import org.apache.jmeter.threads.SamplePackageHolder;
 
-public abstract class AbstractSampler extends AbstractTestElement implements Sampler, ConfigMergabilityIndicator {
+public abstract class AbstractSampler extends AbstractTestElement implements Sampler, ConfigMergabilityIndicator,
+        SamplePackageHolder {
     private static final long serialVersionUID = 240L;
 
+    // Read by other threads if the sampler is shared
+    private transient volatile SamplePackage samplePackage;
+
     /**
      * {@inheritDoc}
      */
@@ -32,4 +38,20 @@ public abstract class AbstractSampler extends AbstractTestElement implements Sam
     public boolean applies(ConfigTestElement configElement) {
         return true;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void saveSamplePackage(SamplePackage pack) {
+        samplePackage = pack;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SamplePackage getSavedSamplePackage() {
+        return samplePackage;
+    }
 }
@@ -214,12 +214,18 @@ public class SampleResult implements Serializable, Cloneable {
     
     private int bodySize = 0;
 
+    /** Does responseData only hold the start of the response (or nothing)? */
+    private boolean responseDataTruncated = false;
+
     /** Currently active threads in this thread group */
     private volatile int groupThreads = 0;
 
     /** Currently active threads in all thread groups */
     private volatile int allThreads = 0;
 
+    /** How late (in ms) the iteration of this sample started compared to its scheduled start */
+    private long scheduleDelay = 0;
+
     // TODO do contentType and/or dataEncoding belong in HTTPSampleResult instead?
 
     private static final boolean startTimeStamp
@@ -309,6 +315,7 @@ public class SampleResult implements Serializable, Cloneable {
         endTime = res.endTime;//OK
         // files is created automatically, and applies per instance
         groupThreads = res.groupThreads;//OK
+        scheduleDelay = res.scheduleDelay;
         idleTime = res.idleTime;
         isMonitor = res.isMonitor;
         label = res.label;//OK
@@ -320,6 +327,7 @@ public class SampleResult implements Serializable, Cloneable {
         requestHeaders = res.requestHeaders;//OK
         responseCode = res.responseCode;//OK
         responseData = res.responseData;//OK
+        responseDataTruncated = res.responseDataTruncated;
         responseDataAsString = null;
         responseHeaders = res.responseHeaders;//OK
         responseMessage = res.responseMessage;//OK
@@ -1325,6 +1333,27 @@ public class SampleResult implements Serializable, Cloneable {
         this.allThreads = n;
     }
 
+    /**
+     * Get how late the iteration that produced this sample started.
+     * Only Thread Groups that schedule their iterations, such as the
+     * {@link org.apache.jmeter.threads.ArrivalRateThreadGroup ArrivalRateThreadGroup}, set it.
+     *
+     * @return delay in milliseconds between the scheduled and the actual start
+     *         of the iteration, 0 if the iteration was not scheduled
+     */
+    public long getScheduleDelay() {
+        return scheduleDelay;
+    }
+
+    /**
+     * @param scheduleDelay
+     *            delay in milliseconds between the scheduled and the actual
+     *            start of the iteration that produced this sample
+     */
+    public void setScheduleDelay(long scheduleDelay) {
+        this.scheduleDelay = scheduleDelay;
+    }
+
     // Bug 47394
     /**
      * Allow custom SampleSenders to drop unwanted assertionResults
@@ -1373,6 +1402,21 @@ public class SampleResult implements Serializable, Cloneable {
         this.bodySize = bodySize;
     }
 
+    /**
+     * @return true if the response data only holds the start of the response,
+     *         in which case {@link #getBodySize()} gives the size of the whole body
+     */
+    public boolean isResponseDataTruncated() {
+        return responseDataTruncated;
+    }
+
+    /**
+     * @param responseDataTruncated true if the response data only holds the start of the response
+     */
+    public void setResponseDataTruncated(boolean responseDataTruncated) {
+        this.responseDataTruncated = responseDataTruncated;
+    }
+
     private static class NanoOffset extends Thread {
 
         private static volatile long nanoOffset; 
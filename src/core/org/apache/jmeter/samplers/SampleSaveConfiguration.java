@@ -78,6 +78,9 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
     /** Indicates that the results file should be in CSV format. * */
     private static final String CSV = "csv"; // $NON_NLS-1$
 
+    /** Indicates that the results file should be in the binary format of BinarySampleWriter, same fields as CSV. * */
+    private static final String BINARY = "binary"; // $NON_NLS-1$
+
     /** Indicates that the results should be stored in a database. * */
     //NOTUSED private static final String DATABASE = "db"; // $NON_NLS-1$
 
@@ -390,7 +393,7 @@ public class SampleSaveConfiguration implements Cloneable, Serializable {
         if (XML.equals(howToSave)) {
             _xml = true;
         } else {
-            if (!CSV.equals(howToSave)) {
+            if (!CSV.equals(howToSave) && !BINARY.equals(howToSave)) {
                 log.warn(OUTPUT_FORMAT_PROP + " has unexepected value: '" + howToSave + "' - assuming 'csv' format");
             }
             _xml = false;
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.save;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.commons.lang3.CharUtils;
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+
+/**
+ * Writes sample results as CSV lines, with the same output as
+ * {@link CSVSaveService#resultToDelimitedString(SampleEvent)} followed by a line separator.
+ * <p>
+ * Fields are written into a reusable buffer which is passed to the writer in a single call,
+ * so that no intermediate strings are created for the line, the numbers or the quoted fields.
+ * The columns are computed once per {@link SampleSaveConfiguration}, which must not be
+ * modified while it is used by an encoder.
+ * <p>
+ * Instances are not thread-safe: use one per writer thread.
+ */
+public final class CSVResultEncoder {
+
+    private static final String LINE_SEP = System.getProperty("line.separator"); // $NON-NLS-1$
+
+    // Columns, in the order of CSVSaveService#resultToDelimitedString
+    private static final int TIMESTAMP = 0;
+    private static final int TIME = 1;
+    private static final int LABEL = 2;
+    private static final int CODE = 3;
+    private static final int MESSAGE = 4;
+    private static final int THREAD_NAME = 5;
+    private static final int DATA_TYPE = 6;
+    private static final int SUCCESS = 7;
+    private static final int FAILURE_MESSAGE = 8;
+    private static final int BYTES = 9;
+    private static final int GROUP_THREADS = 10;
+    private static final int ALL_THREADS = 11;
+    private static final int URL = 12;
+    private static final int FILE_NAME = 13;
+    private static final int LATENCY = 14;
+    private static final int ENCODING = 15;
+    private static final int SAMPLE_COUNT = 16;
+    private static final int ERROR_COUNT = 17;
+    private static final int HOSTNAME = 18;
+    private static final int IDLE_TIME = 19;
+    private static final int CONNECT_TIME = 20;
+    private static final int MAX_COLUMNS = 21;
+
+    private static final char QUOTE = CSVSaveService.QUOTING_CHAR;
+
+    private char[] buffer = new char[256];
+
+    private int length;
+
+    private char delimiter;
+
+    // Columns of the current configuration
+    private SampleSaveConfiguration config;
+
+    private int[] columns;
+
+    private int columnCount;
+
+    // Time stamp formatting, when not in milliseconds
+    private DateFormat formatter;
+
+    private final Date date = new Date(0L);
+
+    private long lastTimeStamp;
+
+    private String lastFormattedTimeStamp;
+
+    /**
+     * Write the sample as a CSV line, including the line separator.
+     *
+     * @param event the sample event to write
+     * @param saveConfig the configuration of the fields to write
+     * @param out the writer, which receives the whole line in one call
+     * @throws IOException if writing fails
+     */
+    public void write(SampleEvent event, SampleSaveConfiguration saveConfig, Writer out) throws IOException {
+        encode(event, saveConfig);
+        out.write(buffer, 0, length);
+    }
+
+    private void encode(SampleEvent event, SampleSaveConfiguration saveConfig) {
+        if (saveConfig != config) {
+            configure(saveConfig);
+        }
+        length = 0;
+        SampleResult sample = event.getResult();
+        for (int i = 0; i < columnCount; i++) {
+            if (i > 0) {
+                appendChar(delimiter);
+            }
+            switch (columns[i]) {
+                case TIMESTAMP:
+                    if (formatter == null) {
+                        appendLong(sample.getTimeStamp());
+                    } else {
+                        appendQuoted(formatTimeStamp(sample.getTimeStamp()));
+                    }
+                    break;
+                case TIME:
+                    appendLong(sample.getTime());
+                    break;
+                case LABEL:
+                    appendQuoted(sample.getSampleLabel());
+                    break;
+                case CODE:
+                    appendQuoted(sample.getResponseCode());
+                    break;
+                case MESSAGE:
+                    appendQuoted(sample.getResponseMessage());
+                    break;
+                case THREAD_NAME:
+                    appendQuoted(sample.getThreadName());
+                    break;
+                case DATA_TYPE:
+                    appendQuoted(sample.getDataType());
+                    break;
+                case SUCCESS:
+                    appendPlain(sample.isSuccessful() ? "true" : "false"); // $NON-NLS-1$ $NON-NLS-2$
+                    break;
+                case FAILURE_MESSAGE:
+                    appendQuoted(getFailureMessage(sample));
+                    break;
+                case BYTES:
+                    appendLong(sample.getBytes());
+                    break;
+                case GROUP_THREADS:
+                    appendLong(sample.getGroupThreads());
+                    break;
+                case ALL_THREADS:
+                    appendLong(sample.getAllThreads());
+                    break;
+                case URL:
+                    appendQuoted(String.valueOf(sample.getURL()));
+                    break;
+                case FILE_NAME:
+                    appendQuoted(sample.getResultFileName());
+                    break;
+                case LATENCY:
+                    appendLong(sample.getLatency());
+                    break;
+                case ENCODING:
+                    appendQuoted(sample.getDataEncodingWithDefault());
+                    break;
+                case SAMPLE_COUNT:
+                    appendLong(sample.getSampleCount());
+                    break;
+                case ERROR_COUNT:
+                    appendLong(sample.getErrorCount());
+                    break;
+                case HOSTNAME:
+                    appendQuoted(event.getHostname());
+                    break;
+                case IDLE_TIME:
+                    appendLong(sample.getIdleTime());
+                    break;
+                case CONNECT_TIME:
+                    appendLong(sample.getConnectTime());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown column " + columns[i]);
+            }
+        }
+        for (int i = 0; i < SampleEvent.getVarCount(); i++) {
+            if (columnCount > 0 || i > 0) {
+                appendChar(delimiter);
+            }
+            appendQuoted(event.getVarValue(i));
+        }
+        appendPlain(LINE_SEP);
+    }
+
+    private void configure(SampleSaveConfiguration saveConfig) {
+        int[] cols = new int[MAX_COLUMNS];
+        int count = 0;
+        formatter = null;
+        lastFormattedTimeStamp = null;
+        if (saveConfig.saveTimestamp()) {
+            if (saveConfig.printMilliseconds()) {
+                cols[count++] = TIMESTAMP;
+            } else if (saveConfig.formatter() != null) {
+                // The configuration formatter may be shared, and DateFormat is not thread-safe
+                formatter = (DateFormat) saveConfig.formatter().clone();
+                cols[count++] = TIMESTAMP;
+            }
+        }
+        if (saveConfig.saveTime()) {
+            cols[count++] = TIME;
+        }
+        if (saveConfig.saveLabel()) {
+            cols[count++] = LABEL;
+        }
+        if (saveConfig.saveCode()) {
+            cols[count++] = CODE;
+        }
+        if (saveConfig.saveMessage()) {
+            cols[count++] = MESSAGE;
+        }
+        if (saveConfig.saveThreadName()) {
+            cols[count++] = THREAD_NAME;
+        }
+        if (saveConfig.saveDataType()) {
+            cols[count++] = DATA_TYPE;
+        }
+        if (saveConfig.saveSuccess()) {
+            cols[count++] = SUCCESS;
+        }
+        if (saveConfig.saveAssertionResultsFailureMessage()) {
+            cols[count++] = FAILURE_MESSAGE;
+        }
+        if (saveConfig.saveBytes()) {
+            cols[count++] = BYTES;
+        }
+        if (saveConfig.saveThreadCounts()) {
+            cols[count++] = GROUP_THREADS;
+            cols[count++] = ALL_THREADS;
+        }
+        if (saveConfig.saveUrl()) {
+            cols[count++] = URL;
+        }
+        if (saveConfig.saveFileName()) {
+            cols[count++] = FILE_NAME;
+        }
+        if (saveConfig.saveLatency()) {
+            cols[count++] = LATENCY;
+        }
+        if (saveConfig.saveEncoding()) {
+            cols[count++] = ENCODING;
+        }
+        if (saveConfig.saveSampleCount()) {
+            cols[count++] = SAMPLE_COUNT;
+            cols[count++] = ERROR_COUNT;
+        }
+        if (saveConfig.saveHostname()) {
+            cols[count++] = HOSTNAME;
+        }
+        if (saveConfig.saveIdleTime()) {
+            cols[count++] = IDLE_TIME;
+        }
+        if (saveConfig.saveConnectTime()) {
+            cols[count++] = CONNECT_TIME;
+        }
+        columns = cols;
+        columnCount = count;
+        delimiter = saveConfig.getDelimiter().charAt(0);
+        config = saveConfig;
+    }
+
+    private String formatTimeStamp(long timeStamp) {
+        // Many samples end in the same millisecond under load
+        if (lastFormattedTimeStamp == null || timeStamp != lastTimeStamp) {
+            date.setTime(timeStamp);
+            lastFormattedTimeStamp = formatter.format(date);
+            lastTimeStamp = timeStamp;
+        }
+        return lastFormattedTimeStamp;
+    }
+
+    // Same as CSVSaveService#resultToDelimitedString: first non-null message, or empty
+    private static String getFailureMessage(SampleResult sample) {
+        AssertionResult[] results = sample.getAssertionResults();
+        if (results != null) {
+            for (AssertionResult result : results) {
+                String message = result.getFailureMessage();
+                if (message != null) {
+                    return message;
+                }
+            }
+        }
+        return ""; // $NON-NLS-1$
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    private void appendChar(char c) {
+        ensureCapacity(1);
+        buffer[length++] = c;
+    }
+
+    private void appendPlain(String s) {
+        int len = s.length();
+        ensureCapacity(len);
+        s.getChars(0, len, buffer, length);
+        length += len;
+    }
+
+    // Same as CSVSaveService#quoteDelimiters, null is written as "null"
+    private void appendQuoted(String s) {
+        if (s == null) {
+            appendPlain("null"); // $NON-NLS-1$
+            return;
+        }
+        int len = s.length();
+        boolean quote = false;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c == delimiter || c == QUOTE || c == CharUtils.CR || c == CharUtils.LF) {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            appendPlain(s);
+            return;
+        }
+        ensureCapacity(2 * len + 2);
+        buffer[length++] = QUOTE;
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c == QUOTE) {
+                buffer[length++] = QUOTE; // double the quote char
+            }
+            buffer[length++] = c;
+        }
+        buffer[length++] = QUOTE;
+    }
+
+    private void appendLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            appendPlain(Long.toString(value));
+            return;
+        }
+        ensureCapacity(20);
+        long v = value;
+        if (v < 0) {
+            buffer[length++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long p = 10; digits < 19 && v >= p; p *= 10) {
+            digits++;
+        }
+        int pos = length + digits;
+        length = pos;
+        do {
+            buffer[--pos] = (char) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+    }
+}
@@ -20,7 +20,7 @@ package org.apache.jmeter.save;
 
 import java.io.BufferedReader;
 import java.io.CharArrayWriter;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
@@ -38,6 +38,9 @@ import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.assertions.AssertionResult;
 import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.report.core.BinarySampleReader;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleMetadata;
 import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.samplers.SampleSaveConfiguration;
@@ -138,7 +141,7 @@ public final class CSVSaveService {
         final boolean successOnly = resultCollector.isSuccessOnlyLogging();
         try {
             dataReader = new BufferedReader(new InputStreamReader(
-                    new FileInputStream(filename), SaveService.getFileEncoding("UTF-8"))); 
+                    ResultFiles.openInputStream(new File(filename)), SaveService.getFileEncoding("UTF-8"))); 
             dataReader.mark(400);// Enough to read the header column names
             // Get the first line, and see if it is the header
             String line = dataReader.readLine();
@@ -178,6 +181,53 @@ public final class CSVSaveService {
         }
     }
 
+    /**
+     * Read Samples from a file written in the binary format of
+     * {@link org.apache.jmeter.report.core.BinarySampleWriter}.
+     * 
+     * @param filename
+     *            input file
+     * @param visualizer
+     *            where to send the results
+     * @param resultCollector
+     *            the parent collector
+     */
+    public static void processBinarySamples(String filename, Visualizer visualizer,
+            ResultCollector resultCollector) {
+        final boolean errorsOnly = resultCollector.isErrorLogging();
+        final boolean successOnly = resultCollector.isSuccessOnlyLogging();
+        BinarySampleReader reader = null;
+        try {
+            reader = new BinarySampleReader(new File(filename));
+            SampleMetadata metadata = reader.getMetadata();
+            // The columns are the ones of the CSV header
+            SampleSaveConfiguration saveConfig = CSVSaveService
+                    .getSampleSaveConfiguration(metadata.toString(), filename);
+            if (saveConfig == null) {
+                throw new JMeterError(filename + ": unexpected columns " + metadata);
+            }
+            String[] parts = new String[metadata.getColumnCount()];
+            long lineNumber = 1;
+            Sample sample;
+            while ((sample = reader.readSample()) != null) {
+                lineNumber++;
+                for (int i = 0; i < parts.length; i++) {
+                    parts[i] = sample.getData(i);
+                }
+                SampleEvent event = CSVSaveService.makeResultFromDelimitedString(parts, saveConfig, lineNumber);
+                if (event != null) {
+                    final SampleResult result = event.getResult();
+                    if (ResultCollector.isSampleWanted(result.isSuccessful(),
+                            errorsOnly, successOnly)) {
+                        visualizer.add(result);
+                    }
+                }
+            }
+        } finally {
+            JOrphanUtils.closeQuietly(reader);
+        }
+    }
+
     /**
      * Make a SampleResult given a set of tokens
      * 
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.save;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Helpers to read result files which may be compressed and split in segments.
+ * <p>
+ * When results are written with rolling, the first segment has the name of the
+ * result file and the next ones have an index inserted before the extension:
+ * <code>results.jtl</code>, <code>results.1.jtl</code>, <code>results.2.jtl</code>...
+ * <p>
+ * Compressed segments are gzip files whose name is not changed; they are
+ * recognised by their content.
+ */
+public final class ResultFiles {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final int BUF_SIZE = 65536;
+
+    private ResultFiles() {
+    }
+
+    /**
+     * @param file the result file, which is also its first segment
+     * @param index index of the segment, starting at 0
+     * @return the file of the segment
+     */
+    public static File getSegment(File file, int index) {
+        if (index == 0) {
+            return file;
+        }
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String segmentName;
+        if (dot <= 0) {
+            segmentName = name + "." + index; // $NON-NLS-1$
+        } else {
+            segmentName = name.substring(0, dot) + "." + index + name.substring(dot); // $NON-NLS-1$
+        }
+        return new File(file.getParentFile(), segmentName);
+    }
+
+    /**
+     * @param file the result file
+     * @return the existing segments of the file, in the order they were written
+     */
+    public static List<File> getSegments(File file) {
+        List<File> segments = new ArrayList<>();
+        if (file.isFile()) {
+            segments.add(file);
+        }
+        for (int i = 1; getSegment(file, i).isFile(); i++) {
+            segments.add(getSegment(file, i));
+        }
+        return segments;
+    }
+
+    /**
+     * @param file a file
+     * @return true if the file is gzip compressed
+     */
+    public static boolean isCompressed(File file) {
+        try (InputStream in = new FileInputStream(file)) {
+            return in.read() == (GZIPInputStream.GZIP_MAGIC & 0xFF)
+                    && in.read() == (GZIPInputStream.GZIP_MAGIC >> 8);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Open a result file for reading, decompressing it if needed.
+     * A compressed file whose end is missing, because the JVM writing it was killed,
+     * is read up to the last data which was flushed.
+     *
+     * @param file the file to read
+     * @return a buffered stream of the (decompressed) content of the file
+     * @throws IOException when the file cannot be opened
+     */
+    public static InputStream openInputStream(File file) throws IOException {
+        if (isCompressed(file)) {
+            return new BufferedInputStream(new TruncatedGZIPInputStream(file), BUF_SIZE);
+        }
+        return new BufferedInputStream(new FileInputStream(file), BUF_SIZE);
+    }
+
+    private static final class TruncatedGZIPInputStream extends GZIPInputStream {
+
+        private final File file;
+
+        private boolean truncated;
+
+        TruncatedGZIPInputStream(File file) throws IOException {
+            super(new FileInputStream(file), BUF_SIZE);
+            this.file = file;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            if (truncated) {
+                return -1;
+            }
+            try {
+                return super.read(buf, off, len);
+            } catch (EOFException e) {
+                truncated = true;
+                log.warn("Unexpected end of compressed file " + file + ", it was probably not closed");
+                return -1;
+            }
+        }
+    }
+}
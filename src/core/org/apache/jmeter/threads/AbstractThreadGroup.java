@@ -76,6 +76,10 @@ public abstract class AbstractThreadGroup extends AbstractTestElement
 
     private final AtomicInteger numberOfThreads = new AtomicInteger(0); // Number of active threads in this group
 
+    private final AtomicInteger numberOfThreadsStarted = new AtomicInteger(0); // Number of threads started in this group
+
+    private final AtomicInteger numberOfThreadsFinished = new AtomicInteger(0); // Number of threads finished in this group
+
     /** {@inheritDoc} */
     @Override
     public boolean isDone() {
@@ -183,6 +187,7 @@ public abstract class AbstractThreadGroup extends AbstractTestElement
      */
     void incrNumberOfThreads() {
         numberOfThreads.incrementAndGet();
+        numberOfThreadsStarted.incrementAndGet();
     }
 
     /**
@@ -190,6 +195,7 @@ public abstract class AbstractThreadGroup extends AbstractTestElement
      */
     void decrNumberOfThreads() {
         numberOfThreads.decrementAndGet();
+        numberOfThreadsFinished.incrementAndGet();
     }
 
     /**
@@ -200,6 +206,17 @@ public abstract class AbstractThreadGroup extends AbstractTestElement
     public int getNumberOfThreads() {
         return numberOfThreads.get();
     }
+
+    /**
+     * Get the active, started and finished thread counts of this group,
+     * read without locking in the same way as {@link JMeterContextService#getThreadCounts()}
+     *
+     * @return snapshot of the thread counts of this group
+     */
+    public JMeterContextService.ThreadCounts getThreadCounts() {
+        return new JMeterContextService.ThreadCounts(numberOfThreads.get(),
+                numberOfThreadsStarted.get(), numberOfThreadsFinished.get());
+    }
     
     /**
      * Get the number of threads.
@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.engine.StandardJMeterEngine;
+import org.apache.jmeter.engine.event.LoopIterationEvent;
+import org.apache.jmeter.engine.event.LoopIterationListener;
+import org.apache.jmeter.testelement.property.DoubleProperty;
+import org.apache.jmeter.testelement.property.IntegerProperty;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.jorphan.util.JMeterStopThreadException;
+import org.apache.log.Logger;
+
+/**
+ * Thread Group driven by a target arrival rate (open model).
+ * <p>
+ * Iterations are started according to an {@link ArrivalSchedule}, whatever the
+ * response times of the server: each thread claims the next scheduled arrival
+ * before starting an iteration, and waits until its scheduled time.
+ * When an arrival is claimed late and no other thread is waiting, the pool of
+ * threads is grown by a starter thread, up to the configured number of threads.
+ * <p>
+ * Each {@link org.apache.jmeter.samplers.SampleResult SampleResult} records how late
+ * its iteration started in {@link org.apache.jmeter.samplers.SampleResult#getScheduleDelay()}.
+ * <p>
+ * This class is intended to be ThreadSafe.
+ */
+public class ArrivalRateThreadGroup extends ThreadGroup {
+    private static final long serialVersionUID = 280L;
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** How often to check for shutdown while waiting for an arrival, default 1000ms */
+    private static final int RAMPUP_GRANULARITY =
+            JMeterUtils.getPropDefault("jmeterthread.rampup.granularity", 1000); // $NON-NLS-1$
+
+    //+ JMX entries - do not change the string values
+
+    /** Target number of iterations started per second */
+    public static final String TARGET_RATE = "ArrivalRateThreadGroup.target_rate";
+
+    /** Time taken to reach the target rate in seconds */
+    public static final String RAMP_TIME = "ArrivalRateThreadGroup.ramp_time";
+
+    /** Number of steps used to reach the target rate, 0 for a linear ramp-up */
+    public static final String RAMP_STEPS = "ArrivalRateThreadGroup.ramp_steps";
+
+    /** How long to keep the target rate in seconds, 0 means until the test is stopped */
+    public static final String HOLD_TIME = "ArrivalRateThreadGroup.hold_time";
+
+    /** Number of threads started with the group */
+    public static final String INITIAL_THREADS = "ArrivalRateThreadGroup.initial_threads";
+
+    //- JMX entries
+
+    /*
+     * The following fields are only used by the instance started by the engine.
+     * Threads run a clone of the group, and reach this instance through their JMeterContext.
+     */
+    private transient ArrivalSchedule schedule;
+
+    private transient volatile long scheduleStart;
+
+    private transient AtomicLong nextArrival;
+
+    // Number of threads waiting for their scheduled arrival
+    private transient AtomicInteger waitingThreads;
+
+    // Released each time the pool should grow by one thread
+    private transient Semaphore growRequests;
+
+    private transient Thread poolStarter;
+
+    private transient volatile boolean arrivalsRunning;
+
+    /**
+     * No-arg constructor.
+     */
+    public ArrivalRateThreadGroup() {
+        super();
+    }
+
+    /**
+     * @param rate target number of iterations started per second
+     */
+    public void setTargetRate(double rate) {
+        setProperty(new DoubleProperty(TARGET_RATE, rate));
+    }
+
+    /**
+     * @return target number of iterations started per second
+     */
+    public double getTargetRate() {
+        return getPropertyAsDouble(TARGET_RATE);
+    }
+
+    /**
+     * @param rampUp time taken to reach the target rate in seconds
+     */
+    public void setArrivalsRampUp(int rampUp) {
+        setProperty(new IntegerProperty(RAMP_TIME, rampUp));
+    }
+
+    /**
+     * @return time taken to reach the target rate in seconds
+     */
+    public int getArrivalsRampUp() {
+        return getPropertyAsInt(RAMP_TIME);
+    }
+
+    /**
+     * @param steps number of steps used to reach the target rate, 0 for a linear ramp-up
+     */
+    public void setRampSteps(int steps) {
+        setProperty(new IntegerProperty(RAMP_STEPS, steps));
+    }
+
+    /**
+     * @return number of steps used to reach the target rate, 0 for a linear ramp-up
+     */
+    public int getRampSteps() {
+        return getPropertyAsInt(RAMP_STEPS);
+    }
+
+    /**
+     * @param hold how long to keep the target rate in seconds, 0 means until the test is stopped
+     */
+    public void setHoldTime(int hold) {
+        setProperty(new IntegerProperty(HOLD_TIME, hold));
+    }
+
+    /**
+     * @return how long to keep the target rate in seconds, 0 means until the test is stopped
+     */
+    public int getHoldTime() {
+        return getPropertyAsInt(HOLD_TIME);
+    }
+
+    /**
+     * @param initialThreads number of threads started with the group
+     */
+    public void setInitialThreads(int initialThreads) {
+        setProperty(new IntegerProperty(INITIAL_THREADS, initialThreads));
+    }
+
+    /**
+     * @return number of threads started with the group
+     */
+    public int getInitialThreads() {
+        return getPropertyAsInt(INITIAL_THREADS, 1);
+    }
+
+    @Override
+    public void start(int groupCount, ListenerNotifier notifier, ListedHashTree threadGroupTree, StandardJMeterEngine engine) {
+        schedule = new ArrivalSchedule(getTargetRate(), getArrivalsRampUp(), getRampSteps(), getHoldTime());
+        nextArrival = new AtomicLong(0);
+        waitingThreads = new AtomicInteger(0);
+        growRequests = new Semaphore(0);
+        arrivalsRunning = true;
+        final int maxThreads = getNumThreads();
+        final int initialThreads = Math.max(1, Math.min(getInitialThreads(), maxThreads));
+        log.info("Starting thread group number " + groupCount
+                + " target rate " + getTargetRate()
+                + " ramp-up " + getArrivalsRampUp()
+                + " steps " + getRampSteps()
+                + " hold " + getHoldTime()
+                + " threads " + initialThreads + "/" + maxThreads);
+        // Context needs to be fetched in the engine thread, it is then reused for all threads
+        final JMeterContext context = JMeterContextService.getContext();
+        scheduleStart = System.currentTimeMillis();
+        for (int i = 0; arrivalsRunning && i < initialThreads; i++) {
+            startThread(groupCount, notifier, threadGroupTree, engine, i, context);
+        }
+        poolStarter = new Thread(
+                new PoolStarter(groupCount, notifier, threadGroupTree, engine, initialThreads, maxThreads, context),
+                getName() + "-PoolStarter");
+        poolStarter.setDaemon(true);
+        poolStarter.start();
+        log.info("Started thread group number " + groupCount);
+    }
+
+    private void startThread(int groupCount, ListenerNotifier notifier, ListedHashTree threadGroupTree,
+            StandardJMeterEngine engine, int threadNum, JMeterContext context) {
+        JMeterThread jmThread = makeThread(groupCount, notifier, threadGroupTree, engine, threadNum, context);
+        Thread newThread = VirtualThreadFactory.newThread(jmThread);
+        registerStartedThread(jmThread, newThread);
+        newThread.start();
+    }
+
+    /**
+     * Called by the clone run by each thread: registers the listener that waits for
+     * the next scheduled arrival at the start of each iteration.
+     */
+    @Override
+    public void initialize() {
+        super.initialize();
+        addIterationListener(new LoopIterationListener() {
+            @Override
+            public void iterationStart(LoopIterationEvent iterEvent) {
+                JMeterContext context = JMeterContextService.getContext();
+                ArrivalRateThreadGroup group = (ArrivalRateThreadGroup) context.getThreadGroup();
+                context.getThread().setScheduleDelay(group.awaitNextArrival());
+            }
+        });
+    }
+
+    /**
+     * Claim the next scheduled arrival and wait until its scheduled time.
+     *
+     * @return how late the arrival started in milliseconds
+     * @throws JMeterStopThreadException if there are no more arrivals or the group was stopped
+     */
+    long awaitNextArrival() {
+        long offset = schedule.getArrivalOffset(nextArrival.getAndIncrement());
+        if (offset < 0) {
+            throw new JMeterStopThreadException("No more arrivals scheduled for " + getName());
+        }
+        long scheduled = scheduleStart + offset;
+        long now = System.currentTimeMillis();
+        if (now > scheduled) {
+            // All the other threads are busy, as nobody claimed this arrival on time
+            if (waitingThreads.get() == 0) {
+                growRequests.release();
+            }
+            return now - scheduled;
+        }
+        waitingThreads.incrementAndGet();
+        try {
+            while (arrivalsRunning && (now = System.currentTimeMillis()) < scheduled) {
+                pause(Math.min(scheduled - now, RAMPUP_GRANULARITY));
+            }
+        } finally {
+            waitingThreads.decrementAndGet();
+        }
+        if (!arrivalsRunning) {
+            throw new JMeterStopThreadException("Thread group " + getName() + " was stopped");
+        }
+        return Math.max(0, System.currentTimeMillis() - scheduled);
+    }
+
+    private static void pause(long ms) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new JMeterStopThreadException("Interrupted while waiting for next arrival");
+        }
+    }
+
+    private boolean hasMoreArrivals() {
+        return schedule.getArrivalOffset(nextArrival.get()) >= 0;
+    }
+
+    @Override
+    public void tellThreadsToStop() {
+        stopArrivals();
+        super.tellThreadsToStop();
+    }
+
+    @Override
+    public void stop() {
+        stopArrivals();
+        super.stop();
+    }
+
+    /**
+     * Wait for the pool starter first, as threads it adds while waiting
+     * for the other threads might otherwise be missed.
+     */
+    @Override
+    public void waitThreadsStopped() {
+        if (poolStarter != null) {
+            while (poolStarter.isAlive()) {
+                try {
+                    poolStarter.join();
+                } catch (InterruptedException e) {
+                    // retry
+                }
+            }
+        }
+        super.waitThreadsStopped();
+    }
+
+    private void stopArrivals() {
+        arrivalsRunning = false;
+        if (poolStarter != null) {
+            poolStarter.interrupt();
+        }
+    }
+
+    /**
+     * Starts an additional thread each time the pool is asked to grow,
+     * until the maximum number of threads is running.
+     */
+    private class PoolStarter implements Runnable {
+
+        private final int groupCount;
+        private final ListenerNotifier notifier;
+        private final ListedHashTree threadGroupTree;
+        private final StandardJMeterEngine engine;
+        private final int maxThreads;
+        private final JMeterContext context;
+        private int threadNum;
+
+        PoolStarter(int groupCount, ListenerNotifier notifier, ListedHashTree threadGroupTree,
+                StandardJMeterEngine engine, int threadNum, int maxThreads, JMeterContext context) {
+            this.groupCount = groupCount;
+            this.notifier = notifier;
+            this.threadGroupTree = threadGroupTree;
+            this.engine = engine;
+            this.threadNum = threadNum;
+            this.maxThreads = maxThreads;
+            this.context = context;
+        }
+
+        @Override
+        public void run() {
+            // Copy in PoolStarter thread context from calling Thread
+            JMeterContextService.getContext().setVariables(context.getVariables());
+            try {
+                // Once there are no more arrivals or threads, no thread can be added to the group
+                while (arrivalsRunning && hasMoreArrivals() && numberOfActiveThreads() > 0) {
+                    if (growRequests.tryAcquire(RAMPUP_GRANULARITY, TimeUnit.MILLISECONDS)) {
+                        growRequests.drainPermits(); // coalesce pending requests, threads are started one at a time
+                        if (arrivalsRunning && hasMoreArrivals() && numberOfActiveThreads() < maxThreads) {
+                            log.debug("Growing pool of " + getName() + " to " + (numberOfActiveThreads() + 1) + " threads");
+                            startThread(groupCount, notifier, threadGroupTree, engine, threadNum++, context);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                // stopped
+            }
+        }
+    }
+}
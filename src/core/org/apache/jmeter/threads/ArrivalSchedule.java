@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+/**
+ * Computes the scheduled start of each iteration of an {@link ArrivalRateThreadGroup}.
+ * <p>
+ * The arrival rate grows from 0 to the target rate during the ramp-up period,
+ * either linearly or in a number of equal steps, and then stays at the target
+ * rate for the hold period.
+ * <p>
+ * This class is immutable and thread-safe.
+ */
+final class ArrivalSchedule {
+
+    private final double targetRate;
+
+    private final double rampUp;
+
+    private final int steps;
+
+    private final double hold;
+
+    // Cumulative number of arrivals at the start of each step, the last entry is the total for the ramp-up
+    private final double[] arrivalsAtStep;
+
+    /**
+     * @param targetRate target arrivals per second, must be &gt; 0
+     * @param rampUp ramp-up period in seconds, 0 to start at the target rate
+     * @param steps number of steps of the ramp-up, 0 for a linear ramp-up
+     * @param hold how long to keep the target rate in seconds, 0 to keep it until the test is stopped
+     */
+    ArrivalSchedule(double targetRate, double rampUp, int steps, double hold) {
+        if (targetRate <= 0) {
+            throw new IllegalArgumentException("Target rate must be positive, found:" + targetRate);
+        }
+        this.targetRate = targetRate;
+        this.rampUp = Math.max(0, rampUp);
+        this.steps = this.rampUp > 0 ? Math.max(0, steps) : 0;
+        this.hold = Math.max(0, hold);
+        this.arrivalsAtStep = new double[this.steps + 1];
+        if (this.steps > 0) {
+            double stepDuration = this.rampUp / this.steps;
+            for (int i = 0; i < this.steps; i++) {
+                arrivalsAtStep[i + 1] = arrivalsAtStep[i] + stepRate(i) * stepDuration;
+            }
+        } else {
+            arrivalsAtStep[0] = targetRate * this.rampUp / 2;
+        }
+    }
+
+    private double stepRate(int step) {
+        return targetRate * (step + 1) / steps;
+    }
+
+    /**
+     * Get the scheduled start of an iteration.
+     *
+     * @param arrival number of the iteration, starting at 0
+     * @return offset in milliseconds from the start of the schedule, or -1 if
+     *         the iteration is beyond the end of the schedule
+     */
+    long getArrivalOffset(long arrival) {
+        double seconds;
+        double rampUpArrivals = arrivalsAtStep[steps];
+        if (arrival < rampUpArrivals) {
+            if (steps == 0) {
+                // arrivals(t) = rate * t^2 / (2 * rampUp)
+                seconds = Math.sqrt(2 * rampUp * arrival / targetRate);
+            } else {
+                int step = 0;
+                while (arrival >= arrivalsAtStep[step + 1]) {
+                    step++;
+                }
+                seconds = step * rampUp / steps + (arrival - arrivalsAtStep[step]) / stepRate(step);
+            }
+        } else {
+            seconds = rampUp + (arrival - rampUpArrivals) / targetRate;
+            if (hold > 0 && seconds >= rampUp + hold) {
+                return -1;
+            }
+        }
+        return (long) (seconds * 1000);
+    }
+}
@@ -18,11 +18,16 @@
 
 package org.apache.jmeter.threads;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.jmeter.util.JMeterUtils;
 
 /**
  * Provides context service for JMeter threads.
  * Keeps track of active and total thread counts.
+ * <p>
+ * The thread counters are read for every sample, so they are held in atomic
+ * fields and can be read without taking the class lock.
  */
 public final class JMeterContextService {
     private static final ThreadLocal<JMeterContext> threadContext = new ThreadLocal<JMeterContext>() {
@@ -35,17 +40,13 @@ public final class JMeterContextService {
     //@GuardedGy("this")
     private static long testStart = 0;
 
-    //@GuardedGy("this")
-    private static int numberOfActiveThreads = 0;
+    private static final AtomicInteger numberOfActiveThreads = new AtomicInteger(0);
 
-    //@GuardedGy("this")
-    private static int numberOfThreadsStarted = 0;
+    private static final AtomicInteger numberOfThreadsStarted = new AtomicInteger(0);
 
-    //@GuardedGy("this")
-    private static int numberOfThreadsFinished = 0;
+    private static final AtomicInteger numberOfThreadsFinished = new AtomicInteger(0);
 
-    //@GuardedGy("this")
-    private static int totalThreads = 0;
+    private static final AtomicInteger totalThreads = new AtomicInteger(0);
 
     /**
      * Private constructor to prevent instantiation.
@@ -91,7 +92,7 @@ public final class JMeterContextService {
      */
     public static synchronized void startTest() {
         if (testStart == 0) {
-            numberOfActiveThreads = 0;
+            numberOfActiveThreads.set(0);
             testStart = System.currentTimeMillis();
             JMeterUtils.setProperty("TESTSTART.MS",Long.toString(testStart));// $NON-NLS-1$
         }
@@ -100,30 +101,37 @@ public final class JMeterContextService {
     /**
      * Increment number of active threads.
      */
-    static synchronized void incrNumberOfThreads() {
-        numberOfActiveThreads++;
-        numberOfThreadsStarted++;
+    static void incrNumberOfThreads() {
+        numberOfActiveThreads.incrementAndGet();
+        numberOfThreadsStarted.incrementAndGet();
     }
 
     /**
      * Decrement number of active threads.
      */
-    static synchronized void decrNumberOfThreads() {
-        numberOfActiveThreads--;
-        numberOfThreadsFinished++;
+    static void decrNumberOfThreads() {
+        numberOfActiveThreads.decrementAndGet();
+        numberOfThreadsFinished.incrementAndGet();
     }
 
     /**
      * Get the number of currently active threads
      * @return active thread count
      */
-    public static synchronized int getNumberOfThreads() {
-        return numberOfActiveThreads;
+    public static int getNumberOfThreads() {
+        return numberOfActiveThreads.get();
     }
 
-    // return all the associated counts together
-    public static synchronized ThreadCounts getThreadCounts() {
-        return new ThreadCounts(numberOfActiveThreads, numberOfThreadsStarted, numberOfThreadsFinished);
+    /**
+     * Return all the associated counts together.
+     * <br/>
+     * The counts are read one after the other without locking, so a thread
+     * starting or finishing concurrently may be reflected in some of them only.
+     *
+     * @return snapshot of active, started and finished thread counts
+     */
+    public static ThreadCounts getThreadCounts() {
+        return new ThreadCounts(numberOfActiveThreads.get(), numberOfThreadsStarted.get(), numberOfThreadsFinished.get());
     }
 
     /**
@@ -142,25 +150,25 @@ public final class JMeterContextService {
      * Get the total number of threads (&gt;= active)
      * @return total thread count
      */
-    public static synchronized int getTotalThreads() {
-        return totalThreads;
+    public static int getTotalThreads() {
+        return totalThreads.get();
     }
 
     /**
      * Update the total number of threads
      * @param thisGroup number of threads in this thread group
      */
-    public static synchronized void addTotalThreads(int thisGroup) {
-        totalThreads += thisGroup;
+    public static void addTotalThreads(int thisGroup) {
+        totalThreads.addAndGet(thisGroup);
     }
 
     /**
      * Set total threads to zero; also clears started and finished counts
      */
-    public static synchronized void clearTotalThreads() {
-        totalThreads = 0;
-        numberOfThreadsStarted = 0;
-        numberOfThreadsFinished = 0;
+    public static void clearTotalThreads() {
+        totalThreads.set(0);
+        numberOfThreadsStarted.set(0);
+        numberOfThreadsFinished.set(0);
     }
 
     public static class ThreadCounts {
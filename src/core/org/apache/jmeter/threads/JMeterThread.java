@@ -18,7 +18,6 @@
 
 package org.apache.jmeter.threads;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -113,6 +112,9 @@ public class JMeterThread implements Runnable, Interruptible {
     private boolean scheduler = false;
     // based on this scheduler is enabled or disabled
 
+    // How late the current iteration started, set by Thread Groups that schedule iterations
+    private long scheduleDelay = 0;
+
     // Gives access to parent thread threadGroup
     private AbstractThreadGroup threadGroup;
 
@@ -227,6 +229,16 @@ public class JMeterThread implements Runnable, Interruptible {
         this.threadName = threadName;
     }
 
+    /**
+     * Set how late the current iteration started compared to its scheduled start.
+     * The value is copied into all sample results of the iteration.
+     *
+     * @param scheduleDelay delay in milliseconds
+     */
+    void setScheduleDelay(long scheduleDelay) {
+        this.scheduleDelay = scheduleDelay;
+    }
+
     @Override
     public void run() {
         // threadContext is not thread-safe, so keep within thread
@@ -458,12 +470,14 @@ public class JMeterThread implements Runnable, Interruptible {
             result.setGroupThreads(nbActiveThreadsInThreadGroup);
             result.setAllThreads(nbTotalActiveThreads);
             result.setThreadName(threadName);
+            result.setScheduleDelay(scheduleDelay);
             SampleResult[] subResults = result.getSubResults();
             if(subResults != null) {
                 for (SampleResult subResult : subResults) {
                     subResult.setGroupThreads(nbActiveThreadsInThreadGroup);
                     subResult.setAllThreads(nbTotalActiveThreads);
                     subResult.setThreadName(threadName);
+                    subResult.setScheduleDelay(scheduleDelay);
                 }
             }
             threadContext.setPreviousResult(result);
@@ -507,6 +521,7 @@ public class JMeterThread implements Runnable, Interruptible {
         transactionResult.setThreadName(threadName);
         transactionResult.setGroupThreads(threadGroup.getNumberOfThreads());
         transactionResult.setAllThreads(JMeterContextService.getNumberOfThreads());
+        transactionResult.setScheduleDelay(scheduleDelay);
 
         // Check assertions for the transaction sample
         checkAssertions(transactionPack.getAssertions(), transactionResult, threadContext);
@@ -528,28 +543,11 @@ public class JMeterThread implements Runnable, Interruptible {
      * @return the listeners who should receive the sample result
      */
     private List<SampleListener> getSampleListeners(SamplePackage samplePack, SamplePackage transactionPack, TransactionSampler transactionSampler) {
-        List<SampleListener> sampleListeners = samplePack.getSampleListeners();
         // Do not send subsamples to listeners which receive the transaction sample
         if(transactionSampler != null) {
-            List<SampleListener> onlySubSamplerListeners = new ArrayList<>();
-            List<SampleListener> transListeners = transactionPack.getSampleListeners();
-            for(SampleListener listener : sampleListeners) {
-                // Check if this instance is present in transaction listener list
-                boolean found = false;
-                for(SampleListener trans : transListeners) {
-                    // Check for the same instance
-                    if(trans == listener) {
-                        found = true;
-                        break;
-                    }
-                }
-                if(!found) {
-                    onlySubSamplerListeners.add(listener);
-                }
-            }
-            sampleListeners = onlySubSamplerListeners;
+            return samplePack.getSubSamplerListeners(transactionPack);
         }
-        return sampleListeners;
+        return samplePack.getSampleListeners();
     }
 
     /**
@@ -18,6 +18,7 @@
 
 package org.apache.jmeter.threads;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.jmeter.assertions.Assertion;
@@ -61,6 +62,17 @@ public class SamplePackage {
 
     private Sampler sampler;
 
+    // Set by the TestCompiler which built this package
+    private TestCompiler compiler;
+
+    // The configs which are merged into the sampler, computed once by TestCompiler
+    private List<ConfigTestElement> samplerConfigs;
+
+    // Listeners of this package not present in the last transaction package seen, computed once per transaction package
+    private SamplePackage lastTransactionPack;
+
+    private List<SampleListener> lastSubSamplerListeners;
+
     public SamplePackage(
             List<ConfigTestElement> configs,
             List<SampleListener> listeners,
@@ -135,11 +147,52 @@ public class SamplePackage {
     }
 
     /**
-     * Add Sample Listener
+     * Get the SampleListeners which must receive the sample result when the sampler
+     * runs inside a Transaction Controller, i.e. the listeners of this package
+     * which are not also listeners of the transaction package.
+     * <p>
+     * A SamplePackage belongs to a single thread, its transaction package
+     * does not change during the test, and the listener lists are not modified
+     * once {@link TestCompiler} built them, so the result is computed only once.
+     * Only {@link #addSampleListener(SampleListener)} on this package resets it.
+     *
+     * @param transactionPack the {@link SamplePackage} of the enclosing transaction
+     * @return List of {@link SampleListener}s which only receive the sub sample results
+     */
+    List<SampleListener> getSubSamplerListeners(SamplePackage transactionPack) {
+        if (transactionPack != lastTransactionPack) {
+            List<SampleListener> onlySubSamplerListeners = new ArrayList<>(sampleListeners.size());
+            List<SampleListener> transListeners = transactionPack.getSampleListeners();
+            for(SampleListener listener : sampleListeners) {
+                // Check if this instance is present in transaction listener list
+                boolean found = false;
+                for(SampleListener trans : transListeners) {
+                    // Check for the same instance
+                    if(trans == listener) {
+                        found = true;
+                        break;
+                    }
+                }
+                if(!found) {
+                    onlySubSamplerListeners.add(listener);
+                }
+            }
+            lastSubSamplerListeners = onlySubSamplerListeners;
+            lastTransactionPack = transactionPack;
+        }
+        return lastSubSamplerListeners;
+    }
+
+    /**
+     * Add Sample Listener.
+     * Must not be called on a transaction package once its sub samplers have run,
+     * as their listeners computed by {@link #getSubSamplerListeners(SamplePackage)}
+     * would not be updated.
      * @param listener {@link SampleListener}
      */
     public void addSampleListener(SampleListener listener) {
         sampleListeners.add(listener);
+        lastTransactionPack = null;
     }
 
     /**
@@ -227,4 +280,23 @@ public class SamplePackage {
         return configs;
     }
 
+    TestCompiler getCompiler() {
+        return compiler;
+    }
+
+    void setCompiler(TestCompiler compiler) {
+        this.compiler = compiler;
+    }
+
+    /**
+     * @return the configs to add to the sampler before each sample, in order
+     */
+    List<ConfigTestElement> getSamplerConfigs() {
+        return samplerConfigs;
+    }
+
+    void setSamplerConfigs(List<ConfigTestElement> samplerConfigs) {
+        this.samplerConfigs = samplerConfigs;
+    }
+
 }
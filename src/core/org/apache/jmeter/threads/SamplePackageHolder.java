@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+/**
+ * Allows {@link TestCompiler} to save the {@link SamplePackage} it built for a
+ * sampler or a transaction controller with the element itself, so that
+ * {@link JMeterThread} does not need to look it up on each sample.
+ * <p>
+ * Elements which do not implement this interface, or which are shared between
+ * threads, are looked up by identity as before.
+ * The methods do not form a bean property, so that TestBean samplers do not show it.
+ *
+ * @since 3.0
+ */
+public interface SamplePackageHolder {
+
+    /**
+     * Save the SamplePackage compiled for this element.
+     * <p>
+     * Only for use by TestCompiler.
+     *
+     * @param pack
+     *            the {@link SamplePackage} of this element
+     */
+    void saveSamplePackage(SamplePackage pack);
+
+    /**
+     * Only for use by TestCompiler.
+     *
+     * @return the last {@link SamplePackage} saved, or <code>null</code> if none
+     */
+    SamplePackage getSavedSamplePackage();
+}
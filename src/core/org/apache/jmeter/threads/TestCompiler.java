@@ -18,8 +18,9 @@
 
 package org.apache.jmeter.threads;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -48,18 +49,25 @@ import org.apache.jorphan.logging.LoggingManager;
 import org.apache.log.Logger;
 
 /**
- * HashTreeTraverser implementation that traverses the Test Tree to build:
- * <ul>
- *  <li>A map with key Sampler and as value the associated SamplePackage</li>
- *  <li>A map with key TransactionController and as value the associated SamplePackage</li>
- * </ul>
+ * HashTreeTraverser implementation that traverses the Test Tree of a thread to build
+ * the SamplePackage of each Sampler and TransactionController, holding in order the
+ * configs, pre-processors, timers, post-processors, assertions and listeners which apply to it.
+ * <p>
+ * The element lists are built once here as array based lists, as are the configs merged
+ * into the sampler before each sample.
+ * The SamplePackage is saved with its sampler or controller when it implements
+ * {@link SamplePackageHolder}, so that {@link #configureSampler(Sampler)} does not look it up.
+ * Other elements, and elements shared between threads, are looked up in maps keyed by
+ * instance identity, as two elements with the same properties are equal according to
+ * AbstractTestElement#equals but need their own SamplePackage.
  */
 public class TestCompiler implements HashTreeTraverser {
 
     private static final Logger LOG = LoggingManager.getLoggerForClass();
 
     /**
-     * Set this property {@value} to true to revert to using a shared static set.
+     * Set this property {@value} to true to revert to keeping track of the children
+     * added to each controller in the TestCompiler instead of in the controller.
      */
     private static final String USE_STATIC_SET = "TestCompiler.useStaticSet";
     
@@ -75,15 +83,20 @@ public class TestCompiler implements HashTreeTraverser {
      * It seems to be used to prevent adding a child to a parent if the child has already been added.
      * If the ObjectPair (child, parent) is present, then the child has been added.
      * Otherwise, the child is added to the parent and the pair is added to the Set.
+     * Only used for controllers which do not implement {@link TestCompilerHelper},
+     * or if {@link #USE_STATIC_SET} is true.
+     * The set belongs to the thread compiling its tree, so controllers shared
+     * between threads must implement TestCompilerHelper.
      */
-    private static final Set<ObjectPair> PAIRING = new HashSet<>();
+    private final Set<ObjectPair> pairing = new HashSet<>();
 
     private final LinkedList<TestElement> stack = new LinkedList<>();
 
-    private final Map<Sampler, SamplePackage> samplerConfigMap = new HashMap<>();
+    // Keyed by identity, as distinct elements with the same properties are equal
+    private final Map<Sampler, SamplePackage> samplerConfigMap = new IdentityHashMap<>();
 
     private final Map<TransactionController, SamplePackage> transactionControllerConfigMap =
-            new HashMap<>();
+            new IdentityHashMap<>();
 
     private final HashTree testTree;
 
@@ -92,14 +105,13 @@ public class TestCompiler implements HashTreeTraverser {
     }
 
     /**
-     * Clears the pairing Set Called by StandardJmeterEngine at the start of a
-     * test run.
+     * Used to clear the static pairing Set at the start of a test run.
+     * Does nothing, as the pairs are now kept by each TestCompiler.
+     * @deprecated since 3.0, not needed anymore
      */
+    @Deprecated
     public static void initialize() {
-        // synch is probably not needed as only called before run starts
-        synchronized (PAIRING) {
-            PAIRING.clear();
-        }
+        // NOOP
     }
 
     /**
@@ -108,9 +120,12 @@ public class TestCompiler implements HashTreeTraverser {
      * @return {@link SamplePackage}
      */
     public SamplePackage configureSampler(Sampler sampler) {
-        SamplePackage pack = samplerConfigMap.get(sampler);
+        SamplePackage pack = getSavedPackage(sampler);
+        if (pack == null) {
+            pack = samplerConfigMap.get(sampler);
+        }
         pack.setSampler(sampler);
-        configureWithConfigElements(sampler, pack.getConfigs());
+        configureWithConfigElements(sampler, pack.getSamplerConfigs());
         return pack;
     }
 
@@ -121,11 +136,30 @@ public class TestCompiler implements HashTreeTraverser {
      */
     public SamplePackage configureTransactionSampler(TransactionSampler transactionSampler) {
         TransactionController controller = transactionSampler.getTransactionController();
-        SamplePackage pack = transactionControllerConfigMap.get(controller);
+        SamplePackage pack = getSavedPackage(controller);
+        if (pack == null) {
+            pack = transactionControllerConfigMap.get(controller);
+        }
         pack.setSampler(transactionSampler);
         return pack;
     }
 
+    /**
+     * @param element a Sampler or TransactionController
+     * @return the SamplePackage built by this TestCompiler and saved with the element,
+     * or <code>null</code> if it must be looked up
+     */
+    private SamplePackage getSavedPackage(Object element) {
+        if (element instanceof SamplePackageHolder) {
+            SamplePackage pack = ((SamplePackageHolder) element).getSavedSamplePackage();
+            // A shared element holds the package of the last thread which compiled it
+            if (pack != null && pack.getCompiler() == this) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
     /**
      * Reset pack to its initial state
      * @param pack the {@link SamplePackage} to reset
@@ -162,14 +196,10 @@ public class TestCompiler implements HashTreeTraverser {
                     TestCompilerHelper te = (TestCompilerHelper) parent;
                     duplicate = !te.addTestElementOnce(child);
                 } else { // this is only possible for 3rd party controllers by default
-                    ObjectPair pair = new ObjectPair(child, parent);
-                    synchronized (PAIRING) {// Called from multiple threads
-                        if (!PAIRING.contains(pair)) {
-                            parent.addTestElement(child);
-                            PAIRING.add(pair);
-                        } else {
-                            duplicate = true;
-                        }
+                    if (pairing.add(new ObjectPair(child, parent))) {
+                        parent.addTestElement(child);
+                    } else {
+                        duplicate = true;
                     }
                 }
             }
@@ -203,17 +233,17 @@ public class TestCompiler implements HashTreeTraverser {
     }
 
     private void saveSamplerConfigs(Sampler sam) {
-        List<ConfigTestElement> configs = new LinkedList<>();
-        List<Controller> controllers = new LinkedList<>();
-        List<SampleListener> listeners = new LinkedList<>();
-        List<Timer> timers = new LinkedList<>();
-        List<Assertion> assertions = new LinkedList<>();
-        LinkedList<PostProcessor> posts = new LinkedList<>();
-        LinkedList<PreProcessor> pres = new LinkedList<>();
+        List<ConfigTestElement> configs = new ArrayList<>();
+        List<Controller> controllers = new ArrayList<>();
+        List<SampleListener> listeners = new ArrayList<>();
+        List<Timer> timers = new ArrayList<>();
+        List<Assertion> assertions = new ArrayList<>();
+        List<PostProcessor> posts = new ArrayList<>();
+        List<PreProcessor> pres = new ArrayList<>();
         for (int i = stack.size(); i > 0; i--) {
             addDirectParentControllers(controllers, stack.get(i - 1));
-            List<PreProcessor>  tempPre = new LinkedList<>();
-            List<PostProcessor> tempPost = new LinkedList<>();
+            List<PreProcessor>  tempPre = new ArrayList<>();
+            List<PostProcessor> tempPost = new ArrayList<>();
             for (Object item : testTree.list(stack.subList(0, i))) {
                 if ((item instanceof ConfigTestElement)) {
                     configs.add((ConfigTestElement) item);
@@ -241,18 +271,20 @@ public class TestCompiler implements HashTreeTraverser {
         SamplePackage pack = new SamplePackage(configs, listeners, timers, assertions,
                 posts, pres, controllers);
         pack.setSampler(sam);
+        pack.setSamplerConfigs(getSamplerConfigs(sam, configs));
         pack.setRunningVersion(true);
+        savePackage(sam, pack);
         samplerConfigMap.put(sam, pack);
     }
 
     private void saveTransactionControllerConfigs(TransactionController tc) {
-        List<ConfigTestElement> configs = new LinkedList<>();
-        List<Controller> controllers = new LinkedList<>();
-        List<SampleListener> listeners = new LinkedList<>();
-        List<Timer> timers = new LinkedList<>();
-        List<Assertion> assertions = new LinkedList<>();
-        LinkedList<PostProcessor> posts = new LinkedList<>();
-        LinkedList<PreProcessor> pres = new LinkedList<>();
+        List<ConfigTestElement> configs = new ArrayList<>();
+        List<Controller> controllers = new ArrayList<>();
+        List<SampleListener> listeners = new ArrayList<>();
+        List<Timer> timers = new ArrayList<>();
+        List<Assertion> assertions = new ArrayList<>();
+        List<PostProcessor> posts = new ArrayList<>();
+        List<PreProcessor> pres = new ArrayList<>();
         for (int i = stack.size(); i > 0; i--) {
             addDirectParentControllers(controllers, stack.get(i - 1));
             for (Object item : testTree.list(stack.subList(0, i))) {
@@ -269,9 +301,17 @@ public class TestCompiler implements HashTreeTraverser {
                 posts, pres, controllers);
         pack.setSampler(new TransactionSampler(tc, tc.getName()));
         pack.setRunningVersion(true);
+        savePackage(tc, pack);
         transactionControllerConfigMap.put(tc, pack);
     }
 
+    private void savePackage(TestElement element, SamplePackage pack) {
+        pack.setCompiler(this);
+        if (element instanceof SamplePackageHolder) {
+            ((SamplePackageHolder) element).saveSamplePackage(pack);
+        }
+    }
+
     /**
      * @param controllers
      * @param i
@@ -311,18 +351,31 @@ public class TestCompiler implements HashTreeTraverser {
 
     private void configureWithConfigElements(Sampler sam, List<ConfigTestElement> configs) {
         sam.clearTestElementChildren();
+        for (ConfigTestElement config  : configs) {
+            sam.addTestElement(config);
+        }
+    }
+
+    /**
+     * @param sam {@link Sampler}
+     * @param configs the configs in scope of the sampler
+     * @return the configs to merge into the sampler before each sample
+     */
+    private static List<ConfigTestElement> getSamplerConfigs(Sampler sam, List<ConfigTestElement> configs) {
+        List<ConfigTestElement> samplerConfigs = new ArrayList<>(configs.size());
         for (ConfigTestElement config  : configs) {
             if (!(config instanceof NoConfigMerge)) 
             {
                 if(sam instanceof ConfigMergabilityIndicator) {
                     if(((ConfigMergabilityIndicator)sam).applies(config)) {
-                        sam.addTestElement(config);
+                        samplerConfigs.add(config);
                     }
                 } else {
                     // Backward compatibility
-                    sam.addTestElement(config);
+                    samplerConfigs.add(config);
                 }
             }
         }
+        return samplerConfigs;
     }
 }
@@ -289,7 +289,7 @@ public class ThreadGroup extends AbstractThreadGroup {
                 JMeterThread jmThread = makeThread(groupCount, notifier, threadGroupTree, engine, i, context);
                 scheduleThread(jmThread, now); // set start and end time
                 jmThread.setInitialDelay((int)(i * perThreadDelayInMillis));
-                Thread newThread = new Thread(jmThread, jmThread.getThreadName());
+                Thread newThread = VirtualThreadFactory.newThread(jmThread);
                 registerStartedThread(jmThread, newThread);
                 newThread.start();
             }
@@ -302,11 +302,11 @@ public class ThreadGroup extends AbstractThreadGroup {
      * @param jMeterThread {@link JMeterThread}
      * @param newThread Thread
      */
-    private void registerStartedThread(JMeterThread jMeterThread, Thread newThread) {
+    void registerStartedThread(JMeterThread jMeterThread, Thread newThread) {
         allThreads.put(jMeterThread, newThread);
     }
 
-    private JMeterThread makeThread(int groupCount,
+    JMeterThread makeThread(int groupCount,
             ListenerNotifier notifier, ListedHashTree threadGroupTree,
             StandardJMeterEngine engine, int i, 
             JMeterContext context) { // N.B. Context needs to be fetched in the correct thread
@@ -572,8 +572,7 @@ public class ThreadGroup extends AbstractThreadGroup {
                     jmThread.setScheduled(true);
                     jmThread.setEndTime(endtime);
                 }
-                Thread newThread = new Thread(jmThread, jmThread.getThreadName());
-                newThread.setDaemon(false); // ThreadStarter is daemon, but we don't want sampler threads to be so too
+                Thread newThread = VirtualThreadFactory.newThread(jmThread); // never a daemon platform thread
                 registerStartedThread(jmThread, newThread);
                 newThread.start();
             }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Creates the threads that run {@link JMeterThread}s.
+ * <p>
+ * When property {@value #USE_VIRTUAL_THREADS} is true and the JVM supports them
+ * (Java 21 and later), JMeter threads are run on virtual threads, which lets an
+ * injector run many more mostly idle users.
+ * Otherwise, or if the JVM does not support them, platform threads are used.
+ * <p>
+ * Virtual threads are looked up by reflection as JMeter is still built for Java 7.
+ */
+final class VirtualThreadFactory {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Set this property {@value} to true to run JMeter threads on virtual threads when available */
+    static final String USE_VIRTUAL_THREADS = "jmeterthread.virtual_threads"; // $NON-NLS-1$
+
+    /**
+     * Thread.ofVirtual(), Thread.Builder#name(String) and Thread.Builder#unstarted(Runnable),
+     * null if virtual threads are not used
+     */
+    private static final Method[] VIRTUAL_BUILDER =
+            lookupVirtualBuilder(JMeterUtils.getPropDefault(USE_VIRTUAL_THREADS, false));
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private VirtualThreadFactory() {
+    }
+
+    /**
+     * Look up the methods used to build virtual threads.
+     *
+     * @param enabled value of property {@value #USE_VIRTUAL_THREADS}
+     * @return Thread.ofVirtual(), Thread.Builder#name(String) and Thread.Builder#unstarted(Runnable),
+     *         or null if not enabled or not supported by this JVM
+     */
+    static Method[] lookupVirtualBuilder(boolean enabled) {
+        if (!enabled) {
+            return null;
+        }
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder"); // $NON-NLS-1$
+            Method[] builder = new Method[] {
+                    Thread.class.getMethod("ofVirtual"), // $NON-NLS-1$
+                    builderClass.getMethod("name", String.class), // $NON-NLS-1$
+                    builderClass.getMethod("unstarted", Runnable.class) // $NON-NLS-1$
+            };
+            log.info("JMeter threads will be run on virtual threads");
+            return builder;
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            log.warn("Property " + USE_VIRTUAL_THREADS + " is set but this JVM (" + System.getProperty("java.version") // $NON-NLS-1$
+                    + ") does not support virtual threads, using platform threads");
+            return null;
+        }
+    }
+
+    /**
+     * @return true if new JMeter threads are virtual threads
+     */
+    static boolean isEnabled() {
+        return VIRTUAL_BUILDER != null;
+    }
+
+    /**
+     * Create an unstarted thread for a JMeter thread.
+     *
+     * @param jmeterThread the {@link JMeterThread} to run
+     * @return a virtual thread if enabled and supported, otherwise a non daemon platform thread
+     */
+    static Thread newThread(JMeterThread jmeterThread) {
+        return newThread(jmeterThread, VIRTUAL_BUILDER);
+    }
+
+    /**
+     * Create an unstarted thread for a JMeter thread.
+     *
+     * @param jmeterThread the {@link JMeterThread} to run
+     * @param virtualBuilder methods returned by {@link #lookupVirtualBuilder(boolean)}
+     * @return a virtual thread if virtualBuilder is not null, otherwise a non daemon platform thread
+     */
+    static Thread newThread(JMeterThread jmeterThread, Method[] virtualBuilder) {
+        if (virtualBuilder != null) {
+            try {
+                Object builder = virtualBuilder[1].invoke(virtualBuilder[0].invoke(null), jmeterThread.getThreadName());
+                return (Thread) virtualBuilder[2].invoke(builder, jmeterThread);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                log.warn("Could not create virtual thread for " + jmeterThread.getThreadName()
+                        + ", using a platform thread", e);
+            }
+        }
+        Thread thread = new Thread(jmeterThread, jmeterThread.getThreadName());
+        thread.setDaemon(false); // the group starter threads are daemon, but sampler threads must not be
+        return thread;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads.gui;
+
+import java.awt.BorderLayout;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextField;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jmeter.threads.AbstractThreadGroup;
+import org.apache.jmeter.threads.ArrivalRateThreadGroup;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * GUI for {@link ArrivalRateThreadGroup}
+ */
+public class ArrivalRateThreadGroupGui extends AbstractThreadGroupGui {
+    private static final long serialVersionUID = 240L;
+
+    private JTextField targetRateInput;
+
+    private JTextField rampInput;
+
+    private JTextField stepsInput;
+
+    private JTextField holdInput;
+
+    private JTextField initialThreadsInput;
+
+    private JTextField maxThreadsInput;
+
+    public ArrivalRateThreadGroupGui() {
+        super();
+        init();
+        initGui();
+    }
+
+    @Override
+    public TestElement createTestElement() {
+        ArrivalRateThreadGroup tg = new ArrivalRateThreadGroup();
+        modifyTestElement(tg);
+        return tg;
+    }
+
+    /**
+     * Modifies a given TestElement to mirror the data in the gui components.
+     *
+     * @see org.apache.jmeter.gui.JMeterGUIComponent#modifyTestElement(TestElement)
+     */
+    @Override
+    public void modifyTestElement(TestElement tg) {
+        super.configureTestElement(tg);
+        if (tg instanceof AbstractThreadGroup) {
+            // Iterations are limited by the arrival schedule
+            LoopController looper = new LoopController();
+            looper.setLoops(LoopController.INFINITE_LOOP_COUNT);
+            ((AbstractThreadGroup) tg).setSamplerController(looper);
+        }
+        tg.setProperty(ArrivalRateThreadGroup.TARGET_RATE, targetRateInput.getText());
+        tg.setProperty(ArrivalRateThreadGroup.RAMP_TIME, rampInput.getText());
+        tg.setProperty(ArrivalRateThreadGroup.RAMP_STEPS, stepsInput.getText());
+        tg.setProperty(ArrivalRateThreadGroup.HOLD_TIME, holdInput.getText());
+        tg.setProperty(ArrivalRateThreadGroup.INITIAL_THREADS, initialThreadsInput.getText());
+        tg.setProperty(AbstractThreadGroup.NUM_THREADS, maxThreadsInput.getText());
+    }
+
+    @Override
+    public void configure(TestElement tg) {
+        super.configure(tg);
+        targetRateInput.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.TARGET_RATE));
+        rampInput.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.RAMP_TIME));
+        stepsInput.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.RAMP_STEPS));
+        holdInput.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.HOLD_TIME));
+        initialThreadsInput.setText(tg.getPropertyAsString(ArrivalRateThreadGroup.INITIAL_THREADS));
+        maxThreadsInput.setText(tg.getPropertyAsString(AbstractThreadGroup.NUM_THREADS));
+    }
+
+    @Override
+    public String getLabelResource() {
+        return "arrival_rate_thread_group_title"; // $NON-NLS-1$
+    }
+
+    @Override
+    public void clearGui(){
+        super.clearGui();
+        initGui();
+    }
+
+    // Initialise the gui field values
+    private void initGui(){
+        targetRateInput.setText("1"); // $NON-NLS-1$
+        rampInput.setText("0"); // $NON-NLS-1$
+        stepsInput.setText("0"); // $NON-NLS-1$
+        holdInput.setText("60"); // $NON-NLS-1$
+        initialThreadsInput.setText("1"); // $NON-NLS-1$
+        maxThreadsInput.setText("100"); // $NON-NLS-1$
+    }
+
+    private JTextField addField(VerticalPanel panel, String labelResource) {
+        JPanel fieldPanel = new JPanel(new BorderLayout(5, 0));
+        JLabel label = new JLabel(JMeterUtils.getResString(labelResource));
+        fieldPanel.add(label, BorderLayout.WEST);
+        JTextField field = new JTextField(5);
+        label.setLabelFor(field);
+        fieldPanel.add(field, BorderLayout.CENTER);
+        panel.add(fieldPanel);
+        return field;
+    }
+
+    private void init() { // WARNING: called from ctor so must not be overridden (i.e. must be private or final)
+        VerticalPanel arrivalsPanel = new VerticalPanel();
+        arrivalsPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(),
+                JMeterUtils.getResString("arrival_rate_schedule"))); // $NON-NLS-1$
+        targetRateInput = addField(arrivalsPanel, "arrival_rate_target"); // $NON-NLS-1$
+        rampInput = addField(arrivalsPanel, "arrival_rate_ramp_up"); // $NON-NLS-1$
+        stepsInput = addField(arrivalsPanel, "arrival_rate_ramp_steps"); // $NON-NLS-1$
+        holdInput = addField(arrivalsPanel, "arrival_rate_hold"); // $NON-NLS-1$
+
+        VerticalPanel threadPropsPanel = new VerticalPanel();
+        threadPropsPanel.setBorder(BorderFactory.createTitledBorder(BorderFactory.createEtchedBorder(),
+                JMeterUtils.getResString("thread_properties"))); // $NON-NLS-1$
+        initialThreadsInput = addField(threadPropsPanel, "arrival_rate_initial_threads"); // $NON-NLS-1$
+        maxThreadsInput = addField(threadPropsPanel, "arrival_rate_max_threads"); // $NON-NLS-1$
+
+        VerticalPanel intgrationPanel = new VerticalPanel();
+        intgrationPanel.add(arrivalsPanel);
+        intgrationPanel.add(threadPropsPanel);
+        add(intgrationPanel, BorderLayout.CENTER);
+    }
+}
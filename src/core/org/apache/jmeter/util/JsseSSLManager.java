@@ -32,6 +32,7 @@ import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSession;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
@@ -405,6 +406,17 @@ public class JsseSSLManager extends SSLManager {
             return alias;
         }
 
+        /**
+         * Choose the client alias for SSLEngines, which are used by the
+         * HttpClient4Async implementation, as for SSLSockets.
+         *
+         * @see javax.net.ssl.X509ExtendedKeyManager#chooseEngineClientAlias(String[], Principal[], SSLEngine)
+         */
+        @Override
+        public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+            return chooseClientAlias(keyType, issuers, null);
+        }
+
         /**
          * Choose the server alias for the SSLServerSockets. This are not used
          * in JMeter.
@@ -21,6 +21,8 @@ package org.apache.jmeter.visualizers;
 import java.util.Map;
 
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.math.StatCalculatorHistogram;
 import org.apache.jorphan.math.StatCalculatorLong;
 
 /**
@@ -30,7 +32,16 @@ import org.apache.jorphan.math.StatCalculatorLong;
  *
  */
 public class SamplingStatCalculator {
-    private final StatCalculatorLong calculator = new StatCalculatorLong();
+    // Count the elapsed times in a fixed-size histogram rather than keeping each distinct value
+    private static final boolean USE_HISTOGRAM =
+            JMeterUtils.getPropDefault("stat_calculator.histogram", false); // $NON-NLS-1$
+
+    private static final long HISTOGRAM_EXACT_BOUND =
+            JMeterUtils.getPropDefault("stat_calculator.histogram_exact_bound", // $NON-NLS-1$
+                    StatCalculatorHistogram.DEFAULT_EXACT_BOUND);
+
+    private final StatCalculatorLong calculator = USE_HISTOGRAM
+            ? new StatCalculatorHistogram(HISTOGRAM_EXACT_BOUND) : new StatCalculatorLong();
 
     private double maxThroughput;
 
@@ -96,8 +96,18 @@ public abstract class StatCalculator<T extends Number & Comparable<? super T>> {
     }
 
     public void addAll(StatCalculator<T> calc) {
-        for(Entry<T, MutableLong> ent : calc.valuesMap.entrySet()) {
-            addEachValue(ent.getKey(), ent.getValue().longValue());
+        calc.addValueCountsTo(this);
+    }
+
+    /**
+     * Add each distinct value of this calculator with its count to another
+     * calculator.
+     *
+     * @param target the calculator to update
+     */
+    void addValueCountsTo(StatCalculator<T> target) {
+        for(Entry<T, MutableLong> ent : valuesMap.entrySet()) {
+            target.addEachValue(ent.getKey(), ent.getValue().longValue());
         }
     }
 
@@ -264,7 +274,14 @@ public abstract class StatCalculator<T extends Number & Comparable<? super T>> {
         addValue(val, 1L);
     }
 
-    private void updateValueCount(T actualValue, long sampleCount) {
+    /**
+     * Record the count of a value, used for the median, the percentiles and
+     * the distribution.
+     *
+     * @param actualValue the value
+     * @param sampleCount the number of samples with this value
+     */
+    void updateValueCount(T actualValue, long sampleCount) {
         MutableLong count = valuesMap.get(actualValue);
         if (count != null) {
             count.add(sampleCount);
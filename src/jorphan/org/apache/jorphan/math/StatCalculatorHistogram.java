@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jorphan.math;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * StatCalculator for Long values which counts the values in a histogram of
+ * primitive counters instead of a map of distinct values.
+ * <p>
+ * Values lower than the exact bound are counted exactly. Greater values are
+ * counted in buckets whose width is at most 2 / bound of their values, so
+ * the median, the percentiles and the distribution of these values are
+ * approximated with this relative error. Adding a value never allocates,
+ * except to grow the counters when a greater value is met, and the memory
+ * only depends on the bound and on the magnitude of the greatest value.
+ * Negative values are counted as 0.
+ * </p>
+ * It is not threadsafe.
+ */
+public class StatCalculatorHistogram extends StatCalculatorLong {
+
+    /** Values lower than this bound are counted exactly by default */
+    public static final long DEFAULT_EXACT_BOUND = 2048;
+
+    /** Greatest exact bound, the counters use 8 bytes per exact value */
+    public static final long MAX_EXACT_BOUND = 1L << 20;
+
+    /** log2 of the number of buckets in a range of values [2^n, 2^(n+1)[ */
+    private final int halfMagnitude;
+
+    /** Values lower than this power of two are counted exactly */
+    private final long exactBound;
+
+    // counts indexed by bucket, allocated up to the greatest value
+    private long[] counts = new long[0];
+
+    public StatCalculatorHistogram() {
+        this(DEFAULT_EXACT_BOUND);
+    }
+
+    /**
+     * @param exactBound values lower than this bound are counted exactly, it
+     *            is rounded up to a power of two, from 2 to
+     *            {@link #MAX_EXACT_BOUND}
+     */
+    public StatCalculatorHistogram(long exactBound) {
+        super();
+        Validate.inclusiveBetween(2, MAX_EXACT_BOUND, exactBound,
+                "exact bound must be between 2 and " + MAX_EXACT_BOUND);
+        int magnitude = 64 - Long.numberOfLeadingZeros(exactBound - 1);
+        this.halfMagnitude = magnitude - 1;
+        this.exactBound = 1L << magnitude;
+    }
+
+    private int indexOf(long value) {
+        // Bucket width of the range [2^(shift + magnitude - 1), 2^(shift + magnitude)[
+        int shift = 64 - Long.numberOfLeadingZeros(value | (exactBound - 1))
+                - (halfMagnitude + 1);
+        return (shift << halfMagnitude) + (int) (value >>> shift);
+    }
+
+    // Middle of the values counted in a bucket
+    private long valueAt(int index) {
+        int shift = (index >> halfMagnitude) - 1;
+        if (shift <= 0) {
+            return index;
+        }
+        long subBucket = (index & ((1 << halfMagnitude) - 1)) + (1L << halfMagnitude);
+        return (subBucket << shift) + ((1L << shift) >> 1);
+    }
+
+    // Middle of the values counted in a bucket, within the range of the values
+    private Long boundedValueAt(int index) {
+        long value = Math.min(getMax().longValue(), valueAt(index));
+        return Long.valueOf(Math.max(getMin().longValue(), value));
+    }
+
+    @Override
+    void updateValueCount(Long actualValue, long sampleCount) {
+        int index = indexOf(Math.max(0L, actualValue.longValue()));
+        if (index >= counts.length) {
+            counts = Arrays.copyOf(counts,
+                    Math.max(index + 1, counts.length + (1 << halfMagnitude)));
+        }
+        counts[index] += sampleCount;
+    }
+
+    @Override
+    void addValueCountsTo(StatCalculator<Long> target) {
+        long[] values = counts;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                target.addEachValue(boundedValueAt(i), values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        counts = new long[0];
+    }
+
+    @Override
+    public Long getPercentPoint(double percent) {
+        if (getCount() <= 0) {
+            return Long.valueOf(0L);
+        }
+        if (percent >= 1.0) {
+            return getMax();
+        }
+
+        long target = Math.round(getCount() * percent);
+        long[] values = counts;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                target -= values[i];
+                if (target <= 0) {
+                    return boundedValueAt(i);
+                }
+            }
+        }
+        return Long.valueOf(0L);
+    }
+
+    @Override
+    public Map<Number, Number[]> getDistribution() {
+        Map<Number, Number[]> items = new HashMap<>();
+        long[] values = counts;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] > 0) {
+                Long value = boundedValueAt(i);
+                items.put(value, new Number[] { value, Long.valueOf(values[i]) });
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.parser;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.collections.map.LRUMap;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Cache of the embedded resource URLs extracted by {@link HTMLParser}s, shared by all threads.
+ * <p>
+ * Pages are identified by the parser, their URL, encoding and the User-Agent
+ * (which can change the result for conditional comments), plus a hash of their content,
+ * so a page whose content changes is parsed again.
+ * The least recently used pages are evicted once {@value #CACHE_SIZE_PROP} pages are cached.
+ * <p>
+ * To check that cached results are still correct, a fraction
+ * ({@value #VERIFY_RATIO_PROP}) of the cache hits are parsed again and compared.
+ */
+public final class EmbeddedResourcesCache {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String CACHE_SIZE_PROP = "httpsampler.embedded_resources_cache.size"; // $NON-NLS-1$
+
+    private static final String VERIFY_RATIO_PROP = "httpsampler.embedded_resources_cache.verify_ratio"; // $NON-NLS-1$
+
+    /** Maximum number of cached pages, 0 disables the cache */
+    private static final int CACHE_SIZE = JMeterUtils.getPropDefault(CACHE_SIZE_PROP, 0);
+
+    /** Fraction of hits which are parsed again to check the cached result */
+    private static final double VERIFY_RATIO = Double.parseDouble(
+            JMeterUtils.getPropDefault(VERIFY_RATIO_PROP, "0")); // $NON-NLS-1$
+
+    private static final EmbeddedResourcesCache INSTANCE =
+            CACHE_SIZE > 0 ? new EmbeddedResourcesCache(CACHE_SIZE, VERIFY_RATIO) : null;
+
+    /**
+     * Identifies a parsed page
+     */
+    private static final class Key {
+        private final String parserClass;
+        private final String url;
+        private final String encoding;
+        private final String userAgent;
+        private final int length;
+        private final long contentHash;
+        private final int hashCode;
+
+        Key(String parserClass, String url, String encoding, String userAgent, byte[] content) {
+            this.parserClass = parserClass;
+            this.url = url;
+            this.encoding = encoding;
+            this.userAgent = userAgent;
+            this.length = content.length;
+            this.contentHash = hash(content);
+            int h = parserClass.hashCode();
+            h = 31 * h + url.hashCode();
+            h = 31 * h + (encoding == null ? 0 : encoding.hashCode());
+            h = 31 * h + (userAgent == null ? 0 : userAgent.hashCode());
+            h = 31 * h + (int) (contentHash ^ (contentHash >>> 32));
+            this.hashCode = h;
+        }
+
+        // 64 bits FNV-1a, much cheaper than parsing the page
+        private static long hash(byte[] content) {
+            long h = 0xcbf29ce484222325L;
+            for (byte b : content) {
+                h ^= b & 0xff;
+                h *= 0x100000001b3L;
+            }
+            return h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hashCode == other.hashCode
+                    && length == other.length
+                    && contentHash == other.contentHash
+                    && url.equals(other.url)
+                    && parserClass.equals(other.parserClass)
+                    && equals(encoding, other.encoding)
+                    && equals(userAgent, other.userAgent);
+        }
+
+        private static boolean equals(String s1, String s2) {
+            return s1 == null ? s2 == null : s1.equals(s2);
+        }
+    }
+
+    private final Map<Key, List<URL>> cache;
+
+    private final double verifyRatio;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong verifications = new AtomicLong();
+
+    private final AtomicLong mismatches = new AtomicLong();
+
+    /**
+     * @param size maximum number of cached pages
+     * @param verifyRatio fraction (0 to 1) of the hits which are parsed again to check the cached result
+     */
+    EmbeddedResourcesCache(int size, double verifyRatio) {
+        @SuppressWarnings("unchecked") // LRUMap is not generic currently
+        Map<Key, List<URL>> map = new LRUMap(size);
+        this.cache = Collections.synchronizedMap(map);
+        this.verifyRatio = verifyRatio;
+    }
+
+    /**
+     * @return the cache configured by property {@value #CACHE_SIZE_PROP}, or null if it is disabled
+     */
+    public static EmbeddedResourcesCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the embedded resource URLs of the page using the parser, or from the cache if the
+     * same page was already parsed.
+     *
+     * @param parser the parser to use if the page is not cached
+     * @param userAgent User Agent
+     * @param html HTML code
+     * @param baseUrl Base URL from which the HTML code was obtained
+     * @param encoding Charset
+     * @return an Iterator for the resource URLs
+     * @throws HTMLParseException when parsing the <code>html</code> fails
+     * @see HTMLParser#getEmbeddedResourceURLs(String, byte[], URL, String)
+     */
+    public Iterator<URL> getEmbeddedResourceURLs(HTMLParser parser, String userAgent, byte[] html,
+            URL baseUrl, String encoding) throws HTMLParseException {
+        Key key = new Key(parser.getClass().getName(), baseUrl.toString(), encoding, userAgent, html);
+        List<URL> urls = cache.get(key);
+        if (urls == null) {
+            misses.incrementAndGet();
+            urls = parse(parser, userAgent, html, baseUrl, encoding);
+            cache.put(key, urls);
+        } else {
+            hits.incrementAndGet();
+            if (verifyRatio > 0 && ThreadLocalRandom.current().nextDouble() < verifyRatio) {
+                verifications.incrementAndGet();
+                List<URL> parsed = parse(parser, userAgent, html, baseUrl, encoding);
+                if (!sameUrls(urls, parsed)) {
+                    mismatches.incrementAndGet();
+                    log.warn("Cached embedded resources differ from parsed ones for " + baseUrl
+                            + ", cached: " + urls + ", parsed: " + parsed);
+                    cache.put(key, parsed);
+                    urls = parsed;
+                }
+            }
+        }
+        return urls.iterator();
+    }
+
+    private static List<URL> parse(HTMLParser parser, String userAgent, byte[] html, URL baseUrl, String encoding)
+            throws HTMLParseException {
+        List<URL> urls = new ArrayList<>();
+        Iterator<URL> it = parser.getEmbeddedResourceURLs(userAgent, html, baseUrl, encoding);
+        while (it.hasNext()) {
+            urls.add(it.next());
+        }
+        return Collections.unmodifiableList(urls);
+    }
+
+    // Compare the string forms, as URL.equals() resolves host names
+    private static boolean sameUrls(List<URL> urls1, List<URL> urls2) {
+        if (urls1.size() != urls2.size()) {
+            return false;
+        }
+        for (int i = 0; i < urls1.size(); i++) {
+            if (!String.valueOf(urls1.get(i)).equals(String.valueOf(urls2.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of pages found in the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of pages which had to be parsed
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of cache hits which were parsed again to be checked
+     */
+    public long getVerifications() {
+        return verifications.get();
+    }
+
+    /**
+     * @return number of checked cache hits which did not match the parsed result
+     */
+    public long getMismatches() {
+        return mismatches.get();
+    }
+
+    /**
+     * Log the statistics and empty the cache, called at the end of a test.
+     */
+    public void clear() {
+        if (hits.get() + misses.get() > 0) { // called by each sampler
+            log.info("Embedded resources cache: " + toString());
+        }
+        cache.clear();
+        hits.set(0);
+        misses.set(0);
+        verifications.set(0);
+        mismatches.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + cache.size() + " hits=" + hits.get() + " misses=" + misses.get() // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$
+                + " verifications=" + verifications.get() + " mismatches=" + mismatches.get(); // $NON-NLS-1$ $NON-NLS-2$
+    }
+}
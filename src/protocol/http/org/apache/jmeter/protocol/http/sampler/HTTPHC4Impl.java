@@ -143,9 +143,9 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
     /** Idle timeout to be applied to connections if no Keep-Alive header is sent by the server (default 0 = disable) */
     private static final int IDLE_TIMEOUT = JMeterUtils.getPropDefault("httpclient4.idletimeout", 0);
 
-    private static final String CONTEXT_METRICS = "jmeter_metrics"; // TODO hack for metrics related to HTTPCLIENT-1081, to be removed later
+    static final String CONTEXT_METRICS = "jmeter_metrics"; // TODO hack for metrics related to HTTPCLIENT-1081, to be removed later
 
-    private static final ConnectionKeepAliveStrategy IDLE_STRATEGY = new DefaultConnectionKeepAliveStrategy(){
+    static final ConnectionKeepAliveStrategy IDLE_STRATEGY = new DefaultConnectionKeepAliveStrategy(){
         @Override
         public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
             long duration = super.getKeepAliveDuration(response, context);
@@ -166,7 +166,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
      * would throw org.apache.http.impl.conn.ConnectionShutdownException
      * See https://bz.apache.org/jira/browse/HTTPCLIENT-1081
      */
-    private static final HttpResponseInterceptor METRICS_SAVER = new HttpResponseInterceptor(){
+    static final HttpResponseInterceptor METRICS_SAVER = new HttpResponseInterceptor(){
         @Override
         public void process(HttpResponse response, HttpContext context)
                 throws HttpException, IOException {
@@ -174,7 +174,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
             context.setAttribute(CONTEXT_METRICS, metrics);
         }
     };
-    private static final HttpRequestInterceptor METRICS_RESETTER = new HttpRequestInterceptor() {
+    static final HttpRequestInterceptor METRICS_RESETTER = new HttpRequestInterceptor() {
         @Override
         public void process(HttpRequest request, HttpContext context)
                 throws HttpException, IOException {
@@ -289,28 +289,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
 
         HttpRequestBase httpRequest = null;
         try {
-            URI uri = url.toURI();
-            if (method.equals(HTTPConstants.POST)) {
-                httpRequest = new HttpPost(uri);
-            } else if (method.equals(HTTPConstants.GET)) {
-                httpRequest = new HttpGet(uri);
-            } else if (method.equals(HTTPConstants.PUT)) {
-                httpRequest = new HttpPut(uri);
-            } else if (method.equals(HTTPConstants.HEAD)) {
-                httpRequest = new HttpHead(uri);
-            } else if (method.equals(HTTPConstants.TRACE)) {
-                httpRequest = new HttpTrace(uri);
-            } else if (method.equals(HTTPConstants.OPTIONS)) {
-                httpRequest = new HttpOptions(uri);
-            } else if (method.equals(HTTPConstants.DELETE)) {
-                httpRequest = new HttpDelete(uri);
-            } else if (method.equals(HTTPConstants.PATCH)) {
-                httpRequest = new HttpPatch(uri);
-            } else if (HttpWebdav.isWebdavMethod(method)) {
-                httpRequest = new HttpWebdav(method, uri);
-            } else {
-                throw new IllegalArgumentException("Unexpected method: '"+method+"'");
-            }
+            httpRequest = createHttpRequest(url.toURI(), method);
             setupRequest(url, httpRequest, res); // can throw IOException
         } catch (Exception e) {
             res.sampleStart();
@@ -442,12 +421,43 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         return res;
     }
 
+    /**
+     * Create the request for the HTTP method
+     * @param uri URI of the request
+     * @param method HTTP method
+     * @return {@link HttpRequestBase}
+     * @throws IllegalArgumentException if method is not supported
+     */
+    protected HttpRequestBase createHttpRequest(URI uri, String method) {
+        if (method.equals(HTTPConstants.POST)) {
+            return new HttpPost(uri);
+        } else if (method.equals(HTTPConstants.GET)) {
+            return new HttpGet(uri);
+        } else if (method.equals(HTTPConstants.PUT)) {
+            return new HttpPut(uri);
+        } else if (method.equals(HTTPConstants.HEAD)) {
+            return new HttpHead(uri);
+        } else if (method.equals(HTTPConstants.TRACE)) {
+            return new HttpTrace(uri);
+        } else if (method.equals(HTTPConstants.OPTIONS)) {
+            return new HttpOptions(uri);
+        } else if (method.equals(HTTPConstants.DELETE)) {
+            return new HttpDelete(uri);
+        } else if (method.equals(HTTPConstants.PATCH)) {
+            return new HttpPatch(uri);
+        } else if (HttpWebdav.isWebdavMethod(method)) {
+            return new HttpWebdav(method, uri);
+        } else {
+            throw new IllegalArgumentException("Unexpected method: '"+method+"'");
+        }
+    }
+
     /**
      * Store in JMeter Variables the UserToken so that the SSL context is reused
      * See https://bz.apache.org/bugzilla/show_bug.cgi?id=57804
      * @param localContext {@link HttpContext}
      */
-    private void extractClientContextAfterSample(HttpContext localContext) {
+    protected void extractClientContextAfterSample(HttpContext localContext) {
         Object userToken = localContext.getAttribute(HttpClientContext.USER_TOKEN);
         if(userToken != null) {
             if(log.isDebugEnabled()) {
@@ -466,7 +476,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
      * See https://bz.apache.org/bugzilla/show_bug.cgi?id=57804
      * @param localContext {@link HttpContext}
      */
-    private void setupClientContextBeforeSample(HttpContext localContext) {
+    protected void setupClientContextBeforeSample(HttpContext localContext) {
         Object userToken = null;
         // During recording JMeterContextService.getContext().getVariables() is null
         JMeterVariables jMeterVariables = JMeterContextService.getContext().getVariables();
@@ -711,7 +721,10 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         if (httpClient != null && resetSSLContext && HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol())) {
             ((AbstractHttpClient) httpClient).clearRequestInterceptors(); 
             ((AbstractHttpClient) httpClient).clearResponseInterceptors(); 
-            httpClient.getConnectionManager().closeIdleConnections(1L, TimeUnit.MICROSECONDS);
+            if (!(httpClient.getConnectionManager() instanceof SharedConnectionManager)) {
+                // Connections of a shared pool are not owned by this thread
+                httpClient.getConnectionManager().closeIdleConnections(1L, TimeUnit.MICROSECONDS);
+            }
             httpClient = null;
             JsseSSLManager sslMgr = (JsseSSLManager) SSLManager.getInstance();
             sslMgr.resetContext();
@@ -722,11 +735,16 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
 
             HttpParams clientParams = new DefaultedHttpParams(new BasicHttpParams(), DEFAULT_HTTP_PARAMS);
 
-            DnsResolver resolver = this.testElement.getDNSResolver();
-            if (resolver == null) {
-                resolver = new SystemDefaultDnsResolver();
+            ClientConnectionManager connManager;
+            if (SharedConnectionManager.isEnabled()) {
+                connManager = SharedConnectionManager.getInstance();
+            } else {
+                DnsResolver resolver = this.testElement.getDNSResolver();
+                if (resolver == null) {
+                    resolver = new SystemDefaultDnsResolver();
+                }
+                connManager = new MeasuringConnectionManager(SchemeRegistryFactory.createDefault(), resolver);
             }
-            ClientConnectionManager connManager = new MeasuringConnectionManager(SchemeRegistryFactory.createDefault(), resolver);
             
             httpClient = new DefaultHttpClient(connManager, clientParams) {
                 @Override
@@ -784,6 +802,9 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
 
         MeasuringConnectionManager connectionManager = (MeasuringConnectionManager) httpClient.getConnectionManager();
         connectionManager.setSample(res);
+        if (connectionManager instanceof SharedConnectionManager) {
+            ((SharedConnectionManager) connectionManager).setDnsResolver(this.testElement.getDNSResolver());
+        }
 
         // TODO - should this be done when the client is created?
         // If so, then the details need to be added as part of HttpClientKey
@@ -876,7 +897,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
      *            containing the headers
      * @return string containing the headers, one per line
      */
-    private String getResponseHeaders(HttpResponse response) {
+    protected String getResponseHeaders(HttpResponse response) {
         StringBuilder headerBuf = new StringBuilder();
         Header[] rh = response.getAllHeaders();
         headerBuf.append(response.getStatusLine());// header[0] is not the status line...
@@ -988,7 +1009,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
      *            <code>HttpMethod</code> which represents the request
      * @return the headers as a string
      */
-    private String getConnectionHeaders(HttpRequest method) {
+    protected String getConnectionHeaders(HttpRequest method) {
         if(method != null) {
             // Get all the request headers
             StringBuilder hdrs = new StringBuilder(100);
@@ -1383,7 +1404,7 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
         return charset;
     }
 
-    private void saveConnectionCookies(HttpResponse method, URL u, CookieManager cookieManager) {
+    protected void saveConnectionCookies(HttpResponse method, URL u, CookieManager cookieManager) {
         if (cookieManager != null) {
             Header[] hdrs = method.getHeaders(HTTPConstants.HEADER_SET_COOKIE);
             for (Header hdr : hdrs) {
@@ -1415,7 +1436,10 @@ public class HTTPHC4Impl extends HTTPHCAbstractImpl {
                 ((AbstractHttpClient) cl).clearRequestInterceptors(); 
                 ((AbstractHttpClient) cl).clearResponseInterceptors();
                 ((AbstractHttpClient) cl).close();
-                cl.getConnectionManager().shutdown();
+                cl.getConnectionManager().shutdown(); // does nothing for the shared pool
+                if (cl.getConnectionManager() instanceof SharedConnectionManager) {
+                    ((SharedConnectionManager) cl.getConnectionManager()).threadFinished();
+                }
             }
             mapHttpClientPerHttpClientKey.clear();
         }
@@ -0,0 +1,828 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.Header;
+import org.apache.http.ContentTooLongException;
+import org.apache.http.HttpConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.NTCredentials;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.CookieSpecs;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.protocol.ResponseContentEncoding;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.MultipartEntity;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ContentBufferEntity;
+import org.apache.http.nio.NHttpClientConnection;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.conn.NHttpClientConnectionManager;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.nio.reactor.IOEventDispatch;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
+import org.apache.http.nio.util.SimpleInputBuffer;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.apache.jmeter.protocol.http.control.AuthManager;
+import org.apache.jmeter.protocol.http.control.Authorization;
+import org.apache.jmeter.protocol.http.control.CacheManager;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jmeter.util.SSLManager;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * HTTP Sampler using Apache HttpAsyncClient 4.x.
+ * <p>
+ * Requests of all JMeter threads are multiplexed by a shared non-blocking I/O reactor
+ * over a small number of I/O threads; each JMeter thread only waits for its own response.
+ * Connections are kept in a single shared pool, keyed by the user token which
+ * {@link #setupClientContextBeforeSample(HttpContext)} sets to the name of the JMeter thread,
+ * so a connection is only reused by the JMeter thread that opened it, as with the HttpClient4 implementation.
+ * Unlike HttpClient4, the connections of a thread are not closed when the thread finishes,
+ * but once they expire, or when the pool needs room for a new connection.
+ * <p>
+ * HTTPS connections use the SSL context of the JMeter thread from {@link JsseSSLManager},
+ * so the keystore, the SSL protocols and the session context settings apply as with HttpClient4,
+ * and neither implementation checks server certificates or host names.
+ * When the SSL context is reset at the start of an iteration, connections opened with
+ * the previous context are still reused until they expire.
+ * <p>
+ * Latency, connect time and response sizes are computed as in {@link HTTPHC4Impl}.
+ * Kerberos authentication, slow connections (CPS), custom DNS resolvers and the selection
+ * of the client certificate alias from a variable are not supported by this implementation.
+ */
+public class HTTPHCAsyncImpl extends HTTPHC4Impl {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Number of I/O threads shared by all the samplers (default number of processors) */
+    private static final int IO_THREADS =
+            JMeterUtils.getPropDefault("httpclient4.async.io_threads", Runtime.getRuntime().availableProcessors()); // $NON-NLS-1$
+
+    /** Maximum number of open connections, in total and per host (default 10000) */
+    private static final int MAX_CONNECTIONS =
+            JMeterUtils.getPropDefault("httpclient4.async.max_connections", 10000); // $NON-NLS-1$
+
+    private static final String CONTEXT_SAMPLE_RESULT = "jmeter_sample_result"; // $NON-NLS-1$
+
+    /** Value of PoolingNHttpClientConnectionManager.IOSESSION_FACTORY_REGISTRY, not public */
+    private static final String CONTEXT_IOSESSION_FACTORY_REGISTRY = "http.iosession-factory-registry"; // $NON-NLS-1$
+
+    private static final String HTTPS_PROTOCOLS = JMeterUtils.getPropDefault("https.socket.protocols", ""); // $NON-NLS-1$ $NON-NLS-2$
+
+    /**
+     * Used for the HTTPS connections of requests without the session strategies of their thread,
+     * with the SSL context of the I/O thread.
+     */
+    private static final SchemeIOSessionStrategy IO_THREAD_SSL = new SchemeIOSessionStrategy() {
+        @Override
+        public boolean isLayeringRequired() {
+            return true;
+        }
+
+        @Override
+        public IOSession upgrade(HttpHost host, IOSession iosession) throws IOException {
+            try {
+                return createSSLStrategy(((JsseSSLManager) SSLManager.getInstance()).getContext())
+                        .upgrade(host, iosession);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Failed to get the SSL context", e);
+            }
+        }
+    };
+
+    /**
+     * Request interceptors are called before a connection is leased, so the connection
+     * is only known here for redirected requests, the metrics are otherwise reset when
+     * the connection is leased by {@link MeasuringNHttpConnectionManager}.
+     */
+    private static final HttpRequestInterceptor REDIRECT_METRICS_RESETTER = new HttpRequestInterceptor() {
+        @Override
+        public void process(HttpRequest request, HttpContext context)
+                throws HttpException, IOException {
+            HttpConnection conn = (HttpConnection) context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+            if (conn != null) {
+                conn.getMetrics().reset();
+            }
+        }
+    };
+
+    private static final PoolingNHttpClientConnectionManager POOL;
+
+    private static final MeasuringNHttpConnectionManager CONNECTION_MANAGER;
+
+    private static final CloseableHttpAsyncClient HTTP_CLIENT;
+
+    static {
+        log.info("Starting HttpAsyncClient with " + IO_THREADS + " I/O threads, max connections = " + MAX_CONNECTIONS);
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "HttpAsyncClient-" + threadNumber.incrementAndGet()); // $NON-NLS-1$
+                thread.setDaemon(true); // must not prevent JMeter from exiting
+                return thread;
+            }
+        };
+        try {
+            IOReactorConfig ioReactorConfig = IOReactorConfig.custom()
+                    .setIoThreadCount(IO_THREADS)
+                    .build();
+            POOL = new PoolingNHttpClientConnectionManager(
+                    new DefaultConnectingIOReactor(ioReactorConfig, threadFactory), createSchemes(IO_THREAD_SSL));
+            POOL.setMaxTotal(MAX_CONNECTIONS);
+            POOL.setDefaultMaxPerRoute(MAX_CONNECTIONS);
+            CONNECTION_MANAGER = new MeasuringNHttpConnectionManager(POOL);
+        } catch (IOException e) {
+            log.error("Failed to initialise HttpAsyncClient", e);
+            throw new IllegalStateException("Failed to initialise HttpAsyncClient", e);
+        }
+        HTTP_CLIENT = HttpAsyncClients.custom()
+                .setConnectionManager(CONNECTION_MANAGER)
+                .setThreadFactory(threadFactory)
+                .setKeepAliveStrategy(IDLE_STRATEGY)
+                .disableCookieManagement() // Bug 52126 - we do our own cookie handling
+                .addInterceptorLast(REDIRECT_METRICS_RESETTER)
+                .addInterceptorLast(METRICS_SAVER)
+                .build();
+        HTTP_CLIENT.start();
+    }
+
+    private volatile Future<HttpResponse> currentFuture; // Accessed from multiple threads
+
+    private boolean resetSSLContext;
+
+    // The SSL context of this thread and the session strategies using it
+    private SSLContext sslContext;
+
+    private Registry<SchemeIOSessionStrategy> schemes;
+
+    protected HTTPHCAsyncImpl(HTTPSamplerBase testElement) {
+        super(testElement);
+    }
+
+    @Override
+    protected HTTPSampleResult sample(URL url, String method,
+            boolean areFollowingRedirect, int frameDepth) {
+
+        if (log.isDebugEnabled()) {
+            log.debug("Start : sample " + url.toString());
+            log.debug("method " + method+ " followingRedirect " + areFollowingRedirect + " depth " + frameDepth);
+        }
+
+        HTTPSampleResult res = createSampleResult(url, method);
+
+        HttpRequestBase httpRequest = null;
+        HttpHost target = null;
+        Registry<SchemeIOSessionStrategy> threadSchemes = null;
+        try {
+            URI uri = url.toURI();
+            httpRequest = createHttpRequest(uri, method);
+            setupRequest(url, httpRequest, res); // can throw IOException
+            target = URIUtils.extractHost(uri);
+            if (HTTPConstants.PROTOCOL_HTTPS.equalsIgnoreCase(url.getProtocol())) {
+                threadSchemes = getThreadSchemes(); // can throw GeneralSecurityException
+            }
+        } catch (Exception e) {
+            res.sampleStart();
+            res.sampleEnd();
+            errorResult(e, res);
+            return res;
+        }
+
+        HttpClientContext localContext = HttpClientContext.create();
+        // The user token is the state of the pooled connections, so threads do not share connections
+        setupClientContextBeforeSample(localContext);
+        setupRequestConfig(url, httpRequest, localContext);
+        localContext.setAttribute(CONTEXT_SAMPLE_RESULT, res);
+        if (threadSchemes != null) {
+            // The SSL handshake runs on an I/O thread, so it must be given the SSL context of this thread
+            localContext.setAttribute(CONTEXT_IOSESSION_FACTORY_REGISTRY, threadSchemes);
+        }
+
+        res.sampleStart();
+
+        final CacheManager cacheManager = getCacheManager();
+        if (cacheManager != null && HTTPConstants.GET.equalsIgnoreCase(method)) {
+           if (cacheManager.inCache(url)) {
+               return updateSampleResultForResourceInCache(res);
+           }
+        }
+
+        MeasuringResponseConsumer responseConsumer = new MeasuringResponseConsumer(res, !testElement.useMD5());
+        ResponseLatch responseLatch = new ResponseLatch();
+        try {
+            handleMethod(method, res, httpRequest, localContext);
+            bufferMultipartEntity(httpRequest);
+            // perform the sample, this thread only waits for its own response
+            Future<HttpResponse> future = HTTP_CLIENT.execute(
+                    HttpAsyncMethods.create(target, httpRequest), responseConsumer, localContext, responseLatch);
+            currentFuture = future;
+            HttpResponse httpResponse = getResponse(future, responseLatch);
+
+            // Needs to be done after execute to pick up all the headers
+            final HttpRequest request = localContext.getRequest();
+            extractClientContextAfterSample(localContext);
+            // We've finished with the request, so we can add the LocalAddress to it for display
+            final InetAddress localAddr = httpRequest.getConfig().getLocalAddress();
+            if (localAddr != null) {
+                request.addHeader(HEADER_LOCAL_ADDRESS, localAddr.toString());
+            }
+            res.setRequestHeaders(getConnectionHeaders(request));
+
+            Header contentType = httpResponse.getLastHeader(HTTPConstants.HEADER_CONTENT_TYPE);
+            if (contentType != null){
+                String ct = contentType.getValue();
+                res.setContentType(ct);
+                res.setEncodingAndType(ct);
+            }
+            HttpEntity entity = httpResponse.getEntity();
+            if (entity != null) {
+                byte[] body = responseConsumer.getBody();
+                if (body != null) {
+                    res.setResponseData(body);
+                } else {
+                    // The latency was computed by the I/O thread when the first response bytes arrived
+                    long latency = res.getLatency();
+                    res.setResponseData(readResponse(res, entity.getContent(), (int) entity.getContentLength()));
+                    res.setLatency(latency);
+                }
+            }
+
+            res.sampleEnd(); // Done with the sampling proper.
+            currentFuture = null;
+
+            // Now collect the results into the HTTPSampleResult:
+            StatusLine statusLine = httpResponse.getStatusLine();
+            int statusCode = statusLine.getStatusCode();
+            res.setResponseCode(Integer.toString(statusCode));
+            res.setResponseMessage(statusLine.getReasonPhrase());
+            res.setSuccessful(isSuccessCode(statusCode));
+
+            res.setResponseHeaders(getResponseHeaders(httpResponse));
+            if (res.isRedirect()) {
+                final Header headerLocation = httpResponse.getLastHeader(HTTPConstants.HEADER_LOCATION);
+                if (headerLocation == null) { // HTTP protocol violation, but avoids NPE
+                    throw new IllegalArgumentException("Missing location header in redirect for " + httpRequest.getRequestLine());
+                }
+                String redirectLocation = headerLocation.getValue();
+                res.setRedirectLocation(redirectLocation);
+            }
+
+            // record some sizes to allow HTTPSampleResult.getBytes() with different options
+            long headerBytes =
+                res.getResponseHeaders().length()   // condensed length (without \r)
+              + httpResponse.getAllHeaders().length // Add \r for each header
+              + 1 // Add \r for initial header
+              + 2; // final \r\n before data
+            long totalBytes = responseConsumer.getReceivedBytes();
+            res.setHeadersSize((int) headerBytes);
+            res.setBodySize((int)(totalBytes - headerBytes));
+            if (log.isDebugEnabled()) {
+                log.debug("ResponseHeadersSize=" + res.getHeadersSize() + " Content-Length=" + res.getBodySize()
+                        + " Total=" + (res.getHeadersSize() + res.getBodySize()));
+            }
+
+            // If we redirected automatically, the URL may have changed
+            List<URI> redirectLocations = localContext.getRedirectLocations();
+            if (getAutoRedirects() && redirectLocations != null && !redirectLocations.isEmpty()) {
+                res.setURL(redirectLocations.get(redirectLocations.size() - 1).toURL());
+            }
+
+            // Store any cookies received in the cookie manager:
+            saveConnectionCookies(httpResponse, res.getURL(), getCookieManager());
+
+            // Save cache information
+            if (cacheManager != null){
+                cacheManager.saveDetails(httpResponse, res);
+            }
+
+            // Follow redirects and download page resources if appropriate:
+            res = resultProcessing(areFollowingRedirect, frameDepth, res);
+
+        } catch (IOException e) {
+            log.debug("IOException", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+           // pick up headers if failed to execute the request
+            if (res.getRequestHeaders() != null) {
+                log.debug("Overwriting request old headers: " + res.getRequestHeaders());
+            }
+            res.setRequestHeaders(getConnectionHeaders(localContext.getRequest()));
+            errorResult(e, res);
+            return res;
+        } catch (RuntimeException e) {
+            log.debug("RuntimeException", e);
+            if (res.getEndTime() == 0) {
+                res.sampleEnd();
+            }
+            errorResult(e, res);
+            return res;
+        } finally {
+            currentFuture = null;
+        }
+        return res;
+    }
+
+    /**
+     * Wait for the response of the request
+     * @param future {@link Future} of the request
+     * @param responseLatch {@link ResponseLatch} the request was executed with
+     * @return the {@link HttpResponse}
+     * @throws IOException if the request failed or the thread was interrupted
+     */
+    private HttpResponse getResponse(Future<HttpResponse> future, ResponseLatch responseLatch) throws IOException {
+        try {
+            responseLatch.await();
+            return future.get(); // does not block anymore
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            InterruptedIOException ioe = new InterruptedIOException("Interrupted while waiting for response");
+            ioe.initCause(e);
+            throw ioe;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new ClientProtocolException(cause);
+        }
+    }
+
+    /**
+     * Setup the {@link RequestConfig} of the request and the credentials of the context
+     * from the parameters set by {@link #setupRequest(URL, HttpRequestBase, HTTPSampleResult)},
+     * the proxy and the {@link AuthManager}, as they are not taken from the shared client.
+     *
+     * @param url {@link URL} of the request
+     * @param httpRequest the request
+     * @param localContext {@link HttpClientContext} of the request
+     */
+    private void setupRequestConfig(URL url, HttpRequestBase httpRequest, HttpClientContext localContext) {
+        HttpParams requestParams = httpRequest.getParams();
+        RequestConfig.Builder config = RequestConfig.custom()
+                .setCookieSpec(CookieSpecs.IGNORE_COOKIES)
+                .setLocalAddress((InetAddress) requestParams.getParameter(ConnRoutePNames.LOCAL_ADDRESS))
+                .setSocketTimeout(requestParams.getIntParameter(CoreConnectionPNames.SO_TIMEOUT, 0))
+                .setConnectTimeout(requestParams.getIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, 0))
+                .setRedirectsEnabled(requestParams.getBooleanParameter(ClientPNames.HANDLE_REDIRECTS, false));
+
+        HttpHost virtualHost = (HttpHost) requestParams.getParameter(ClientPNames.VIRTUAL_HOST);
+        if (virtualHost != null) {
+            httpRequest.setHeader(HTTPConstants.HEADER_HOST, virtualHost.toHostString());
+        }
+
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        String proxyHost = getProxyHost();
+        int proxyPort = getProxyPortInt();
+        String proxyPass = getProxyPass();
+        String proxyUser = getProxyUser();
+        boolean useStaticProxy = isStaticProxy(url.getHost());
+        boolean useDynamicProxy = isDynamicProxy(proxyHost, proxyPort);
+        // if both dynamic and static are used, the dynamic proxy has priority over static
+        if (!useDynamicProxy) {
+            proxyHost = PROXY_HOST;
+            proxyPort = PROXY_PORT;
+            proxyUser = PROXY_USER;
+            proxyPass = PROXY_PASS;
+        }
+        if (useStaticProxy || useDynamicProxy) {
+            config.setProxy(new HttpHost(proxyHost, proxyPort));
+            if (proxyUser.length() > 0) {
+                credentialsProvider.setCredentials(new AuthScope(proxyHost, proxyPort),
+                        new NTCredentials(proxyUser, proxyPass, localHost, PROXY_DOMAIN));
+            }
+        }
+
+        AuthManager authManager = getAuthManager();
+        Authorization auth = authManager == null ? null : authManager.getAuthForURL(url);
+        if (auth != null) {
+            if (AuthManager.Mechanism.KERBEROS.equals(auth.getMechanism())) {
+                log.warn("Kerberos authentication is not supported by " + HTTPSamplerFactory.IMPL_HTTP_CLIENT4_ASYNC
+                        + ", ignoring it for " + url);
+            } else {
+                String realm = auth.getRealm();
+                credentialsProvider.setCredentials(
+                        new AuthScope(url.getHost(), url.getPort(), realm.length() == 0 ? null : realm),
+                        new NTCredentials(auth.getUser(), auth.getPass(), localHost, auth.getDomain()));
+            }
+        }
+        localContext.setCredentialsProvider(credentialsProvider);
+        // Set on the request so that it overrides the (deprecated) request parameters
+        httpRequest.setConfig(config.build());
+    }
+
+    /**
+     * The request producer reads the content of the entity, which multipart entities
+     * can only provide when small, so they are sent from a buffer.
+     *
+     * @param httpRequest the request
+     * @throws IOException if the entity cannot be written to the buffer
+     */
+    private void bufferMultipartEntity(HttpRequestBase httpRequest) throws IOException {
+        if (httpRequest instanceof HttpEntityEnclosingRequestBase) {
+            HttpEntityEnclosingRequestBase enclosingRequest = (HttpEntityEnclosingRequestBase) httpRequest;
+            HttpEntity entity = enclosingRequest.getEntity();
+            if (entity instanceof MultipartEntity) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                entity.writeTo(bos);
+                ByteArrayEntity bufferedEntity = new ByteArrayEntity(bos.toByteArray());
+                bufferedEntity.setContentType(entity.getContentType());
+                enclosingRequest.setEntity(bufferedEntity);
+            }
+        }
+    }
+
+    /**
+     * @return the session strategies using the SSL context of this thread, as configured in {@link JsseSSLManager}
+     * @throws GeneralSecurityException if the SSL context cannot be created
+     */
+    private Registry<SchemeIOSessionStrategy> getThreadSchemes() throws GeneralSecurityException {
+        JsseSSLManager sslMgr = (JsseSSLManager) SSLManager.getInstance();
+        if (resetSSLContext) {
+            sslMgr.resetContext();
+            resetSSLContext = false;
+        }
+        SSLContext context = sslMgr.getContext();
+        if (context != sslContext) {
+            schemes = createSchemes(createSSLStrategy(context));
+            sslContext = context;
+        }
+        return schemes;
+    }
+
+    private static Registry<SchemeIOSessionStrategy> createSchemes(SchemeIOSessionStrategy https) {
+        return RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register(HTTPConstants.PROTOCOL_HTTP, NoopIOSessionStrategy.INSTANCE)
+                .register(HTTPConstants.PROTOCOL_HTTPS, https)
+                .build();
+    }
+
+    private static SSLIOSessionStrategy createSSLStrategy(SSLContext context) {
+        String[] protocols = HTTPS_PROTOCOLS.length() > 0 ? HTTPS_PROTOCOLS.split(" ") : null; // $NON-NLS-1$
+        // As HC4TrustAllSSLSocketFactory, host names are not verified
+        return new SSLIOSessionStrategy(context, protocols, null, NoopHostnameVerifier.INSTANCE);
+    }
+
+    /**
+     * @param target host connected to directly
+     * @return the statistics of the shared connection pool for the target
+     */
+    static PoolStats getConnectionPoolStats(HttpHost target) {
+        return POOL.getStats(new HttpRoute(target));
+    }
+
+    @Override
+    protected void notifyFirstSampleAfterLoopRestart() {
+        super.notifyFirstSampleAfterLoopRestart();
+        resetSSLContext = !USE_CACHED_SSL_CONTEXT;
+    }
+
+    @Override
+    protected void threadFinished() {
+        log.debug("Thread Finished");
+        // The pool cannot close the connections of a single thread, so only close those that can no longer be reused
+        CONNECTION_MANAGER.closeExpiredConnections();
+    }
+
+    @Override
+    public boolean interrupt() {
+        Future<HttpResponse> future = currentFuture;
+        if (future != null) {
+            currentFuture = null; // don't try twice
+            future.cancel(true);
+        }
+        return future != null;
+    }
+
+    /**
+     * Allows to wait for the response without calling {@link Future#get()}, which waits on a monitor
+     * and would so pin the carrier thread when JMeter threads are virtual threads.
+     */
+    private static final class ResponseLatch implements FutureCallback<HttpResponse> {
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        void await() throws InterruptedException {
+            latch.await();
+        }
+
+        @Override
+        public void completed(HttpResponse result) {
+            latch.countDown();
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            latch.countDown();
+        }
+
+        @Override
+        public void cancelled() {
+            latch.countDown();
+        }
+    }
+
+    /**
+     * Handles the response body as it is received and records the latency and the number of bytes received.
+     * The body is written to a {@link ResponseBodyReader.Sink}, so that it is stored, truncated, discarded
+     * or written to a file without being buffered first. Bodies with a content encoding, and bodies
+     * whose MD5 is computed, are buffered instead and read by the sampling thread.
+     * Called by the I/O threads, the results are published to the sampling thread by the {@link Future}.
+     */
+    private static final class MeasuringResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+
+        private static final ResponseContentEncoding CONTENT_ENCODING = new ResponseContentEncoding();
+
+        private final SampleResult sample;
+
+        private final boolean streamBody;
+
+        private HttpResponse response;
+
+        private SimpleInputBuffer buffer; // when the body is buffered
+
+        private ResponseBodyReader.Sink sink; // when the body is streamed
+
+        private byte[] chunk;
+
+        private ByteBuffer readBuffer;
+
+        private byte[] body;
+
+        private boolean contentReceived;
+
+        private long receivedBytes;
+
+        /**
+         * @param sample the result of the request
+         * @param streamBody false if the body must be buffered and read by {@link HTTPSamplerBase#readResponse}
+         */
+        MeasuringResponseConsumer(SampleResult sample, boolean streamBody) {
+            this.sample = sample;
+            this.streamBody = streamBody;
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+            long length = entity.getContentLength();
+            Header contentEncoding = entity.getContentEncoding();
+            // Decoded by the sampling thread once the whole body is received
+            boolean encoded = contentEncoding != null && !"identity".equalsIgnoreCase(contentEncoding.getValue()); // $NON-NLS-1$
+            if (streamBody && !encoded) {
+                sink = ResponseBodyReader.newSink(sample, length > Integer.MAX_VALUE ? 0 : (int) length);
+                chunk = ResponseBodyReader.takeChunk();
+                readBuffer = ByteBuffer.wrap(chunk);
+                return;
+            }
+            if (length > Integer.MAX_VALUE) {
+                throw new ContentTooLongException("Entity content is too long: " + length);
+            }
+            buffer = new SimpleInputBuffer(length < 0 ? 4096 : (int) length, HeapByteBufferAllocator.INSTANCE);
+            response.setEntity(new ContentBufferEntity(entity, buffer));
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+            if (sink != null) {
+                int bytesRead;
+                while ((bytesRead = decoder.read(readBuffer)) > 0) {
+                    sink.write(chunk, bytesRead); // ends the latency on the first bytes
+                    readBuffer.clear();
+                }
+                return;
+            }
+            // As with HTTPSamplerBase#readResponse, the latency is the time to the first bytes of the body
+            if (buffer.consumeContent(decoder) > 0 && !contentReceived) {
+                sample.latencyEnd();
+                contentReceived = true;
+            }
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) throws IOException {
+            if (sink != null) {
+                body = sink.finish();
+            } else if (!contentReceived && response.getEntity() != null) { // Bug 46838 - if there was no data, still need to set latency
+                sample.latencyEnd();
+            }
+            HttpConnectionMetrics metrics = (HttpConnectionMetrics) context.getAttribute(CONTEXT_METRICS);
+            if (metrics != null) {
+                receivedBytes = metrics.getReceivedBytesCount();
+            }
+            try {
+                // Response interceptors are called before the entity is available
+                CONTENT_ENCODING.process(response, context);
+            } catch (HttpException | IOException e) { // the response is returned undecoded
+                log.warn("Could not decode response content: " + e.getMessage());
+            }
+            return response;
+        }
+
+        @Override
+        protected void releaseResources() {
+            if (sink != null) {
+                sink.close();
+                sink = null;
+            }
+            if (chunk != null) {
+                ResponseBodyReader.returnChunk(chunk);
+                chunk = null;
+                readBuffer = null;
+            }
+            response = null;
+            buffer = null;
+        }
+
+        /**
+         * @return the stored part of the body if it was streamed, null if it must be read from the entity
+         */
+        byte[] getBody() {
+            return body;
+        }
+
+        long getReceivedBytes() {
+            return receivedBytes;
+        }
+    }
+
+    /**
+     * An adapter for {@link NHttpClientConnectionManager}
+     * that resets the metrics of the leased connections
+     * and calls SampleResult.connectEnd when a new connection is ready.
+     */
+    private static final class MeasuringNHttpConnectionManager implements NHttpClientConnectionManager {
+        private final NHttpClientConnectionManager handler;
+
+        MeasuringNHttpConnectionManager(NHttpClientConnectionManager handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void routeComplete(NHttpClientConnection conn, HttpRoute route, HttpContext context) {
+            try {
+                handler.routeComplete(conn, route, context);
+            } finally {
+                SampleResult sample = (SampleResult) context.getAttribute(CONTEXT_SAMPLE_RESULT);
+                if (sample != null) {
+                    sample.connectEnd();
+                }
+            }
+        }
+
+        @Override
+        public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state, long connectTimeout,
+                long leaseTimeout, TimeUnit tunit, final FutureCallback<NHttpClientConnection> callback) {
+            return handler.requestConnection(route, state, connectTimeout, leaseTimeout, tunit,
+                    new FutureCallback<NHttpClientConnection>() {
+                @Override
+                public void completed(NHttpClientConnection conn) {
+                    conn.getMetrics().reset();
+                    if (callback != null) {
+                        callback.completed(conn);
+                    }
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    if (callback != null) {
+                        callback.failed(ex);
+                    }
+                }
+
+                @Override
+                public void cancelled() {
+                    if (callback != null) {
+                        callback.cancelled();
+                    }
+                }
+            });
+        }
+
+        // ================= all following methods just wraps handler's =================
+
+        @Override
+        public void releaseConnection(NHttpClientConnection conn, Object newState, long validDuration, TimeUnit tunit) {
+            handler.releaseConnection(conn, newState, validDuration, tunit);
+        }
+
+        @Override
+        public void startRoute(NHttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            handler.startRoute(conn, route, context);
+        }
+
+        @Override
+        public void upgrade(NHttpClientConnection conn, HttpRoute route, HttpContext context) throws IOException {
+            handler.upgrade(conn, route, context);
+        }
+
+        @Override
+        public boolean isRouteComplete(NHttpClientConnection conn) {
+            return handler.isRouteComplete(conn);
+        }
+
+        @Override
+        public void closeIdleConnections(long idletime, TimeUnit tunit) {
+            handler.closeIdleConnections(idletime, tunit);
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+            handler.closeExpiredConnections();
+        }
+
+        @Override
+        public void execute(IOEventDispatch eventDispatch) throws IOException {
+            handler.execute(eventDispatch);
+        }
+
+        @Override
+        public void shutdown() throws IOException {
+            handler.shutdown();
+        }
+    }
+}
@@ -47,6 +47,14 @@ public class HTTPSampleResult extends SampleResult {
 
     private String queryString = ""; // never null
 
+    // Time (ms) embedded resources waited for a download thread when downloaded concurrently
+    private long resourcesQueueTime;
+
+    private long resourcesMaxQueueTime;
+
+    // File holding the whole response body, when httpsampler.response_body_mode=file
+    private String bodyFile;
+
     private static final String HTTP_NO_CONTENT_CODE = Integer.toString(HttpURLConnection.HTTP_NO_CONTENT);
     private static final String HTTP_NO_CONTENT_MSG = "No Content"; // $NON-NLS-1$
 
@@ -71,6 +79,9 @@ public class HTTPSampleResult extends SampleResult {
         cookies=res.cookies;
         queryString=res.queryString;
         redirectLocation=res.redirectLocation;
+        resourcesQueueTime=res.resourcesQueueTime;
+        resourcesMaxQueueTime=res.resourcesMaxQueueTime;
+        bodyFile=res.bodyFile;
     }
 
     public void setHTTPMethod(String method) {
@@ -89,6 +100,51 @@ public class HTTPSampleResult extends SampleResult {
         return redirectLocation;
     }
 
+    /**
+     * @param resourcesQueueTime total time (ms) the embedded resources waited for a download thread
+     */
+    public void setResourcesQueueTime(long resourcesQueueTime) {
+        this.resourcesQueueTime = resourcesQueueTime;
+    }
+
+    /**
+     * @return total time (ms) the embedded resources waited for a download thread,
+     * 0 if they were not downloaded concurrently
+     */
+    public long getResourcesQueueTime() {
+        return resourcesQueueTime;
+    }
+
+    /**
+     * @param resourcesMaxQueueTime longest time (ms) an embedded resource waited for a download thread
+     */
+    public void setResourcesMaxQueueTime(long resourcesMaxQueueTime) {
+        this.resourcesMaxQueueTime = resourcesMaxQueueTime;
+    }
+
+    /**
+     * @return longest time (ms) an embedded resource waited for a download thread,
+     * 0 if they were not downloaded concurrently
+     */
+    public long getResourcesMaxQueueTime() {
+        return resourcesMaxQueueTime;
+    }
+
+    /**
+     * @param bodyFile path of the file holding the whole response body
+     */
+    public void setBodyFile(String bodyFile) {
+        this.bodyFile = bodyFile;
+    }
+
+    /**
+     * @return path of the file holding the whole response body,
+     * null unless property <code>httpsampler.response_body_mode</code> is <code>file</code>
+     */
+    public String getBodyFile() {
+        return bodyFile;
+    }
+
     /**
      * Determine whether this result is a redirect.
      * Returns true for: 301,302,303 and 307(GET or HEAD)
@@ -35,12 +35,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -56,6 +52,7 @@ import org.apache.jmeter.protocol.http.control.Cookie;
 import org.apache.jmeter.protocol.http.control.CookieManager;
 import org.apache.jmeter.protocol.http.control.DNSCacheManager;
 import org.apache.jmeter.protocol.http.control.HeaderManager;
+import org.apache.jmeter.protocol.http.parser.EmbeddedResourcesCache;
 import org.apache.jmeter.protocol.http.parser.HTMLParseException;
 import org.apache.jmeter.protocol.http.parser.HTMLParser;
 import org.apache.jmeter.protocol.http.util.ConversionUtils;
@@ -188,8 +185,6 @@ public abstract class HTTPSamplerBase extends AbstractSampler
 
     public static final boolean BROWSER_COMPATIBLE_MULTIPART_MODE_DEFAULT = false; // The default setting to be used (i.e. historic)
     
-    private static final long KEEPALIVETIME = 0; // for Thread Pool for resources but no need to use a special value?
-    
     private static final long AWAIT_TERMINATION_TIMEOUT = 
         JMeterUtils.getPropDefault("httpsampler.await_termination_timeout", 60); // $NON-NLS-1$ // default value: 60 secs 
     
@@ -1199,7 +1194,12 @@ public abstract class HTTPSamplerBase extends AbstractSampler
                         :
                         HTMLParser.getParser(); // we don't; use the default parser
                     String userAgent = getUserAgent(res);
-                    urls = parser.getEmbeddedResourceURLs(userAgent, responseData, res.getURL(), res.getDataEncodingWithDefault());
+                    EmbeddedResourcesCache cache = EmbeddedResourcesCache.getInstance();
+                    if (cache != null) {
+                        urls = cache.getEmbeddedResourceURLs(parser, userAgent, responseData, res.getURL(), res.getDataEncodingWithDefault());
+                    } else {
+                        urls = parser.getEmbeddedResourceURLs(userAgent, responseData, res.getURL(), res.getDataEncodingWithDefault());
+                    }
                 }
             }
         } catch (HTMLParseException e) {
@@ -1230,7 +1230,7 @@ public abstract class HTTPSamplerBase extends AbstractSampler
             }
             
             // For concurrent get resources
-            final List<Callable<AsynSamplerResultHolder>> liste = new ArrayList<>();
+            final List<ASyncSample> liste = new ArrayList<>();
 
             while (urls.hasNext()) {
                 Object binURL = urls.next(); // See catch clause below
@@ -1287,67 +1287,41 @@ public abstract class HTTPSamplerBase extends AbstractSampler
                     log.warn("Concurrent download resources selected, "// $NON-NLS-1$
                             + "but pool size value is bad. Use default value");// $NON-NLS-1$
                 }
-                final String parentThreadName = Thread.currentThread().getName();
-                // Thread pool Executor to get resources 
-                // use a LinkedBlockingQueue, note: max pool size doesn't effect
-                final ThreadPoolExecutor exec = new ThreadPoolExecutor(
-                        poolSize, poolSize, KEEPALIVETIME, TimeUnit.SECONDS,
-                        new LinkedBlockingQueue<Runnable>(),
-                        new ThreadFactory() {
-                            @Override
-                            public Thread newThread(final Runnable r) {
-                                Thread t = new CleanerThread(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        try {
-                                            r.run();
-                                        } finally {
-                                            ((CleanerThread)Thread.currentThread()).notifyThreadEnd();
-                                        }
-                                    }
-                                });
-                                t.setName(parentThreadName+"-ResDownload-" + t.getName()); //$NON-NLS-1$
-                                t.setDaemon(true);
-                                return t;
-                            }
-                        });
-
-                boolean tasksCompleted = false;
                 try {
-                    // sample all resources with threadpool
-                    final List<Future<AsynSamplerResultHolder>> retExec = exec.invokeAll(liste);
-                    // call normal shutdown (wait ending all tasks)
-                    exec.shutdown();
-                    // put a timeout if tasks couldn't terminate
-                    exec.awaitTermination(AWAIT_TERMINATION_TIMEOUT, TimeUnit.SECONDS);
+                    // sample all resources with the shared downloader, at most poolSize at a time
+                    final List<Future<AsynSamplerResultHolder>> retExec = ResourcesDownloader.getInstance()
+                            .invokeAll(poolSize, liste, AWAIT_TERMINATION_TIMEOUT, TimeUnit.SECONDS);
                     CookieManager cookieManager = getCookieManager();
+                    long totalQueueTime = 0;
+                    long maxQueueTime = 0;
                     // add result to main sampleResult
-                    for (Future<AsynSamplerResultHolder> future : retExec) {
-                        AsynSamplerResultHolder binRes;
-                        try {
-                            binRes = future.get(1, TimeUnit.MILLISECONDS);
-                            if(cookieManager != null) {
-                                CollectionProperty cookies = binRes.getCookies();
-                                for (JMeterProperty jMeterProperty : cookies) {
-                                    Cookie cookie = (Cookie) jMeterProperty.getObjectValue();
-                                    cookieManager.add(cookie) ;
-                                }
+                    for (int i = 0; i < retExec.size(); i++) {
+                        Future<AsynSamplerResultHolder> future = retExec.get(i);
+                        if (future.isCancelled()) {
+                            errorResult(new TimeoutException("Embedded resource not downloaded within " // $NON-NLS-1$
+                                    + AWAIT_TERMINATION_TIMEOUT + "s"), res); // $NON-NLS-1$
+                            continue;
+                        }
+                        AsynSamplerResultHolder binRes = future.get();
+                        long queueTime = liste.get(i).getQueueTime();
+                        totalQueueTime += queueTime;
+                        maxQueueTime = Math.max(maxQueueTime, queueTime);
+                        if(cookieManager != null) {
+                            CollectionProperty cookies = binRes.getCookies();
+                            for (JMeterProperty jMeterProperty : cookies) {
+                                Cookie cookie = (Cookie) jMeterProperty.getObjectValue();
+                                cookieManager.add(cookie) ;
                             }
-                            res.addSubResult(binRes.getResult());
-                            setParentSampleSuccess(res, res.isSuccessful() && (binRes.getResult() != null ? binRes.getResult().isSuccessful():true));
-                        } catch (TimeoutException e) {
-                            errorResult(e, res);
                         }
+                        res.addSubResult(binRes.getResult());
+                        setParentSampleSuccess(res, res.isSuccessful() && (binRes.getResult() != null ? binRes.getResult().isSuccessful():true));
                     }
-                    tasksCompleted = exec.awaitTermination(1, TimeUnit.MILLISECONDS); // did all the tasks finish?
+                    res.setResourcesQueueTime(totalQueueTime);
+                    res.setResourcesMaxQueueTime(maxQueueTime);
                 } catch (InterruptedException ie) {
                     log.warn("Interruped fetching embedded resources", ie); // $NON-NLS-1$
                 } catch (ExecutionException ee) {
                     log.warn("Execution issue when fetching embedded resources", ee); // $NON-NLS-1$
-                } finally {
-                    if (!tasksCompleted) {
-                        exec.shutdownNow(); // kill any remaining tasks
-                    }
                 }
             }
         }
@@ -1447,9 +1421,19 @@ public abstract class HTTPSamplerBase extends AbstractSampler
 
     /**
      * {@inheritDoc}
+     * <p>
+     * Stops the threads used to download embedded resources concurrently
+     * and empties the embedded resources cache.
+     * Deletes the response body files, see {@link ResponseBodyReader}.
      */
     @Override
     public void testEnded() {
+        ResourcesDownloader.shutdownInstance();
+        EmbeddedResourcesCache cache = EmbeddedResourcesCache.getInstance();
+        if (cache != null) {
+            cache.clear();
+        }
+        ResponseBodyReader.testEnded();
     }
 
     /**
@@ -1748,6 +1732,8 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * Read response from the input stream, converting to MD5 digest if the useMD5 property is set.
      * <p>
      * For the MD5 case, the result byte count is set to the size of the original response.
+     * Otherwise the response is stored according to property <code>httpsampler.response_body_mode</code>,
+     * see {@link ResponseBodyReader}.
      * <p>
      * Closes the inputStream 
      * 
@@ -1758,27 +1744,18 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * @throws IOException if reading the result fails
      */
     public byte[] readResponse(SampleResult sampleResult, InputStream in, int length) throws IOException {
+        if (!useMD5()) {
+            return ResponseBodyReader.read(sampleResult, in, length);
+        }
         try {
             byte[] readBuffer = new byte[8192]; // 8kB is the (max) size to have the latency ('the first packet')
-            int bufferSize=32;// Enough for MD5
-    
-            MessageDigest md=null;
-            boolean asMD5 = useMD5();
-            if (asMD5) {
-                try {
-                    md = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
-                } catch (NoSuchAlgorithmException e) {
-                    log.error("Should not happen - could not find MD5 digest", e);
-                    asMD5=false;
-                }
-            } else {
-                if (length <= 0) {// may also happen if long value > int.max
-                    bufferSize = 4 * 1024;
-                } else {
-                    bufferSize = length;
-                }
+            MessageDigest md;
+            try {
+                md = MessageDigest.getInstance("MD5"); //$NON-NLS-1$
+            } catch (NoSuchAlgorithmException e) {
+                log.error("Should not happen - could not find MD5 digest", e);
+                return ResponseBodyReader.read(sampleResult, in, length);
             }
-            ByteArrayOutputStream w = new ByteArrayOutputStream(bufferSize);
             int bytesRead = 0;
             int totalBytes = 0;
             boolean first = true;
@@ -1787,25 +1764,15 @@ public abstract class HTTPSamplerBase extends AbstractSampler
                     sampleResult.latencyEnd();
                     first = false;
                 }
-                if (asMD5 && md != null) {
-                    md.update(readBuffer, 0 , bytesRead);
-                    totalBytes += bytesRead;
-                } else {
-                    w.write(readBuffer, 0, bytesRead);
-                }
+                md.update(readBuffer, 0 , bytesRead);
+                totalBytes += bytesRead;
             }
             if (first){ // Bug 46838 - if there was no data, still need to set latency
                 sampleResult.latencyEnd();
             }
             in.close();
-            w.flush();
-            if (asMD5 && md != null) {
-                byte[] md5Result = md.digest();
-                w.write(JOrphanUtils.baToHexBytes(md5Result)); 
-                sampleResult.setBytes(totalBytes);
-            }
-            w.close();
-            return w.toByteArray();
+            sampleResult.setBytes(totalBytes);
+            return JOrphanUtils.baToHexBytes(md.digest());
         } finally {
             IOUtils.closeQuietly(in);
         }
@@ -1929,7 +1896,7 @@ public abstract class HTTPSamplerBase extends AbstractSampler
      * Callable class to sample asynchronously resources embedded
      *
      */
-    private static class ASyncSample implements Callable<AsynSamplerResultHolder> {
+    private static class ASyncSample extends ResourcesDownloader.DownloadTask<AsynSamplerResultHolder> {
         final private URL url;
         final private String method;
         final private boolean areFollowingRedirect;
@@ -1958,9 +1925,9 @@ public abstract class HTTPSamplerBase extends AbstractSampler
         }
 
         @Override
-        public AsynSamplerResultHolder call() {
+        protected AsynSamplerResultHolder download() {
             JMeterContextService.replaceContext(jmeterContextOfParentThread);
-            ((CleanerThread) Thread.currentThread()).registerSamplerForEndNotification(sampler);
+            ((ResourcesDownloader.CleanerThread) Thread.currentThread()).registerSamplerForEndNotification(sampler);
             HTTPSampleResult httpSampleResult = sampler.sample(url, method, areFollowingRedirect, depth);
             if(sampler.getCookieManager() != null) {
                 CollectionProperty cookies = sampler.getCookieManager().getCookies();
@@ -1971,38 +1938,6 @@ public abstract class HTTPSamplerBase extends AbstractSampler
         }
     }
     
-    /**
-     * Custom thread implementation that 
-     *
-     */
-    private static class CleanerThread extends Thread {
-        private final List<HTTPSamplerBase> samplersToNotify = new ArrayList<>();
-        /**
-         * @param runnable Runnable
-         */
-        public CleanerThread(Runnable runnable) {
-           super(runnable);
-        }
-        
-        /**
-         * Notify of thread end
-         */
-        public void notifyThreadEnd() {
-            for (HTTPSamplerBase samplerBase : samplersToNotify) {
-                samplerBase.threadFinished();
-            }
-            samplersToNotify.clear();
-        }
-
-        /**
-         * Register sampler to be notify at end of thread
-         * @param sampler {@link HTTPSamplerBase}
-         */
-        public void registerSamplerForEndNotification(HTTPSamplerBase sampler) {
-            this.samplersToNotify.add(sampler);
-        }
-    }
-    
     /**
      * Holder of AsynSampler result
      */
@@ -39,6 +39,8 @@ public final class HTTPSamplerFactory {
     //+ JMX implementation attribute values (also displayed in GUI) - do not change
     public static final String IMPL_HTTP_CLIENT4 = "HttpClient4";  // $NON-NLS-1$
 
+    public static final String IMPL_HTTP_CLIENT4_ASYNC = "HttpClient4Async";  // $NON-NLS-1$
+
     public static final String IMPL_HTTP_CLIENT3_1 = "HttpClient3.1"; // $NON-NLS-1$
     
     public static final String IMPL_JAVA = "Java"; // $NON-NLS-1$
@@ -63,7 +65,7 @@ public final class HTTPSamplerFactory {
     /**
      * Create a new instance of the required sampler type
      *
-     * @param alias HTTP_SAMPLER or HTTP_SAMPLER_APACHE or IMPL_HTTP_CLIENT3_1 or IMPL_HTTP_CLIENT4
+     * @param alias HTTP_SAMPLER or HTTP_SAMPLER_APACHE or IMPL_HTTP_CLIENT3_1 or IMPL_HTTP_CLIENT4 or IMPL_HTTP_CLIENT4_ASYNC
      * @return the appropriate sampler
      * @throws UnsupportedOperationException if alias is not recognised
      */
@@ -80,11 +82,14 @@ public final class HTTPSamplerFactory {
         if (alias.equals(IMPL_HTTP_CLIENT4)) {
             return new HTTPSamplerProxy(IMPL_HTTP_CLIENT4);
         }
+        if (alias.equals(IMPL_HTTP_CLIENT4_ASYNC)) {
+            return new HTTPSamplerProxy(IMPL_HTTP_CLIENT4_ASYNC);
+        }
         throw new IllegalArgumentException("Unknown sampler type: '" + alias+"'");
     }
 
     public static String[] getImplementations(){
-        return new String[]{IMPL_HTTP_CLIENT4,IMPL_HTTP_CLIENT3_1,IMPL_JAVA};
+        return new String[]{IMPL_HTTP_CLIENT4,IMPL_HTTP_CLIENT4_ASYNC,IMPL_HTTP_CLIENT3_1,IMPL_JAVA};
     }
 
     public static HTTPAbstractImpl getImplementation(String impl, HTTPSamplerBase base){
@@ -100,6 +105,8 @@ public final class HTTPSamplerFactory {
             return new HTTPHC3Impl(base);                
         } else if (IMPL_HTTP_CLIENT4.equals(impl)) {
             return new HTTPHC4Impl(base);
+        } else if (IMPL_HTTP_CLIENT4_ASYNC.equals(impl)) {
+            return new HTTPHCAsyncImpl(base);
         } else {
             throw new IllegalArgumentException("Unknown implementation type: '"+impl+"'");
         }
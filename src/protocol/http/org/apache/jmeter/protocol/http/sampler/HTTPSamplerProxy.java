@@ -84,6 +84,17 @@ public final class HTTPSamplerProxy extends HTTPSamplerBase implements Interrupt
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Closes the shared HttpClient4 connection pool if one was used.
+     */
+    @Override
+    public void testEnded() {
+        super.testEnded();
+        SharedConnectionManager.shutdownInstance();
+    }
+
     @Override
     public boolean interrupt() {
         if (impl != null) {
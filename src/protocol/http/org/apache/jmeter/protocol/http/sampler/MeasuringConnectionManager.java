@@ -49,7 +49,6 @@ import org.apache.jmeter.samplers.SampleResult;
  */
 public class MeasuringConnectionManager extends PoolingClientConnectionManager {
 
-    private MeasuringConnectionRequest measuredConnection;
     private SampleResult sample;
 
     public MeasuringConnectionManager(SchemeRegistry schemeRegistry, DnsResolver resolver) {
@@ -59,29 +58,49 @@ public class MeasuringConnectionManager extends PoolingClientConnectionManager {
     @Override
     public ClientConnectionRequest requestConnection(final HttpRoute route, final Object state) {
         ClientConnectionRequest res = super.requestConnection(route, state);
-        this.measuredConnection = new MeasuringConnectionRequest(res, this.sample);
-        return this.measuredConnection;
+        return new MeasuringConnectionRequest(this, res, getSample());
     }
 
     public void setSample(SampleResult sample) {
         this.sample = sample;
     }
 
+    /**
+     * @return the {@link SampleResult} whose connect time is measured by the next connection request
+     */
+    protected SampleResult getSample() {
+        return sample;
+    }
+
+    /**
+     * Called when a connection has been leased from the pool, before it is handed to the client.
+     * Does nothing by default.
+     *
+     * @param connection the leased connection
+     * @param waitNanos time spent waiting for the connection, in nanoseconds
+     */
+    protected void connectionLeased(ManagedClientConnection connection, long waitNanos) {
+    }
+
     /**
      * An adapter class to pass {@link SampleResult} into {@link MeasuredConnection}
      */
     private static class MeasuringConnectionRequest implements ClientConnectionRequest {
+        private final MeasuringConnectionManager manager;
         private final ClientConnectionRequest handler;
         private final SampleResult sample;
 
-        public MeasuringConnectionRequest(ClientConnectionRequest res, SampleResult sample) {
+        public MeasuringConnectionRequest(MeasuringConnectionManager manager, ClientConnectionRequest res, SampleResult sample) {
+            this.manager = manager;
             handler = res;
             this.sample = sample;
         }
 
         @Override
         public ManagedClientConnection getConnection(long timeout, TimeUnit tunit) throws InterruptedException, ConnectionPoolTimeoutException {
+            long start = System.nanoTime();
             ManagedClientConnection res = handler.getConnection(timeout, tunit);
+            manager.connectionLeased(res, System.nanoTime() - start);
             return new MeasuredConnection(res, this.sample);
         }
 
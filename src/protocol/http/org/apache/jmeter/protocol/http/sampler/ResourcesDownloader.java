@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Executor shared by all the HTTP samplers to download embedded resources in parallel.
+ * <p>
+ * Download threads are kept alive between parent samples, so they reuse their
+ * HTTP connections, and are stopped after being idle for
+ * {@value #KEEP_ALIVE_PROP} seconds or at the end of the test.
+ * At most {@value #MAX_THREADS_PROP} threads run at the same time; further
+ * downloads wait in a queue. Each parent sample never runs more downloads at
+ * once than its own concurrent pool size, so a page with many resources cannot
+ * take all the threads.
+ */
+final class ResourcesDownloader {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String KEEP_ALIVE_PROP = "httpsampler.parallel_download_thread_keepalive_inseconds"; // $NON-NLS-1$
+
+    private static final String MAX_THREADS_PROP = "httpsampler.parallel_download_max_threads"; // $NON-NLS-1$
+
+    /** Idle time (s) after which a download thread is stopped */
+    private static final long KEEP_ALIVE = JMeterUtils.getPropDefault(KEEP_ALIVE_PROP, 60L);
+
+    /** Maximum number of download threads */
+    private static final int MAX_THREADS = JMeterUtils.getPropDefault(MAX_THREADS_PROP, 1000);
+
+    private static final Object LOCK = new Object();
+
+    private static ResourcesDownloader instance; // guarded by LOCK
+
+    /**
+     * Hands tasks over to idle threads only, so that the executor starts a new thread
+     * (up to its maximum) rather than queueing while all threads are busy.
+     * Tasks are queued by the {@link RejectedExecutionHandler} once the maximum is reached.
+     */
+    private static final class HandOffQueue extends LinkedTransferQueue<Runnable> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean offer(Runnable task) {
+            return tryTransfer(task);
+        }
+    }
+
+    private final ThreadPoolExecutor executor;
+
+    private ResourcesDownloader() {
+        final HandOffQueue queue = new HandOffQueue();
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(0, MAX_THREADS, KEEP_ALIVE, TimeUnit.SECONDS, queue,
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        Thread t = new CleanerThread(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    r.run();
+                                } finally {
+                                    ((CleanerThread) Thread.currentThread()).notifyThreadEnd();
+                                }
+                            }
+                        });
+                        t.setName("ResDownload-" + threadCount.incrementAndGet()); //$NON-NLS-1$
+                        t.setDaemon(true);
+                        return t;
+                    }
+                },
+                new RejectedExecutionHandler() {
+                    @Override
+                    public void rejectedExecution(Runnable r, ThreadPoolExecutor exec) {
+                        if (exec.isShutdown()) {
+                            throw new RejectedExecutionException("Resources downloader is shut down"); //$NON-NLS-1$
+                        }
+                        queue.put(r); // all threads are busy
+                    }
+                });
+    }
+
+    /**
+     * @return the downloader, created on first call
+     */
+    static ResourcesDownloader getInstance() {
+        synchronized (LOCK) {
+            if (instance == null) {
+                instance = new ResourcesDownloader();
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Stop the download threads, which closes their connections.
+     * Called when the test ends; a new downloader is created when needed.
+     */
+    static void shutdownInstance() {
+        ResourcesDownloader downloader;
+        synchronized (LOCK) {
+            downloader = instance;
+            instance = null;
+        }
+        if (downloader != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Stopping resources downloader, largest pool size: " + downloader.executor.getLargestPoolSize());
+            }
+            downloader.executor.shutdown();
+        }
+    }
+
+    /**
+     * Run the tasks, at most maxConcurrentDownloads at the same time, and wait for them
+     * until they all complete or the timeout expires.
+     * Tasks still running at the timeout are cancelled.
+     *
+     * @param maxConcurrentDownloads maximum number of tasks of this call running at the same time
+     * @param tasks tasks to run
+     * @param timeout maximum time to wait for all the tasks
+     * @param unit unit of timeout
+     * @param <T> type of the task results
+     * @return the futures of the tasks, in the order of tasks; not done futures have been cancelled
+     * @throws InterruptedException if interrupted while waiting; running tasks are cancelled
+     */
+    <T> List<Future<T>> invokeAll(int maxConcurrentDownloads, List<? extends DownloadTask<T>> tasks,
+            long timeout, TimeUnit unit) throws InterruptedException {
+        final int size = tasks.size();
+        final List<Future<T>> futures = new ArrayList<>(size);
+        if (size == 0) {
+            return futures;
+        }
+        final CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int submitted = 0;
+        try {
+            for (; submitted < size && submitted < Math.max(1, maxConcurrentDownloads); submitted++) {
+                futures.add(submit(completionService, tasks.get(submitted)));
+            }
+            for (int completed = 0; completed < size; completed++) {
+                Future<T> done = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    break; // timeout
+                }
+                if (submitted < size) {
+                    futures.add(submit(completionService, tasks.get(submitted++)));
+                }
+            }
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true); // does nothing for completed tasks
+            }
+        }
+        // Tasks which were not submitted before the timeout
+        for (int i = submitted; i < size; i++) {
+            Future<T> skipped = new FutureTask<>(tasks.get(i));
+            skipped.cancel(false);
+            futures.add(skipped);
+        }
+        return futures;
+    }
+
+    private static <T> Future<T> submit(CompletionService<T> completionService, DownloadTask<T> task) {
+        task.submitTime = System.currentTimeMillis();
+        return completionService.submit(task);
+    }
+
+    /**
+     * Task run by the downloader, which measures how long it waited for a download thread
+     *
+     * @param <T> type of the task result
+     */
+    abstract static class DownloadTask<T> implements Callable<T> {
+        private volatile long submitTime;
+        private volatile long queueTime;
+
+        @Override
+        public final T call() throws Exception {
+            queueTime = System.currentTimeMillis() - submitTime;
+            return download();
+        }
+
+        /**
+         * Perform the download
+         *
+         * @return the result of the download
+         * @throws Exception if the download could not be performed
+         */
+        protected abstract T download() throws Exception;
+
+        /**
+         * @return time (ms) the task waited for a download thread once submitted,
+         * valid once the task has completed
+         */
+        long getQueueTime() {
+            return queueTime;
+        }
+    }
+
+    /**
+     * Download thread which notifies the samplers it ran when it ends,
+     * so that they close their connections.
+     */
+    static final class CleanerThread extends Thread {
+        // One sampler per implementation is enough, as connections are kept per thread and implementation
+        private final Map<String, HTTPSamplerBase> samplersToNotify = new LinkedHashMap<>();
+
+        /**
+         * @param runnable Runnable
+         */
+        CleanerThread(Runnable runnable) {
+           super(runnable);
+        }
+
+        /**
+         * Notify of thread end
+         */
+        void notifyThreadEnd() {
+            for (HTTPSamplerBase samplerBase : samplersToNotify.values()) {
+                samplerBase.threadFinished();
+            }
+            samplersToNotify.clear();
+        }
+
+        /**
+         * Register sampler to be notified at end of thread
+         * @param sampler {@link HTTPSamplerBase}
+         */
+        void registerSamplerForEndNotification(HTTPSamplerBase sampler) {
+            String key = sampler.getClass().getName() + "/" + sampler.getImplementation(); //$NON-NLS-1$
+            if (!samplersToNotify.containsKey(key)) {
+                samplersToNotify.put(key, sampler);
+            }
+        }
+    }
+}
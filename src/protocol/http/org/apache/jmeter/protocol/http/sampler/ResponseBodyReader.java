@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * Reads HTTP response bodies according to property {@value #MODE_PROP}:
+ * <ul>
+ * <li><code>keep</code> (default): the whole body is stored in the sample result</li>
+ * <li><code>truncate</code>: only the first {@value #MAX_SIZE_PROP} bytes are stored</li>
+ * <li><code>discard</code>: the body is read but not stored</li>
+ * <li><code>file</code>: the whole body is written to a file in directory {@value #DIR_PROP},
+ * and the first {@value #MAX_SIZE_PROP} bytes are stored</li>
+ * </ul>
+ * Body files are deleted at the end of the test, unless property {@value #KEEP_FILES_PROP} is true.
+ * At most {@value #MAX_FILES_PROP} files are kept during the test, the oldest ones being deleted first.
+ * The file of a body which could not be read completely is deleted at once.
+ * Bodies are read through buffers taken from a shared pool, and only copied once to the
+ * stored array, so reading a body does not need several times its size in heap.
+ * Bodies received in parts, as by {@link HTTPHCAsyncImpl}, are written to a {@link Sink}
+ * as they arrive instead of being buffered first.
+ * <p>
+ * When the body is not stored completely, the sample result is marked as truncated and its
+ * body size and byte count are set to the size of the whole body.
+ */
+final class ResponseBodyReader {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    private static final String MODE_PROP = "httpsampler.response_body_mode"; // $NON-NLS-1$
+
+    private static final String MAX_SIZE_PROP = "httpsampler.response_body_max_size"; // $NON-NLS-1$
+
+    private static final String DIR_PROP = "httpsampler.response_body_dir"; // $NON-NLS-1$
+
+    private static final String MAX_FILES_PROP = "httpsampler.response_body_max_files"; // $NON-NLS-1$
+
+    private static final String KEEP_FILES_PROP = "httpsampler.response_body_keep_files"; // $NON-NLS-1$
+
+    enum Mode {
+        KEEP, TRUNCATE, DISCARD, FILE
+    }
+
+    private static final Mode MODE;
+
+    /** Number of bytes stored in truncate and file modes */
+    private static final int MAX_SIZE = JMeterUtils.getPropDefault(MAX_SIZE_PROP, 65536);
+
+    /** Directory of the body files, null for the default temporary directory */
+    private static final File DIR = JMeterUtils.getPropDefault(DIR_PROP, "").length() > 0 // $NON-NLS-1$
+            ? new File(JMeterUtils.getPropDefault(DIR_PROP, "")) : null; // $NON-NLS-1$
+
+    /** Number of body files kept during the test, 0 for no limit */
+    private static final int MAX_FILES = JMeterUtils.getPropDefault(MAX_FILES_PROP, 1000);
+
+    /** Whether body files are kept after the end of the test */
+    private static final boolean KEEP_FILES = JMeterUtils.getPropDefault(KEEP_FILES_PROP, false);
+
+    /** Body files created during the test, oldest first */
+    private static final Queue<File> FILES = new ConcurrentLinkedQueue<>();
+
+    /** Size of {@link #FILES}, which is not constant time for a ConcurrentLinkedQueue */
+    private static final AtomicInteger FILE_COUNT = new AtomicInteger();
+
+    // 8kB was the size used to get the latency ('the first packet'), larger chunks are read when available
+    private static final int CHUNK_SIZE = 8192;
+
+    /** Buffers kept for reuse, at most 1024 (8MB) */
+    private static final BlockingQueue<byte[]> CHUNKS = new ArrayBlockingQueue<>(1024);
+
+    static {
+        String mode = JMeterUtils.getPropDefault(MODE_PROP, "keep"); // $NON-NLS-1$
+        Mode m;
+        try {
+            m = Mode.valueOf(mode.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            log.warn("Unknown value '" + mode + "' for " + MODE_PROP + ", using keep");
+            m = Mode.KEEP;
+        }
+        MODE = m;
+        if (MODE != Mode.KEEP) {
+            log.info("HTTP response bodies are handled in mode " + MODE + ", max size kept=" + MAX_SIZE);
+        }
+    }
+
+    private ResponseBodyReader() {
+    }
+
+    /**
+     * Read the response according to the configured mode, and close the input stream.
+     *
+     * @param sampleResult sample to store information about the response into
+     * @param in input stream from which to read the response
+     * @param length expected input length or zero
+     * @return the stored part of the response
+     * @throws IOException if reading the result fails
+     */
+    static byte[] read(SampleResult sampleResult, InputStream in, int length) throws IOException {
+        return read(sampleResult, in, length, MODE, MAX_SIZE, DIR);
+    }
+
+    // Separate method for tests
+    static byte[] read(SampleResult sampleResult, InputStream in, int length,
+            Mode mode, int maxSize, File dir) throws IOException {
+        byte[] readBuffer = takeChunk();
+        Sink sink = null;
+        try {
+            sink = new Sink(sampleResult, length, mode, maxSize, dir);
+            int bytesRead;
+            while ((bytesRead = in.read(readBuffer)) > -1) {
+                sink.write(readBuffer, bytesRead);
+            }
+            return sink.finish();
+        } finally {
+            returnChunk(readBuffer);
+            IOUtils.closeQuietly(in);
+            if (sink != null) {
+                sink.close();
+            }
+        }
+    }
+
+    /**
+     * Create a sink handling a response body according to the configured mode,
+     * for callers which receive the body in parts instead of reading it from a stream.
+     *
+     * @param sampleResult sample to store information about the response into
+     * @param length expected body length or zero
+     * @return the {@link Sink} to write the body to
+     * @throws IOException if the body file cannot be created
+     */
+    static Sink newSink(SampleResult sampleResult, int length) throws IOException {
+        return new Sink(sampleResult, length, MODE, MAX_SIZE, DIR);
+    }
+
+    /**
+     * Track a body file, and delete the oldest ones beyond the limit.
+     *
+     * @param bodyFile the file just created
+     * @param maxFiles number of files to keep, 0 for no limit
+     */
+    static void addFile(File bodyFile, int maxFiles) {
+        FILES.add(bodyFile);
+        if (FILE_COUNT.incrementAndGet() > maxFiles && maxFiles > 0) {
+            File oldest = FILES.poll();
+            if (oldest != null) {
+                FILE_COUNT.decrementAndGet();
+                FileUtils.deleteQuietly(oldest);
+            }
+        }
+    }
+
+    /**
+     * Delete the body files created during the test, unless they should be kept.
+     * Called at the end of the test.
+     */
+    static void testEnded() {
+        testEnded(KEEP_FILES);
+    }
+
+    // Separate method for tests
+    static void testEnded(boolean keepFiles) {
+        File bodyFile;
+        int deleted = 0;
+        while ((bodyFile = FILES.poll()) != null) {
+            FILE_COUNT.decrementAndGet();
+            if (!keepFiles && FileUtils.deleteQuietly(bodyFile)) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            log.info("Deleted " + deleted + " HTTP response body files");
+        }
+    }
+
+    /**
+     * Take a buffer of the shared pool, to be given back by {@link #returnChunk(byte[])}.
+     *
+     * @return a buffer to read a response body into
+     */
+    static byte[] takeChunk() {
+        byte[] chunk = CHUNKS.poll();
+        return chunk != null ? chunk : new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Give back a buffer taken by {@link #takeChunk()}.
+     *
+     * @param chunk the buffer, which must no longer be used
+     */
+    static void returnChunk(byte[] chunk) {
+        CHUNKS.offer(chunk); // dropped if the pool is full
+    }
+
+    /**
+     * Receives the parts of a response body in order, and keeps or writes them according to the mode.
+     * Must be used by one thread at a time, and be closed.
+     */
+    static final class Sink implements Closeable {
+        private final SampleResult sampleResult;
+        private final int limit;
+        private final ChunkedBuffer body;
+        private OutputStream file;
+        private File bodyFile;
+        private long totalBytes;
+        private boolean first = true;
+
+        Sink(SampleResult sampleResult, int length, Mode mode, int maxSize, File dir) throws IOException {
+            this.sampleResult = sampleResult;
+            switch (mode) {
+                case DISCARD:
+                    limit = 0;
+                    break;
+                case TRUNCATE:
+                case FILE:
+                    limit = maxSize;
+                    break;
+                default:
+                    limit = Integer.MAX_VALUE;
+                    break;
+            }
+            body = new ChunkedBuffer(length > 0 ? Math.min(length, limit) : 0);
+            if (mode == Mode.FILE) {
+                bodyFile = File.createTempFile("jmeter-body-", ".tmp", dir); // $NON-NLS-1$ $NON-NLS-2$
+                file = new FileOutputStream(bodyFile);
+            }
+        }
+
+        /**
+         * Handle the next part of the body, ends the latency on the first part.
+         *
+         * @param b buffer holding the part
+         * @param len number of bytes of the part
+         * @throws IOException if the body file cannot be written
+         */
+        void write(byte[] b, int len) throws IOException {
+            if (first) {
+                sampleResult.latencyEnd();
+                first = false;
+            }
+            totalBytes += len;
+            if (file != null) {
+                file.write(b, 0, len);
+            }
+            int toKeep = (int) Math.min(len, limit - (long) body.size());
+            if (toKeep > 0) {
+                body.write(b, toKeep);
+            }
+        }
+
+        /**
+         * Complete the body, and mark the sample as truncated if it was not stored completely.
+         *
+         * @return the stored part of the body
+         * @throws IOException if the body file cannot be closed
+         */
+        byte[] finish() throws IOException {
+            if (first) { // Bug 46838 - if there was no data, still need to set latency
+                sampleResult.latencyEnd();
+                first = false;
+            }
+            if (file != null) {
+                OutputStream out = file;
+                file = null;
+                out.close();
+                if (sampleResult instanceof HTTPSampleResult) {
+                    ((HTTPSampleResult) sampleResult).setBodyFile(bodyFile.getAbsolutePath());
+                }
+                addFile(bodyFile, MAX_FILES);
+            }
+            byte[] data = body.toByteArray();
+            if (data.length < totalBytes) {
+                sampleResult.setResponseDataTruncated(true);
+                sampleResult.setBytes((int) totalBytes);
+                sampleResult.setBodySize((int) totalBytes);
+            }
+            return data;
+        }
+
+        /**
+         * Close and delete the body file if the body was not finished.
+         */
+        @Override
+        public void close() {
+            if (file != null) {
+                IOUtils.closeQuietly(file);
+                file = null;
+                FileUtils.deleteQuietly(bodyFile);
+            }
+        }
+    }
+
+    /**
+     * Stores the body in pooled chunks when its size is unknown, or in an array
+     * of the expected size otherwise, and copies it once to an array of the right size.
+     */
+    private static final class ChunkedBuffer {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private final byte[] expected; // null if size is unknown
+        private byte[] current;
+        private int pos;
+        private int size;
+
+        ChunkedBuffer(int expectedSize) {
+            expected = expectedSize > 0 ? new byte[expectedSize] : null;
+            current = expected;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void write(byte[] b, int len) {
+            int off = 0;
+            while (len > 0) {
+                if (current == null || pos == current.length) {
+                    if (current != null) {
+                        chunks.add(current);
+                    }
+                    current = takeChunk();
+                    pos = 0;
+                }
+                int n = Math.min(len, current.length - pos);
+                System.arraycopy(b, off, current, pos, n);
+                pos += n;
+                off += n;
+                len -= n;
+                size += n;
+            }
+        }
+
+        byte[] toByteArray() {
+            if (current == null) {
+                return new byte[0];
+            }
+            if (current == expected && chunks.isEmpty() && pos == expected.length) {
+                return expected; // no copy needed
+            }
+            chunks.add(current);
+            byte[] result = new byte[size];
+            int off = 0;
+            for (byte[] chunk : chunks) {
+                int n = Math.min(chunk.length, size - off);
+                System.arraycopy(chunk, 0, result, off, n);
+                off += n;
+                if (chunk != expected) {
+                    returnChunk(chunk);
+                }
+            }
+            chunks.clear();
+            current = null;
+            return result;
+        }
+    }
+}
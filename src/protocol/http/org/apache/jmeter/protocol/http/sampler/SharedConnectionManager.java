@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.pool.PoolStats;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.logging.LoggingManager;
+import org.apache.log.Logger;
+
+/**
+ * {@link MeasuringConnectionManager} shared by all the HttpClient4 samplers of a test
+ * when property {@value #SHARED_POOL} is true.
+ * <p>
+ * Instead of one connection pool per JMeter thread, a single bounded pool
+ * (per route and total limits) serves all threads, as a browser or an API client
+ * shares its connections between concurrent requests.
+ * Connections that were idle longer than {@value #VALIDATE_AFTER_INACTIVITY_PROP} ms
+ * are checked before being reused, and a background thread evicts expired and idle connections.
+ * <p>
+ * Pool statistics are logged periodically and are available from {@link #getStatistics()}.
+ * The pool is created on first use and closed when the test ends.
+ */
+public final class SharedConnectionManager extends MeasuringConnectionManager {
+
+    private static final Logger log = LoggingManager.getLoggerForClass();
+
+    /** Set this property {@value} to true to share one connection pool between all threads */
+    static final String SHARED_POOL = "httpclient4.connection_pool.shared"; // $NON-NLS-1$
+
+    private static final String VALIDATE_AFTER_INACTIVITY_PROP = "httpclient4.connection_pool.validate_after_inactivity"; // $NON-NLS-1$
+
+    /** Maximum number of connections in the pool */
+    private static final int MAX_TOTAL =
+            JMeterUtils.getPropDefault("httpclient4.connection_pool.max_total", 1000); // $NON-NLS-1$
+
+    /** Maximum number of connections per route (scheme, host and port, proxy) */
+    private static final int MAX_PER_ROUTE =
+            JMeterUtils.getPropDefault("httpclient4.connection_pool.max_per_route", 100); // $NON-NLS-1$
+
+    /** Idle time (ms) after which a connection is checked for staleness before being reused, 0 to disable */
+    private static final int VALIDATE_AFTER_INACTIVITY =
+            JMeterUtils.getPropDefault(VALIDATE_AFTER_INACTIVITY_PROP, 2000);
+
+    /** Idle time (ms) after which a pooled connection is closed by the evictor */
+    private static final int MAX_IDLE =
+            JMeterUtils.getPropDefault("httpclient4.connection_pool.max_idle", 30000); // $NON-NLS-1$
+
+    /** Interval (ms) between two runs of the evictor */
+    private static final int EVICTION_INTERVAL =
+            JMeterUtils.getPropDefault("httpclient4.connection_pool.eviction_interval", 5000); // $NON-NLS-1$
+
+    /** Interval (s) between two logs of the pool statistics, 0 to disable */
+    private static final int STATS_INTERVAL =
+            JMeterUtils.getPropDefault("httpclient4.connection_pool.stats_interval", 30); // $NON-NLS-1$
+
+    private static final Object LOCK = new Object();
+
+    private static SharedConnectionManager instance; // guarded by LOCK
+
+    /**
+     * Resolves with the DNS resolver of the calling thread, so that DNS Cache Managers still apply
+     */
+    private static final class ThreadDnsResolver implements DnsResolver {
+        private final DnsResolver defaultResolver = new SystemDefaultDnsResolver();
+        private final ThreadLocal<DnsResolver> resolver = new ThreadLocal<>();
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            DnsResolver threadResolver = resolver.get();
+            return threadResolver != null ? threadResolver.resolve(host) : defaultResolver.resolve(host);
+        }
+    }
+
+    private final ThreadDnsResolver dnsResolver;
+
+    private final ThreadLocal<SampleResult> samples = new ThreadLocal<>();
+
+    // Time when open connections were last released, used to validate them after inactivity
+    private final Map<Socket, Long> releaseTimes = new ConcurrentHashMap<>();
+
+    private final AtomicLong leaseCount = new AtomicLong();
+
+    private final AtomicLong leaseWaitTotal = new AtomicLong(); // nanoseconds
+
+    private final AtomicLong leaseWaitMax = new AtomicLong(); // nanoseconds
+
+    private final Thread evictor;
+
+    private SharedConnectionManager(ThreadDnsResolver dnsResolver) {
+        super(SchemeRegistryFactory.createDefault(), dnsResolver);
+        this.dnsResolver = dnsResolver;
+        setMaxTotal(MAX_TOTAL);
+        setDefaultMaxPerRoute(MAX_PER_ROUTE);
+        evictor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                evictConnections();
+            }
+        }, "HttpClient4-SharedPool-Evictor"); // $NON-NLS-1$
+        evictor.setDaemon(true);
+    }
+
+    /**
+     * @return true if property {@value #SHARED_POOL} enables the shared connection pool
+     */
+    static boolean isEnabled() {
+        return JMeterUtils.getPropDefault(SHARED_POOL, false);
+    }
+
+    /**
+     * @return the shared connection manager, created on first call
+     */
+    static SharedConnectionManager getInstance() {
+        synchronized (LOCK) {
+            if (instance == null) {
+                log.info("Creating shared HttpClient4 connection pool, max total=" + MAX_TOTAL
+                        + ", max per route=" + MAX_PER_ROUTE);
+                instance = new SharedConnectionManager(new ThreadDnsResolver());
+                instance.evictor.start();
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Close the shared connection pool if it was created.
+     * Called when the test ends.
+     */
+    static void shutdownInstance() {
+        SharedConnectionManager manager;
+        synchronized (LOCK) {
+            manager = instance;
+            instance = null;
+        }
+        if (manager != null) {
+            log.info("Closing shared HttpClient4 connection pool: " + manager.createStatistics());
+            manager.evictor.interrupt();
+            manager.shutdownPool();
+        }
+    }
+
+    /**
+     * @return the statistics of the shared connection pool, or null if it is not in use
+     */
+    public static Statistics getStatistics() {
+        SharedConnectionManager manager;
+        synchronized (LOCK) {
+            manager = instance;
+        }
+        return manager != null ? manager.createStatistics() : null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The sample is kept per thread as the manager is shared.
+     */
+    @Override
+    public void setSample(SampleResult sample) {
+        samples.set(sample);
+    }
+
+    @Override
+    protected SampleResult getSample() {
+        return samples.get();
+    }
+
+    /**
+     * Set the DNS resolver used for the connections opened by the calling thread.
+     *
+     * @param resolver the resolver to use, null for the system resolver
+     */
+    void setDnsResolver(DnsResolver resolver) {
+        dnsResolver.resolver.set(resolver);
+    }
+
+    /**
+     * Forget the state kept for the calling thread.
+     */
+    void threadFinished() {
+        samples.remove();
+        dnsResolver.resolver.remove();
+    }
+
+    @Override
+    protected void connectionLeased(ManagedClientConnection connection, long waitNanos) {
+        leaseCount.incrementAndGet();
+        leaseWaitTotal.addAndGet(waitNanos);
+        long max = leaseWaitMax.get();
+        while (waitNanos > max && !leaseWaitMax.compareAndSet(max, waitNanos)) {
+            max = leaseWaitMax.get();
+        }
+        Socket socket = connection.getSocket();
+        if (socket == null) {
+            return; // not yet opened
+        }
+        Long released = releaseTimes.remove(socket);
+        if (VALIDATE_AFTER_INACTIVITY > 0 && released != null
+                && System.currentTimeMillis() - released.longValue() > VALIDATE_AFTER_INACTIVITY
+                && connection.isStale()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Closing stale connection " + connection.getId());
+            }
+            try {
+                connection.close(); // the client will open a new one
+            } catch (IOException e) {
+                log.debug("Error closing stale connection", e);
+            }
+        }
+    }
+
+    @Override
+    public void releaseConnection(ManagedClientConnection connection, long keepalive, TimeUnit unit) {
+        try {
+            Socket socket = connection.getSocket();
+            if (socket != null && !socket.isClosed()) {
+                releaseTimes.put(socket, Long.valueOf(System.currentTimeMillis()));
+            }
+        } catch (IllegalStateException e) { // ConnectionShutdownException if aborted
+            // NOOP, connection will not be reused
+        }
+        super.releaseConnection(connection, keepalive, unit);
+    }
+
+    /**
+     * Does nothing, as threads must not close the shared pool when they finish.
+     * The pool is closed when the test ends.
+     */
+    @Override
+    public void shutdown() {
+    }
+
+    private void shutdownPool() {
+        super.shutdown();
+        releaseTimes.clear();
+    }
+
+    private void evictConnections() {
+        long nextStats = System.currentTimeMillis() + STATS_INTERVAL * 1000L;
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Thread.sleep(EVICTION_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            closeExpiredConnections();
+            closeIdleConnections(MAX_IDLE, TimeUnit.MILLISECONDS);
+            for (Iterator<Socket> it = releaseTimes.keySet().iterator(); it.hasNext();) {
+                if (it.next().isClosed()) {
+                    it.remove();
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (STATS_INTERVAL > 0 && now >= nextStats) {
+                log.info("Shared HttpClient4 connection pool: " + createStatistics());
+                nextStats = now + STATS_INTERVAL * 1000L;
+            }
+        }
+    }
+
+    private Statistics createStatistics() {
+        PoolStats stats = getTotalStats();
+        return new Statistics(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax(),
+                leaseCount.get(), leaseWaitTotal.get(), leaseWaitMax.get());
+    }
+
+    /**
+     * Snapshot of the shared connection pool statistics
+     */
+    public static final class Statistics {
+        private final int leased;
+        private final int available;
+        private final int pending;
+        private final int max;
+        private final long leaseCount;
+        private final long leaseWaitTotal;
+        private final long leaseWaitMax;
+
+        Statistics(int leased, int available, int pending, int max,
+                long leaseCount, long leaseWaitTotal, long leaseWaitMax) {
+            this.leased = leased;
+            this.available = available;
+            this.pending = pending;
+            this.max = max;
+            this.leaseCount = leaseCount;
+            this.leaseWaitTotal = leaseWaitTotal;
+            this.leaseWaitMax = leaseWaitMax;
+        }
+
+        /**
+         * @return number of connections in use
+         */
+        public int getLeased() {
+            return leased;
+        }
+
+        /**
+         * @return number of idle connections kept in the pool
+         */
+        public int getAvailable() {
+            return available;
+        }
+
+        /**
+         * @return number of requests waiting for a connection
+         */
+        public int getPending() {
+            return pending;
+        }
+
+        /**
+         * @return maximum number of connections
+         */
+        public int getMax() {
+            return max;
+        }
+
+        /**
+         * @return number of connections leased since the pool was created
+         */
+        public long getLeaseCount() {
+            return leaseCount;
+        }
+
+        /**
+         * @return mean time (ms) spent waiting for a connection
+         */
+        public double getMeanLeaseWait() {
+            return leaseCount == 0 ? 0 : leaseWaitTotal / 1000000.0 / leaseCount;
+        }
+
+        /**
+         * @return maximum time (ms) spent waiting for a connection
+         */
+        public double getMaxLeaseWait() {
+            return leaseWaitMax / 1000000.0;
+        }
+
+        @Override
+        public String toString() {
+            return "leased=" + leased + " available=" + available + " pending=" + pending // $NON-NLS-1$ $NON-NLS-2$ $NON-NLS-3$
+                    + " max=" + max + " leases=" + leaseCount // $NON-NLS-1$ $NON-NLS-2$
+                    + String.format(" lease wait mean=%.3fms max=%.3fms", // $NON-NLS-1$
+                            Double.valueOf(getMeanLeaseWait()), Double.valueOf(getMaxLeaseWait()));
+        }
+    }
+}
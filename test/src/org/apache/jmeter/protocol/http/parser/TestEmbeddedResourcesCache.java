@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestEmbeddedResourcesCache {
+
+    private static final String PAGE = "<html><body><img src='a.png'><img src='b.png'></body></html>";
+
+    /**
+     * Delegates to the default parser, counting the parses
+     */
+    private static final class CountingParser extends HTMLParser {
+        private final HTMLParser parser = new LagartoBasedHtmlParser();
+        private int parses;
+
+        @Override
+        public Iterator<URL> getEmbeddedResourceURLs(String userAgent, byte[] html, URL baseUrl,
+                URLCollection coll, String encoding) throws HTMLParseException {
+            parses++;
+            return parser.getEmbeddedResourceURLs(userAgent, html, baseUrl, coll, encoding);
+        }
+    }
+
+    private static List<String> toList(Iterator<URL> urls) {
+        List<String> list = new ArrayList<>();
+        while (urls.hasNext()) {
+            list.add(urls.next().toString());
+        }
+        return list;
+    }
+
+    @Test
+    public void testHitAndMiss() throws Exception {
+        EmbeddedResourcesCache cache = new EmbeddedResourcesCache(10, 0);
+        CountingParser parser = new CountingParser();
+        URL url = new URL("http://localhost/index.html");
+        List<String> first = toList(cache.getEmbeddedResourceURLs(parser, null, PAGE.getBytes("UTF-8"), url, "UTF-8"));
+        List<String> second = toList(cache.getEmbeddedResourceURLs(parser, null, PAGE.getBytes("UTF-8"), url, "UTF-8"));
+        assertEquals(2, first.size());
+        assertEquals("http://localhost/a.png", first.get(0));
+        assertEquals(first, second);
+        assertEquals(1, parser.parses);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testKeyIncludesContentAndUrl() throws Exception {
+        EmbeddedResourcesCache cache = new EmbeddedResourcesCache(10, 0);
+        CountingParser parser = new CountingParser();
+        URL url = new URL("http://localhost/index.html");
+        cache.getEmbeddedResourceURLs(parser, null, PAGE.getBytes("UTF-8"), url, "UTF-8");
+        List<String> changed = toList(cache.getEmbeddedResourceURLs(parser, null,
+                PAGE.replace("b.png", "c.png").getBytes("UTF-8"), url, "UTF-8"));
+        assertEquals("http://localhost/c.png", changed.get(1));
+        List<String> otherUrl = toList(cache.getEmbeddedResourceURLs(parser, null,
+                PAGE.getBytes("UTF-8"), new URL("http://localhost/dir/index.html"), "UTF-8"));
+        assertEquals("http://localhost/dir/a.png", otherUrl.get(0));
+        assertEquals(3, parser.parses);
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testLruEviction() throws Exception {
+        EmbeddedResourcesCache cache = new EmbeddedResourcesCache(2, 0);
+        CountingParser parser = new CountingParser();
+        byte[] page = PAGE.getBytes("UTF-8");
+        URL url1 = new URL("http://localhost/1.html");
+        URL url2 = new URL("http://localhost/2.html");
+        URL url3 = new URL("http://localhost/3.html");
+        cache.getEmbeddedResourceURLs(parser, null, page, url1, "UTF-8");
+        cache.getEmbeddedResourceURLs(parser, null, page, url2, "UTF-8");
+        cache.getEmbeddedResourceURLs(parser, null, page, url1, "UTF-8"); // url2 is now the eldest
+        cache.getEmbeddedResourceURLs(parser, null, page, url3, "UTF-8");
+        assertEquals(3, parser.parses);
+        cache.getEmbeddedResourceURLs(parser, null, page, url1, "UTF-8");
+        assertEquals(3, parser.parses);
+        cache.getEmbeddedResourceURLs(parser, null, page, url2, "UTF-8");
+        assertEquals(4, parser.parses);
+    }
+
+    @Test
+    public void testVerification() throws Exception {
+        EmbeddedResourcesCache cache = new EmbeddedResourcesCache(10, 1);
+        CountingParser parser = new CountingParser();
+        URL url = new URL("http://localhost/index.html");
+        cache.getEmbeddedResourceURLs(parser, null, PAGE.getBytes("UTF-8"), url, "UTF-8");
+        cache.getEmbeddedResourceURLs(parser, null, PAGE.getBytes("UTF-8"), url, "UTF-8");
+        assertEquals(2, parser.parses);
+        assertEquals(1, cache.getVerifications());
+        assertEquals(0, cache.getMismatches());
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.util.JsseSSLManager;
+import org.apache.jmeter.util.SSLManager;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Runs the HttpClient4Async implementation against a local server keeping connections alive.
+ */
+public class TestHTTPHCAsyncImpl extends JMeterTestCase {
+
+    private static final String HOST = "127.0.0.1"; // $NON-NLS-1$
+
+    private static final byte[] BODY = new byte[100000];
+
+    private static final String PASSWORD = "password"; // $NON-NLS-1$
+
+    private static HttpServer server;
+
+    private static HttpServer httpsServer;
+
+    private static File keyStore;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        for (int i = 0; i < BODY.length; i++) {
+            BODY[i] = (byte) ('a' + i % 26);
+        }
+        server = createServer().create();
+        server.start();
+        httpsServer = createServer().setSslContext(createServerSSLContext()).create();
+        httpsServer.start();
+    }
+
+    /**
+     * @return a context with a self-signed certificate for another host name
+     */
+    private static SSLContext createServerSSLContext() throws Exception {
+        keyStore = File.createTempFile("server", ".jks"); // $NON-NLS-1$ $NON-NLS-2$
+        assertTrue(keyStore.delete());
+        Process keytool = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/keytool").getPath(), // $NON-NLS-1$ $NON-NLS-2$
+                "-genkeypair", "-keyalg", "RSA", "-alias", "server", "-dname", "CN=jmeter.invalid",
+                "-keystore", keyStore.getPath(), "-storepass", PASSWORD, "-keypass", PASSWORD)
+                .redirectErrorStream(true).start();
+        assertEquals(0, keytool.waitFor());
+        return SSLContexts.custom()
+                .loadKeyMaterial(keyStore, PASSWORD.toCharArray(), PASSWORD.toCharArray())
+                .build();
+    }
+
+    private static ServerBootstrap createServer() throws IOException {
+        return ServerBootstrap.bootstrap()
+                .setLocalAddress(InetAddress.getByName(HOST))
+                .registerHandler("*", new HttpRequestHandler() { // $NON-NLS-1$
+                    @Override
+                    public void handle(HttpRequest request, HttpResponse response, HttpContext context)
+                            throws HttpException, IOException {
+                        if (request.getRequestLine().getUri().startsWith("/gzip")) { // $NON-NLS-1$
+                            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                                gzip.write(BODY);
+                            }
+                            response.setHeader(HTTPConstants.HEADER_CONTENT_ENCODING, "gzip"); // $NON-NLS-1$
+                            response.setEntity(new ByteArrayEntity(bytes.toByteArray()));
+                        } else {
+                            response.setEntity(new ByteArrayEntity(BODY));
+                        }
+                    }
+                });
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        server.shutdown(1, TimeUnit.SECONDS);
+        httpsServer.shutdown(1, TimeUnit.SECONDS);
+        keyStore.delete();
+    }
+
+    private static HTTPSampleResult sample(String path) {
+        HTTPSampler4 sampler = new HTTPSampler4();
+        sampler.setDomain(HOST);
+        sampler.setPort(server.getLocalPort());
+        sampler.setPath(path);
+        sampler.setMethod(HTTPConstants.GET);
+        sampler.setUseKeepAlive(true);
+        return (HTTPSampleResult) sampler.sample();
+    }
+
+    /**
+     * @return the number of idle connections to the server, once all are released
+     */
+    private static int getAvailableConnections() throws InterruptedException {
+        HttpHost target = new HttpHost(HOST, server.getLocalPort());
+        PoolStats stats = HTTPHCAsyncImpl.getConnectionPoolStats(target);
+        for (int i = 0; i < 100 && stats.getLeased() > 0; i++) {
+            Thread.sleep(10);
+            stats = HTTPHCAsyncImpl.getConnectionPoolStats(target);
+        }
+        assertEquals(0, stats.getLeased());
+        return stats.getAvailable();
+    }
+
+    private static void sampleInThread(String threadName, final int samples) throws InterruptedException {
+        final AtomicInteger successes = new AtomicInteger();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < samples; i++) {
+                    if (sample("/").isSuccessful()) { // $NON-NLS-1$
+                        successes.incrementAndGet();
+                    }
+                }
+            }
+        }, threadName);
+        thread.start();
+        thread.join();
+        assertEquals(samples, successes.get());
+    }
+
+    @Test
+    public void testStreamedBody() throws Exception {
+        HTTPSampleResult res = sample("/"); // $NON-NLS-1$
+        assertTrue(res.isSuccessful());
+        assertArrayEquals(BODY, res.getResponseData());
+        assertFalse(res.isResponseDataTruncated());
+        assertTrue(res.getLatency() >= 0);
+        assertTrue(res.getLatency() <= res.getTime());
+    }
+
+    @Test
+    public void testEncodedBody() throws Exception {
+        HTTPSampleResult res = sample("/gzip"); // $NON-NLS-1$
+        assertTrue(res.isSuccessful());
+        assertArrayEquals(BODY, res.getResponseData());
+    }
+
+    @Test
+    public void testHttpsUntrustedCertificate() throws Exception {
+        // Certificates and host names are not checked, as with HttpClient4
+        HTTPSampler4 sampler = new HTTPSampler4();
+        sampler.setProtocol(HTTPConstants.PROTOCOL_HTTPS);
+        sampler.setDomain(HOST);
+        sampler.setPort(httpsServer.getLocalPort());
+        sampler.setPath("/"); // $NON-NLS-1$
+        sampler.setMethod(HTTPConstants.GET);
+        sampler.setUseKeepAlive(true);
+        HTTPSampleResult res = (HTTPSampleResult) sampler.sample();
+        assertTrue(res.getResponseMessage(), res.isSuccessful());
+        assertArrayEquals(BODY, res.getResponseData());
+        // The handshake used the SSL context of this thread
+        SSLContext context = ((JsseSSLManager) SSLManager.getInstance()).getContext();
+        assertTrue(context.getClientSessionContext().getIds().hasMoreElements());
+    }
+
+    @Test
+    public void testConnectionsReusedPerThread() throws Exception {
+        int available = getAvailableConnections();
+        // One after the other, so that a shared connection would be free for the second thread
+        sampleInThread("async-1", 3); // $NON-NLS-1$
+        sampleInThread("async-2", 3); // $NON-NLS-1$
+        assertEquals(available + 2, getAvailableConnections());
+        // Each thread reuses its connection
+        sampleInThread("async-1", 2); // $NON-NLS-1$
+        sampleInThread("async-2", 2); // $NON-NLS-1$
+        assertEquals(available + 2, getAvailableConnections());
+    }
+}
@@ -364,4 +364,16 @@ public class TestHTTPSamplers {
         file = sampler.getHTTPFiles()[0];
         assertEquals("mime2", file.getMimeType());
     }
+
+    @Test
+    public void testCopyResultKeepsResourcesQueueTimes() {
+        HTTPSampleResult res = new HTTPSampleResult();
+        res.setResourcesQueueTime(120);
+        res.setResourcesMaxQueueTime(50);
+        res.setBodyFile("body.bin");
+        HTTPSampleResult copy = new HTTPSampleResult(res);
+        assertEquals(120, copy.getResourcesQueueTime());
+        assertEquals(50, copy.getResourcesMaxQueueTime());
+        assertEquals("body.bin", copy.getBodyFile());
+    }
 }
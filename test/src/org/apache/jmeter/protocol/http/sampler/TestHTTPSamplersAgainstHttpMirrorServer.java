@@ -60,6 +60,7 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
     private static final int HTTP_SAMPLER = 0;
     private static final int HTTP_SAMPLER2 = 1;
     private static final int HTTP_SAMPLER3 = 2;
+    private static final int HTTP_SAMPLER4 = 3;
     
     /** The encodings used for http headers and control information */
     private static final String ISO_8859_1 = "ISO-8859-1"; // $NON-NLS-1$
@@ -183,6 +184,10 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
         testPostRequest_BodyFromParameterValues(HTTP_SAMPLER3, US_ASCII);
     }
 
+    public void testPostRequest_BodyFromParameterValues4() throws Exception {
+        testPostRequest_BodyFromParameterValues(HTTP_SAMPLER4, US_ASCII);
+    }
+
     public void testGetRequest() throws Exception {
         testGetRequest(HTTP_SAMPLER);
     }
@@ -195,6 +200,30 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
         testGetRequest(HTTP_SAMPLER3);
     }
     
+    public void testGetRequest4() throws Exception {
+        testGetRequest(HTTP_SAMPLER4);
+    }
+
+    public void testGetRequest3SharedPool() throws Exception {
+        // Drop the HttpClients cached for this thread, so that new ones use the shared pool
+        HTTPHC4Impl hc = new HTTPHC4Impl(new HTTPSampler3());
+        hc.threadFinished();
+        JMeterUtils.setProperty(SharedConnectionManager.SHARED_POOL, "true");
+        try {
+            testGetRequest(HTTP_SAMPLER3);
+            SharedConnectionManager.Statistics stats = SharedConnectionManager.getStatistics();
+            assertNotNull(stats);
+            assertEquals(3, stats.getLeaseCount());
+            assertEquals(0, stats.getLeased());
+            assertEquals(0, stats.getPending());
+        } finally {
+            JMeterUtils.getJMeterProperties().remove(SharedConnectionManager.SHARED_POOL);
+            hc.threadFinished();
+            SharedConnectionManager.shutdownInstance();
+        }
+        assertNull(SharedConnectionManager.getStatistics());
+    }
+    
     public void itemised_testGetRequest_Parameters() throws Exception {
         testGetRequest_Parameters(HTTP_SAMPLER, item);
     }
@@ -1447,6 +1476,8 @@ public class TestHTTPSamplersAgainstHttpMirrorServer extends JMeterTestCaseJUnit
                 return new HTTPSampler2();
             case HTTP_SAMPLER3:
                 return new HTTPSampler3();
+            case HTTP_SAMPLER4:
+                return new HTTPSampler4();
             default:
                 break;
         }
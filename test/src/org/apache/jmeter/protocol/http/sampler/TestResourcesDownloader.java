@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestResourcesDownloader {
+
+    private static final class CountingTask extends ResourcesDownloader.DownloadTask<String> {
+        private final String name;
+        private final long sleep;
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+
+        CountingTask(String name, long sleep, AtomicInteger running, AtomicInteger maxRunning) {
+            this.name = name;
+            this.sleep = sleep;
+            this.running = running;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        protected String download() throws Exception {
+            int current = running.incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.set(Math.max(maxRunning.get(), current));
+            }
+            try {
+                Thread.sleep(sleep);
+            } finally {
+                running.decrementAndGet();
+            }
+            return name;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ResourcesDownloader.shutdownInstance();
+    }
+
+    private static List<CountingTask> createTasks(int count, long sleep, AtomicInteger running, AtomicInteger maxRunning) {
+        List<CountingTask> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(new CountingTask("task" + i, sleep, running, maxRunning));
+        }
+        return tasks;
+    }
+
+    @Test
+    public void testResultsInOrderWithinLimit() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CountingTask> tasks = createTasks(12, 20, running, maxRunning);
+        List<Future<String>> futures = ResourcesDownloader.getInstance().invokeAll(3, tasks, 10, TimeUnit.SECONDS);
+        assertEquals(12, futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals("task" + i, futures.get(i).get());
+        }
+        assertEquals(3, maxRunning.get());
+    }
+
+    @Test
+    public void testThreadsAreReused() throws Exception {
+        final List<String> threadNames = new ArrayList<>();
+        List<ResourcesDownloader.DownloadTask<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tasks.add(new ResourcesDownloader.DownloadTask<String>() {
+                @Override
+                protected String download() {
+                    return Thread.currentThread().getName();
+                }
+            });
+        }
+        for (Future<String> future : ResourcesDownloader.getInstance().invokeAll(1, tasks, 10, TimeUnit.SECONDS)) {
+            threadNames.add(future.get());
+        }
+        for (Future<String> future : ResourcesDownloader.getInstance().invokeAll(1, tasks, 10, TimeUnit.SECONDS)) {
+            threadNames.add(future.get());
+        }
+        // A new thread may be started while the previous one returns to the pool, but most are reused
+        assertTrue(new HashSet<>(threadNames).size() < threadNames.size() / 2);
+    }
+
+    @Test
+    public void testTimeoutCancelsRemainingTasks() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<CountingTask> tasks = createTasks(4, 500, running, maxRunning);
+        List<Future<String>> futures = ResourcesDownloader.getInstance().invokeAll(2, tasks, 100, TimeUnit.MILLISECONDS);
+        assertEquals(4, futures.size());
+        for (Future<String> future : futures) {
+            assertTrue(future.isCancelled());
+        }
+    }
+}
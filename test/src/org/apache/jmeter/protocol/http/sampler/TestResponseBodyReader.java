@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.protocol.http.sampler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class TestResponseBodyReader {
+
+    private static byte[] createBody(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) i;
+        }
+        return body;
+    }
+
+    private static HTTPSampleResult createResult() {
+        HTTPSampleResult res = new HTTPSampleResult();
+        res.sampleStart();
+        return res;
+    }
+
+    @Test
+    public void testKeepWithAndWithoutLength() throws Exception {
+        byte[] body = createBody(100000);
+        HTTPSampleResult res = createResult();
+        byte[] data = ResponseBodyReader.read(res, new ByteArrayInputStream(body), body.length,
+                ResponseBodyReader.Mode.KEEP, 10, null);
+        assertArrayEquals(body, data);
+        assertFalse(res.isResponseDataTruncated());
+        assertTrue(res.getLatency() >= 0);
+
+        res = createResult();
+        data = ResponseBodyReader.read(res, new ByteArrayInputStream(body), 0,
+                ResponseBodyReader.Mode.KEEP, 10, null);
+        assertArrayEquals(body, data);
+        assertFalse(res.isResponseDataTruncated());
+    }
+
+    @Test
+    public void testKeepEmpty() throws Exception {
+        HTTPSampleResult res = createResult();
+        byte[] data = ResponseBodyReader.read(res, new ByteArrayInputStream(new byte[0]), 0,
+                ResponseBodyReader.Mode.KEEP, 10, null);
+        assertEquals(0, data.length);
+        assertFalse(res.isResponseDataTruncated());
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        byte[] body = createBody(20000);
+        HTTPSampleResult res = createResult();
+        byte[] data = ResponseBodyReader.read(res, new ByteArrayInputStream(body), body.length,
+                ResponseBodyReader.Mode.TRUNCATE, 10000, null);
+        res.setResponseData(data);
+        assertArrayEquals(Arrays.copyOf(body, 10000), data);
+        assertTrue(res.isResponseDataTruncated());
+        assertEquals(20000, res.getBodySize());
+        assertEquals(20000, res.getBytes());
+    }
+
+    @Test
+    public void testTruncateShorterBody() throws Exception {
+        byte[] body = createBody(100);
+        HTTPSampleResult res = createResult();
+        byte[] data = ResponseBodyReader.read(res, new ByteArrayInputStream(body), 0,
+                ResponseBodyReader.Mode.TRUNCATE, 10000, null);
+        assertArrayEquals(body, data);
+        assertFalse(res.isResponseDataTruncated());
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        byte[] body = createBody(50000);
+        HTTPSampleResult res = createResult();
+        byte[] data = ResponseBodyReader.read(res, new ByteArrayInputStream(body), 0,
+                ResponseBodyReader.Mode.DISCARD, 10000, null);
+        res.setResponseData(data);
+        assertEquals(0, data.length);
+        assertTrue(res.isResponseDataTruncated());
+        assertEquals(50000, res.getBodySize());
+        assertEquals(50000, res.getBytes());
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        byte[] body = createBody(30000);
+        HTTPSampleResult res = createResult();
+        byte[] data = ResponseBodyReader.read(res, new ByteArrayInputStream(body), body.length,
+                ResponseBodyReader.Mode.FILE, 1000, null);
+        assertArrayEquals(Arrays.copyOf(body, 1000), data);
+        assertTrue(res.isResponseDataTruncated());
+        assertNotNull(res.getBodyFile());
+        File file = new File(res.getBodyFile());
+        try {
+            assertArrayEquals(body, FileUtils.readFileToByteArray(file));
+        } finally {
+            FileUtils.deleteQuietly(file);
+        }
+    }
+
+    @Test
+    public void testFilesDeleted() throws Exception {
+        ResponseBodyReader.testEnded(true); // forget files of other tests
+        File[] files = new File[3];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = File.createTempFile("jmeter-body-", ".tmp");
+            ResponseBodyReader.addFile(files[i], 2);
+        }
+        assertFalse(files[0].exists());
+        assertTrue(files[1].exists());
+        assertTrue(files[2].exists());
+        ResponseBodyReader.testEnded(false);
+        assertFalse(files[1].exists());
+        assertFalse(files[2].exists());
+    }
+
+    @Test
+    public void testFileDeletedIfNotFinished() throws Exception {
+        File dir = File.createTempFile("jmeter-body-", ".dir");
+        assertTrue(dir.delete() && dir.mkdir());
+        try {
+            HTTPSampleResult res = createResult();
+            ResponseBodyReader.Sink sink = new ResponseBodyReader.Sink(res, 0,
+                    ResponseBodyReader.Mode.FILE, 1000, dir);
+            sink.write(createBody(100), 100);
+            assertEquals(1, dir.list().length);
+            sink.close();
+            assertNull(res.getBodyFile());
+            assertEquals(0, dir.list().length);
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    @Test
+    public void testSinkInParts() throws Exception {
+        byte[] body = createBody(20000);
+        HTTPSampleResult res = createResult();
+        try (ResponseBodyReader.Sink sink = new ResponseBodyReader.Sink(res, 0,
+                ResponseBodyReader.Mode.TRUNCATE, 15000, null)) {
+            for (int off = 0; off < body.length; off += 3000) {
+                int len = Math.min(3000, body.length - off);
+                sink.write(Arrays.copyOfRange(body, off, off + len), len);
+            }
+            byte[] data = sink.finish();
+            res.setResponseData(data);
+            assertArrayEquals(Arrays.copyOf(body, 15000), data);
+        }
+        assertTrue(res.isResponseDataTruncated());
+        assertEquals(20000, res.getBodySize());
+        assertTrue(res.getLatency() >= 0);
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVResultEncoder;
+import org.apache.jmeter.save.CSVSaveService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestBinarySampleReaderWriter extends JMeterTestCase {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',',
+            CSVSaveService.TIME_STAMP, CSVSaveService.CSV_ELAPSED, CSVSaveService.LABEL,
+            CSVSaveService.RESPONSE_CODE, CSVSaveService.SUCCESSFUL, CSVSaveService.CSV_BYTES,
+            "\"var\"");
+
+    private File file;
+
+    private final List<File> otherFiles = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        file = createTempFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : otherFiles) {
+            f.delete();
+        }
+    }
+
+    private File createTempFile() throws IOException {
+        File f = File.createTempFile("samples", ".jtl");
+        otherFiles.add(f);
+        return f;
+    }
+
+    private static String[][] samples() {
+        StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longString.append("long failure message ");
+        }
+        return new String[][] {
+            { "1456789012345", "100", "Home page", "200", "true", "12345", "a" },
+            { "1456789012300", "0", "Home page", "200", "true", "0", "" },
+            { "1456789012400", "-1", "Ünïcödé €", "500", "false", "-9223372036854775808", "a" },
+            { "", "007", "", "Non HTTP response code", "false", "9223372036854775807", "b,c" },
+            { "2016/03/01 12:00:00", "abc", longString.toString(), "200", "true", "-0", "\"quoted\"" },
+            { "0", "4096", "Home page", "200", "true", "4095", longString.toString() },
+        };
+    }
+
+    private void writeSamples(BinarySampleWriter writer, String[][] samples) {
+        long row = 0;
+        for (String[] data : samples) {
+            writer.write(new Sample(row++, METADATA, data));
+        }
+    }
+
+    private List<String[]> readSamples(File f) {
+        List<String[]> result = new ArrayList<>();
+        try (BinarySampleReader reader = new BinarySampleReader(f)) {
+            assertEquals(METADATA.toString(), reader.getMetadata().toString());
+            Sample sample;
+            while ((sample = reader.readSample()) != null) {
+                String[] data = new String[reader.getMetadata().getColumnCount()];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = sample.getData(i);
+                }
+                result.add(data);
+            }
+            assertFalse(reader.hasNext());
+            assertNull(reader.peek());
+        }
+        return result;
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        String[][] samples = samples();
+        try (BinarySampleWriter writer = new BinarySampleWriter(file, METADATA)) {
+            writeSamples(writer, samples);
+            writeSamples(writer, samples); // from dictionaries
+        }
+        assertTrue(BinarySampleReader.isBinaryFile(file));
+        List<String[]> read = readSamples(file);
+        assertEquals(2 * samples.length, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertArrayEquals(samples[i % samples.length], read.get(i));
+        }
+    }
+
+    @Test
+    public void testAppendedSegments() throws Exception {
+        String[][] samples = samples();
+        try (BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(file), METADATA)) {
+            writeSamples(writer, samples);
+        }
+        // Not closed, as if the JVM had been killed
+        BinarySampleWriter notClosed = new BinarySampleWriter(new FileOutputStream(file, true), METADATA);
+        writeSamples(notClosed, samples);
+        notClosed.flush();
+        try (BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(file, true), METADATA)) {
+            writeSamples(writer, samples);
+        }
+        List<String[]> read = readSamples(file);
+        assertEquals(3 * samples.length, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertArrayEquals(samples[i % samples.length], read.get(i));
+        }
+    }
+
+    @Test(expected = SampleException.class)
+    public void testAppendedSegmentWithOtherColumns() throws Exception {
+        try (BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(file), METADATA)) {
+            writeSamples(writer, samples());
+        }
+        SampleMetadata other = new SampleMetadata(',', "a", "b");
+        try (BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(file, true), other)) {
+            writer.write(new Sample(0, other, "1", "2"));
+        }
+        readSamples(file);
+    }
+
+    @Test
+    public void testTruncatedFile() throws Exception {
+        String[][] samples = samples();
+        try (BinarySampleWriter writer = new BinarySampleWriter(file, METADATA)) {
+            writeSamples(writer, samples);
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5); // end marker and part of the last sample
+        }
+        List<String[]> read = readSamples(file);
+        assertEquals(samples.length - 1, read.size());
+        for (int i = 0; i < read.size(); i++) {
+            assertArrayEquals(samples[i], read.get(i));
+        }
+    }
+
+    @Test
+    public void testIsBinaryFile() throws Exception {
+        assertFalse(BinarySampleReader.isBinaryFile(file)); // empty
+        Files.write(file.toPath(), "timeStamp,elapsed\n1,2\n".getBytes("UTF-8"));
+        assertFalse(BinarySampleReader.isBinaryFile(file));
+        assertFalse(BinarySampleReader.isBinaryFile(new File(file.getPath() + ".missing")));
+    }
+
+    private static SampleEvent createEvent(String label, long time, boolean success) throws Exception {
+        SampleResult result = new SampleResult(1456789012345L + time, time);
+        result.setSampleLabel(label);
+        result.setResponseCode(success ? "200" : "500");
+        result.setResponseMessage(success ? "OK" : "Internal Server Error");
+        result.setThreadName("Thread Group 1-1");
+        result.setDataType(SampleResult.TEXT);
+        result.setSuccessful(success);
+        result.setBytes(12345);
+        result.setLatency(42);
+        result.setConnectTime(7);
+        result.setURL(new URL("http://localhost/index.html?a=1,b=2"));
+        if (!success) {
+            AssertionResult assertion = new AssertionResult("assertion");
+            assertion.setFailureMessage("failed, \"really\"");
+            result.addAssertionResult(assertion);
+        }
+        return new SampleEvent(result, "Thread Group", "host");
+    }
+
+    private static SampleSaveConfiguration createConfig() {
+        SampleSaveConfiguration config = new SampleSaveConfiguration(true);
+        config.setHostname(true);
+        config.setIdleTime(true);
+        config.setConnectTime(true);
+        config.setThreadCounts(true);
+        config.setSampleCount(true);
+        return config;
+    }
+
+    @Test
+    public void testWriteSampleEvent() throws Exception {
+        SampleSaveConfiguration config = createConfig();
+        List<SampleEvent> events = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            events.add(createEvent(i % 2 == 0 ? "page, \"one\"" : null, i * 10, i % 3 != 0));
+        }
+        try (BinarySampleWriter writer = new BinarySampleWriter(new FileOutputStream(file), config)) {
+            for (SampleEvent event : events) {
+                writer.write(event);
+            }
+        }
+        try (BinarySampleReader reader = new BinarySampleReader(file)) {
+            assertEquals(CSVSaveService.printableFieldNamesToString(config), reader.getMetadata().toString());
+            for (SampleEvent event : events) {
+                event.getResult().setSaveConfig(config);
+                String line = CSVSaveService.resultToDelimitedString(event) + "\n";
+                String[] expected = CSVSaveService.csvReadFile(new BufferedReader(new StringReader(line)), ',');
+                Sample sample = reader.readSample();
+                String[] data = new String[reader.getMetadata().getColumnCount()];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = sample.getData(i);
+                }
+                assertArrayEquals(expected, data);
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test
+    public void testCsvConversionRoundTrip() throws Exception {
+        SampleSaveConfiguration config = createConfig();
+        File csv = createTempFile();
+        CSVResultEncoder encoder = new CSVResultEncoder();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(csv), "UTF-8")) {
+            out.write(CSVSaveService.printableFieldNamesToString(config));
+            out.write(System.getProperty("line.separator"));
+            for (int i = 0; i < 100; i++) {
+                SampleEvent event = createEvent(i % 2 == 0 ? "Ünïcödé, \"page\"\nline" : "page", i, i % 7 != 0);
+                encoder.write(event, config, out);
+            }
+        }
+        assertEquals(100, BinarySampleConverter.csvToBinary(csv, file));
+        assertTrue(file.length() < csv.length());
+        File back = createTempFile();
+        assertEquals(100, BinarySampleConverter.binaryToCsv(file, back));
+        assertArrayEquals(Files.readAllBytes(csv.toPath()), Files.readAllBytes(back.toPath()));
+    }
+}
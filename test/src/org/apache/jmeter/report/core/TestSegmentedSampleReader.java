@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.save.ResultFiles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSegmentedSampleReader extends JMeterTestCase {
+
+    private File dir;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("results").toFile();
+        file = new File(dir, "results.csv");
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static void write(File f, String content, boolean compressed) throws IOException {
+        try (OutputStream out = compressed ? new GZIPOutputStream(new FileOutputStream(f))
+                : new FileOutputStream(f)) {
+            out.write(content.getBytes("ISO-8859-1"));
+        }
+    }
+
+    @Test
+    public void testReadSegments() throws Exception {
+        write(file, "timeStamp,elapsed,label\n1,10,a\n2,20,b\n", false);
+        write(ResultFiles.getSegment(file, 1), "timeStamp,elapsed,label\n", true); // no sample
+        write(ResultFiles.getSegment(file, 2), "timeStamp,elapsed,label\n3,30,c\n", true);
+        try (SegmentedSampleReader reader = new SegmentedSampleReader(file, ',')) {
+            assertEquals("timeStamp,elapsed,label", reader.getMetadata().toString());
+            for (String label : new String[] { "a", "b", "c" }) {
+                assertEquals(label, reader.peek().getData("label"));
+                assertEquals(label, reader.readSample().getData("label"));
+            }
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    @Test(expected = SampleException.class)
+    public void testSegmentWithOtherColumns() throws Exception {
+        write(file, "timeStamp,elapsed,label\n1,10,a\n", false);
+        write(ResultFiles.getSegment(file, 1), "timeStamp,label\n3,c\n", true);
+        try (SegmentedSampleReader reader = new SegmentedSampleReader(file, ',')) {
+            reader.readSample();
+        }
+    }
+}
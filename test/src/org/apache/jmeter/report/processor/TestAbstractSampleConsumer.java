@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleException;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.junit.Test;
+
+public class TestAbstractSampleConsumer {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',', "label");
+
+    /** Keeps the labels of the samples it consumes */
+    private static class LabelConsumer extends AbstractSampleConsumer {
+
+        private final List<String> labels = new ArrayList<>();
+
+        private Thread stoppingThread;
+
+        /** sample failing the consumer, -1 for none */
+        private final int failAt;
+
+        /** whether the failure is an Error rather than an exception */
+        private final boolean error;
+
+        LabelConsumer(int failAt) {
+            this(failAt, false);
+        }
+
+        LabelConsumer(int failAt, boolean error) {
+            this.failAt = failAt;
+            this.error = error;
+        }
+
+        @Override
+        public void startConsuming() {
+            labels.clear();
+        }
+
+        @Override
+        public void consume(Sample sample, int channel) {
+            if (labels.size() == failAt) {
+                if (error) {
+                    throw new AssertionError("failing at " + failAt);
+                }
+                throw new IllegalStateException("failing at " + failAt);
+            }
+            labels.add(channel + ":" + sample.getData("label"));
+        }
+
+        @Override
+        public void stopConsuming() {
+            stoppingThread = Thread.currentThread();
+        }
+    }
+
+    private static FilterConsumer createFanOut(int parallelism, List<LabelConsumer> consumers) {
+        FilterConsumer fanOut = new FilterConsumer();
+        // Keeps all the samples
+        fanOut.setReverseFilter(true);
+        fanOut.setParallelism(parallelism);
+        for (LabelConsumer consumer : consumers) {
+            fanOut.addSampleConsumer(consumer);
+        }
+        fanOut.setSampleContext(new SampleContext());
+        fanOut.setConsumedMetadata(METADATA, 0);
+        fanOut.setConsumedMetadata(METADATA, 1);
+        return fanOut;
+    }
+
+    @Test
+    public void testParallelConsumersKeepOrder() {
+        List<LabelConsumer> consumers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            consumers.add(new LabelConsumer(-1));
+        }
+        FilterConsumer fanOut = createFanOut(3, consumers);
+        assertFalse(fanOut.isMergeable());
+
+        List<String> expected = new ArrayList<>();
+        // Twice, to check the consumers can be started again
+        for (int run = 0; run < 2; run++) {
+            expected.clear();
+            fanOut.startConsuming();
+            for (int i = 0; i < 10000; i++) {
+                int channel = i % 3 == 0 ? 1 : 0;
+                fanOut.consume(new Sample(i, METADATA, "s" + i), channel);
+                expected.add(channel + ":s" + i);
+            }
+            fanOut.stopConsuming();
+            for (LabelConsumer consumer : consumers) {
+                assertEquals(expected, consumer.labels);
+                assertSame(Thread.currentThread(), consumer.stoppingThread);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelConsumerFailure() {
+        List<LabelConsumer> consumers = new ArrayList<>();
+        consumers.add(new LabelConsumer(-1));
+        consumers.add(new LabelConsumer(1000));
+        FilterConsumer fanOut = createFanOut(2, consumers);
+        fanOut.startConsuming();
+        try {
+            try {
+                for (int i = 0; i < 100000; i++) {
+                    fanOut.consume(new Sample(i, METADATA, "s" + i), 0);
+                }
+            } finally {
+                fanOut.stopConsuming();
+            }
+            fail("Expected a SampleException");
+        } catch (SampleException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(1000, consumers.get(1).labels.size());
+        // The consumers were not stopped
+        assertEquals(null, consumers.get(0).stoppingThread);
+    }
+
+    @Test
+    public void testParallelConsumerError() {
+        List<LabelConsumer> consumers = new ArrayList<>();
+        consumers.add(new LabelConsumer(-1));
+        consumers.add(new LabelConsumer(1000, true));
+        FilterConsumer fanOut = createFanOut(2, consumers);
+        fanOut.startConsuming();
+        try {
+            try {
+                for (int i = 0; i < 100000; i++) {
+                    fanOut.consume(new Sample(i, METADATA, "s" + i), 0);
+                }
+            } finally {
+                fanOut.stopConsuming();
+            }
+            fail("Expected an AssertionError");
+        } catch (AssertionError e) {
+            assertEquals("failing at 1000", e.getMessage());
+        }
+        assertEquals(1000, consumers.get(1).labels.size());
+        assertEquals(null, consumers.get(0).stoppingThread);
+
+        // The failed workers were shut down, the consumers can be started again
+        fanOut.startConsuming();
+        fanOut.consume(new Sample(0, METADATA, "s0"), 0);
+        fanOut.stopConsuming();
+        assertEquals(1, consumers.get(1).labels.size());
+    }
+}
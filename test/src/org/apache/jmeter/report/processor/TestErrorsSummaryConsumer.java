@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.save.CSVSaveService;
+import org.junit.Test;
+
+public class TestErrorsSummaryConsumer {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',',
+            CSVSaveService.LABEL, CSVSaveService.RESPONSE_CODE, CSVSaveService.SUCCESSFUL);
+
+    @Test
+    public void testEachErrorIsCountedOnce() {
+        ErrorsSummaryConsumer consumer = new ErrorsSummaryConsumer();
+        consumer.setSampleContext(new SampleContext());
+        consumer.setConsumedMetadata(METADATA, 0);
+        consumer.startConsuming();
+        consumer.consume(new Sample(0, METADATA, "a", "500", "false"), 0);
+        consumer.consume(new Sample(1, METADATA, "a", "200", "true"), 0);
+        consumer.consume(new Sample(2, METADATA, "b", "500", "false"), 0);
+        consumer.consume(new Sample(3, METADATA, "b", "404", "false"), 0);
+
+        // The first error of each type used to be counted twice
+        assertEquals(Long.valueOf(2), consumer.getSummaryInfos().get("500").getData());
+        assertEquals(Long.valueOf(1), consumer.getSummaryInfos().get("404").getData());
+        assertEquals(Long.valueOf(4), consumer.getOverallInfo().getData());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+
+public class TestHistogramPercentileAggregator {
+
+    private static final double[] INDEXES = { 1, 25, 50, 90, 95, 99, 99.9 };
+
+    @Test
+    public void testEmpty() {
+        HistogramPercentileAggregator aggregator = new HistogramPercentileAggregator(50, 2);
+        assertEquals(0, aggregator.getCount());
+        assertTrue(Double.isNaN(aggregator.getResult()));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Random random = new Random(0);
+        for (double index : INDEXES) {
+            HistogramPercentileAggregator aggregator = new HistogramPercentileAggregator(index, 2);
+            DescriptiveStatistics statistics = new DescriptiveStatistics();
+            for (int i = 0; i < 1000; i++) {
+                long value = random.nextInt(200);
+                aggregator.addValue(value);
+                statistics.addValue(value);
+            }
+            assertEquals(1000, aggregator.getCount());
+            assertEquals(statistics.getPercentile(index), aggregator.getResult(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testPrecision() {
+        for (int precision = 1; precision <= 3; precision++) {
+            double maxError = Math.pow(10, -precision);
+            Random random = new Random(precision);
+            for (double index : INDEXES) {
+                HistogramPercentileAggregator aggregator = new HistogramPercentileAggregator(index,
+                        precision);
+                DescriptiveStatistics statistics = new DescriptiveStatistics();
+                for (int i = 0; i < 10000; i++) {
+                    // Log-normal response times, up to a few minutes
+                    long value = Math.round(Math.exp(5 + 2 * random.nextGaussian()));
+                    aggregator.addValue(value);
+                    statistics.addValue(value);
+                }
+                double expected = statistics.getPercentile(index);
+                assertEquals("precision " + precision + ", percentile " + index, expected,
+                        aggregator.getResult(), expected * maxError);
+            }
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        Random random = new Random(1);
+        HistogramPercentileAggregator all = new HistogramPercentileAggregator(90, 2);
+        HistogramPercentileAggregator first = new HistogramPercentileAggregator(90, 2);
+        HistogramPercentileAggregator second = new HistogramPercentileAggregator(90, 2);
+        for (int i = 0; i < 10000; i++) {
+            // The second histogram gets greater values
+            long value = random.nextInt(i < 5000 ? 1000 : 100000);
+            all.addValue(value);
+            (i < 5000 ? first : second).addValue(value);
+        }
+        first.merge(second);
+        assertEquals(all.getCount(), first.getCount());
+        assertEquals(all.getResult(), first.getResult(), 0);
+
+        first.reset();
+        assertEquals(0, first.getCount());
+        first.merge(all);
+        assertEquals(all.getResult(), first.getResult(), 0);
+    }
+
+    @Test
+    public void testExtremeValues() {
+        HistogramPercentileAggregator aggregator = new HistogramPercentileAggregator(100, 2);
+        aggregator.addValue(-5);
+        aggregator.addValue(123456789);
+        assertEquals(123456789, aggregator.getResult(), 0);
+        aggregator = new HistogramPercentileAggregator(0, 2);
+        aggregator.addValue(123456789);
+        aggregator.addValue(-5);
+        assertEquals(0, aggregator.getResult(), 0);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.save.ResultFiles;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestParallelCsvFileSampleSource extends JMeterTestCase {
+
+    private static final String HEADER = "timeStamp,elapsed,label,success\n";
+
+    private File dir;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("results").toFile();
+        file = new File(dir, "results.csv");
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /** Keeps the labels of the samples it consumes */
+    private static class LabelConsumer extends AbstractSampleConsumer {
+
+        private List<String> labels = new ArrayList<>();
+
+        @Override
+        public void startConsuming() {
+            // Nothing to start
+        }
+
+        @Override
+        public void consume(Sample sample, int channel) {
+            labels.add(channel + ":" + sample.getData("label"));
+        }
+
+        @Override
+        public void stopConsuming() {
+            setDataToContext(getName(), labels);
+        }
+
+        @Override
+        protected boolean supportsMerge() {
+            return true;
+        }
+
+        @Override
+        protected void mergeConsumedData(AbstractSampleConsumer other) {
+            LabelConsumer consumer = (LabelConsumer) other;
+            labels.addAll(consumer.labels);
+            consumer.labels = new ArrayList<>();
+        }
+    }
+
+    // Writes samples whose labels contain quotes and line breaks, and returns
+    // their labels as read by the consumers
+    private static List<String> write(File f, int channel, int first, int count,
+            boolean compressed) throws IOException {
+        List<String> labels = new ArrayList<>();
+        StringBuilder content = new StringBuilder(HEADER);
+        for (int i = first; i < first + count; i++) {
+            String label;
+            if (i % 7 == 0) {
+                label = "multi\nline \"" + i + "\"";
+                content.append(i).append(",10,\"multi\nline \"\"").append(i).append("\"\"\",true\n");
+            } else {
+                label = "sample " + i;
+                content.append(i).append(",10,").append(label).append(",true\r\n");
+            }
+            labels.add(channel + ":" + label);
+        }
+        try (OutputStream out = compressed ? new GZIPOutputStream(new FileOutputStream(f))
+                : new FileOutputStream(f)) {
+            out.write(content.toString().getBytes("ISO-8859-1"));
+        }
+        return labels;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> read(int threads) {
+        SampleContext context = new SampleContext();
+        context.setWorkingDirectory(dir);
+        ParallelCsvFileSampleSource source = new ParallelCsvFileSampleSource(file, ',');
+        source.setSampleContext(context);
+        for (int i = 0; i < threads; i++) {
+            LabelConsumer consumer = new LabelConsumer();
+            consumer.setName("labels");
+            source.addSampleConsumer(consumer);
+        }
+        source.run();
+        return (List<String>) context.getData().get("labels");
+    }
+
+    @Test
+    public void testSplitFileWithQuotedLineBreaks() throws Exception {
+        // Several MB, to be split between the threads
+        List<String> labels = write(file, 0, 0, 200000, false);
+        assertEquals(labels, read(4));
+        assertEquals(labels, read(1));
+    }
+
+    @Test
+    public void testSegmentsAndChannels() throws Exception {
+        List<String> labels = write(file, 0, 0, 100000, false);
+        labels.addAll(write(ResultFiles.getSegment(file, 1), 0, 100000, 1000, true));
+        labels.addAll(write(ResultFiles.getSegment(file, 2), 0, 101000, 100000, false));
+        labels.addAll(write(new File(dir, "results-1.csv"), 1, 0, 10, false));
+        assertEquals(labels, read(3));
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jmeter.report.processor.graph.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.report.core.Sample;
+import org.apache.jmeter.report.core.SampleMetadata;
+import org.apache.jmeter.report.processor.ListResultData;
+import org.apache.jmeter.report.processor.MapResultData;
+import org.apache.jmeter.report.processor.ResultData;
+import org.apache.jmeter.report.processor.SampleContext;
+import org.apache.jmeter.report.processor.ValueResultData;
+import org.apache.jmeter.report.processor.graph.AbstractGraphConsumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResponseTimeVSRequestGraphConsumer extends JMeterTestCase {
+
+    private static final SampleMetadata METADATA = new SampleMetadata(',',
+            "timeStamp", "elapsed", "label", "success");
+
+    private File dir;
+
+    private SampleContext context;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("report").toFile();
+        context = new SampleContext();
+        context.setWorkingDirectory(dir);
+    }
+
+    @After
+    public void tearDown() {
+        dir.delete();
+    }
+
+    private ResponseTimeVSRequestGraphConsumer createGraph() {
+        ResponseTimeVSRequestGraphConsumer graph = new ResponseTimeVSRequestGraphConsumer();
+        graph.setName("graph");
+        graph.setGranularity(1000L);
+        graph.setSampleContext(context);
+        graph.setConsumedMetadata(METADATA, 0);
+        graph.startConsuming();
+        return graph;
+    }
+
+    private static Sample sample(long row, long endTime, long elapsed) {
+        return new Sample(row, METADATA, String.valueOf(endTime),
+                String.valueOf(elapsed), "label", "true");
+    }
+
+    // Gets the points of the successes series, sorted by key
+    private Map<Double, Double> getPoints() {
+        MapResultData result = (MapResultData) context.getData().get("graph");
+        Map<Double, Double> points = new TreeMap<>();
+        for (ResultData series : (ListResultData) result
+                .getResult(AbstractGraphConsumer.RESULT_SERIES)) {
+            for (ResultData point : (ListResultData) ((MapResultData) series)
+                    .getResult(AbstractGraphConsumer.RESULT_SERIES_DATA)) {
+                ListResultData coordinates = (ListResultData) point;
+                points.put((Double) ((ValueResultData) coordinates.get(0)).getValue(),
+                        (Double) ((ValueResultData) coordinates.get(1)).getValue());
+            }
+        }
+        return points;
+    }
+
+    @Test
+    public void testSamplesOutOfOrder() {
+        ResponseTimeVSRequestGraphConsumer graph = createGraph();
+        long[][] samples = { { 100, 10 }, { 1100, 20 }, { 200, 30 }, { 1200, 60 }, { 300, 50 } };
+        for (int i = 0; i < samples.length; i++) {
+            graph.consume(sample(i, samples[i][0], samples[i][1]), 0);
+        }
+        graph.stopConsuming();
+
+        Map<Double, Double> expected = new TreeMap<>();
+        // 2 requests in [1000, 2000[, 3 requests in [0, 1000[
+        expected.put(Double.valueOf(2), Double.valueOf(40));
+        expected.put(Double.valueOf(3), Double.valueOf(30));
+        assertEquals(expected, getPoints());
+    }
+
+    @Test
+    public void testMergeSharedInterval() {
+        ResponseTimeVSRequestGraphConsumer graph = createGraph();
+        for (int i = 0; i < 1000; i++) {
+            graph.consume(sample(i, i * 100L, i), 0);
+        }
+        graph.stopConsuming();
+        Map<Double, Double> expected = getPoints();
+
+        ResponseTimeVSRequestGraphConsumer first = createGraph();
+        ResponseTimeVSRequestGraphConsumer second = createGraph();
+        for (int i = 0; i < 1000; i++) {
+            // The interval [50000, 51000[ is shared
+            (i < 505 ? first : second).consume(sample(i, i * 100L, i), 0);
+        }
+        first.merge(second);
+        first.stopConsuming();
+        assertEquals(expected, getPoints());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.reporters;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleListener;
+import org.apache.jmeter.samplers.SampleResult;
+
+/**
+ * Compares the throughput of the {@link Summariser} with a single
+ * synchronized accumulator, as the summariser used to do, when many threads
+ * share the same summariser.
+ * <p>
+ * Usage: SummariserBenchmark [threads [samples per thread]]
+ * </p>
+ */
+public class SummariserBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /** Accumulates all the samples under a single lock, as Summariser used to */
+    private static class SynchronizedSummariser implements SampleListener {
+
+        private final SummariserRunningSample delta = new SummariserRunningSample("DELTA");
+
+        private final SummariserRunningSample total = new SummariserRunningSample("TOTAL");
+
+        private long last = 0;
+
+        @Override
+        public void sampleOccurred(SampleEvent e) {
+            long now = System.currentTimeMillis() / 1000;
+            synchronized (delta) {
+                delta.addSample(e.getResult());
+                if ((now > last + 5) && (now % 30 <= 5)) {
+                    total.addSample(delta);
+                    delta.clear();
+                    last = now;
+                }
+            }
+        }
+
+        @Override
+        public void sampleStarted(SampleEvent e) {
+            // not used
+        }
+
+        @Override
+        public void sampleStopped(SampleEvent e) {
+            // not used
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        System.out.println(threads + " threads, " + samples + " samples per thread, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("round " + round);
+            run("synchronized", new SynchronizedSummariser(), threads, samples);
+            Summariser summariser = new Summariser("benchmark");
+            summariser.testStarted();
+            run("Summariser", summariser, threads, samples);
+            summariser.testEnded(); // prints the totals
+        }
+    }
+
+    private static void run(String name, final SampleListener listener, int threads,
+            final int samples) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch end = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    SampleResult result = SampleResult.createTestSample(10);
+                    SampleEvent event = new SampleEvent(result, "group"); // $NON-NLS-1$
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < samples; j++) {
+                        listener.sampleOccurred(event);
+                    }
+                    end.countDown();
+                }
+            }.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        end.await();
+        long elapsed = System.nanoTime() - begin;
+        System.out.println(String.format("  %-12s %,12.0f samples/s", name,
+                (double) threads * samples * 1e9 / elapsed));
+    }
+}
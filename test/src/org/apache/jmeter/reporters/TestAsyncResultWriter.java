@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.reporters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.CSVSaveService;
+import org.junit.Test;
+
+public class TestAsyncResultWriter extends JMeterTestCase {
+
+    private static SampleEvent createEvent(int i, SampleSaveConfiguration config) {
+        SampleResult result = new SampleResult(1000L + i, 10 + i);
+        result.setSampleLabel("label" + i);
+        result.setResponseCode("200");
+        result.setSuccessful(true);
+        result.setSaveConfig(config);
+        return new SampleEvent(result, "tg");
+    }
+
+    @Test
+    public void testSameOutputAsSynchronousWrite() throws Exception {
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        StringWriter expected = new StringWriter();
+        PrintWriter expectedOut = new PrintWriter(expected);
+        StringWriter actual = new StringWriter();
+        AsyncResultWriter writer = new AsyncResultWriter("test", new PrintWriter(actual), 10, false, false);
+        for (int i = 0; i < 100; i++) {
+            SampleEvent event = createEvent(i, config);
+            expectedOut.println(CSVSaveService.resultToDelimitedString(event));
+            assertTrue(writer.add(event, config));
+        }
+        writer.close();
+        expectedOut.flush();
+        assertEquals(expected.toString(), actual.toString());
+        assertEquals(100, writer.getWritten());
+        assertEquals(0, writer.getDropped());
+    }
+
+    @Test
+    public void testFlush() throws Exception {
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        StringWriter actual = new StringWriter();
+        AsyncResultWriter writer = new AsyncResultWriter("test", new PrintWriter(actual), 10, false, false);
+        writer.add(createEvent(1, config), config);
+        writer.flush(10000);
+        assertTrue(actual.toString().contains("label1"));
+        writer.close();
+    }
+
+    @Test
+    public void testDropWhenFull() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Writer slowWriter = new StringWriter() {
+            @Override
+            public void write(String str, int off, int len) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(str, off, len);
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                write(new String(cbuf, off, len), 0, len);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() throws IOException {
+            }
+        };
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        AsyncResultWriter writer = new AsyncResultWriter("test", new PrintWriter(slowWriter), 2, true, false);
+        writer.add(createEvent(0, config), config);
+        blocked.await(); // writer thread is busy with the first sample
+        assertTrue(writer.add(createEvent(1, config), config));
+        assertTrue(writer.add(createEvent(2, config), config));
+        assertFalse(writer.add(createEvent(3, config), config));
+        release.countDown();
+        writer.close();
+        assertEquals(3, writer.getWritten());
+        assertEquals(1, writer.getDropped());
+        assertFalse(writer.add(createEvent(4, config), config));
+    }
+
+    @Test
+    public void testCloseReleasesWaitingThreads() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Writer slowWriter = new StringWriter() {
+            @Override
+            public void write(String str, int off, int len) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(str, off, len);
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                write(new String(cbuf, off, len), 0, len);
+            }
+        };
+        final SampleSaveConfiguration config = new SampleSaveConfiguration();
+        final AsyncResultWriter writer = new AsyncResultWriter("test", new PrintWriter(slowWriter), 1, false, false);
+        writer.add(createEvent(0, config), config);
+        blocked.await(); // writer thread is busy with the first sample
+        assertTrue(writer.add(createEvent(1, config), config));
+
+        // Sampler thread waiting for room in the full queue
+        final AtomicBoolean added = new AtomicBoolean(true);
+        Thread sampler = new Thread() {
+            @Override
+            public void run() {
+                added.set(writer.add(createEvent(2, config), config));
+            }
+        };
+        sampler.start();
+        while (writer.getBlocked() == 0) {
+            Thread.sleep(10);
+        }
+        Thread closer = new Thread() {
+            @Override
+            public void run() {
+                writer.close();
+            }
+        };
+        closer.start();
+        // The sampler gives up once the writer is closed
+        sampler.join(10000);
+        assertFalse(sampler.isAlive());
+        assertFalse(added.get());
+
+        release.countDown();
+        closer.join(10000);
+        assertFalse(closer.isAlive());
+        assertEquals(2, writer.getWritten());
+        assertEquals(1, writer.getDropped());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.reporters;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.Test;
+
+public class TestSummariser extends JMeterTestCase {
+
+    private static final int THREADS = 8;
+
+    private static final int SAMPLES = 20000;
+
+    // A reporting boundary whatever the summariser interval, in seconds
+    private static final long BOUNDARY = 3600L * 1000;
+
+    private static SampleEvent createEvent(boolean success) {
+        SampleResult result = new SampleResult(1000L, 10L);
+        result.setSuccessful(success);
+        return new SampleEvent(result, "tg");
+    }
+
+    @Test
+    public void testIntervalReportThenTestEnded() {
+        Summariser summariser = new Summariser("test");
+        summariser.testStarted();
+        for (int i = 0; i < 10; i++) {
+            summariser.sampleOccurred(createEvent(i % 2 == 0), 1);
+        }
+        assertEquals(0, summariser.getReportedTotal().getNumSamples());
+        // Interval report, including this sample
+        summariser.sampleOccurred(createEvent(true), BOUNDARY);
+        assertEquals(11, summariser.getReportedTotal().getNumSamples());
+        assertEquals(5, summariser.getReportedTotal().getErrorCount());
+        // Too early for another report
+        summariser.sampleOccurred(createEvent(false), BOUNDARY + 1);
+        assertEquals(11, summariser.getReportedTotal().getNumSamples());
+
+        summariser.testEnded();
+        assertEquals(12, summariser.getReportedTotal().getNumSamples());
+        assertEquals(6, summariser.getReportedTotal().getErrorCount());
+    }
+
+    @Test
+    public void testConcurrentSamplesAndReports() throws Exception {
+        final Summariser summariser = new Summariser("concurrent");
+        summariser.testStarted();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicLong now = new AtomicLong(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < SAMPLES; i++) {
+                        summariser.sampleOccurred(createEvent(i % 10 != 0), now.get());
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        // Move to the next reporting boundary while the threads add samples,
+        // so that stripes are collected concurrently with additions
+        for (int i = 1; i <= 20; i++) {
+            now.set(BOUNDARY * i);
+            Thread.sleep(5);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        summariser.testEnded();
+        SummariserRunningSample total = summariser.getReportedTotal();
+        assertEquals(THREADS * SAMPLES, total.getNumSamples());
+        assertEquals(THREADS * SAMPLES / 10, total.getErrorCount());
+    }
+}
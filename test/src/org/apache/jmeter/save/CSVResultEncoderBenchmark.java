@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.save;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.commons.io.output.NullWriter;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.util.JMeterUtils;
+
+/**
+ * Compares the time and the allocated memory per sample of
+ * {@link CSVResultEncoder} and of
+ * {@link CSVSaveService#resultToDelimitedString(SampleEvent)}, as used by the
+ * result collector before, writing to a discarding writer.
+ * <p>
+ * Usage: CSVResultEncoderBenchmark [samples [properties file]], run from the
+ * JMeter home directory, the properties file defaulting to
+ * bin/jmeter.properties. The allocated memory is only measured on JVMs
+ * providing per-thread allocation counters (HotSpot).
+ * </p>
+ */
+public class CSVResultEncoderBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private interface Encoder {
+        void write(SampleEvent event, SampleSaveConfiguration config, PrintWriter out) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        // Needed by SampleSaveConfiguration
+        JMeterUtils.loadJMeterProperties(args.length > 1 ? args[1] : "bin/jmeter.properties"); // $NON-NLS-1$
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        SampleEvent event = createEvent(config);
+        PrintWriter out = new PrintWriter(NullWriter.NULL_WRITER);
+        System.out.println(samples + " samples of " + CSVSaveService.resultToDelimitedString(event).length()
+                + " characters");
+        final CSVResultEncoder csvEncoder = new CSVResultEncoder();
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("round " + round);
+            run("resultToDelimitedString", new Encoder() {
+                @Override
+                public void write(SampleEvent e, SampleSaveConfiguration c, PrintWriter o) {
+                    o.println(CSVSaveService.resultToDelimitedString(e));
+                }
+            }, event, config, out, samples);
+            run("CSVResultEncoder", new Encoder() {
+                @Override
+                public void write(SampleEvent e, SampleSaveConfiguration c, PrintWriter o) throws IOException {
+                    csvEncoder.write(e, c, o);
+                }
+            }, event, config, out, samples);
+        }
+    }
+
+    private static SampleEvent createEvent(SampleSaveConfiguration config) {
+        SampleResult result = new SampleResult(System.currentTimeMillis(), 123);
+        result.setSampleLabel("Home page, \"logged in\""); // needs quoting
+        result.setResponseCode("200");
+        result.setResponseMessage("OK");
+        result.setDataType(SampleResult.TEXT);
+        result.setSuccessful(true);
+        result.setBytes(12345);
+        result.setLatency(45);
+        result.setConnectTime(12);
+        result.setThreadName("Thread Group 1-1");
+        result.setSaveConfig(config);
+        return new SampleEvent(result, "Thread Group");
+    }
+
+    private static void run(String name, Encoder encoder, SampleEvent event,
+            SampleSaveConfiguration config, PrintWriter out, int samples) throws IOException {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            encoder.write(event, config, out);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.println(String.format("  %-24s %6.1f ns/sample %8s bytes/sample",
+                name, (double) elapsed / samples,
+                allocatedBefore < 0 ? "n/a" : String.format("%.1f", (double) allocated / samples)));
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, -1 if unknown
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.save;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+
+import org.apache.jmeter.assertions.AssertionResult;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.SampleEvent;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.junit.Test;
+
+public class TestCSVResultEncoder extends JMeterTestCase {
+
+    private static final String LINE_SEP = System.getProperty("line.separator");
+
+    private static SampleEvent createEvent(String label, long time) throws Exception {
+        SampleResult result = new SampleResult(1456789012345L, time);
+        result.setSampleLabel(label);
+        result.setResponseCode("200");
+        result.setResponseMessage("OK");
+        result.setThreadName("Thread Group 1-1");
+        result.setDataType(SampleResult.TEXT);
+        result.setSuccessful(true);
+        result.setBytes(12345);
+        result.setLatency(42);
+        result.setConnectTime(7);
+        result.setURL(new URL("http://localhost/index.html?a=1,b=2"));
+        return new SampleEvent(result, "Thread Group", "host");
+    }
+
+    private static void assertSameAsCSVSaveService(SampleEvent event, SampleSaveConfiguration config,
+            CSVResultEncoder encoder) throws Exception {
+        event.getResult().setSaveConfig(config);
+        StringWriter out = new StringWriter();
+        encoder.write(event, config, out);
+        assertEquals(CSVSaveService.resultToDelimitedString(event) + LINE_SEP, out.toString());
+    }
+
+    @Test
+    public void testDefaultConfiguration() throws Exception {
+        CSVResultEncoder encoder = new CSVResultEncoder();
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        assertSameAsCSVSaveService(createEvent("label", 100), config, encoder);
+        assertSameAsCSVSaveService(createEvent("", 0), config, encoder);
+        assertSameAsCSVSaveService(createEvent("label", -1), config, encoder);
+        assertSameAsCSVSaveService(createEvent("label", Long.MAX_VALUE), config, encoder);
+        assertSameAsCSVSaveService(createEvent("label", Long.MIN_VALUE), config, encoder);
+    }
+
+    @Test
+    public void testAllFieldsAndQuoting() throws Exception {
+        CSVResultEncoder encoder = new CSVResultEncoder();
+        SampleSaveConfiguration config = new SampleSaveConfiguration(true);
+        config.setHostname(true);
+        config.setIdleTime(true);
+        config.setConnectTime(true);
+        config.setThreadCounts(true);
+        config.setSampleCount(true);
+        SampleEvent event = createEvent("a,b \"quoted\"\nline", 100);
+        AssertionResult assertion = new AssertionResult("assertion");
+        assertion.setFailureMessage("failed, \"really\"");
+        event.getResult().addAssertionResult(assertion);
+        assertSameAsCSVSaveService(event, config, encoder);
+        assertSameAsCSVSaveService(createEvent(null, 100), config, encoder);
+    }
+
+    @Test
+    public void testDelimiterAndConfigurationChange() throws Exception {
+        CSVResultEncoder encoder = new CSVResultEncoder();
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        config.setDelimiter("\t");
+        assertSameAsCSVSaveService(createEvent("a,b\tc", 100), config, encoder);
+        SampleSaveConfiguration other = new SampleSaveConfiguration();
+        other.setTimestamp(false);
+        other.setLabel(false);
+        assertSameAsCSVSaveService(createEvent("a,b\tc", 100), other, encoder);
+    }
+
+    @Test
+    public void testFormattedTimeStamp() throws Exception {
+        CSVResultEncoder encoder = new CSVResultEncoder();
+        SampleSaveConfiguration config = new SampleSaveConfiguration();
+        config.setFormatter(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss.SSS"));
+        assertSameAsCSVSaveService(createEvent("label", 100), config, encoder);
+        assertSameAsCSVSaveService(createEvent("label", 200), config, encoder); // same time stamp
+        config = new SampleSaveConfiguration();
+        config.setFormatter(new SimpleDateFormat("yyyy,MM,dd"));
+        assertSameAsCSVSaveService(createEvent("label", 100), config, encoder); // quoted
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.save;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestResultFiles extends JMeterTestCase {
+
+    private static final String CONTENT = "timeStamp,elapsed,label\n1,2,a\n3,4,b\n";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("results").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static String read(File file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = ResultFiles.openInputStream(file)) {
+            byte[] buf = new byte[100];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                bytes.write(buf, 0, n);
+            }
+        }
+        return bytes.toString("UTF-8");
+    }
+
+    @Test
+    public void testGetSegment() {
+        File file = new File(dir, "results.jtl");
+        assertEquals(file, ResultFiles.getSegment(file, 0));
+        assertEquals(new File(dir, "results.1.jtl"), ResultFiles.getSegment(file, 1));
+        assertEquals(new File(dir, "results.12.jtl"), ResultFiles.getSegment(file, 12));
+        assertEquals(new File(dir, "results.1"), ResultFiles.getSegment(new File(dir, "results"), 1));
+        assertEquals(new File(dir, ".jtl.1"), ResultFiles.getSegment(new File(dir, ".jtl"), 1));
+    }
+
+    @Test
+    public void testGetSegments() throws Exception {
+        File file = new File(dir, "results.jtl");
+        assertTrue(ResultFiles.getSegments(file).isEmpty());
+        Files.write(file.toPath(), CONTENT.getBytes("UTF-8"));
+        Files.write(new File(dir, "results.1.jtl").toPath(), CONTENT.getBytes("UTF-8"));
+        Files.write(new File(dir, "results.2.jtl").toPath(), CONTENT.getBytes("UTF-8"));
+        Files.write(new File(dir, "results.4.jtl").toPath(), CONTENT.getBytes("UTF-8")); // not consecutive
+        assertEquals(Arrays.asList(file, new File(dir, "results.1.jtl"), new File(dir, "results.2.jtl")),
+                ResultFiles.getSegments(file));
+    }
+
+    @Test
+    public void testReadPlainFile() throws Exception {
+        File file = new File(dir, "results.jtl");
+        Files.write(file.toPath(), CONTENT.getBytes("UTF-8"));
+        assertFalse(ResultFiles.isCompressed(file));
+        assertEquals(CONTENT, read(file));
+    }
+
+    @Test
+    public void testReadCompressedFile() throws Exception {
+        File file = new File(dir, "results.jtl");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(CONTENT.getBytes("UTF-8"));
+        }
+        assertTrue(ResultFiles.isCompressed(file));
+        assertEquals(CONTENT, read(file));
+    }
+
+    @Test
+    public void testReadTruncatedCompressedFile() throws Exception {
+        File file = new File(dir, "results.jtl");
+        // Flushed but not closed, as if the JVM had been killed
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(file), true);
+        out.write(CONTENT.getBytes("UTF-8"));
+        out.flush();
+        assertEquals(CONTENT, read(file));
+        out.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 8); // trailer
+        }
+        assertEquals(CONTENT, read(file));
+    }
+}
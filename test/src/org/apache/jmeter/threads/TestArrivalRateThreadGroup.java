@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.engine.TurnElementsOn;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.Entry;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestArrivalRateThreadGroup extends JMeterTestCase {
+
+    /** Counts the samples and the threads running them, across all the clones */
+    public static class CountingSampler extends AbstractSampler {
+
+        private static final long serialVersionUID = 240L;
+
+        private static final String WAIT = "CountingSampler.wait";
+
+        static final AtomicInteger SAMPLES = new AtomicInteger();
+
+        static final Set<String> THREADS = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        public CountingSampler() {
+        }
+
+        CountingSampler(long wait) {
+            setProperty(WAIT, wait);
+        }
+
+        @Override
+        public SampleResult sample(Entry e) {
+            SAMPLES.incrementAndGet();
+            THREADS.add(Thread.currentThread().getName());
+            try {
+                Thread.sleep(getPropertyAsLong(WAIT));
+            } catch (InterruptedException e1) {
+                // stopped
+            }
+            return null;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        CountingSampler.SAMPLES.set(0);
+        CountingSampler.THREADS.clear();
+    }
+
+    private static ArrivalRateThreadGroup createGroup(String name, double rate, int hold, int initialThreads, int maxThreads) {
+        ArrivalRateThreadGroup group = new ArrivalRateThreadGroup();
+        group.setName(name);
+        LoopController loop = new LoopController();
+        loop.setLoops(-1);
+        loop.setContinueForever(false);
+        group.setSamplerController(loop);
+        group.setTargetRate(rate);
+        group.setHoldTime(hold);
+        group.setInitialThreads(initialThreads);
+        group.setNumThreads(maxThreads);
+        return group;
+    }
+
+    private static void start(ArrivalRateThreadGroup group, long wait) {
+        ListedHashTree tree = new ListedHashTree(group);
+        tree.add(group, new CountingSampler(wait));
+        tree.traverse(new TurnElementsOn());
+        // As set by the engine for the thread starting the groups
+        JMeterContextService.getContext().setVariables(new JMeterVariables());
+        group.start(1, new ListenerNotifier(), tree, null);
+    }
+
+    private static boolean isPoolStarterAlive(ArrivalRateThreadGroup group) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(group.getName() + "-PoolStarter")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test(timeout = 30000)
+    public void testWaitsForGrownPool() {
+        // 40 arrivals in 1s, each thread can only run 5 iterations per second
+        ArrivalRateThreadGroup group = createGroup("grow", 40, 1, 1, 10);
+        start(group, 200);
+        group.waitThreadsStopped();
+        assertFalse(isPoolStarterAlive(group));
+        assertEquals(0, group.numberOfActiveThreads());
+        assertEquals(40, CountingSampler.SAMPLES.get());
+        assertTrue("Pool did not grow: " + CountingSampler.THREADS, CountingSampler.THREADS.size() > 1);
+    }
+
+    @Test(timeout = 30000)
+    public void testStopWhileWaitingForArrivals() throws Exception {
+        // Threads wait for the next arrival most of the time, and the group holds until stopped
+        ArrivalRateThreadGroup group = createGroup("stop", 2, 0, 3, 5);
+        start(group, 0);
+        Thread.sleep(300);
+        assertTrue(isPoolStarterAlive(group));
+        // The pool may have grown if the first arrival was claimed late
+        assertTrue(group.numberOfActiveThreads() >= 3);
+        group.tellThreadsToStop();
+        group.waitThreadsStopped();
+        assertFalse(isPoolStarterAlive(group));
+        assertEquals(0, group.numberOfActiveThreads());
+        assertEquals(1, CountingSampler.SAMPLES.get());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TestArrivalSchedule {
+
+    @Test
+    public void testConstantRate() {
+        ArrivalSchedule schedule = new ArrivalSchedule(10, 0, 0, 2);
+        assertEquals(0, schedule.getArrivalOffset(0));
+        assertEquals(100, schedule.getArrivalOffset(1));
+        assertEquals(1900, schedule.getArrivalOffset(19));
+        assertEquals(-1, schedule.getArrivalOffset(20));
+    }
+
+    @Test
+    public void testUnlimitedHold() {
+        ArrivalSchedule schedule = new ArrivalSchedule(1000, 0, 0, 0);
+        assertEquals(3600000, schedule.getArrivalOffset(3600000L));
+    }
+
+    @Test
+    public void testLinearRampUp() {
+        // 50 arrivals during the 10s ramp-up to 10/s
+        ArrivalSchedule schedule = new ArrivalSchedule(10, 10, 0, 1);
+        assertEquals(0, schedule.getArrivalOffset(0));
+        assertEquals(4898, schedule.getArrivalOffset(12)); // sqrt(2*10*12/10) s
+        assertEquals(10000, schedule.getArrivalOffset(50));
+        assertEquals(10900, schedule.getArrivalOffset(59));
+        assertEquals(-1, schedule.getArrivalOffset(60));
+    }
+
+    @Test
+    public void testStepRampUp() {
+        // 2 steps of 5s: 5/s then 10/s, i.e. 25 then 50 arrivals
+        ArrivalSchedule schedule = new ArrivalSchedule(10, 10, 2, 0);
+        assertEquals(0, schedule.getArrivalOffset(0));
+        assertEquals(200, schedule.getArrivalOffset(1));
+        assertEquals(5000, schedule.getArrivalOffset(25));
+        assertEquals(5100, schedule.getArrivalOffset(26));
+        assertEquals(10000, schedule.getArrivalOffset(75));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testInvalidRate() {
+        new ArrivalSchedule(0, 0, 0, 0);
+    }
+}
@@ -39,6 +39,19 @@ public class TestJMeterContextService {
         assertEquals(54,JMeterContextService.getTotalThreads());
         assertEquals(0,JMeterContextService.getNumberOfThreads());
     }
+
+    @Test
+    public void testThreadGroupCounts(){
+        ThreadGroup group = new ThreadGroup();
+        group.incrNumberOfThreads();
+        group.incrNumberOfThreads();
+        group.decrNumberOfThreads();
+        assertEquals(1,group.getNumberOfThreads());
+        JMeterContextService.ThreadCounts counts = group.getThreadCounts();
+        assertEquals(1,counts.activeThreads);
+        assertEquals(2,counts.startedThreads);
+        assertEquals(1,counts.finishedThreads);
+    }
     
     // Give access to the method for test code
     public static void incrNumberOfThreads(){
@@ -19,15 +19,30 @@
 package org.apache.jmeter.threads;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.jmeter.assertions.Assertion;
 import org.apache.jmeter.config.ConfigTestElement;
+import org.apache.jmeter.control.Controller;
 import org.apache.jmeter.control.GenericController;
+import org.apache.jmeter.control.TransactionController;
+import org.apache.jmeter.control.TransactionSampler;
+import org.apache.jmeter.junit.JMeterTestCase;
+import org.apache.jmeter.processor.PostProcessor;
+import org.apache.jmeter.processor.PreProcessor;
+import org.apache.jmeter.reporters.ResultCollector;
 import org.apache.jmeter.samplers.AbstractSampler;
+import org.apache.jmeter.samplers.SampleListener;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.timers.Timer;
 import org.apache.jorphan.collections.ListedHashTree;
 import org.junit.Test;
 
-public class TestTestCompiler {
+public class TestTestCompiler extends JMeterTestCase {
 
         @Test
         public void testConfigGathering() throws Exception {
@@ -40,7 +55,6 @@ public class TestTestCompiler {
             sampler.setName("sampler");
             testing.add(controller, config1);
             testing.add(controller, sampler);
-            TestCompiler.initialize();
 
             TestCompiler compiler = new TestCompiler(testing);
             testing.traverse(compiler);
@@ -48,7 +62,75 @@ public class TestTestCompiler {
             assertEquals("A test value", sampler.getPropertyAsString("test.property"));
         }
 
-        class TestSampler extends AbstractSampler {
+        @Test
+        public void testPackageSavedWithSampler() throws Exception {
+            ListedHashTree testing = new ListedHashTree();
+            GenericController controller = new GenericController();
+            TransactionController transaction = new TransactionController();
+            ResultCollector listener = new ResultCollector();
+            TestSampler sampler = new TestSampler();
+            testing.add(controller, transaction);
+            testing.add(new Object[] { controller, transaction }, sampler);
+            testing.add(new Object[] { controller, transaction }, listener);
+
+            TestCompiler compiler = new TestCompiler(testing);
+            testing.traverse(compiler);
+            SamplePackage pack = compiler.configureSampler(sampler);
+            assertSame(pack, sampler.getSavedSamplePackage());
+            assertSame(listener, pack.getSampleListeners().get(0));
+            SamplePackage transactionPack = compiler.configureTransactionSampler(
+                    new TransactionSampler(transaction, transaction.getName()));
+            assertSame(transactionPack, transaction.getSavedSamplePackage());
+            assertSame(listener, transactionPack.getSampleListeners().get(0));
+        }
+
+        @Test
+        public void testSharedSamplerHasPackagePerCompiler() throws Exception {
+            // As for a sampler which is not cloned for each thread
+            TestSampler sampler = new TestSampler();
+            ResultCollector firstListener = new ResultCollector();
+            ResultCollector secondListener = new ResultCollector();
+            TestCompiler first = compile(sampler, firstListener);
+            TestCompiler second = compile(sampler, secondListener);
+            // The sampler holds the package of the second compiler
+            List<SampleListener> listeners1 = first.configureSampler(sampler).getSampleListeners();
+            assertEquals(1, listeners1.size());
+            assertSame(firstListener, listeners1.get(0));
+            List<SampleListener> listeners2 = second.configureSampler(sampler).getSampleListeners();
+            assertEquals(1, listeners2.size());
+            assertSame(secondListener, listeners2.get(0));
+        }
+
+        private static TestCompiler compile(TestSampler sampler, ResultCollector listener) {
+            ListedHashTree testing = new ListedHashTree();
+            GenericController controller = new GenericController();
+            testing.add(controller, sampler);
+            testing.add(controller, listener);
+            TestCompiler compiler = new TestCompiler(testing);
+            testing.traverse(compiler);
+            return compiler;
+        }
+
+        @Test
+        public void testSubSamplerListeners() throws Exception {
+            ResultCollector shared = new ResultCollector();
+            ResultCollector own = new ResultCollector();
+            SamplePackage transactionPack = createPackage(Arrays.<SampleListener>asList(shared));
+            SamplePackage samplePack = createPackage(Arrays.<SampleListener>asList(shared, own));
+            List<SampleListener> listeners = samplePack.getSubSamplerListeners(transactionPack);
+            assertEquals(1, listeners.size());
+            assertSame(own, listeners.get(0));
+            // computed once for a given transaction package
+            assertSame(listeners, samplePack.getSubSamplerListeners(transactionPack));
+        }
+
+        private static SamplePackage createPackage(List<SampleListener> listeners) {
+            return new SamplePackage(new ArrayList<ConfigTestElement>(), new ArrayList<>(listeners),
+                    new ArrayList<Timer>(), new ArrayList<Assertion>(), new ArrayList<PostProcessor>(),
+                    new ArrayList<PreProcessor>(), new ArrayList<Controller>());
+        }
+
+        static class TestSampler extends AbstractSampler {
             private static final long serialVersionUID = 240L;
 
             @Override
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.jmeter.control.GenericController;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.junit.Test;
+
+public class TestVirtualThreadFactory {
+
+    private static JMeterThread createJMeterThread(String name) {
+        JMeterThread jmeterThread = new JMeterThread(new ListedHashTree(new GenericController()), null, null);
+        jmeterThread.setThreadName(name);
+        return jmeterThread;
+    }
+
+    private static boolean isVirtualThreadSupported() {
+        try {
+            Class.forName("java.lang.Thread$Builder");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws Exception {
+        if (!isVirtualThreadSupported()) {
+            return false;
+        }
+        return ((Boolean) Thread.class.getMethod("isVirtual").invoke(thread)).booleanValue();
+    }
+
+    @Test
+    public void testPlatformThreadsByDefault() throws Exception {
+        assertFalse(VirtualThreadFactory.isEnabled());
+        Thread thread = VirtualThreadFactory.newThread(createJMeterThread("Group 1-1"));
+        assertEquals("Group 1-1", thread.getName());
+        assertEquals(Thread.State.NEW, thread.getState());
+        assertFalse(thread.isDaemon());
+        assertFalse(isVirtual(thread));
+    }
+
+    @Test
+    public void testPropertyNotSet() {
+        assertNull(VirtualThreadFactory.lookupVirtualBuilder(false));
+    }
+
+    @Test
+    public void testPropertySet() throws Exception {
+        Method[] builder = VirtualThreadFactory.lookupVirtualBuilder(true);
+        if (isVirtualThreadSupported()) {
+            assertNotNull(builder);
+            Thread thread = VirtualThreadFactory.newThread(createJMeterThread("Group 1-2"), builder);
+            assertEquals("Group 1-2", thread.getName());
+            assertEquals(Thread.State.NEW, thread.getState());
+            assertTrue(isVirtual(thread));
+        } else {
+            // Falls back to platform threads
+            assertNull(builder);
+        }
+    }
+
+    @Test
+    public void testFallbackFromDaemonThread() throws Exception {
+        // Group starter threads are daemon threads, JMeter threads must not be
+        final AtomicReference<Thread> created = new AtomicReference<>();
+        Thread starter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                created.set(VirtualThreadFactory.newThread(createJMeterThread("Group 1-3"), null));
+            }
+        });
+        starter.setDaemon(true);
+        starter.start();
+        starter.join();
+        Thread thread = created.get();
+        assertEquals("Group 1-3", thread.getName());
+        assertEquals(Thread.State.NEW, thread.getState());
+        assertFalse(thread.isDaemon());
+        assertFalse(isVirtual(thread));
+    }
+}
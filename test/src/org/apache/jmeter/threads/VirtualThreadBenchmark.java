@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.threads;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.jmeter.control.LoopController;
+import org.apache.jmeter.junit.stubs.TestSampler;
+import org.apache.jmeter.util.JMeterUtils;
+import org.apache.jorphan.collections.ListedHashTree;
+import org.apache.jorphan.logging.LoggingManager;
+
+/**
+ * Compares platform threads and virtual threads, as created by
+ * {@link VirtualThreadFactory}, running many idle users: each user runs a
+ * single sample sleeping for the idle time.
+ * Reports the time to start all the users, the time until they all finished,
+ * the peak number of platform threads and the heap used once all are started.
+ * <p>
+ * Usage: VirtualThreadBenchmark [users [idle ms [properties file]]], run from
+ * the JMeter home directory, the properties file defaulting to
+ * bin/jmeter.properties. Virtual threads are only measured on Java 21 and
+ * later.
+ * </p>
+ */
+public class VirtualThreadBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    /** Counts down when a JMeter thread finishes */
+    private static class FinishedMonitor implements JMeterThreadMonitor {
+
+        private final CountDownLatch finished;
+
+        FinishedMonitor(int users) {
+            finished = new CountDownLatch(users);
+        }
+
+        @Override
+        public void threadFinished(JMeterThread thread) {
+            finished.countDown();
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        long idle = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        // Needed by the JMeter threads
+        JMeterUtils.loadJMeterProperties(args.length > 2 ? args[2] : "bin/jmeter.properties"); // $NON-NLS-1$
+        // One line per started and finished thread otherwise
+        LoggingManager.setPriority("WARN"); // $NON-NLS-1$
+        Method[] virtualBuilder = VirtualThreadFactory.lookupVirtualBuilder(true);
+        System.out.println(users + " users idle for " + idle + " ms, Java " + System.getProperty("java.version")); // $NON-NLS-1$
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("round " + round);
+            run("platform", null, users, idle);
+            if (virtualBuilder != null) {
+                run("virtual", virtualBuilder, users, idle);
+            }
+        }
+    }
+
+    private static void run(String name, Method[] virtualBuilder, int users, long idle)
+            throws InterruptedException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+        threadBean.resetPeakThreadCount();
+        ThreadGroup group = new ThreadGroup();
+        group.setName("benchmark"); // $NON-NLS-1$
+        FinishedMonitor monitor = new FinishedMonitor(users);
+        ListenerNotifier notifier = new ListenerNotifier();
+
+        long start = System.nanoTime();
+        int started = 0;
+        try {
+            for (; started < users; started++) {
+                JMeterThread jmeterThread = new JMeterThread(createTree(idle), monitor, notifier);
+                jmeterThread.setThreadGroup(group);
+                jmeterThread.setThreadNum(started);
+                jmeterThread.setThreadName("benchmark 1-" + (started + 1)); // $NON-NLS-1$
+                VirtualThreadFactory.newThread(jmeterThread, virtualBuilder).start();
+            }
+        } catch (OutOfMemoryError e) {
+            System.out.println(name + ": could only start " + started + " users: " + e.getMessage());
+        }
+        long startTime = System.nanoTime() - start;
+        long heapStarted = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = started; i < users; i++) {
+            monitor.finished.countDown();
+        }
+        monitor.finished.await();
+        long totalTime = System.nanoTime() - start;
+        System.out.println(String.format("%-8s start %6d ms, total %6d ms, peak threads %6d, heap %5d MB", // $NON-NLS-1$
+                name, Long.valueOf(startTime / 1000000), Long.valueOf(totalTime / 1000000),
+                Integer.valueOf(threadBean.getPeakThreadCount()),
+                Long.valueOf((heapStarted - heapBefore) / (1024 * 1024))));
+    }
+
+    private static ListedHashTree createTree(long idle) {
+        LoopController loop = new LoopController();
+        loop.setLoops(1);
+        loop.setContinueForever(false);
+        ListedHashTree tree = new ListedHashTree(loop);
+        tree.add(loop, new TestSampler("idle", idle)); // $NON-NLS-1$
+        return tree;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jmeter.visualizers.backend.RingBufferQueue.OverflowPolicy;
+import org.junit.Test;
+
+public class TestRingBufferQueue {
+
+    @Test
+    public void testCapacityAndOrder() {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(5, OverflowPolicy.DROP);
+        assertEquals(8, queue.capacity());
+        List<Integer> drained = new ArrayList<>();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i < 8, queue.add(Integer.valueOf(i)));
+            }
+            assertEquals(8, queue.size());
+            drained.clear();
+            assertEquals(3, queue.drainTo(drained, 3));
+            assertEquals(5, queue.drainTo(drained, 100));
+            assertEquals(0, queue.drainTo(drained, 100));
+            for (int i = 0; i < 8; i++) {
+                assertEquals(Integer.valueOf(i), drained.get(i));
+            }
+        }
+        assertEquals(6, queue.getDroppedCount());
+        assertEquals(8, queue.getMaxSize());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void testSampleOverflowPolicy() {
+        RingBufferQueue<Integer> queue = new RingBufferQueue<>(1024, OverflowPolicy.SAMPLE);
+        for (int i = 0; i < 512; i++) {
+            assertTrue(queue.add(Integer.valueOf(i)));
+        }
+        int added = 512;
+        for (int i = 0; i < 10000; i++) {
+            if (i == 100) {
+                // About 90 elements kept out of 100
+                assertTrue(queue.size() > 580 && queue.size() < 612);
+            }
+            if (queue.add(Integer.valueOf(i))) {
+                added++;
+            }
+        }
+        // The queue fills up more and more slowly
+        assertEquals(added, queue.size());
+        assertTrue(added > 900 && added <= 1024);
+        assertEquals(10000 - (added - 512), queue.getDroppedCount());
+    }
+
+    @Test
+    public void testBlockingProducers() throws Exception {
+        final RingBufferQueue<Integer> queue = new RingBufferQueue<>(16, OverflowPolicy.BLOCK);
+        final int producers = 4;
+        final int count = 20000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < count; i++) {
+                        assertTrue(queue.add(Integer.valueOf(producer * count + i)));
+                    }
+                }
+            };
+            threads[p].start();
+        }
+        int[] next = new int[producers];
+        List<Integer> drained = new ArrayList<>();
+        int received = 0;
+        while (received < producers * count) {
+            drained.clear();
+            received += queue.drainTo(drained, 10);
+            for (Integer value : drained) {
+                // Each producer's elements are drained in order
+                int producer = value.intValue() / count;
+                assertEquals(producer * count + next[producer]++, value.intValue());
+            }
+            if (drained.isEmpty()) {
+                Thread.yield();
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, queue.getDroppedCount());
+        assertFalse(queue.getWaitCount() == 0);
+    }
+}
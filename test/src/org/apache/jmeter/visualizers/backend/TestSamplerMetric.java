@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.jmeter.samplers.SampleResult;
+import org.junit.Test;
+
+public class TestSamplerMetric {
+
+    private static SampleResult result(long time, boolean success) {
+        SampleResult result = SampleResult.createTestSample(time);
+        result.setSuccessful(success);
+        return result;
+    }
+
+    @Test
+    public void testHistogramKeepsWholeInterval() {
+        SamplerMetric metric = new SamplerMetric(true);
+        DescriptiveStatistics expected = new DescriptiveStatistics();
+        for (int i = 1; i <= 1000; i++) {
+            metric.add(result(i, i % 10 != 0));
+            expected.addValue(i);
+        }
+        assertEquals(1000, metric.getTotal());
+        assertEquals(900, metric.getSuccesses());
+        assertEquals(100, metric.getFailures());
+        assertEquals(1000, metric.getHits());
+        assertEquals(1, metric.getAllMinTime(), 0);
+        assertEquals(1000, metric.getAllMaxTime(), 0);
+        assertEquals(10, metric.getKoMinTime(), 0);
+        assertEquals(500.5, metric.getAllMean(), 1e-9);
+        assertEquals(505, metric.getKoMean(), 1e-9);
+        // Percentiles of the 1000 values, not of a window of the last ones
+        for (double percentile : new double[] { 50, 90, 95, 99 }) {
+            assertEquals(expected.getPercentile(percentile), metric.getAllPercentile(percentile),
+                    expected.getPercentile(percentile) * 0.01);
+        }
+
+        metric.resetForTimeInterval();
+        assertEquals(0, metric.getTotal());
+        assertEquals(0, metric.getHits());
+        assertTrue(Double.isNaN(metric.getAllPercentile(90)));
+        metric.resetForTimeInterval();
+        metric.add(result(42, true));
+        assertEquals(1, metric.getTotal());
+        assertEquals(42, metric.getOkPercentile(99), 0);
+        assertEquals(42, metric.getOkMean(), 0);
+    }
+
+    @Test
+    public void testHistogramConcurrentAdds() throws Exception {
+        final SamplerMetric metric = new SamplerMetric(true);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        metric.add(result(100, true));
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80000, metric.getSuccesses());
+        assertEquals(100, metric.getOkPercentile(90), 0);
+    }
+
+    @Test
+    public void testHistogramResultsAddedAfterReadGoToNextInterval() {
+        SamplerMetric metric = new SamplerMetric(true);
+        metric.add(result(10, true));
+        metric.add(result(20, false));
+        assertEquals(2, metric.getTotal());
+        // Added while the interval is being read
+        metric.add(result(30, true));
+        assertEquals(2, metric.getTotal());
+        assertEquals(1, metric.getSuccesses());
+        assertEquals(20, metric.getAllMaxTime(), 0);
+
+        metric.resetForTimeInterval();
+        assertEquals(1, metric.getTotal());
+        assertEquals(30, metric.getOkMaxTime(), 0);
+        metric.resetForTimeInterval();
+        assertEquals(0, metric.getTotal());
+    }
+
+    @Test
+    public void testWindowKeepsPercentilesAfterReset() {
+        SamplerMetric metric = new SamplerMetric(false);
+        metric.add(result(10, true));
+        metric.add(result(20, true));
+        metric.resetForTimeInterval();
+        assertEquals(0, metric.getTotal());
+        assertEquals(20, metric.getOkMaxTime(), 0);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.graphite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class TestNioGraphiteMetricsSender {
+
+    private static final String HOST = "127.0.0.1"; //$NON-NLS-1$
+
+    @Test
+    public void testWritesLinesToTcpServer() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            NioGraphiteMetricsSender sender = new NioGraphiteMetricsSender();
+            sender.setup(HOST, server.getLocalPort(), "jmeter.");
+            sender.addMetric(1234567890L, "all", "ok.count", "42");
+            sender.addMetric(1234567890L, "test", "maxAT", "10");
+            sender.addMetric(1234567891L, "café", "ok.pct90", "3.5");
+            sender.writeAndSendMetrics();
+            try (Socket socket = server.accept()) {
+                sender.destroy();
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                assertEquals("jmeter.all.ok.count 42 1234567890", reader.readLine());
+                assertEquals("jmeter.test.maxAT 10 1234567890", reader.readLine());
+                assertEquals("jmeter.café.ok.pct90 3.5 1234567891", reader.readLine());
+                assertEquals(null, reader.readLine());
+            }
+            assertEquals(3, sender.getSentCount());
+            assertEquals(0, sender.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void testSendsWholeLinesInDatagrams() throws Exception {
+        try (DatagramSocket server = new DatagramSocket(0)) {
+            server.setSoTimeout(5000);
+            NioGraphiteMetricsSender sender = new UdpGraphiteMetricsSender();
+            sender.setup(HOST, server.getLocalPort(), "jmeter.");
+            int count = 200;
+            for (int i = 0; i < count; i++) {
+                sender.addMetric(1234567890L, "all", "metric" + i, Integer.toString(i));
+            }
+            sender.writeAndSendMetrics();
+            int received = 0;
+            byte[] buffer = new byte[NioGraphiteMetricsSender.UDP_PACKET_SIZE * 2];
+            while (received < count) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                server.receive(packet);
+                assertTrue(packet.getLength() <= NioGraphiteMetricsSender.UDP_PACKET_SIZE);
+                String data = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+                assertTrue(data.endsWith("\n"));
+                for (String line : data.split("\n")) {
+                    assertEquals("jmeter.all.metric" + received + " " + received + " 1234567890", line);
+                    received++;
+                }
+            }
+            sender.destroy();
+            assertEquals(count, sender.getSentCount());
+        }
+    }
+
+    @Test
+    public void testDropsOldestMetricsWhenServerIsDown() throws Exception {
+        int port;
+        try (ServerSocket server = new ServerSocket(0)) {
+            port = server.getLocalPort();
+        }
+        NioGraphiteMetricsSender sender = new NioGraphiteMetricsSender(false,
+                2 * NioGraphiteMetricsSender.TCP_PACKET_SIZE);
+        sender.setup(HOST, port, "jmeter.");
+        int count = 0;
+        for (int interval = 0; interval < 5; interval++) {
+            for (int i = 0; i < 1000; i++) {
+                sender.addMetric(1234567890L + interval, "all", "metric" + i, "1.0");
+                count++;
+            }
+            sender.writeAndSendMetrics();
+        }
+        assertTrue(sender.getDroppedCount() > 0);
+        assertEquals(0, sender.getSentCount());
+        sender.destroy();
+        assertEquals(count, sender.getDroppedCount());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.visualizers.backend.BackendListenerContext;
+import org.junit.Test;
+
+public class TestHttpMetricsBackendListenerClient {
+
+    private static SampleResult result(String label, long time, boolean success) {
+        SampleResult result = SampleResult.createTestSample(time);
+        result.setSampleLabel(label);
+        result.setSuccessful(success);
+        result.setBytes(100);
+        return result;
+    }
+
+    @Test
+    public void testRollingWindow() {
+        long[] bounds = { 10, 100, 1000 };
+        LiveMetric metric = new LiveMetric(bounds, 2, 0L);
+        long[] start = new long[LiveMetric.BUCKETS + bounds.length + 1];
+        for (int i = 0; i < 10; i++) {
+            metric.add(result("a", 50, true));
+        }
+        metric.snapshot(1000L);
+        metric.add(result("a", 5, false));
+        metric.snapshot(2000L);
+        // The window still starts at the creation of the metric
+        assertEquals(0L, metric.getWindowStart(start));
+        assertEquals(0, start[LiveMetric.COUNT]);
+        metric.snapshot(3000L);
+        assertEquals(1000L, metric.getWindowStart(start));
+        assertEquals(10, start[LiveMetric.COUNT]);
+
+        long[] values = metric.getValues();
+        assertEquals(11, values[LiveMetric.COUNT]);
+        assertEquals(1, values[LiveMetric.ERRORS]);
+        assertEquals(505, values[LiveMetric.ELAPSED]);
+        assertEquals(1100, values[LiveMetric.BYTES]);
+        assertEquals(Arrays.asList(1L, 10L, 0L, 0L), Arrays.asList(values[LiveMetric.BUCKETS],
+                values[LiveMetric.BUCKETS + 1], values[LiveMetric.BUCKETS + 2], values[LiveMetric.BUCKETS + 3]));
+    }
+
+    @Test
+    public void testPercentileFromBuckets() {
+        long[] bounds = { 10, 100, 1000 };
+        LiveMetric metric = new LiveMetric(bounds, 1, 0L);
+        assertTrue(Double.isNaN(LiveMetric.getPercentile(metric.getValues(), bounds, 90)));
+        for (int i = 1; i <= 100; i++) {
+            metric.add(result("a", i * 10, true));
+        }
+        long[] values = metric.getValues();
+        // 1 value <= 10, 9 in ]10, 100], 90 in ]100, 1000]
+        assertEquals(10, LiveMetric.getPercentile(values, bounds, 1), 0);
+        assertEquals(50, LiveMetric.getPercentile(values, bounds, 5), 0);
+        assertEquals(900, LiveMetric.getPercentile(values, bounds, 90), 0);
+        metric.add(result("a", 5000, true));
+        assertEquals(1000, LiveMetric.getPercentile(metric.getValues(), bounds, 100), 0);
+    }
+
+    @Test
+    public void testServesTextAndJson() throws Exception {
+        HttpMetricsBackendListenerClient client = new HttpMetricsBackendListenerClient();
+        Arguments arguments = client.getDefaultParameters();
+        arguments.removeArgument("port");
+        arguments.addArgument("port", "0");
+        arguments.removeArgument("bindAddress");
+        arguments.addArgument("bindAddress", "127.0.0.1");
+        BackendListenerContext context = new BackendListenerContext(arguments);
+        client.setupTest(context);
+        try {
+            client.aggregateSampleResult(result("Home \"page\"", 120, true), context);
+            client.aggregateSampleResult(result("Home \"page\"", 80, false), context);
+            client.handleSampleResults(Arrays.asList(result("Login", 20, true)), context);
+
+            String text = get(client, HttpMetricsBackendListenerClient.TEXT_PATH);
+            assertTrue(text, text.contains("# TYPE jmeter_samples_total counter\n"));
+            assertTrue(text, text.contains("jmeter_samples_total{label=\"Home \\\"page\\\"\"} 2\n"));
+            assertTrue(text, text.contains("jmeter_errors_total{label=\"Home \\\"page\\\"\"} 1\n"));
+            assertTrue(text, text.contains("jmeter_elapsed_ms_bucket{label=\"Login\",le=\"25\"} 1\n"));
+            assertTrue(text, text.contains("jmeter_elapsed_ms_bucket{label=\"Home \\\"page\\\"\",le=\"+Inf\"} 2\n"));
+            assertTrue(text, text.contains("jmeter_elapsed_ms_sum{label=\"Home \\\"page\\\"\"} 200\n"));
+            assertTrue(text, text.contains("jmeter_rolling_error_ratio{label=\"Home \\\"page\\\"\"} 0.5\n"));
+            assertTrue(text, text.contains("jmeter_rolling_elapsed_ms{label=\"Login\",quantile=\"0.9\"} "));
+
+            String json = get(client, HttpMetricsBackendListenerClient.JSON_PATH);
+            assertTrue(json, json.startsWith("{\"timestamp\":"));
+            assertTrue(json, json.contains("{\"label\":\"Home \\\"page\\\"\",\"count\":2,\"errors\":1,"
+                    + "\"receivedBytes\":200,\"elapsedSum\":200,\"rolling\":{\"count\":2,\"errors\":1,"));
+            assertTrue(json, json.contains("\"errorRatio\":0.5,\"meanElapsed\":100.0,"));
+
+            HttpURLConnection connection = open(client, "/other");
+            assertEquals(404, connection.getResponseCode());
+        } finally {
+            client.teardownTest(context);
+        }
+    }
+
+    private static HttpURLConnection open(HttpMetricsBackendListenerClient client, String path) throws IOException {
+        URL url = new URL("http", "127.0.0.1", client.getPort(), path);
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private static String get(HttpMetricsBackendListenerClient client, String path) throws IOException {
+        HttpURLConnection connection = open(client, path);
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            return IOUtils.toString(in, "UTF-8");
+        }
+    }
+}
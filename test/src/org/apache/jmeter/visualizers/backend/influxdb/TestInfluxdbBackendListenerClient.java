@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jmeter.visualizers.backend.influxdb;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.jmeter.config.Arguments;
+import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.visualizers.backend.BackendListenerContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class TestInfluxdbBackendListenerClient {
+
+    /** Stand-in for InfluxDB, keeps the points it receives */
+    private HttpServer server;
+
+    private final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+
+    private volatile int requests;
+
+    // Status returned to the next requests
+    private volatile int status = 204;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/write", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests++;
+                assertEquals("POST", exchange.getRequestMethod());
+                assertEquals("gzip", exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                try (InputStream in = new GZIPInputStream(exchange.getRequestBody())) {
+                    String body = IOUtils.toString(in, "UTF-8");
+                    if (status == 204) {
+                        lines.addAll(Arrays.asList(body.split("\n")));
+                    }
+                }
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private URL url() throws IOException {
+        return new URL("http", "127.0.0.1", server.getAddress().getPort(), "/write?db=jmeter");
+    }
+
+    private static SampleResult result(String label, long time, boolean success) {
+        SampleResult result = SampleResult.createTestSample(time);
+        result.setSampleLabel(label);
+        result.setSuccessful(success);
+        return result;
+    }
+
+    private BackendListenerContext context(InfluxdbBackendListenerClient client, String... parameters)
+            throws IOException {
+        Arguments arguments = client.getDefaultParameters();
+        arguments.removeArgument("influxdbUrl");
+        arguments.addArgument("influxdbUrl", url().toString());
+        for (int i = 0; i < parameters.length; i += 2) {
+            arguments.removeArgument(parameters[i]);
+            arguments.addArgument(parameters[i], parameters[i + 1]);
+        }
+        return new BackendListenerContext(arguments);
+    }
+
+    /**
+     * @return the sum of the counts of the points starting with prefix
+     */
+    private long count(String prefix) {
+        long count = 0;
+        synchronized (lines) {
+            for (String line : lines) {
+                if (line.startsWith(prefix + " count=")) {
+                    String value = line.substring(prefix.length() + " count=".length());
+                    count += Long.parseLong(value.substring(0, value.indexOf('i')));
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testSendsTaggedPointsInBatches() throws Exception {
+        InfluxdbBackendListenerClient client = new InfluxdbBackendListenerClient();
+        BackendListenerContext context = context(client, "testTitle", "My test", "batchSize", "2");
+        client.setupTest(context);
+        client.handleSampleResults(Arrays.asList(result("Home page", 100, true),
+                result("Home page", 200, false), result("Login", 50, true)), context);
+        client.teardownTest(context);
+
+        assertEquals(1, count("jmeter,test=My\\ test,label=Home\\ page,status=ok"));
+        assertEquals(1, count("jmeter,test=My\\ test,label=Home\\ page,status=ko"));
+        assertEquals(2, count("jmeter,test=My\\ test,label=Home\\ page,status=all"));
+        assertEquals(1, count("jmeter,test=My\\ test,label=Login,status=ok"));
+        assertEquals(3, count("jmeter,test=My\\ test,label=all,status=all"));
+        String ko = null;
+        for (String line : lines) {
+            if (line.startsWith("jmeter,test=My\\ test,label=Home\\ page,status=ko ")) {
+                ko = line;
+            }
+        }
+        assertTrue(ko, ko.matches(".* count=1i,min=200\\.0,max=200\\.0,avg=200\\.0,pct90=200\\.0,pct95=200\\.0,pct99=200\\.0 \\d+000000"));
+        // At most 2 points per request
+        assertTrue(requests >= (lines.size() + 1) / 2);
+        assertEquals(lines.size(), client.getSender().getSentCount());
+        assertEquals(0, client.getSender().getDroppedCount());
+    }
+
+    @Test
+    public void testRawSamples() throws Exception {
+        InfluxdbBackendListenerClient client = new InfluxdbBackendListenerClient();
+        BackendListenerContext context = context(client, "rawSamples", "true");
+        client.setupTest(context);
+        for (int i = 0; i < 10; i++) {
+            SampleResult result = result("a=b", i, true);
+            result.setTimeStamp(1000L); // same tags and millisecond
+            client.aggregateSampleResult(result, context);
+        }
+        client.teardownTest(context);
+        Set<String> timestamps = new HashSet<>();
+        for (String line : lines) {
+            if (line.startsWith("jmeter_samples,test=Test,label=a\\=b,status=ok elapsed=")) {
+                String timestamp = line.substring(line.lastIndexOf(' ') + 1);
+                assertTrue(line, timestamp.startsWith("1000") && timestamp.length() == 10);
+                timestamps.add(timestamp);
+            }
+        }
+        // Distinct, so that InfluxDB keeps them all
+        assertEquals(10, timestamps.size());
+
+        lines.clear();
+        client = new InfluxdbBackendListenerClient();
+        context = context(client, "rawSamples", "true", "rawSampleRate", "0");
+        client.setupTest(context);
+        for (int i = 0; i < 10; i++) {
+            client.aggregateSampleResult(result("a", i, true), context);
+        }
+        client.teardownTest(context);
+        assertFalse(lines.isEmpty());
+        for (String line : lines) {
+            assertFalse(line, line.startsWith("jmeter_samples,"));
+        }
+    }
+
+    @Test
+    public void testKeepsPointsUntilServerRecovers() throws Exception {
+        LineProtocolSender sender = new LineProtocolSender(url(), 10, 1000L, 25);
+        for (int i = 0; i < 30; i++) {
+            sender.addPoint("m v=" + i + "i");
+        }
+        assertEquals(5, sender.getDroppedCount());
+        status = 503;
+        assertFalse(sender.flush(0L));
+        assertEquals(25, sender.getBufferedCount());
+        // Not due yet
+        status = 204;
+        sender.flushIfNeeded(500L);
+        assertEquals(1, requests);
+        sender.flushIfNeeded(1000L);
+        assertEquals(0, sender.getBufferedCount());
+        assertEquals(25, sender.getSentCount());
+        assertEquals("m v=5i", lines.get(0));
+        assertEquals("m v=29i", lines.get(24));
+
+        // Rejected points are not sent again
+        sender.addPoint("m v=bad");
+        status = 400;
+        assertTrue(sender.flush(2000L));
+        assertEquals(6, sender.getDroppedCount());
+    }
+
+    @Test
+    public void testFlushesAsSoonAsBatchIsFull() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            LineProtocolSender sender = new LineProtocolSender(url(), 10, 60000L, 100, executor);
+            for (int i = 0; i < 9; i++) {
+                sender.addPoint("m v=" + i + "i");
+            }
+            assertEquals(0, requests);
+            // Without waiting for the flush interval
+            sender.addPoint("m v=9i");
+            long deadline = System.currentTimeMillis() + 10000L;
+            while (sender.getSentCount() < 10 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(10, sender.getSentCount());
+            assertEquals(0, sender.getBufferedCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        final LineProtocolSender sender = new LineProtocolSender(url(), 1000, 60000L, 100000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 5000; i++) {
+                            sender.addPoint("m,t=" + thread + " v=" + i + "i");
+                        }
+                        return null;
+                    }
+                });
+            }
+            executor.invokeAll(tasks);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(20000, sender.getBufferedCount());
+        assertTrue(sender.flush(0L));
+        assertEquals(20000, sender.getSentCount());
+        assertEquals(20000, lines.size());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jorphan.math;
+
+import java.util.Random;
+
+/**
+ * Compares the insert cost and the memory of {@link StatCalculatorLong} and
+ * {@link StatCalculatorHistogram} for log-normal response times.
+ * <p>
+ * Usage: StatCalculatorBenchmark [values [median in ms]], the JVM should be
+ * started with a fixed heap (-Xms = -Xmx) for the memory to be meaningful.
+ * </p>
+ */
+public class StatCalculatorBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        double median = args.length > 1 ? Double.parseDouble(args[1]) : 500;
+        long[] values = new long[count];
+        Random random = new Random(0);
+        for (int i = 0; i < count; i++) {
+            values[i] = Math.round(median * Math.exp(random.nextGaussian()));
+        }
+        System.out.println(count + " values, median " + median + " ms");
+        for (int round = 1; round <= ROUNDS; round++) {
+            System.out.println("round " + round);
+            run("StatCalculatorLong", new StatCalculatorLong(), values);
+            run("StatCalculatorHistogram", new StatCalculatorHistogram(), values);
+        }
+    }
+
+    private static void run(String name, StatCalculatorLong calculator, long[] values) {
+        long before = usedMemory();
+        long start = System.nanoTime();
+        for (long value : values) {
+            calculator.addValue(value);
+        }
+        long elapsed = System.nanoTime() - start;
+        long memory = usedMemory() - before;
+        System.out.println(String.format("  %-24s %6.1f ns/value %10d KB, 90%% line %d ms",
+                name, (double) elapsed / values.length, memory / 1024,
+                calculator.getPercentPoint(0.9).longValue()));
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
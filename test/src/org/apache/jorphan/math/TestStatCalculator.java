@@ -22,6 +22,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
+import java.util.Random;
+
 import org.junit.Before;
 import org.junit.Test;
 
@@ -149,4 +151,75 @@ public class TestStatCalculator {
         assertEquals(12.0, calc.getSum(), 0.000000000001);
         assertEquals(0.5773502691896255, calc.getStandardDeviation(), 0.000000000000001);
     }
+
+    @Test
+    public void testHistogramExactBelowBound() {
+        StatCalculatorHistogram histogram = new StatCalculatorHistogram(1000);
+        Random random = new Random(0);
+        for (int i = 0; i < 10000; i++) {
+            long value = random.nextInt(1024);
+            calc.addValue(value);
+            histogram.addValue(value);
+        }
+        assertEquals(calc.getCount(), histogram.getCount());
+        assertEquals(calc.getSum(), histogram.getSum(), 0);
+        assertEquals(calc.getMin(), histogram.getMin());
+        assertEquals(calc.getMax(), histogram.getMax());
+        assertEquals(calc.getMedian(), histogram.getMedian());
+        for (double percent = 0; percent <= 1; percent += 0.01) {
+            assertEquals(calc.getPercentPoint(percent), histogram.getPercentPoint(percent));
+        }
+        Map<Number, Number[]> distribution = calc.getDistribution();
+        Map<Number, Number[]> histogramDistribution = histogram.getDistribution();
+        assertEquals(distribution.keySet(), histogramDistribution.keySet());
+        for (Map.Entry<Number, Number[]> entry : distribution.entrySet()) {
+            assertEquals(entry.getValue()[1].longValue(),
+                    histogramDistribution.get(entry.getKey())[1].longValue());
+        }
+    }
+
+    @Test
+    public void testHistogramRelativeErrorAboveBound() {
+        StatCalculatorHistogram histogram = new StatCalculatorHistogram();
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            // Log-normal response times, up to a few hours
+            long value = Math.round(Math.exp(8 + 2 * random.nextGaussian()));
+            calc.addValue(value);
+            histogram.addValue(value);
+        }
+        assertEquals(calc.getMax(), histogram.getMax());
+        double maxError = 1.0 / StatCalculatorHistogram.DEFAULT_EXACT_BOUND;
+        for (double percent : new double[] { 0.01, 0.5, 0.9, 0.95, 0.99, 0.999 }) {
+            long expected = calc.getPercentPoint(percent).longValue();
+            assertEquals(expected, histogram.getPercentPoint(percent).longValue(),
+                    Math.max(1, expected * maxError));
+        }
+    }
+
+    @Test
+    public void testHistogramAddAllAndClear() {
+        StatCalculatorHistogram histogram = new StatCalculatorHistogram(16);
+        histogram.addValue(1L);
+        histogram.addValue(2L);
+        histogram.addValue(3L);
+        StatCalculatorHistogram histogram2 = new StatCalculatorHistogram(16);
+        histogram2.addValue(2L);
+        histogram2.addValue(2L);
+        histogram2.addValue(0L);
+        histogram2.addValue(6L, 2);
+        histogram.addAll(histogram2);
+        assertEquals(8, histogram.getCount());
+        assertEquals(0, histogram.getMin().longValue());
+        assertEquals(2, histogram.getMedian().longValue());
+
+        calc.addAll(histogram);
+        assertEquals(8, calc.getCount());
+        assertEquals(3, calc.getPercentPoint(0.9).longValue());
+
+        histogram.clear();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentPoint(0.5).longValue());
+        assertTrue(histogram.getDistribution().isEmpty());
+    }
 }